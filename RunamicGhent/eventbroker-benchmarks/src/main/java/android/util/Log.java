@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package android.util;
+
+/**
+ * Stand-in for the Android logger, so the eventbroker sources run on a plain JVM.
+ * Drops every message, as logging would distort the measurements.
+ */
+public final class Log {
+    public static final int VERBOSE = 2;
+    public static final int DEBUG = 3;
+    public static final int INFO = 4;
+    public static final int WARN = 5;
+    public static final int ERROR = 6;
+    public static final int ASSERT = 7;
+
+    private Log() {
+    }
+
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static boolean isLoggable(String tag, int level) {
+        return false;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker.benchmarks;
+
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventListener;
+import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.Topic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of publishing and dispatching one event to 1 up to 50 inline listeners of its type.
+ * The broker is pumped manually on the benchmark thread, so no thread handoff is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FanOutBenchmark {
+    @Param({"1", "5", "10", "50"})
+    public int listeners;
+
+    private EventBroker broker;
+    private final Topic topic = EventBroker.topic("benchmark.fanout");
+    private final Object message = new Object();
+    private final EventPublisher publisher = new EventPublisher() {
+    };
+    private long handled;
+
+    @Setup
+    public void start() {
+        broker = EventBroker.builder().setManualPump(true).setName("fan-out benchmark").build();
+        for (int i = 0; i < listeners; i++) {
+            broker.addEventListener(topic, new EventListener() {
+                @Override
+                public void handleEvent(String eventType, Object message) {
+                    handled++;
+                }
+            });
+        }
+        broker.start();
+    }
+
+    @TearDown
+    public void stop() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public long publishAndDispatch() {
+        broker.addEvent(topic, message, publisher);
+        broker.pump();
+        return handled;
+    }
+}
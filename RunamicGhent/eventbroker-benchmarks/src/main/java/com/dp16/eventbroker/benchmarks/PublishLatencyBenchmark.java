@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker.benchmarks;
+
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.LongEventListener;
+import com.dp16.eventbroker.Topic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time from publishing an event until the listener has handled it, as percentiles.
+ * Every operation publishes one event and waits for it, so this includes waking up the parked broker thread.
+ * The listener runs inline on the broker thread or on an executor of its own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublishLatencyBenchmark {
+    @Param({"inline", "executor"})
+    public String delivery;
+
+    private EventBroker broker;
+    private ExecutorService executor;
+    private final Topic topic = EventBroker.topic("benchmark.latency");
+    private final EventPublisher publisher = new EventPublisher() {
+    };
+    private final AtomicLong handled = new AtomicLong();
+    private long sequence;
+
+    @Setup
+    public void start() {
+        broker = EventBroker.builder().setName("latency benchmark").build();
+        executor = "executor".equals(delivery) ? Executors.newSingleThreadExecutor() : null;
+        broker.addEventListener(topic, new LongEventListener() {
+            @Override
+            public void handleLong(String eventType, long value) {
+                handled.lazySet(value);
+            }
+
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                // only primitive events are published
+            }
+        }, executor);
+        broker.start();
+    }
+
+    @TearDown
+    public void stop() {
+        broker.stop();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Benchmark
+    public long publishToHandle() {
+        long expected = ++sequence;
+        broker.publishLong(topic, expected, publisher);
+        while (handled.get() != expected) {
+            // spin, parking would measure the scheduler instead of the broker
+        }
+        return expected;
+    }
+}
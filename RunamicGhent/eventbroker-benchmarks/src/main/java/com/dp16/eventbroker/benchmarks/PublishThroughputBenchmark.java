@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker.benchmarks;
+
+import com.dp16.eventbroker.DeliveryPolicy;
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventListener;
+import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.Topic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@link EventBroker#addEvent(Topic, Object, EventPublisher)} with 1, 4 and 16 publisher threads,
+ * while the broker thread delivers every event to one listener.
+ * A reliable topic makes publishers wait when the queue is full, so this is the sustained rate of the broker.
+ * A conflated topic drops events instead, so this is the cost of publishing itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PublishThroughputBenchmark {
+    @Param({"RELIABLE", "CONFLATE"})
+    public String policy;
+
+    private EventBroker broker;
+    private Topic topic;
+    private final Object message = new Object();
+    private final EventPublisher publisher = new EventPublisher() {
+    };
+    // only written by the broker thread, keeps the listener from being a no-op
+    private long handled;
+
+    @Setup
+    public void start() {
+        topic = EventBroker.topic("benchmark.publish." + policy)
+                .setDeliveryPolicy("RELIABLE".equals(policy) ? DeliveryPolicy.RELIABLE : DeliveryPolicy.CONFLATE);
+        broker = EventBroker.builder().setName("publish benchmark").build();
+        broker.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                handled++;
+            }
+        });
+        broker.start();
+    }
+
+    @TearDown
+    public void stop() {
+        broker.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void onePublisher() {
+        broker.addEvent(topic, message, publisher);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourPublishers() {
+        broker.addEvent(topic, message, publisher);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void sixteenPublishers() {
+        broker.addEvent(topic, message, publisher);
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker.benchmarks;
+
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventListener;
+import com.dp16.eventbroker.Topic;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of registering and unregistering a listener, as fragments do when they are shown and hidden,
+ * on a topic that already has 0 up to 50 other listeners. Registration copies the listener array of the topic.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistrationChurnBenchmark {
+    @Param({"0", "10", "50"})
+    public int existingListeners;
+
+    private EventBroker broker;
+    private final Topic topic = EventBroker.topic("benchmark.churn");
+
+    /**
+     * Every benchmark thread registers its own listener.
+     */
+    @State(Scope.Thread)
+    public static class ThreadListener {
+        final EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                // never called, no events are published
+            }
+        };
+    }
+
+    @Setup
+    public void start() {
+        broker = EventBroker.builder().setName("churn benchmark").build();
+        for (int i = 0; i < existingListeners; i++) {
+            broker.addEventListener(topic, new ThreadListener().listener);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void registerAndUnregister(ThreadListener state) {
+        broker.addEventListener(topic, state.listener);
+        broker.removeEventListener(topic, state.listener);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void registerAndUnregisterContended(ThreadListener state) {
+        broker.addEventListener(topic, state.listener);
+        broker.removeEventListener(topic, state.listener);
+    }
+}
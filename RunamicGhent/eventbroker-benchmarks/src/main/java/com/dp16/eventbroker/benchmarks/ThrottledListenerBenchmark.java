@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker.benchmarks;
+
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventListener;
+import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.Reducers;
+import com.dp16.eventbroker.Topic;
+import com.dp16.eventbroker.VirtualClock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of throttling: an event every virtual millisecond to a listener without interval,
+ * with a 10 ms interval that drops events, and with a 10 ms interval that holds them with a reducer.
+ * The broker is pumped manually with a virtual clock, so every run throttles the same events.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThrottledListenerBenchmark {
+    private static final int INTERVAL = 10;
+
+    @Param({"none", "interval", "reducer"})
+    public String throttling;
+
+    private EventBroker broker;
+    private final VirtualClock clock = new VirtualClock();
+    private final Topic topic = EventBroker.topic("benchmark.throttled");
+    private final Object message = new Object();
+    private final EventPublisher publisher = new EventPublisher() {
+    };
+    private long handled;
+
+    @Setup
+    public void start() {
+        broker = EventBroker.builder().setManualPump(true).setClock(clock).setName("throttling benchmark").build();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                handled++;
+            }
+        };
+        if ("none".equals(throttling)) {
+            broker.addEventListener(topic, listener);
+        } else if ("interval".equals(throttling)) {
+            broker.addEventListener(topic, listener, INTERVAL);
+        } else {
+            broker.addEventListener(topic, listener, INTERVAL, Reducers.LAST);
+        }
+        broker.start();
+    }
+
+    @TearDown
+    public void stop() {
+        broker.stop();
+    }
+
+    @Benchmark
+    public long publishEveryMillisecond() {
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        broker.addEvent(topic, message, publisher);
+        broker.pump();
+        return handled;
+    }
+}
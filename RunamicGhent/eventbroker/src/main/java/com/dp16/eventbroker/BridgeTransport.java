@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.IOException;
+
+/**
+ * Carries the frames of an {@link EventBridge} to the bridge on the other device, for instance over the Wearable MessageApi.
+ * The receiving side passes every frame to {@link EventBridge#onFrame(byte[])}.
+ *
+ * @see LoopbackTransport
+ */
+public interface BridgeTransport {
+    /**
+     * Sends one frame. Called on the flush thread of the bridge, so it may block.
+     *
+     * @param frame Encoded frame, not used by the bridge afterwards.
+     * @throws IOException if the frame could not be sent. The events in it are lost.
+     */
+    void send(byte[] frame) throws IOException;
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable snapshot of the state of an {@link EventBroker}, taken with {@link EventBroker#getMetrics()}.
+ * <p>
+ * Counters are cumulative since the broker was created, depths and busy times are what they were when the snapshot was taken.
+ * The snapshot is not atomic: values are read one by one while the broker keeps running.
+ * </p>
+ * To find a listener that stalls the broker thread, look at {@link ListenerMetrics#getBusyNanos()} of the inline listeners
+ * and at their handler times.
+ */
+public final class BrokerMetrics {
+    private final long timestamp;
+    private final boolean running;
+    private final int realtimeDepth;
+    private final int normalDepth;
+    private final int bulkDepth;
+    private final int overflowDepth;
+    private final List<TopicMetrics> topics;
+    private final List<ListenerMetrics> listeners;
+
+    BrokerMetrics(boolean running, int realtimeDepth, int normalDepth, int bulkDepth, int overflowDepth,
+                  List<TopicMetrics> topics, List<ListenerMetrics> listeners) {
+        this.timestamp = System.currentTimeMillis();
+        this.running = running;
+        this.realtimeDepth = realtimeDepth;
+        this.normalDepth = normalDepth;
+        this.bulkDepth = bulkDepth;
+        this.overflowDepth = overflowDepth;
+        this.topics = Collections.unmodifiableList(topics);
+        this.listeners = Collections.unmodifiableList(listeners);
+    }
+
+    /**
+     * @return Wall clock time in milliseconds at which the snapshot was taken.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return true if the broker thread was running.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param priority Lane to look at.
+     * @return Amount of events waiting in the lane of that priority.
+     */
+    public int getQueueDepth(Priority priority) {
+        switch (priority) {
+            case REALTIME:
+                return realtimeDepth;
+            case BULK:
+                return bulkDepth;
+            default:
+                return normalDepth;
+        }
+    }
+
+    /**
+     * @return Amount of events waiting in all lanes, including the reliable events that were kept behind a full lane.
+     */
+    public int getQueueDepth() {
+        return realtimeDepth + normalDepth + bulkDepth + overflowDepth;
+    }
+
+    /**
+     * @return Metrics of every topic that has listeners or was ever published.
+     */
+    public List<TopicMetrics> getTopics() {
+        return topics;
+    }
+
+    /**
+     * @return Metrics of every registered listener, one entry per topic it is registered for.
+     */
+    public List<ListenerMetrics> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * @return Amount of listener registrations, summed over all topics.
+     */
+    public int getAmountOfListeners() {
+        return listeners.size();
+    }
+
+    /**
+     * @return The listener registration that spent the most time in a single call, or null when there are no listeners.
+     */
+    public ListenerMetrics getSlowestListener() {
+        ListenerMetrics slowest = null;
+        for (ListenerMetrics listener : listeners) {
+            if (slowest == null || slowest(listener, slowest) > 0) {
+                slowest = listener;
+            }
+        }
+        return slowest;
+    }
+
+    // a listener that is stuck right now counts as slower than its history shows
+    private static int slowest(ListenerMetrics a, ListenerMetrics b) {
+        long worstA = Math.max(a.getBusyNanos(), a.getHandlerTime().getMaxNanos());
+        long worstB = Math.max(b.getBusyNanos(), b.getHandlerTime().getMaxNanos());
+        return worstA < worstB ? -1 : (worstA == worstB ? 0 : 1);
+    }
+
+    /**
+     * @return Multi-line human readable dump, with the slowest listeners first.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format(Locale.US, "EventBroker %s, queued: realtime=%d normal=%d bulk=%d overflow=%d, listeners=%d",
+                running ? "running" : "stopped", realtimeDepth, normalDepth, bulkDepth, overflowDepth, listeners.size()));
+        for (TopicMetrics topic : topics) {
+            builder.append('\n').append(topic);
+        }
+        List<ListenerMetrics> sorted = new ArrayList<>(listeners);
+        Collections.sort(sorted, new Comparator<ListenerMetrics>() {
+            @Override
+            public int compare(ListenerMetrics a, ListenerMetrics b) {
+                return slowest(b, a);
+            }
+        });
+        for (ListenerMetrics listener : sorted) {
+            builder.append('\n').append(listener);
+        }
+        return builder.toString();
+    }
+
+
+    /**
+     * Metrics of one topic.
+     */
+    public static final class TopicMetrics {
+        private final String name;
+        private final int amountOfListeners;
+        private final long published;
+        private final long dispatched;
+        private final long dropped;
+        private final long superseded;
+        private final long requests;
+        private final LatencyHistogram dispatchLatency;
+
+        TopicMetrics(String name, int amountOfListeners, long published, long dispatched, long dropped, long superseded, long requests,
+                     LatencyHistogram dispatchLatency) {
+            this.name = name;
+            this.amountOfListeners = amountOfListeners;
+            this.published = published;
+            this.dispatched = dispatched;
+            this.dropped = dropped;
+            this.superseded = superseded;
+            this.requests = requests;
+            this.dispatchLatency = dispatchLatency;
+        }
+
+        /**
+         * @return Event type name of the topic.
+         */
+        public String getName() {
+            return name;
+        }
+
+        public int getAmountOfListeners() {
+            return amountOfListeners;
+        }
+
+        /**
+         * @return Amount of events that were queued.
+         */
+        public long getPublished() {
+            return published;
+        }
+
+        /**
+         * @return Amount of events the broker thread handed to listeners.
+         */
+        public long getDispatched() {
+            return dispatched;
+        }
+
+        /**
+         * @return Amount of events that were discarded when the broker stopped, see {@link DrainMode}.
+         */
+        public long getDropped() {
+            return dropped;
+        }
+
+        /**
+         * @return Amount of queued events that were skipped because a newer event replaced them, see {@link DeliveryPolicy}.
+         */
+        public long getSuperseded() {
+            return superseded;
+        }
+
+        /**
+         * @return Amount of requests that were queued for the responder of the topic, see {@link EventBroker#request(Topic, Object)}.
+         */
+        public long getRequests() {
+            return requests;
+        }
+
+        /**
+         * @return Time between queueing an event and the broker thread taking it out of the queue.
+         */
+        public LatencyHistogram getDispatchLatency() {
+            return dispatchLatency;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "topic %s: listeners=%d published=%d dispatched=%d dropped=%d superseded=%d requests=%d latency[%s]",
+                    name, amountOfListeners, published, dispatched, dropped, superseded, requests, dispatchLatency);
+        }
+    }
+
+
+    /**
+     * Metrics of one listener for one topic.
+     */
+    public static final class ListenerMetrics {
+        private final String listener;
+        private final String topic;
+        private final boolean inline;
+        private final boolean quarantined;
+        private final long delivered;
+        private final long throttled;
+        private final long held;
+        private final long overruns;
+        private final int mailboxDepth;
+        private final long busyNanos;
+        private final LatencyHistogram handlerTime;
+
+        ListenerMetrics(String listener, String topic, boolean inline, boolean quarantined, long delivered, long throttled, long held,
+                        long overruns, int mailboxDepth, long busyNanos, LatencyHistogram handlerTime) {
+            this.listener = listener;
+            this.topic = topic;
+            this.inline = inline;
+            this.quarantined = quarantined;
+            this.delivered = delivered;
+            this.throttled = throttled;
+            this.held = held;
+            this.overruns = overruns;
+            this.mailboxDepth = mailboxDepth;
+            this.busyNanos = busyNanos;
+            this.handlerTime = handlerTime;
+        }
+
+        /**
+         * @return String representation of the listener.
+         */
+        public String getListener() {
+            return listener;
+        }
+
+        /**
+         * @return Event type name of the topic of this registration.
+         */
+        public String getTopic() {
+            return topic;
+        }
+
+        /**
+         * @return true if the listener runs on the broker thread, so a slow handler delays every other listener.
+         */
+        public boolean isInline() {
+            return inline;
+        }
+
+        /**
+         * @return true if the watchdog moved the listener off the broker thread, see {@link EventBroker#setHandlerBudget(long, boolean)}.
+         */
+        public boolean isQuarantined() {
+            return quarantined;
+        }
+
+        /**
+         * @return Amount of events the listener has handled.
+         */
+        public long getDelivered() {
+            return delivered;
+        }
+
+        /**
+         * @return Amount of events the listener did not receive because of its interval.
+         */
+        public long getThrottled() {
+            return throttled;
+        }
+
+        /**
+         * @return Amount of events that were held and combined by the reducer of the listener.
+         */
+        public long getHeld() {
+            return held;
+        }
+
+        /**
+         * @return Amount of calls that took longer than the handler budget of the watchdog.
+         */
+        public long getOverruns() {
+            return overruns;
+        }
+
+        /**
+         * @return Amount of events waiting for the executor or quarantine lane of the listener, 0 for inline listeners.
+         */
+        public int getMailboxDepth() {
+            return mailboxDepth;
+        }
+
+        /**
+         * @return How long the listener has been inside its current call in nanoseconds, 0 if it was not handling an event.
+         */
+        public long getBusyNanos() {
+            return busyNanos;
+        }
+
+        /**
+         * @return Time spent in handleEvent, handleDouble or handleLong per call.
+         */
+        public LatencyHistogram getHandlerTime() {
+            return handlerTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "listener %s on %s (%s): delivered=%d throttled=%d held=%d overruns=%d mailbox=%d busy=%.2fms handler[%s]",
+                    listener, topic, inline ? "inline" : (quarantined ? "quarantined" : "executor"), delivered, throttled, held, overruns, mailboxDepth,
+                    busyNanos / 1e6, handlerTime);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Monotonic time source of an {@link EventBroker}, used for the intervals of throttled listeners, request timeouts and dispatch latencies.
+ * Handler times and the watchdog always use the real clock.
+ *
+ * @see EventBroker.Builder#setClock(Clock)
+ * @see VirtualClock
+ */
+public interface Clock {
+    /**
+     * The clock of the JVM, {@link System#nanoTime()}.
+     */
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * @return Current time in nanoseconds. Only differences between two values are meaningful.
+     */
+    long nanoTime();
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.eventbroker;
+
+import android.util.Log;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small pool of worker threads shared by the components of the app.
+ * Instead of a single thread executor per component, every component gets a {@link SerialExecutor}:
+ * its tasks still run one at a time and in order, but on whichever worker thread is free.
+ * Delayed and periodic tasks are fired by one shared timer thread, so components do not need a java.util.Timer either.
+ * <p>
+ * Idle threads exit after {@link #KEEP_ALIVE_SECONDS}, and the same threads are reused by the components of the next run,
+ * so the amount of threads stays the same no matter how many runs happen in one process.
+ * </p>
+ * Components shut their executor down when they are stopped. An executor that is garbage collected without being shut down
+ * is reported to the {@link ExecutorLeakListener}, with the stack trace of the call that created it.
+ */
+public final class ComponentScheduler {
+    private static final String TAG = "ComponentScheduler";
+    /**
+     * Seconds an idle worker or timer thread waits for new work before it exits.
+     */
+    public static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int MIN_THREADS = 2;
+    private static final int MAX_THREADS = 4;
+
+    private static final ComponentScheduler ourInstance =
+            new ComponentScheduler(Math.max(MIN_THREADS, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors())));
+
+    private final ThreadPoolExecutor workers;
+    private final ScheduledThreadPoolExecutor timer;
+
+    // executors that are not shut down yet, weakly referenced so the leak detector notices the ones that are collected
+    private final Set<Registration> registrations = Collections.newSetFromMap(new ConcurrentHashMap<Registration, Boolean>());
+    private final ReferenceQueue<SerialExecutor> collected = new ReferenceQueue<>();
+    private volatile ExecutorLeakListener leakListener = new ExecutorLeakListener() {
+        @Override
+        public void onLeak(String owner, Throwable allocationSite) {
+            Log.w(TAG, "Executor of " + owner + " was never shut down", allocationSite);
+        }
+    };
+
+    /**
+     * Weak reference to an executor that remembers who created it. Cleared when the executor is shut down,
+     * so only executors that were collected while still open end up in the reference queue.
+     */
+    static final class Registration extends WeakReference<SerialExecutor> {
+        private final String owner;
+        private final Throwable allocationSite;
+
+        Registration(SerialExecutor executor, String owner, ReferenceQueue<SerialExecutor> queue) {
+            super(executor, queue);
+            this.owner = owner;
+            this.allocationSite = new Throwable("Executor of " + owner + " was created here");
+        }
+    }
+
+    /**
+     * @return The scheduler shared by all components of the app
+     */
+    public static ComponentScheduler getInstance() {
+        return ourInstance;
+    }
+
+    /**
+     * Creates an independent scheduler, for tests. Components use {@link #getInstance()}.
+     *
+     * @param threads Maximum amount of worker threads.
+     */
+    public ComponentScheduler(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("A scheduler needs at least one worker thread, got " + threads);
+        }
+        workers = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), daemonThreads("Component worker"));
+        workers.allowCoreThreadTimeOut(true);
+        timer = new ScheduledThreadPoolExecutor(1, daemonThreads("Component timer"));
+        timer.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        timer.allowCoreThreadTimeOut(true);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static ThreadFactory daemonThreads(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread daemon = new Thread(runnable, name + " " + count.incrementAndGet());
+                daemon.setDaemon(true);
+                return daemon;
+            }
+        };
+    }
+
+    /**
+     * Creates the executor of a component. The component has to shut it down when it is stopped.
+     *
+     * @param owner Name of the component, used in logs and leak reports.
+     * @return A new executor that runs its tasks one at a time, in order.
+     */
+    public SerialExecutor newSerialExecutor(String owner) {
+        detectLeaks();
+        return new SerialExecutor(this, owner);
+    }
+
+    /**
+     * For a component that is started again after it was stopped: a shut down executor does not take tasks anymore.
+     *
+     * @param executor Executor of the component, from {@link #newSerialExecutor(String)}.
+     * @return The executor itself when it is not shut down, else a new executor for the same owner.
+     */
+    public SerialExecutor reopen(SerialExecutor executor) {
+        return executor.isShutdown() ? newSerialExecutor(executor.getOwner()) : executor;
+    }
+
+    Registration register(SerialExecutor executor, String owner) {
+        Registration registration = new Registration(executor, owner, collected);
+        registrations.add(registration);
+        return registration;
+    }
+
+    void release(Registration registration) {
+        registrations.remove(registration);
+        // a cleared reference is never enqueued, so a released executor is never reported
+        registration.clear();
+    }
+
+    ExecutorService workers() {
+        return workers;
+    }
+
+    ScheduledExecutorService timer() {
+        return timer;
+    }
+
+    /**
+     * Reports the executors that were garbage collected without being shut down. Also done whenever an executor is created.
+     *
+     * @return Amount of leaks found by this call
+     */
+    public int detectLeaks() {
+        int leaks = 0;
+        Registration registration;
+        while ((registration = (Registration) collected.poll()) != null) {
+            if (registrations.remove(registration)) {
+                leaks++;
+                leakListener.onLeak(registration.owner, registration.allocationSite);
+            }
+        }
+        return leaks;
+    }
+
+    /**
+     * Sets who is told about leaked executors. By default they are logged as a warning.
+     */
+    public void setLeakListener(ExecutorLeakListener leakListener) {
+        if (leakListener == null) {
+            throw new IllegalArgumentException("Leak listener can not be null");
+        }
+        this.leakListener = leakListener;
+    }
+
+    /**
+     * Useful after a run, when every component should have been stopped.
+     *
+     * @return Owners of the executors that are still reachable and not shut down
+     */
+    public List<String> getOpenExecutors() {
+        List<String> owners = new ArrayList<>();
+        for (Registration registration : registrations) {
+            if (registration.get() != null) {
+                owners.add(registration.owner);
+            }
+        }
+        return owners;
+    }
+
+    /**
+     * @return Amount of worker threads that are alive right now, idle ones included
+     */
+    public int getWorkerThreads() {
+        return workers.getPoolSize();
+    }
+
+    /**
+     * @return Highest amount of worker threads that were alive at the same time
+     */
+    public int getLargestWorkerThreads() {
+        return workers.getLargestPoolSize();
+    }
+
+    /**
+     * Stops the threads of an independent scheduler. Tasks that were already handed to a worker still run.
+     * The shared instance is never shut down.
+     */
+    public void shutdown() {
+        if (this == ourInstance) {
+            throw new IllegalStateException("The shared scheduler can not be shut down");
+        }
+        workers.shutdown();
+        timer.shutdownNow();
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Decides what the {@link EventBroker} does with events of a {@link Topic} when it can not keep up.
+ * <ul>
+ * <li>{@link #RELIABLE}: every event is delivered. When the queue is full, events are kept behind it in order. This is the default.</li>
+ * <li>{@link #CONFLATE}: only the newest pending event is delivered, older pending events of the topic are skipped.</li>
+ * <li>{@link #bounded(int)}: at most n pending events are delivered, the oldest ones are skipped first.</li>
+ * </ul>
+ * When the queue is full, a non reliable topic does not block the publisher either: its newest event is kept next to the queue,
+ * replacing the one that was kept before, and delivered after the events of the topic that are already queued.
+ * Use non reliable policies for measurements where only recent values matter, such as locations or durations.
+ *
+ * @see Topic#setDeliveryPolicy(DeliveryPolicy)
+ */
+public final class DeliveryPolicy {
+    /**
+     * Every event is delivered. When the queue is full, the event is kept behind it, so the publisher does not wait.
+     */
+    public static final DeliveryPolicy RELIABLE = new DeliveryPolicy(0);
+
+    /**
+     * Only the newest pending event is delivered.
+     */
+    public static final DeliveryPolicy CONFLATE = new DeliveryPolicy(1);
+
+    // 0 means unbounded
+    private final int maxPending;
+
+    private DeliveryPolicy(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /**
+     * Keeps at most maxPending events of the topic waiting in the queue. When more are pending, the oldest ones are dropped.
+     *
+     * @param maxPending Maximum amount of pending events, at least 1.
+     * @return A bounded drop-oldest policy.
+     */
+    public static DeliveryPolicy bounded(int maxPending) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("A bounded policy needs at least one pending event, got " + maxPending);
+        }
+        return maxPending == 1 ? CONFLATE : new DeliveryPolicy(maxPending);
+    }
+
+    /**
+     * @return true if no event of the topic is ever dropped.
+     */
+    public boolean isReliable() {
+        return maxPending == 0;
+    }
+
+    /**
+     * @return Maximum amount of pending events that are delivered, or 0 for {@link #RELIABLE}.
+     */
+    public int getMaxPending() {
+        return maxPending;
+    }
+
+    @Override
+    public String toString() {
+        if (isReliable()) {
+            return "RELIABLE";
+        }
+        return maxPending == 1 ? "CONFLATE" : "BOUNDED(" + maxPending + ", DROP_OLDEST)";
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.eventbroker;
+
+/**
+ * Decides which of the events that are still queued an {@link EventBroker} delivers when it is stopped.
+ * <ul>
+ * <li>{@link #ALL}: every queued event is delivered. This is what {@link EventBroker#stop()} does.</li>
+ * <li>{@link #RELIABLE}: only events of reliable topics are delivered. Events of conflated, bounded and realtime topics are dropped,
+ * nobody acts on a stale location or a late instruction once the run is over.</li>
+ * <li>{@link #NONE}: every queued event is dropped, as are the held events of throttled listeners.</li>
+ * </ul>
+ *
+ * @see EventBroker#stop(long, java.util.concurrent.TimeUnit, DrainMode)
+ */
+public enum DrainMode {
+    ALL,
+    RELIABLE,
+    NONE;
+
+    /**
+     * @return true if queued events of the topic are still delivered in this mode
+     */
+    boolean delivers(Topic topic) {
+        switch (this) {
+            case ALL:
+                return true;
+            case RELIABLE:
+                return topic.getDeliveryPolicy().isReliable() && topic.getPriority() != Priority.REALTIME;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mirrors topics between the event brokers of two devices, such as the phone and the watch.
+ * <p>
+ * Events of exported topics are collected and sent as one binary frame per flush interval, so the radio wakes up once per
+ * interval instead of once per value. When several events of a topic that is not {@link DeliveryPolicy#RELIABLE} are waiting,
+ * only the newest one is sent. Events of a {@link Priority#REALTIME} topic are flushed right away.
+ * The other side publishes the events of the topics it imports on its own broker, with the bridge as source,
+ * so an imported topic that is exported again is not echoed back.
+ * Frames are sent by a {@link SerialExecutor} of the shared {@link ComponentScheduler}, the bridge has no thread of its own.
+ * </p>
+ * How frames travel is up to the {@link BridgeTransport}. Frame format, numbers as in {@link FlightRecorder}:
+ * <pre>
+ * frame = 0xEB version:byte names:varint name:UTF* events:varint event*
+ * event = 0x02 topic:varint length:varint payload:byte[]   message encoded by the codec of the topic
+ *       | 0x03 topic:varint value:double
+ *       | 0x04 topic:varint value:zigzag varint
+ *       | 0x05 topic:varint                               null message
+ * </pre>
+ * Topics are referred to by their index in the names of the frame, so every frame can be decoded on its own.
+ */
+public final class EventBridge {
+    static final int MAGIC = 0xEB;
+    static final int VERSION = 1;
+
+    /**
+     * Flush interval that suits values shown to the user, such as the duration of a run.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final String TAG = "EventBridge";
+
+    private final EventBroker broker;
+    private final BridgeTransport transport;
+    private final long flushIntervalMillis;
+    private final Endpoint endpoint = new Endpoint();
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // by topic name, as the listener receives the name
+    private final Map<String, Export> exports = new ConcurrentHashMap<>();
+    private final Map<String, Import> imports = new ConcurrentHashMap<>();
+
+    // events waiting for the next frame, guarded by pendingLock
+    private final Object pendingLock = new Object();
+    private List<Pending> pending = new ArrayList<>();
+    private final Map<Topic, Pending> latest = new HashMap<>();
+    // frames are encoded and sent one at a time, so they arrive in order
+    private final Object flushLock = new Object();
+
+    // guarded by this
+    private boolean started;
+    private SerialExecutor flusher;
+
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong eventsSent = new AtomicLong();
+    private final AtomicLong eventsCoalesced = new AtomicLong();
+    private final AtomicLong framesReceived = new AtomicLong();
+
+    /**
+     * @param broker              Broker whose topics are mirrored.
+     * @param transport           Carries frames to the other side.
+     * @param flushIntervalMillis Time between frames, or 0 to only send frames when {@link #flush()} is called.
+     */
+    public EventBridge(EventBroker broker, BridgeTransport transport, long flushIntervalMillis) {
+        if (flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Flush interval can not be negative, got " + flushIntervalMillis);
+        }
+        this.broker = broker;
+        this.transport = transport;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Sends the events of a topic to the other side, under the name of the topic.
+     * Replaces an earlier export of the same topic.
+     *
+     * @param topic Topic to send.
+     * @param codec Encodes the messages, primitive events are boxed by the {@link PrimitiveBoxer} of the topic first.
+     *              Null sends the events as primitives: numbers as long or double, other messages are dropped.
+     * @return This bridge.
+     */
+    public synchronized EventBridge exportTopic(Topic topic, PayloadCodec codec) {
+        exports.put(topic.getName(), new Export(topic, codec));
+        if (started) {
+            broker.addEventListener(topic, endpoint);
+        }
+        return this;
+    }
+
+    /**
+     * Publishes the events the other side sends under a name on a local topic.
+     *
+     * @param remoteName Name of the topic on the other side.
+     * @param topic      Local topic to publish on.
+     * @param codec      Decodes the messages. Null only accepts primitive events and null messages.
+     * @return This bridge.
+     */
+    public EventBridge importTopic(String remoteName, Topic topic, PayloadCodec codec) {
+        imports.put(remoteName, new Import(topic, codec));
+        return this;
+    }
+
+    /**
+     * Starts listening to the exported topics and sending frames. Frames from the other side are accepted at any time.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (Export export : exports.values()) {
+            broker.addEventListener(export.topic, endpoint);
+        }
+        if (flushIntervalMillis > 0) {
+            flusher = ComponentScheduler.getInstance().newSerialExecutor(TAG);
+            flusher.scheduleAtFixedRate(flushTask, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops listening to the exported topics and sends the events that are still waiting.
+     */
+    public void stop() {
+        SerialExecutor stopped;
+        synchronized (this) {
+            if (!started) {
+                return;
+            }
+            started = false;
+            broker.removeEventListener(endpoint);
+            stopped = flusher;
+            flusher = null;
+        }
+        if (stopped != null) {
+            stopped.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Sends the waiting events as one frame now. Safe to call from any thread.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Pending> batch;
+            synchronized (pendingLock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                latest.clear();
+            }
+            try {
+                byte[] frame = encode(batch);
+                transport.send(frame);
+                framesSent.incrementAndGet();
+                eventsSent.addAndGet(batch.size());
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to send " + batch.size() + " events", e);
+            }
+        }
+    }
+
+    /**
+     * Publishes the events of a frame from the other side. Events of topics that are not imported are skipped.
+     * Called by the transport, on any thread.
+     * Counts and lengths in the frame are checked against the bytes that are left, so a corrupt frame can not make it allocate more than its own size.
+     *
+     * @param frame Frame sent by the bridge on the other side.
+     * @throws IOException if the frame is malformed
+     */
+    public void onFrame(byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        if (in.readUnsignedByte() != MAGIC) {
+            throw new IOException("Not an event frame");
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported event frame version " + version);
+        }
+        // a topic name takes at least the two bytes of its length
+        Import[] topics = new Import[readCount(in, 2, "topics")];
+        for (int i = 0; i < topics.length; i++) {
+            topics[i] = imports.get(in.readUTF());
+        }
+        framesReceived.incrementAndGet();
+
+        // an event takes at least its kind and topic index
+        int events = readCount(in, 2, "events");
+        for (int i = 0; i < events; i++) {
+            int kind = in.readUnsignedByte();
+            int index = (int) Varints.read(in);
+            if (index >= topics.length) {
+                throw new IOException("Event frame refers to topic " + index + " of " + topics.length);
+            }
+            Import target = topics[index];
+            switch (kind) {
+                case FlightRecorder.DOUBLE:
+                    double doubleValue = in.readDouble();
+                    if (target != null) {
+                        broker.publishDouble(target.topic, doubleValue, endpoint);
+                    }
+                    break;
+                case FlightRecorder.LONG:
+                    long longValue = Varints.readSigned(in);
+                    if (target != null) {
+                        broker.publishLong(target.topic, longValue, endpoint);
+                    }
+                    break;
+                case FlightRecorder.NULL:
+                    if (target != null) {
+                        broker.addEvent(target.topic, null, endpoint);
+                    }
+                    break;
+                case FlightRecorder.OBJECT:
+                    byte[] payload = new byte[readCount(in, 1, "payload bytes")];
+                    in.readFully(payload);
+                    if (target != null && target.codec != null) {
+                        Object message = target.codec.decode(new DataInputStream(new ByteArrayInputStream(payload)));
+                        broker.addEvent(target.topic, message, endpoint);
+                    }
+                    break;
+                default:
+                    throw new IOException("Unknown event " + kind + " in event frame");
+            }
+        }
+    }
+
+    /**
+     * Reads a count of items that follow in the frame.
+     *
+     * @param minimumSize Least amount of bytes one item takes.
+     * @throws IOException if that many items do not fit in the rest of the frame
+     */
+    private static int readCount(DataInputStream in, int minimumSize, String what) throws IOException {
+        long count = Varints.read(in);
+        // the stream reads from an array, so available() is exactly what is left of the frame
+        int left = in.available();
+        if (count < 0 || count > left / minimumSize) {
+            throw new IOException("Event frame has " + count + " " + what + " in " + left + " bytes");
+        }
+        return (int) count;
+    }
+
+    /**
+     * @return Amount of frames sent.
+     */
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    /**
+     * @return Amount of events sent, after coalescing.
+     */
+    public long getEventsSent() {
+        return eventsSent.get();
+    }
+
+    /**
+     * @return Amount of events that were not sent because a newer event of the same topic replaced them.
+     */
+    public long getEventsCoalesced() {
+        return eventsCoalesced.get();
+    }
+
+    /**
+     * @return Amount of frames received from the other side.
+     */
+    public long getFramesReceived() {
+        return framesReceived.get();
+    }
+
+    /**
+     * Queues an event for the next frame. Called by the broker thread.
+     */
+    private void enqueue(Export export, int kind, Object message, long value) {
+        Topic topic = export.topic;
+        synchronized (pendingLock) {
+            Pending waiting = topic.getDeliveryPolicy().isReliable() ? null : latest.get(topic);
+            if (waiting != null) {
+                waiting.set(kind, message, value);
+                eventsCoalesced.incrementAndGet();
+            } else {
+                waiting = new Pending(export);
+                waiting.set(kind, message, value);
+                pending.add(waiting);
+                if (!topic.getDeliveryPolicy().isReliable()) {
+                    latest.put(topic, waiting);
+                }
+            }
+        }
+        if (topic.getPriority() == Priority.REALTIME) {
+            requestFlush();
+        }
+    }
+
+    private synchronized void requestFlush() {
+        if (flusher != null) {
+            try {
+                flusher.execute(flushTask);
+            } catch (RejectedExecutionException e) {
+                // stopped in the meantime, stop() sends what is waiting
+            }
+        }
+    }
+
+    private static byte[] encode(List<Pending> batch) throws IOException {
+        Map<Topic, Integer> names = new LinkedHashMap<>();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream bodyOut = new DataOutputStream(body);
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream payloadOut = new DataOutputStream(payload);
+        for (Pending event : batch) {
+            Integer index = names.get(event.export.topic);
+            if (index == null) {
+                index = names.size();
+                names.put(event.export.topic, index);
+            }
+            bodyOut.writeByte(event.kind);
+            Varints.write(bodyOut, index);
+            if (event.kind == FlightRecorder.DOUBLE) {
+                bodyOut.writeDouble(Double.longBitsToDouble(event.value));
+            } else if (event.kind == FlightRecorder.LONG) {
+                Varints.writeSigned(bodyOut, event.value);
+            } else if (event.kind == FlightRecorder.OBJECT) {
+                payload.reset();
+                event.export.codec.encode(event.message, payloadOut);
+                Varints.write(bodyOut, payload.size());
+                payload.writeTo(bodyOut);
+            }
+        }
+
+        ByteArrayOutputStream frame = new ByteArrayOutputStream(body.size() + 16 * names.size());
+        DataOutputStream out = new DataOutputStream(frame);
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        Varints.write(out, names.size());
+        for (Topic topic : names.keySet()) {
+            out.writeUTF(topic.getName());
+        }
+        Varints.write(out, batch.size());
+        body.writeTo(out);
+        return frame.toByteArray();
+    }
+
+    /**
+     * Listens to the exported topics and is the source of the imported events, so the broker does not hand those back to it.
+     */
+    private final class Endpoint implements DoubleEventListener, LongEventListener, EventPublisher {
+        @Override
+        public void handleEvent(String eventType, Object message) {
+            Export export = exports.get(eventType);
+            if (export == null) {
+                return;
+            }
+            if (export.codec != null) {
+                enqueue(export, message == null ? FlightRecorder.NULL : FlightRecorder.OBJECT, message, 0);
+            } else if (message == null) {
+                enqueue(export, FlightRecorder.NULL, null, 0);
+            } else if (message instanceof Double || message instanceof Float) {
+                enqueue(export, FlightRecorder.DOUBLE, null, Double.doubleToRawLongBits(((Number) message).doubleValue()));
+            } else if (message instanceof Number) {
+                enqueue(export, FlightRecorder.LONG, null, ((Number) message).longValue());
+            } else {
+                Log.w(TAG, "Dropped " + eventType + ": " + message.getClass().getName() + " can not be sent without codec");
+            }
+        }
+
+        @Override
+        public void handleDouble(String eventType, double value) {
+            Export export = exports.get(eventType);
+            if (export == null) {
+                return;
+            }
+            if (export.codec != null) {
+                enqueue(export, FlightRecorder.OBJECT, export.topic.getBoxer().box(value), 0);
+            } else {
+                enqueue(export, FlightRecorder.DOUBLE, null, Double.doubleToRawLongBits(value));
+            }
+        }
+
+        @Override
+        public void handleLong(String eventType, long value) {
+            Export export = exports.get(eventType);
+            if (export == null) {
+                return;
+            }
+            if (export.codec != null) {
+                enqueue(export, FlightRecorder.OBJECT, export.topic.getBoxer().box(value), 0);
+            } else {
+                enqueue(export, FlightRecorder.LONG, null, value);
+            }
+        }
+    }
+
+    private static final class Export {
+        final Topic topic;
+        final PayloadCodec codec;
+
+        Export(Topic topic, PayloadCodec codec) {
+            this.topic = topic;
+            this.codec = codec;
+        }
+    }
+
+    private static final class Import {
+        final Topic topic;
+        final PayloadCodec codec;
+
+        Import(Topic topic, PayloadCodec codec) {
+            this.topic = topic;
+            this.codec = codec;
+        }
+    }
+
+    /**
+     * An event waiting for the next frame. A coalesced topic has at most one, which is overwritten by newer events.
+     */
+    private static final class Pending {
+        final Export export;
+        int kind;
+        Object message;
+        long value;
+
+        Pending(Export export) {
+            this.export = export;
+        }
+
+        void set(int kind, Object message, long value) {
+            this.kind = kind;
+            this.message = message;
+            this.value = value;
+        }
+    }
+}
@@ -16,17 +16,39 @@ package com.dp16.eventbroker;
 import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Threadsafe Event broker. Listeners must implement {@link EventListener}. Publishers must implement {@link EventPublisher}.
  * Publishers can also extend the {@link EventPublisherClass} which offers the {@link EventPublisherClass#publishEvent(String, Object)} convenience method.
- * The event type can be any string.
+ * The event type can be any string, or a {@link Topic} handle obtained with {@link #topic(String)}.
+ * The String methods are thin adapters around the Topic methods, so frequently used event types should be kept as Topic constants.
+ * What happens to the events of a topic when the broker falls behind is decided by its {@link DeliveryPolicy}.
+ * Every topic also has a {@link Priority}: realtime events overtake normal events, which overtake bulk events.
+ * The last value of a sticky topic (see {@link Topic#setSticky(boolean)}) is delivered to listeners as soon as they register.
+ * Events of one topic are always processed in the order they were published.
+ * What the broker is doing can be inspected with {@link #getMetrics()}, or logged periodically with {@link #setMetricsDumpInterval(long)}.
+ * A watchdog reports listeners that take too long, and can move them off the broker thread, see {@link #setHandlerBudget(long, boolean)}.
  * <p>
  * Normally a listener registers for events by implementing {@link EventListener} and calling {@link #addEventListener(String, EventListener, int)} with <b>this</b> as second argument.
  * A listener can stop receiving events by calling {@link #removeEventListener(String, EventListener)} with <b>this</b> as last argument.
@@ -36,6 +58,10 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * <br>
  * The {@link #start()} and {@link #stop()} methods are usually called from the setup and teardown of the application respectively.
  * </p>
+ * <p>
+ * The app uses the broker returned by {@link #getInstance()}. Independent brokers, for instance for simulations or benchmarks,
+ * are created with {@link #builder()}. Such a broker can be driven step by step with a manual pump and a {@link VirtualClock}.
+ * </p>
  * A few examples can be found in the unit tests in the EventBrokerUnitTests.java file.
  *
  * @see EventListener
@@ -44,51 +70,574 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * Created by Nick on 25-2-2017.
  */
 public final class EventBroker implements Runnable {
-    private static final EventBroker ourInstance = new EventBroker();
+    private static final ListenerItem[] NO_LISTENERS = new ListenerItem[0];
+    private static final ListenerItem[][] NO_TOPICS = new ListenerItem[0][];
+    private static final TopicStats[] NO_STATS = new TopicStats[0];
+    private static final ResponderItem[] NO_RESPONDERS = new ResponderItem[0];
+    // source of the queue items that carry a request instead of an event
+    private static final EventPublisher REQUESTER = new EventPublisher() {
+    };
+    // source of the queue items that replay the last value of a sticky topic to one new listener
+    private static final EventPublisher REPLAYER = new EventPublisher() {
+    };
+    // source of the queue items that forget the last value of a sticky topic
+    private static final EventPublisher STICKY_CLEARER = new EventPublisher() {
+    };
+    private static final QueueItem[] NO_VALUES = new QueueItem[0];
+    // resolution and size of the wheel that releases held events and times out requests
+    private static final long TIMER_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final int TIMER_WHEEL_SIZE = 1024;
+
+    // must be declared after the constants above, as the constructor relies on them
+    private static final EventBroker ourInstance = new Builder().build();
+
+    /**
+     * Amount of events that can be waiting in the {@link Priority#NORMAL} lane. Must be a power of two.
+     */
+    static final int QUEUE_CAPACITY = 8192;
+
+    /**
+     * Amount of events that can be waiting in the {@link Priority#REALTIME} and {@link Priority#BULK} lanes. Must be a power of two.
+     */
+    static final int PRIORITY_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Maximum amount of events that are processed before a waiting {@link Priority#BULK} event gets its turn.
+     */
+    static final int MAX_BULK_STARVATION = 64;
 
-    private final Map<String, List<ListenerItem>> listeners = new HashMap<>();
-    private final LinkedList<QueueItem> queue = new LinkedList<>();
+    /**
+     * Timeout in milliseconds of requests made with {@link #request(Topic, Object)}.
+     */
+    public static final long DEFAULT_REQUEST_TIMEOUT = 30000;
+
+    /*
+     * Immutable listener arrays per topic, indexed by topic id.
+     * Registering or unregistering builds new arrays and swaps the whole table, so the broker thread can read it without locking or copying.
+     * All writers synchronize on registrationLock.
+     */
+    private volatile ListenerItem[][] listeners = NO_TOPICS;
+    // reverse index: the topics every listener is registered for, guarded by registrationLock
+    private final Map<EventListener, List<Topic>> topicsPerListener = new HashMap<>();
+    /*
+     * Wildcard subscriptions, guarded by registrationLock. They are resolved into the listener arrays of the matching topics,
+     * so the broker thread never looks at them while dispatching.
+     */
+    private final TopicTrie<PatternSubscription> patterns = new TopicTrie<>();
+    private final Map<EventListener, List<PatternSubscription>> patternsPerListener = new HashMap<>();
+    // topics with a lower id are matched against every pattern, later topics are matched by the broker thread when it first sees them
+    private volatile int resolvedTopics = 0;
+    // the responder of every topic indexed by topic id, null when a topic has none. Copy-on-write like listeners.
+    private volatile ResponderItem[] responders = NO_RESPONDERS;
+    private final Object registrationLock = new Object();
+    // one lane per priority, drained in order of priority by the broker thread
+    private final EventRingBuffer realtimeQueue;
+    private final EventRingBuffer queue;
+    private final EventRingBuffer bulkQueue;
+    // amount of events processed while a bulk event was waiting, only touched by the broker thread
+    private int bulkPassedOver = 0;
+    // requests that completed while their timeout was scheduled, taken off the timer wheel by the broker thread
+    private final ConcurrentLinkedQueue<ResponseFuture> completedRequests = new ConcurrentLinkedQueue<>();
+    // topics whose latest value did not fit in a full lane and no longer has a queued event of the topic to follow, taken first
+    private final ConcurrentLinkedQueue<TopicStats> latestValues = new ConcurrentLinkedQueue<>();
+    private final QueueItem current = new QueueItem();
+    // last value of every sticky topic indexed by topic id, only touched by the broker thread
+    private QueueItem[] stickyValues = NO_VALUES;
+    /*
+     * Counters of every topic, indexed by topic id.
+     * The counters are never replaced, only the table grows, so they can be used without holding registrationLock.
+     */
+    private volatile TopicStats[] topicStats = NO_STATS;
+    // events are only logged when this is Log.DEBUG or lower, so building the log messages costs nothing otherwise
+    private volatile int logLevel = Log.INFO;
+    // records every dispatched event when set, only called by the broker thread
+    private volatile FlightRecorder recorder;
+    // logs the metrics periodically when enabled, guarded by monitorLock
+    private ScheduledExecutorService metricsDumper;
+    // time a listener may spend in one call in nanoseconds, 0 disables the watchdog
+    private volatile long handlerBudget = 0;
+    private volatile boolean quarantineSlowListeners = false;
+    // reports listeners that are stuck in a call, guarded by monitorLock
+    private ScheduledExecutorService watchdog;
+    private final Object monitorLock = new Object();
+    // listeners that were moved off the broker thread and the single thread that delivers their events, guarded by registrationLock
+    private final Set<EventListener> quarantinedListeners = new HashSet<>();
+    private ExecutorService quarantineLane;
+    // held events of throttled listeners and request timeouts, only touched by the broker thread
+    private final TimerWheel timers;
+    private final Clock clock;
+    // a manual broker has no thread of its own, the thread that started it processes events by calling pump()
+    private final boolean manualPump;
+    private final String name;
     private AtomicBoolean startSignalReceived = new AtomicBoolean();
     private AtomicBoolean stopSignalReceived = new AtomicBoolean();
-    private Thread thread;
-    private final Object lock = new Object();
+    // serializes start() and stop()
+    private final Object lifecycleLock = new Object();
+    // what the broker still delivers after the stop signal, and until when (System.nanoTime(), only if drainTimed)
+    private volatile DrainMode drainMode = DrainMode.ALL;
+    private volatile boolean drainTimed;
+    private volatile long drainDeadline;
+    // written by the thread that drains the queues after the stop signal, read by the stopper
+    private volatile long stopDelivered;
+    private volatile long stopDropped;
+    private volatile long stopPending;
+    // set by the broker thread right before it parks, cleared by the first publisher that wakes it up
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private volatile Thread thread;
 
 
     /**
-     * Private constructor to enforce singleton.
+     * Private constructor, brokers are created with {@link #getInstance()} or a {@link Builder}.
      */
-    private EventBroker() {
+    private EventBroker(Builder builder) {
+        realtimeQueue = new EventRingBuffer(builder.priorityQueueCapacity);
+        queue = new EventRingBuffer(builder.queueCapacity);
+        bulkQueue = new EventRingBuffer(builder.priorityQueueCapacity);
+        clock = builder.clock;
+        manualPump = builder.manualPump;
+        name = builder.name;
+        timers = new TimerWheel(TIMER_TICK_NANOS, TIMER_WHEEL_SIZE, clock.nanoTime());
         startSignalReceived.set(false);
         stopSignalReceived.set(false);
     }
 
+
+    /**
+     * Configures an independent event broker. Listeners, queues, sticky values and metrics are not shared with other brokers,
+     * only the {@link Topic}s and their settings are.
+     * <p>
+     * By default the broker behaves like {@link #getInstance()}: it has its own thread and uses the system clock.
+     * </p>
+     * With a manual pump the broker has no thread. The thread that calls {@link #start()} owns it and processes events by calling
+     * {@link #pump()} or {@link #pumpAll()}, so everything happens in a reproducible order.
+     * Combined with a {@link VirtualClock}, throttled listeners and request timeouts only move on when the clock is advanced.
+     */
+    public static final class Builder {
+        private int queueCapacity = QUEUE_CAPACITY;
+        private int priorityQueueCapacity = PRIORITY_QUEUE_CAPACITY;
+        private boolean manualPump = false;
+        private Clock clock = Clock.SYSTEM;
+        private String name = "EventBroker";
+
+        private Builder() {
+        }
+
+        /**
+         * @param queueCapacity Amount of events that can be waiting in the {@link Priority#NORMAL} lane. Must be a power of two.
+         * @return This builder.
+         */
+        public Builder setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param priorityQueueCapacity Amount of events that can be waiting in the {@link Priority#REALTIME} and {@link Priority#BULK} lanes.
+         *                              Must be a power of two.
+         * @return This builder.
+         */
+        public Builder setPriorityQueueCapacity(int priorityQueueCapacity) {
+            this.priorityQueueCapacity = priorityQueueCapacity;
+            return this;
+        }
+
+        /**
+         * @param manualPump true to process events only when {@link #pump()} or {@link #pumpAll()} is called.
+         * @return This builder.
+         */
+        public Builder setManualPump(boolean manualPump) {
+            this.manualPump = manualPump;
+            return this;
+        }
+
+        /**
+         * @param clock Clock for throttling intervals, request timeouts and dispatch latencies.
+         * @return This builder.
+         */
+        public Builder setClock(Clock clock) {
+            if (clock == null) {
+                throw new IllegalArgumentException("Clock can not be null");
+            }
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * @param name Name of the broker thread, also used for its metrics and watchdog threads.
+         * @return This builder.
+         */
+        public Builder setName(String name) {
+            if (name == null) {
+                throw new IllegalArgumentException("Name can not be null");
+            }
+            this.name = name;
+            return this;
+        }
+
+        /**
+         * @return A new, stopped event broker.
+         */
+        public EventBroker build() {
+            return new EventBroker(this);
+        }
+    }
+
     /**
      * Data class for items in the queue of the event broker.
+     * Instances are preallocated in the slots of the {@link EventRingBuffer} and reused.
      */
-    private class QueueItem {
-        private String eventType;
-        private Object message;
-        private EventPublisher source;
+    static final class QueueItem {
+        // kinds of event, a primitive event has no message but a value
+        static final byte OBJECT = 0;
+        static final byte DOUBLE = 1;
+        static final byte LONG = 2;
+
+        Topic topic;
+        Object message;
+        // raw bits of a DOUBLE, or the LONG itself
+        long value;
+        byte kind;
+        EventPublisher source;
+        // true if the event was added to the pending counter of its topic
+        boolean counted;
+        // time on the clock of the broker when the event was queued
+        long enqueuedAt;
+        // message of a primitive event for listeners that only take objects, boxed at most once per event
+        Object boxed;
 
-        public QueueItem(String eventType, Object message, EventPublisher source) {
-            this.eventType = eventType;
+        QueueItem() {
+        }
+
+        QueueItem(Topic topic, Object message, long value, byte kind, EventPublisher source, boolean counted, long enqueuedAt) {
+            this.topic = topic;
             this.message = message;
+            this.value = value;
+            this.kind = kind;
             this.source = source;
+            this.counted = counted;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        /**
+         * @return The message of this event as listeners without a primitive method receive it.
+         */
+        Object boxedMessage() {
+            if (kind == OBJECT) {
+                return message;
+            }
+            if (boxed == null) {
+                PrimitiveBoxer boxer = topic.getBoxer();
+                boxed = kind == DOUBLE ? boxer.box(Double.longBitsToDouble(value)) : boxer.box(value);
+            }
+            return boxed;
+        }
+
+        void copyFrom(QueueItem other) {
+            topic = other.topic;
+            message = other.message;
+            value = other.value;
+            kind = other.kind;
+            source = other.source;
+            counted = other.counted;
+            enqueuedAt = other.enqueuedAt;
+            boxed = other.boxed;
         }
     }
 
     /**
-     * Data class for the registration of an event listener
+     * Counters of one topic. Published, superseded and requests are updated by publishers, dropped when the broker stops,
+     * the others by the broker thread.
      */
-    private class ListenerItem {
-        private EventListener listener;
-        private long requestedInterval;
+    private static final class TopicStats {
+        // amount of events in the queue, only kept for topics that are not RELIABLE
+        final AtomicInteger pending = new AtomicInteger();
+        // newest event of a topic that is not RELIABLE that did not fit in its full lane, processed after the queued events of the topic
+        final AtomicReference<QueueItem> latest = new AtomicReference<>();
+        final AtomicLong published = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong superseded = new AtomicLong();
+        final AtomicLong dispatched = new AtomicLong();
+        final LatencyRecorder dispatchLatency = new LatencyRecorder();
+        // requests are not counted as events, neither are the replays and clears of sticky values
+        final AtomicLong requests = new AtomicLong();
+    }
+
+    /**
+     * Data class for the registration of an event listener.
+     * <p>
+     * When the listener was registered with an {@link Executor}, events are put in a mailbox and drained by this item on that executor.
+     * At most one drain is scheduled at any time, so events arrive in order and never run concurrently for one listener.
+     * The item itself is the Runnable that is scheduled, so delivering an event does not allocate a task.
+     * </p>
+     * An inline listener that exceeds the handler budget can be quarantined: it then gets a mailbox on the quarantine lane of the broker.
+     * <p>
+     * Primitive events reach a {@link DoubleEventListener} or {@link LongEventListener} without boxing, other listeners get the boxed message.
+     * </p>
+     * A throttled listener with a {@link Reducer} holds the events it does not receive.
+     * The item is then scheduled on the timer wheel of the broker and delivers the held value when the interval expires.
+     */
+    private static final class ListenerItem extends TimerWheel.Timer implements Runnable {
+        // amount of events delivered in one run before the executor gets the chance to run other tasks
+        private static final int MAX_BATCH = 64;
+        private static final int MAILBOX_CAPACITY = 16;
+
+        private final EventListener listener;
+        private final boolean acceptsDouble;
+        private final boolean acceptsLong;
+        // monotonic, in nanoseconds
+        private final long requestedInterval;
         private long lastServed;
+        private final Reducer reducer;
+        // held value while the interval is running, only touched by the broker thread
+        private String heldType;
+        private Object held;
+        private int heldCount;
+        // set when the listener is unregistered, so a held value is not delivered anymore
+        private volatile boolean removed;
+        // set while the last value of a sticky topic still has to be replayed, only touched by the broker thread after registration
+        private boolean replayPending;
+        // owners of the registration, guarded by registrationLock: an explicit addEventListener and the patterns that matched the topic
+        private boolean explicit;
+        private int patternOwners;
+        // both null for inline listeners, only changed by the broker thread when the listener is quarantined
+        private volatile Executor executor;
+        // guarded by itself
+        private volatile Mailbox mailbox;
+        private boolean scheduled;
+        private final EventBroker owner;
+        // metrics, each written by one thread at a time: the broker thread, or the thread that handles the event
+        private final LatencyRecorder handlerTime = new LatencyRecorder();
+        private volatile long delivered;
+        private volatile long throttled;
+        private volatile long heldEvents;
+        // System.nanoTime() when the listener was called, 0 when it is not handling an event
+        private volatile long busySince;
+        private volatile long overruns;
+        private volatile boolean quarantined;
+        // busySince of the call the watchdog last reported, only touched by the watchdog
+        private long reportedStall;
+
+        ListenerItem(EventBroker owner, EventListener listener, int interval, Reducer reducer, Executor executor) {
+            this.owner = owner;
+            this.listener = listener;
+            this.acceptsDouble = listener instanceof DoubleEventListener;
+            this.acceptsLong = listener instanceof LongEventListener;
+            this.requestedInterval = TimeUnit.MILLISECONDS.toNanos(interval);
+            // the first event is always delivered
+            this.lastServed = owner.clock.nanoTime() - requestedInterval;
+            this.reducer = reducer;
+            this.executor = executor;
+            this.mailbox = executor == null ? null : new Mailbox(MAILBOX_CAPACITY);
+        }
+
+        /**
+         * Delivers an event when the interval of the listener allows it. Otherwise the event is dropped, or held when the listener has a reducer.
+         * Only called from the broker thread.
+         */
+        void publish(QueueItem event, long now, TimerWheel timers) {
+            String eventType = event.topic.getName();
+            if (now - lastServed >= requestedInterval) {
+                byte kind = event.kind;
+                Object message = event.message;
+                if (heldCount > 0) {
+                    // the wheel did not get the chance to release the held value yet, it is combined with this event
+                    timers.cancel(this);
+                    message = reducer.reduce(held, event.boxedMessage(), heldCount + 1);
+                    kind = QueueItem.OBJECT;
+                    releaseHeld();
+                } else if ((kind == QueueItem.DOUBLE && !acceptsDouble) || (kind == QueueItem.LONG && !acceptsLong)) {
+                    message = event.boxedMessage();
+                    kind = QueueItem.OBJECT;
+                }
+                lastServed = now;
+                deliver(eventType, kind, message, event.value);
+            } else if (reducer != null) {
+                // reducers work on objects, so held primitive events are boxed
+                Object message = event.boxedMessage();
+                held = heldCount == 0 ? message : reducer.reduce(held, message, heldCount + 1);
+                heldType = eventType;
+                heldCount++;
+                heldEvents++;
+                if (!isScheduled()) {
+                    timers.schedule(this, lastServed + requestedInterval);
+                }
+            } else {
+                throttled++;
+            }
+        }
+
+        /**
+         * Delivers the held value when the interval has expired.
+         */
+        @Override
+        void expire(long now) {
+            if (heldCount == 0) {
+                return;
+            }
+            String eventType = heldType;
+            Object message = held;
+            releaseHeld();
+            if (!removed) {
+                lastServed = now;
+                deliver(eventType, QueueItem.OBJECT, message, 0);
+            }
+        }
+
+        private void releaseHeld() {
+            heldType = null;
+            held = null;
+            heldCount = 0;
+        }
+
+        /**
+         * Delivers an event inline, or hands it to the executor of the listener.
+         * Only called from the broker thread.
+         */
+        private void deliver(String eventType, byte kind, Object message, long value) {
+            if (executor == null) {
+                handle(eventType, kind, message, value);
+                return;
+            }
+            synchronized (mailbox) {
+                mailbox.add(eventType, kind, message, value);
+                if (scheduled) {
+                    // the running drain will pick this event up
+                    return;
+                }
+                scheduled = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                Log.e(EventBroker.class.getName() + ">deliver()", "Executor of " + listener + " rejected delivery, dropping its pending events", e);
+                synchronized (mailbox) {
+                    mailbox.clear();
+                    scheduled = false;
+                }
+            }
+        }
+
+        /**
+         * Drains the mailbox on the executor of the listener.
+         */
+        @Override
+        public void run() {
+            for (int i = 0; i < MAX_BATCH; i++) {
+                String eventType;
+                byte kind;
+                Object message;
+                long value;
+                synchronized (mailbox) {
+                    if (mailbox.isEmpty()) {
+                        scheduled = false;
+                        return;
+                    }
+                    eventType = mailbox.headType();
+                    kind = mailbox.headKind();
+                    message = mailbox.headMessage();
+                    value = mailbox.headValue();
+                    mailbox.remove();
+                }
+                try {
+                    handle(eventType, kind, message, value);
+                } catch (RuntimeException e) {
+                    // same as an exception in a task submitted to an ExecutorService: the other events are still delivered
+                    Log.e(EventBroker.class.getName() + ">run()", "Listener " + listener + " threw while handling " + eventType, e);
+                }
+            }
+            // give other tasks on a shared executor a chance before continuing with the rest of the mailbox
+            schedule();
+        }
+
+        /**
+         * Calls the method of the listener that matches the kind of the event.
+         */
+        private void handle(String eventType, byte kind, Object message, long value) {
+            long start = System.nanoTime();
+            busySince = start;
+            try {
+                if (kind == QueueItem.DOUBLE) {
+                    ((DoubleEventListener) listener).handleDouble(eventType, Double.longBitsToDouble(value));
+                } else if (kind == QueueItem.LONG) {
+                    ((LongEventListener) listener).handleLong(eventType, value);
+                } else {
+                    listener.handleEvent(eventType, message);
+                }
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                busySince = 0;
+                handlerTime.record(elapsed);
+                delivered++;
+                long budget = owner.handlerBudget;
+                if (budget > 0 && elapsed > budget) {
+                    overruns++;
+                    owner.overBudget(this, eventType, elapsed);
+                }
+            }
+        }
+
+        /**
+         * Moves an inline listener to the quarantine lane. Called while holding registrationLock,
+         * from the broker thread or before the item is added to the listener table.
+         */
+        void quarantine(Executor lane) {
+            mailbox = new Mailbox(MAILBOX_CAPACITY);
+            executor = lane;
+            quarantined = true;
+        }
+
+        BrokerMetrics.ListenerMetrics metrics(String topicName, long now) {
+            int mailboxDepth = 0;
+            Mailbox currentMailbox = mailbox;
+            if (currentMailbox != null) {
+                synchronized (currentMailbox) {
+                    mailboxDepth = currentMailbox.size();
+                }
+            }
+            long since = busySince;
+            return new BrokerMetrics.ListenerMetrics(String.valueOf(listener), topicName, executor == null, quarantined, delivered, throttled, heldEvents,
+                    overruns, mailboxDepth, since == 0 ? 0 : Math.max(0, now - since), handlerTime.snapshot());
+        }
+    }
+
 
-        public ListenerItem(EventListener listener, long requestedInterval) {
+    /**
+     * Data class for a wildcard subscription, see {@link #addPatternListener(String, EventListener, int, Reducer, Executor)}.
+     */
+    private static final class PatternSubscription {
+        private final String pattern;
+        private final EventListener listener;
+        private final int interval;
+        private final Reducer reducer;
+        private final Executor executor;
+        // topics this subscription registered the listener for, guarded by registrationLock
+        private final List<Topic> topics = new ArrayList<>();
+        private boolean removed;
+
+        PatternSubscription(String pattern, EventListener listener, int interval, Reducer reducer, Executor executor) {
+            this.pattern = pattern;
             this.listener = listener;
-            this.requestedInterval = requestedInterval;
-            this.lastServed = 0;
+            this.interval = interval;
+            this.reducer = reducer;
+            this.executor = executor;
+        }
+    }
+
+
+    /**
+     * Data class for the registration of a responder.
+     */
+    private static final class ResponderItem {
+        private final Responder responder;
+        private final Executor executor;
+
+        ResponderItem(Responder responder, Executor executor) {
+            this.responder = responder;
+            this.executor = executor;
         }
     }
 
@@ -102,18 +651,43 @@ public final class EventBroker implements Runnable {
         return ourInstance;
     }
 
+    /**
+     * @return A builder for an event broker that is independent of {@link #getInstance()}.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
     /**
      * Starts the event broker.
      * Does nothing if called on a running event broker.
      */
     public void start() {
-        // if false, set to true in a threadsafe manner
-        boolean wasFalse = startSignalReceived.compareAndSet(false, true);
-        Log.d(this.getClass().getName() + ">start()", "Trying to start Thread");
-        // start the thread if this is the first time the start signal is received
-        if (wasFalse) {
+        synchronized (lifecycleLock) {
+            if (startSignalReceived.get()) {
+                if (!stopSignalReceived.get()) {
+                    // already running
+                    return;
+                }
+                // a timed stop returned while the previous broker thread was still blocked in a listener
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Log.e(this.getClass().getName() + ">start()", "Interrupt triggered while waiting for the previous broker thread.", e);
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                finishStop();
+            }
+            startSignalReceived.set(true);
+            Log.d(this.getClass().getName() + ">start()", "Trying to start Thread");
+            if (manualPump) {
+                // the caller becomes the broker thread
+                thread = Thread.currentThread();
+                return;
+            }
             Log.d(this.getClass().getName() + ">start()", "Starting Thread");
-            thread = new Thread(this);
+            thread = new Thread(this, name);
             thread.start();
         }
     }
@@ -125,39 +699,164 @@ public final class EventBroker implements Runnable {
      * This deletes all internal state.
      * A call to start() after this method returns will behave the same as the first call to start().
      * Important: this method does not return until the event broker has fully stopped.
-     * This may take a considerable amount of time if the event queue has a lot of items.
+     * This may take a considerable amount of time if the event queue has a lot of items, use {@link #stop(long, TimeUnit, DrainMode)} to bound it.
+     * A broker with a manual pump processes the remaining events on the calling thread, which must be the thread that started it.
      */
     public void stop() {
-        // set stop signal -> no more events are accepted, thread will finish when empty
-        stopSignalReceived.set(true);
+        stop(Long.MAX_VALUE, TimeUnit.NANOSECONDS, DrainMode.ALL);
+    }
+
+
+    /**
+     * Stops the event broker, delivering every queued event until the timeout expires.
+     *
+     * @see #stop(long, TimeUnit, DrainMode)
+     */
+    public StopReport stop(long timeout, TimeUnit unit) {
+        return stop(timeout, unit, DrainMode.ALL);
+    }
+
 
-        // wake up thread in case it was sleeping
-        synchronized (lock) {
-            lock.notify();
+    /**
+     * Stops the event broker within a bounded time. No new events are accepted after this method is called.
+     * Queued events of the topics the drain mode keeps are still delivered in queue order, the others are dropped.
+     * Events that are still queued when the timeout expires are dropped as well, pending requests fail right away.
+     * <p>
+     * Listeners are unregistered and sticky values are forgotten, as with {@link #stop()}.
+     * A listener that is still running at the timeout is not interrupted: this method returns and the broker thread exits when it returns,
+     * see {@link StopReport#isFinished()}.
+     * Safe to call concurrently with {@link #start()} and with other calls to stop, they are executed one after the other.
+     * Stopping a broker that was not started only unregisters its listeners.
+     * </p>
+     *
+     * @param timeout Maximum time to spend delivering queued events. Long.MAX_VALUE nanoseconds or more waits for all of them.
+     * @param unit    Unit of the timeout.
+     * @param mode    Which queued events are still delivered.
+     * @return What happened to the events that were queued
+     */
+    public StopReport stop(long timeout, TimeUnit unit, DrainMode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("Drain mode can not be null");
         }
+        synchronized (lifecycleLock) {
+            long begin = System.nanoTime();
+            if (!startSignalReceived.get()) {
+                clearRegistrations();
+                return new StopReport(0, 0, 0, 0, true);
+            }
+            if (manualPump) {
+                checkPumpThread();
+            }
+            long timeoutNanos = unit.toNanos(timeout);
+            stopDelivered = 0;
+            stopDropped = 0;
+            stopPending = 0;
+            drainMode = mode;
+            drainTimed = timeoutNanos < Long.MAX_VALUE;
+            drainDeadline = begin + timeoutNanos;
+            // set stop signal -> no more events are accepted, thread will finish when drained
+            stopSignalReceived.set(true);
 
-        // wait for thread to finish
-        try {
-            thread.join();
-        } catch (InterruptedException e) {
-            // someone wants us to stop executing as soon as possible
-            // we do as they ask, but signal the EventBroker is in an inconsistent state
-            Log.e(this.getClass().getName() + ">stop()", "Interrupt triggered during stopping of EventBroker. Internal state is an inconsistent state.", e);
-            Thread.currentThread().interrupt();
+            boolean finished = true;
+            if (manualPump) {
+                // do what the broker thread does when it is stopped
+                drain();
+            } else {
+                // wake up thread in case it was sleeping
+                LockSupport.unpark(thread);
+
+                // wait for thread to finish
+                try {
+                    if (drainTimed) {
+                        TimeUnit.NANOSECONDS.timedJoin(thread, drainDeadline - System.nanoTime());
+                    } else {
+                        thread.join();
+                    }
+                } catch (InterruptedException e) {
+                    // someone wants us to stop executing as soon as possible
+                    // we do as they ask, but signal the EventBroker is in an inconsistent state
+                    Log.e(this.getClass().getName() + ">stop()", "Interrupt triggered during stopping of EventBroker. Internal state is an inconsistent state.", e);
+                    Thread.currentThread().interrupt();
+                }
+                finished = !thread.isAlive();
+            }
+
+            // listeners do not receive anything anymore, even if the broker thread is still busy
+            clearRegistrations();
+            if (finished) {
+                finishStop();
+            }
+            StopReport report = new StopReport(stopDelivered, stopDropped, stopPending, System.nanoTime() - begin, finished);
+            Log.d(this.getClass().getName() + ">stop()", name + " stopped: " + report);
+            return report;
+        }
+    }
+
+
+    /**
+     * Unregisters all listeners and responders, including their patterns.
+     */
+    private void clearRegistrations() {
+        synchronized (registrationLock) {
+            listeners = NO_TOPICS;
+            topicsPerListener.clear();
+            for (List<PatternSubscription> subscriptions : patternsPerListener.values()) {
+                for (PatternSubscription subscription : subscriptions) {
+                    unsubscribe(subscription);
+                }
+            }
+            patternsPerListener.clear();
+            responders = NO_RESPONDERS;
+            quarantinedListeners.clear();
+            if (quarantineLane != null) {
+                // events that were already handed to the lane are still delivered
+                quarantineLane.shutdown();
+                quarantineLane = null;
+            }
         }
+    }
+
 
-        // clean up internal state
-        synchronized (listeners) {
-            listeners.clear();
+    /**
+     * Resets the queues once the broker thread has exited, so the broker can be started again. Must hold lifecycleLock.
+     */
+    private void finishStop() {
+        // the broker thread has finished, the next one sees this through Thread.start()
+        stickyValues = NO_VALUES;
+        // events of publishers that raced with the stop signal, or left behind when the broker thread was interrupted
+        while (pollNext(current)) {
+            discard(current);
+            stopPending++;
         }
-        synchronized (queue) {
-            queue.clear();
+        completedRequests.clear();
+        latestValues.clear();
+        for (TopicStats stats : topicStats) {
+            if (stats.latest.getAndSet(null) != null) {
+                stats.dropped.incrementAndGet();
+                stopPending++;
+            }
         }
+        timers.clear();
+        // a publisher on the old broker thread is not the broker thread anymore, its events go to the lanes
+        thread = null;
         stopSignalReceived.set(false);
         startSignalReceived.set(false);
     }
 
 
+    /**
+     * Returns the {@link Topic} handle for an event type, registering it when it is used for the first time.
+     * Topics are shared by all event brokers and are never removed, so the result can be kept in a static constant.
+     * Publishing and subscribing with a Topic skips the name lookup that the String overloads have to do.
+     *
+     * @param name Event type name.
+     * @return The unique Topic for this name.
+     */
+    public static Topic topic(String name) {
+        return Topic.intern(name);
+    }
+
+
     /**
      * Registers an EventListener for one event type.
      * Does nothing if the EventListener already listens for the given event type.
@@ -168,7 +867,21 @@ public final class EventBroker implements Runnable {
      * @return 1 when listener is added, -1 when listener is not added
      */
     public int addEventListener(String type, EventListener listener) {
-        return addEventListener(type, listener, 0);
+        return addEventListener(topic(type), listener, 0);
+    }
+
+
+    /**
+     * Registers an EventListener for one topic.
+     * Does nothing if the EventListener already listens for the given topic.
+     * This method is equivalent to {@link #addEventListener(Topic, EventListener, int)}.
+     *
+     * @param topic    Topic to listen to.
+     * @param listener EventListener to be registered.
+     * @return 1 when listener is added, -1 when listener is not added
+     */
+    public int addEventListener(Topic topic, EventListener listener) {
+        return addEventListener(topic, listener, 0);
     }
 
 
@@ -199,217 +912,1337 @@ public final class EventBroker implements Runnable {
      * @return 1 when listener is added, -1 when listener is not added
      */
     public int addEventListener(String type, EventListener listener, int interval) {
-        synchronized (listeners) {
-            if (listeners.containsKey(type)) {
-                for (ListenerItem item : listeners.get(type)) {
-                    if (item.listener.equals(listener)) {
-                        return -1;
-                    }
-                }
-                ListenerItem listenerItem = new ListenerItem(listener, interval);
-                listeners.get(type).add(listenerItem);
-                return 1;
-            } else {
-                // first listener for this type, so we need a new list in the hashmap
-                listeners.put(type, new LinkedList<ListenerItem>());
-                ListenerItem listenerItem = new ListenerItem(listener, interval);
-                listeners.get(type).add(listenerItem);
-                return 1;
-            }
-        }
+        return addEventListener(topic(type), listener, interval);
     }
 
 
     /**
-     * Registers an EventListener for a collection of types.
+     * Registers an EventListener for a topic.
      * An event will only be delivered when at least 'interval' ms have passed since the last delivered event.
      * Any event published during the interval will be lost for this listener.
      * <br>
-     * If a new interval is required, the listener has to be removed first (see {@link #removeEventListener(String, EventListener)}).
+     * If a new interval is required, the listener has to be removed first (see {@link #removeEventListener(Topic, EventListener)}).
      *
-     * @param types    Event type to listen to
+     * @param topic    Topic to listen to
      * @param listener EventListener to be registered
-     * @param interval Minimum amount of milliseconds in between updates
-     * @return 1 when the listener is added for all types, -x if the listener could not be added for all types (where x is the amount of types that failed)
+     * @param interval Minimum amount of milliseconds (ms) in between updates
+     * @return 1 when listener is added, -1 when listener is not added
      */
-    public int addEventListener(Collection<String> types, EventListener listener, int interval) {
-        int result = 0;
-        for (String type : types) {
-            if (addEventListener(type, listener, interval) < 0) {
-                result--;
-            }
-        }
-        if (result == 0) {
-            result++;
-        }
-        return result;
+    public int addEventListener(Topic topic, EventListener listener, int interval) {
+        return addEventListener(topic, listener, interval, null, null);
     }
 
 
     /**
-     * Unregisters the EventListener for one event type. Potential other event types are not affected.
-     * Does nothing if the EventListener is not registered for the event type.
+     * Registers a throttled EventListener for a topic that does not lose events published during its interval.
+     * Instead of dropping them, the broker holds them and delivers the held value as soon as the interval expires (sample-and-hold).
+     * The reducer decides what is held when more than one event arrives during the interval, see {@link Reducers}.
+     * <br>
+     * If a new interval is required, the listener has to be removed first (see {@link #removeEventListener(Topic, EventListener)}).
      *
-     * @param type     Event type to unregister from.
-     * @param listener EventListener to be unregistered.
-     * @return 1 when listener is removed, -1 when listener is not removed
+     * @param topic    Topic to listen to
+     * @param listener EventListener to be registered
+     * @param interval Minimum amount of milliseconds (ms) in between updates
+     * @param reducer  Combines the events published during the interval. Null drops them instead, as {@link #addEventListener(Topic, EventListener, int)} does.
+     * @return 1 when listener is added, -1 when listener is not added
      */
-    public int removeEventListener(String type, EventListener listener) {
-        synchronized (listeners) {
-            // the remove method does the 'isPresent' test internally
-            List<ListenerItem> itemList = listeners.get(type);
-            if (itemList == null) {
-                return -1;
-            }
-            for (int i = 0; i < itemList.size(); i++) {
-                if (itemList.get(i).listener.equals(listener)) {
-                    itemList.remove(i);
-                    return 1;
-                }
-            }
-            return -1;
-        }
+    public int addEventListener(Topic topic, EventListener listener, int interval, Reducer reducer) {
+        return addEventListener(topic, listener, interval, reducer, null);
     }
 
 
     /**
-     * Unregisters the EventListener for all event types.
-     * Calls method above for every type of event.
-     * Does nothing if the EventListener is not registered.
+     * Registers an EventListener for a topic. The listener is called on the given executor instead of on the event broker thread.
+     * This is meant for components that do their work on their own thread anyway: instead of submitting a task from handleEvent,
+     * they can do the work in handleEvent directly.
+     * Events for one listener are delivered in order and never concurrently, even on an executor with multiple threads.
+     * <br>
+     * This method is equivalent to {@link #addEventListener(Topic, EventListener, int, Executor)} with an interval of 0.
      *
-     * @param listener EventListener to be unregistered.
-     * @return number of times EventListener is removed, -1 if not removed
+     * @param topic    Topic to listen to
+     * @param listener EventListener to be registered
+     * @param executor Executor that runs handleEvent. Null delivers inline on the event broker thread.
+     * @return 1 when listener is added, -1 when listener is not added
      */
-    public int removeEventListener(EventListener listener) {
-        int timesRemoved = 0;
-        synchronized (listeners) {
-            for (String key : listeners.keySet()) {
-                int code = this.removeEventListener(key, listener);
-                if (code > 0) {
-                    timesRemoved++;
-                }
-            }
-        }
-        if (timesRemoved == 0) {
-            timesRemoved = -1;
-        }
-        return timesRemoved;
+    public int addEventListener(Topic topic, EventListener listener, Executor executor) {
+        return addEventListener(topic, listener, 0, null, executor);
     }
 
 
     /**
-     * For testing purposes.
-     * Listeners that listen for multiple events are only counted once.
+     * Registers an EventListener for a topic, with a minimum interval between events and the executor that runs handleEvent.
+     * See {@link #addEventListener(Topic, EventListener, int)} and {@link #addEventListener(Topic, EventListener, Executor)}.
      *
-     * @return Amount of listeners that listen for a specified event type.
+     * @param topic    Topic to listen to
+     * @param listener EventListener to be registered
+     * @param interval Minimum amount of milliseconds (ms) in between updates
+     * @param executor Executor that runs handleEvent. Null delivers inline on the event broker thread.
+     * @return 1 when listener is added, -1 when listener is not added
      */
-    public int getAmountOfListeners() {
-        synchronized (listeners) {
-            List<EventListener> allListeners = new ArrayList<>();
-            for (List<ListenerItem> listenersOneType : listeners.values()) {
-                for (ListenerItem i : listenersOneType) {
-                    if (!allListeners.contains(i.listener)) {
-                        allListeners.add(i.listener);
-                    }
-                }
-            }
-            return allListeners.size();
-        }
+    public int addEventListener(Topic topic, EventListener listener, int interval, Executor executor) {
+        return addEventListener(topic, listener, interval, null, executor);
     }
 
 
     /**
-     * Publishes an event to the event broker.
+     * Registers an EventListener for a topic, with a minimum interval between events, a reducer for the events published
+     * during the interval and the executor that runs handleEvent.
+     * See {@link #addEventListener(Topic, EventListener, int, Reducer)} and {@link #addEventListener(Topic, EventListener, Executor)}.
+     * A listener that already listens to the topic through a pattern keeps the interval, reducer and executor of the pattern,
+     * and now also keeps listening when the pattern is removed.
      *
-     * @param eventType This event type can be any String.
-     * @param message   Message to send to all listeners.
-     * @param source    The EventPublisher that generated the event.
+     * @param topic    Topic to listen to
+     * @param listener EventListener to be registered
+     * @param interval Minimum amount of milliseconds (ms) in between updates
+     * @param reducer  Combines the events published during the interval. Null drops them.
+     * @param executor Executor that runs handleEvent. Null delivers inline on the event broker thread.
+     * @return 1 when listener is added, -1 when listener is not added
      */
-    public void addEvent(String eventType, Object message, EventPublisher source) {
-        if (stopSignalReceived.get()) {
-            // we don't accept new events when the stop signal is received
-            return;
+    public int addEventListener(Topic topic, EventListener listener, int interval, Reducer reducer, Executor executor) {
+        ListenerItem added;
+        synchronized (registrationLock) {
+            ListenerItem existing = registrationOf(topic, listener);
+            if (existing != null) {
+                if (existing.explicit) {
+                    return -1;
+                }
+                // registered through a pattern so far: it keeps its settings, but now also stays until removeEventListener
+                existing.explicit = true;
+                return 1;
+            }
+            added = register(topic, listener, interval, reducer, executor);
+            added.explicit = true;
         }
-        synchronized (queue) {
-            QueueItem item = new QueueItem(eventType, message, source);
-            queue.add(item);
-            Log.d(this.getClass().getName() + ">addEvent()", "Added " + eventType + " to queue");
+        replayTo(topic, added);
+        return 1;
+    }
 
-            // wake up the processing thread in case it was sleeping
-            synchronized (lock) {
-                lock.notify();
+
+    /**
+     * @return The registration of a listener for a topic, null if it does not listen to the topic. Must hold registrationLock.
+     */
+    private ListenerItem registrationOf(Topic topic, EventListener listener) {
+        for (ListenerItem item : listenersFor(topic)) {
+            if (item.listener.equals(listener)) {
+                return item;
             }
         }
+        return null;
     }
 
 
     /**
-     * Private method that calls the callbacks on listener for the event type.
-     *
-     * @param item QueueItem to process
+     * Adds a listener that does not listen to the topic yet. The caller records who owns the registration. Must hold registrationLock.
      */
-    private void processEvent(QueueItem item) {
-        Log.d(this.getClass().getName() + ">processEvent()", "Processing " + item.eventType + "," + item.message);
-        List<ListenerItem> listenersForType = listeners.get(item.eventType);
-        if (listenersForType == null) {
-            Log.d(this.getClass().getName() + ">processEvent()", "No listeners for " + item.eventType);
-            // nobody is listening for this event
-            return;
+    private ListenerItem register(Topic topic, EventListener listener, int interval, Reducer reducer, Executor executor) {
+        ListenerItem added = new ListenerItem(this, listener, interval, reducer, executor);
+        added.replayPending = topic.isSticky();
+        if (executor == null && quarantinedListeners.contains(listener)) {
+            // a quarantined listener must not run on two threads at once
+            added.quarantine(quarantineLane);
         }
+        ListenerItem[] current = listenersFor(topic);
+        ListenerItem[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = added;
+        swapListeners(topic, updated);
 
-        // make a copy of the listeners for this type
-        // this way the 'synchronized' part is very short, speeding up parallel execution
-        // at the cost of some memory space and sequential running time
-        List<ListenerItem> copyListenersForType = new ArrayList<>();
-        synchronized (listeners) {
-            copyListenersForType.addAll(listenersForType);
+        List<Topic> topics = topicsPerListener.get(listener);
+        if (topics == null) {
+            topics = new ArrayList<>();
+            topicsPerListener.put(listener, topics);
         }
+        topics.add(topic);
+        return added;
+    }
 
-        for (ListenerItem listenerItem : copyListenersForType) {
+
+    /**
+     * Hands the last value of a sticky topic to a new registration.
+     */
+    private void replayTo(Topic topic, ListenerItem added) {
+        if (added.replayPending) {
+            // replayed by the broker thread, so it can not overtake a newer event
+            enqueue(topic, added, 0, QueueItem.OBJECT, REPLAYER, false);
+        }
+    }
+
+
+    /**
+     * Registers an EventListener for a collection of types.
+     * An event will only be delivered when at least 'interval' ms have passed since the last delivered event.
+     * Any event published during the interval will be lost for this listener.
+     * <br>
+     * If a new interval is required, the listener has to be removed first (see {@link #removeEventListener(String, EventListener)}).
+     *
+     * @param types    Event type to listen to
+     * @param listener EventListener to be registered
+     * @param interval Minimum amount of milliseconds in between updates
+     * @return 1 when the listener is added for all types, -x if the listener could not be added for all types (where x is the amount of types that failed)
+     */
+    public int addEventListener(Collection<String> types, EventListener listener, int interval) {
+        int result = 0;
+        for (String type : types) {
+            if (addEventListener(type, listener, interval) < 0) {
+                result--;
+            }
+        }
+        if (result == 0) {
+            result++;
+        }
+        return result;
+    }
+
+
+    /**
+     * Registers an EventListener for every topic whose name matches a pattern.
+     * This method is equivalent to {@link #addPatternListener(String, EventListener, int, Reducer, Executor)} without interval and executor.
+     *
+     * @param pattern  Topic pattern such as "persist/store/*".
+     * @param listener EventListener to be registered.
+     * @return 1 when listener is added, -1 when listener already listens to this pattern
+     */
+    public int addPatternListener(String pattern, EventListener listener) {
+        return addPatternListener(pattern, listener, 0, null, null);
+    }
+
+
+    /**
+     * Registers an EventListener for every topic whose name matches a pattern, called on the given executor.
+     * This method is equivalent to {@link #addPatternListener(String, EventListener, int, Reducer, Executor)} without interval.
+     *
+     * @param pattern  Topic pattern such as "persist/store/*".
+     * @param listener EventListener to be registered.
+     * @param executor Executor that runs handleEvent. Null delivers inline on the event broker thread.
+     * @return 1 when listener is added, -1 when listener already listens to this pattern
+     */
+    public int addPatternListener(String pattern, EventListener listener, Executor executor) {
+        return addPatternListener(pattern, listener, 0, null, executor);
+    }
+
+
+    /**
+     * Registers an EventListener for every topic whose name matches a pattern, now and in the future.
+     * Topic names are split into levels by '/'. In a pattern, a level "*" matches exactly one level and a last level "#" matches
+     * any number of levels: "persist/store/*" matches "persist/store/runningstatistics", "run/#" matches "run/location/raw".
+     * <br>
+     * The pattern is resolved once into the listener arrays of the matching topics, as if the listener registered for each of them
+     * with {@link #addEventListener(Topic, EventListener, int, Reducer, Executor)}. Topics created later are matched before their
+     * first event is dispatched. Dispatching therefore costs the same no matter how many patterns are registered.
+     * A topic the listener already listens to is left as it is, with the interval, reducer and executor it was registered with.
+     * The broker counts who registered the listener for a topic: explicitly, or through one or more patterns. It only
+     * unregisters the listener when the last of them is removed.
+     *
+     * @param pattern  Topic pattern.
+     * @param listener EventListener to be registered.
+     * @param interval Minimum amount of milliseconds (ms) in between updates, per topic.
+     * @param reducer  Combines the events published during the interval. Null drops them.
+     * @param executor Executor that runs handleEvent. Null delivers inline on the event broker thread.
+     * @return 1 when listener is added, -1 when listener already listens to this pattern
+     * @throws IllegalArgumentException if the pattern has an empty level or a "#" that is not the last level
+     */
+    public int addPatternListener(String pattern, EventListener listener, int interval, Reducer reducer, Executor executor) {
+        TopicTrie.parse(pattern);
+        PatternSubscription subscription = new PatternSubscription(pattern, listener, interval, reducer, executor);
+        List<Topic> matching = new ArrayList<>();
+        synchronized (registrationLock) {
+            List<PatternSubscription> subscriptions = patternsPerListener.get(listener);
+            if (subscriptions == null) {
+                subscriptions = new ArrayList<>();
+                patternsPerListener.put(listener, subscriptions);
+            }
+            for (PatternSubscription existing : subscriptions) {
+                if (existing.pattern.equals(pattern)) {
+                    return -1;
+                }
+            }
+            subscriptions.add(subscription);
+            patterns.add(pattern, subscription);
+
+            // topics the broker thread has not resolved yet are matched against all patterns later, matching them now is harmless
+            for (int id = 0, count = Topic.count(); id < count; id++) {
+                Topic topic = Topic.forId(id);
+                if (TopicTrie.matches(pattern, topic.getName())) {
+                    matching.add(topic);
+                }
+            }
+        }
+        // subscribe takes the lock itself, and queues the replay of a sticky topic after releasing it
+        for (Topic topic : matching) {
+            subscribe(subscription, topic);
+        }
+        return 1;
+    }
+
+
+    /**
+     * Registers the listener of a wildcard subscription for one topic that matches it.
+     */
+    private void subscribe(PatternSubscription subscription, Topic topic) {
+        ListenerItem added;
+        synchronized (registrationLock) {
+            // the pattern may be removed before its topics are registered, and a topic may be matched by addPatternListener and resolvePatterns
+            if (subscription.removed || subscription.topics.contains(topic)) {
+                return;
+            }
+            subscription.topics.add(topic);
+            ListenerItem existing = registrationOf(topic, subscription.listener);
+            if (existing != null) {
+                // the listener already listens to this topic, explicitly or through another pattern
+                existing.patternOwners++;
+                return;
+            }
+            added = register(topic, subscription.listener, subscription.interval, subscription.reducer, subscription.executor);
+            added.patternOwners = 1;
+        }
+        replayTo(topic, added);
+    }
+
+
+    /**
+     * Matches the topics that were created since the last call against all patterns. Called by the broker thread before it
+     * dispatches the first event of a new topic, so that event already reaches the matching pattern listeners.
+     */
+    private void resolvePatterns() {
+        List<PatternSubscription> matching = new ArrayList<>();
+        List<Topic> topics = new ArrayList<>();
+        synchronized (registrationLock) {
+            int count = Topic.count();
+            for (int id = resolvedTopics; id < count && !patterns.isEmpty(); id++) {
+                Topic topic = Topic.forId(id);
+                int before = matching.size();
+                patterns.match(topic.getName(), matching);
+                for (int i = before; i < matching.size(); i++) {
+                    topics.add(topic);
+                }
+            }
+            resolvedTopics = count;
+        }
+        for (int i = 0; i < matching.size(); i++) {
+            subscribe(matching.get(i), topics.get(i));
+        }
+    }
+
+
+    /**
+     * Unregisters an EventListener from a pattern. Topics the listener registered for explicitly or through other patterns are not affected:
+     * the listener keeps listening to them.
+     *
+     * @param pattern  Pattern the listener was registered with.
+     * @param listener EventListener to be unregistered.
+     * @return 1 when listener is removed, -1 when listener did not listen to this pattern
+     */
+    public int removePatternListener(String pattern, EventListener listener) {
+        synchronized (registrationLock) {
+            List<PatternSubscription> subscriptions = patternsPerListener.get(listener);
+            if (subscriptions == null) {
+                return -1;
+            }
+            for (PatternSubscription subscription : subscriptions) {
+                if (subscription.pattern.equals(pattern)) {
+                    subscriptions.remove(subscription);
+                    if (subscriptions.isEmpty()) {
+                        patternsPerListener.remove(listener);
+                    }
+                    unsubscribe(subscription);
+                    for (Topic topic : subscription.topics) {
+                        ListenerItem item = registrationOf(topic, listener);
+                        // null when the listener was removed from all topics meanwhile
+                        if (item != null && --item.patternOwners == 0 && !item.explicit) {
+                            unregister(topic, listener);
+                        }
+                    }
+                    return 1;
+                }
+            }
+            return -1;
+        }
+    }
+
+
+    /**
+     * Takes a wildcard subscription out of the trie. Must hold registrationLock.
+     */
+    private void unsubscribe(PatternSubscription subscription) {
+        subscription.removed = true;
+        patterns.remove(subscription.pattern, subscription);
+    }
+
+
+    /**
+     * Unregisters the EventListener for one event type. Potential other event types are not affected.
+     * Does nothing if the EventListener is not registered for the event type.
+     *
+     * @param type     Event type to unregister from.
+     * @param listener EventListener to be unregistered.
+     * @return 1 when listener is removed, -1 when listener is not removed
+     */
+    public int removeEventListener(String type, EventListener listener) {
+        return removeEventListener(topic(type), listener);
+    }
+
+
+    /**
+     * Unregisters the EventListener for one topic. Potential other topics are not affected.
+     * Does nothing if the EventListener is not registered for the topic.
+     * A listener that also listens to the topic through a pattern keeps listening until the pattern is removed.
+     *
+     * @param topic    Topic to unregister from.
+     * @param listener EventListener to be unregistered.
+     * @return 1 when listener is removed, -1 when listener is not removed
+     */
+    public int removeEventListener(Topic topic, EventListener listener) {
+        synchronized (registrationLock) {
+            ListenerItem item = registrationOf(topic, listener);
+            if (item == null || !item.explicit) {
+                return -1;
+            }
+            item.explicit = false;
+            if (item.patternOwners == 0) {
+                unregister(topic, listener);
+            }
+            return 1;
+        }
+    }
+
+
+    /**
+     * Unregisters the EventListener for one topic, whoever registered it. Must hold registrationLock.
+     */
+    private void unregister(Topic topic, EventListener listener) {
+        List<Topic> topics = topicsPerListener.get(listener);
+        topics.remove(topic);
+        if (topics.isEmpty()) {
+            topicsPerListener.remove(listener);
+        }
+        removeFromTopic(topic, listener);
+    }
+
+
+    /**
+     * Unregisters the EventListener for all event types, including its patterns.
+     * Only the topics the listener is registered for are touched.
+     * Does nothing if the EventListener is not registered.
+     *
+     * @param listener EventListener to be unregistered.
+     * @return number of times EventListener is removed, -1 if not removed
+     */
+    public int removeEventListener(EventListener listener) {
+        int timesRemoved = 0;
+        synchronized (registrationLock) {
+            List<PatternSubscription> subscriptions = patternsPerListener.remove(listener);
+            if (subscriptions != null) {
+                for (PatternSubscription subscription : subscriptions) {
+                    unsubscribe(subscription);
+                }
+            }
+            List<Topic> topics = topicsPerListener.remove(listener);
+            if (topics != null) {
+                for (Topic topic : topics) {
+                    removeFromTopic(topic, listener);
+                    timesRemoved++;
+                }
+            }
+        }
+        if (timesRemoved == 0) {
+            timesRemoved = -1;
+        }
+        return timesRemoved;
+    }
+
+
+    /**
+     * For testing purposes.
+     * Listeners that listen for multiple events are only counted once.
+     *
+     * @return Amount of listeners that listen for a specified event type.
+     */
+    public int getAmountOfListeners() {
+        synchronized (registrationLock) {
+            return topicsPerListener.size();
+        }
+    }
+
+
+    /**
+     * Takes a snapshot of the queue depths and of the counters and timings of every topic and listener.
+     * Safe to call from any thread, also while the broker thread is stuck in a listener.
+     *
+     * @return The current metrics.
+     */
+    public BrokerMetrics getMetrics() {
+        long now = System.nanoTime();
+        ListenerItem[][] table = listeners;
+        List<BrokerMetrics.TopicMetrics> topicMetrics = new ArrayList<>();
+        List<BrokerMetrics.ListenerMetrics> listenerMetrics = new ArrayList<>();
+        int amountOfTopics = Math.max(table.length, topicStats.length);
+        for (int id = 0; id < amountOfTopics; id++) {
+            ListenerItem[] listenersForTopic = id < table.length ? table[id] : NO_LISTENERS;
+            Topic topic = Topic.forId(id);
+            TopicStats stats = statsFor(topic);
+            if (listenersForTopic.length == 0 && stats.published.get() == 0 && stats.requests.get() == 0) {
+                continue;
+            }
+            topicMetrics.add(new BrokerMetrics.TopicMetrics(topic.getName(), listenersForTopic.length, stats.published.get(), stats.dispatched.get(),
+                    stats.dropped.get(), stats.superseded.get(), stats.requests.get(), stats.dispatchLatency.snapshot()));
+            for (ListenerItem listenerItem : listenersForTopic) {
+                listenerMetrics.add(listenerItem.metrics(topic.getName(), now));
+            }
+        }
+        boolean running = startSignalReceived.get() && !stopSignalReceived.get();
+        return new BrokerMetrics(running, realtimeQueue.size(), queue.size(), bulkQueue.size(),
+                realtimeQueue.spilled() + queue.spilled() + bulkQueue.spilled(), topicMetrics, listenerMetrics);
+    }
+
+
+    /**
+     * Logs {@link #getMetrics()} periodically at info level on a separate daemon thread, so it keeps reporting when the broker thread is stuck.
+     * The dump keeps running when the broker is stopped.
+     *
+     * @param periodMillis Milliseconds between two dumps. 0 or less stops dumping.
+     */
+    public void setMetricsDumpInterval(long periodMillis) {
+        synchronized (monitorLock) {
+            if (metricsDumper != null) {
+                metricsDumper.shutdownNow();
+                metricsDumper = null;
+            }
+            if (periodMillis <= 0) {
+                return;
+            }
+            metricsDumper = Executors.newSingleThreadScheduledExecutor(daemonThreads(name + " metrics"));
+            metricsDumper.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    Log.i(EventBroker.class.getName() + ">metrics", getMetrics().toString());
+                }
+            }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Starts the watchdog, which reports every listener that spends more than budgetMillis in one call to handleEvent.
+     * Listeners that are still inside the call are reported while they are stuck, with the stack of the broker thread when they run inline.
+     * <p>
+     * With quarantine enabled, an inline listener that exceeds the budget is moved off the broker thread once its call returns:
+     * from then on its events are delivered on a separate quarantine lane, shared by all quarantined listeners,
+     * so a slow screen can no longer delay navigation or audio events. Its events still arrive in order and never concurrently.
+     * Quarantined listeners are reset when the broker stops.
+     * </p>
+     *
+     * @param budgetMillis Milliseconds a listener may spend in one call. 0 or less stops the watchdog.
+     * @param quarantine   true to move inline listeners that exceed the budget off the broker thread.
+     */
+    public void setHandlerBudget(long budgetMillis, boolean quarantine) {
+        synchronized (monitorLock) {
+            if (watchdog != null) {
+                watchdog.shutdownNow();
+                watchdog = null;
+            }
+            handlerBudget = TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+            quarantineSlowListeners = quarantine;
+            if (budgetMillis <= 0) {
+                return;
+            }
+            long period = Math.max(1, budgetMillis / 2);
+            watchdog = Executors.newSingleThreadScheduledExecutor(daemonThreads(name + " watchdog"));
+            watchdog.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    reportStalledListeners();
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+
+    /**
+     * Sets the lowest level the broker logs at. Every event is logged at {@link Log#DEBUG}, which is off by default:
+     * the log messages are then not even built.
+     *
+     * @param level One of the levels of {@link Log}, such as {@link Log#DEBUG} or {@link Log#INFO}.
+     */
+    public void setLogLevel(int level) {
+        logLevel = level;
+    }
+
+
+    /**
+     * Records every event the broker dispatches from now on, so the run can later be replayed with a {@link TraceReplayer}.
+     * Events are recorded in the order they are dispatched, with the time they were dispatched on the clock of the broker.
+     *
+     * @param recorder Recorder to write the events to, or null to stop recording. The broker does not close it.
+     */
+    public void setRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+
+    /**
+     * Registers the responder that answers requests on a topic. A topic has at most one responder.
+     * The responder is called on the given executor, so it can do slow work such as disk access without holding up the event broker.
+     *
+     * @param topic     Topic to answer requests for.
+     * @param responder Responder to be registered.
+     * @param executor  Executor that runs the responder. Null answers inline on the event broker thread.
+     * @return 1 when the responder is registered, -1 when the topic already has another responder
+     */
+    public int setResponder(Topic topic, Responder responder, Executor executor) {
+        synchronized (registrationLock) {
+            ResponderItem[] table = responders;
+            int id = topic.getId();
+            if (id < table.length && table[id] != null && table[id].responder != responder) {
+                return -1;
+            }
+            ResponderItem[] newTable = Arrays.copyOf(table, Math.max(table.length, id + 1));
+            newTable[id] = new ResponderItem(responder, executor);
+            responders = newTable;
+            return 1;
+        }
+    }
+
+
+    /**
+     * Unregisters the responder of a topic. Requests that are already handed to the responder are still answered.
+     * Requests made afterwards fail until a new responder is registered.
+     *
+     * @param topic     Topic to unregister from.
+     * @param responder Responder to be unregistered.
+     * @return 1 when the responder is removed, -1 when it was not the responder of the topic
+     */
+    public int removeResponder(Topic topic, Responder responder) {
+        synchronized (registrationLock) {
+            ResponderItem[] table = responders;
+            int id = topic.getId();
+            if (id >= table.length || table[id] == null || table[id].responder != responder) {
+                return -1;
+            }
+            ResponderItem[] newTable = Arrays.copyOf(table, table.length);
+            newTable[id] = null;
+            responders = newTable;
+            return 1;
+        }
+    }
+
+
+    /**
+     * Forgets the last value of a sticky topic, so listeners that register afterwards wait for the next event.
+     * Events published before this call are still remembered first, as the value is cleared in order with the events.
+     * Use this when the remembered value becomes meaningless, for instance the duration of a run that has ended.
+     *
+     * @param topic Sticky topic to clear.
+     */
+    public void clearStickyValue(Topic topic) {
+        enqueue(topic, null, 0, QueueItem.OBJECT, STICKY_CLEARER, false);
+    }
+
+
+    /**
+     * Sends a request to the responder of a topic, with a timeout of {@link #DEFAULT_REQUEST_TIMEOUT}.
+     * This method is equivalent to {@link #request(Topic, Object, long, ResponseCallback)} without a callback.
+     *
+     * @param topic   Topic of the request.
+     * @param payload Payload passed to the responder, may be null.
+     * @return Future that completes with the response.
+     */
+    public ResponseFuture request(Topic topic, Object payload) {
+        return request(topic, payload, DEFAULT_REQUEST_TIMEOUT, null);
+    }
+
+
+    /**
+     * Sends a request to the responder of a topic.
+     * The request is queued like an event on the topic, so it respects the priority of the topic, but it is only handed to the responder.
+     * It always completes: with the response, with the exception of the responder, with a TimeoutException,
+     * or with an IllegalStateException when there is no responder or the broker stops first.
+     * A caller that loses interest, for instance a Fragment that is destroyed, should cancel the future.
+     *
+     * @param topic         Topic of the request.
+     * @param payload       Payload passed to the responder, may be null.
+     * @param timeoutMillis Milliseconds after which the request fails if it was not answered. 0 or less waits forever.
+     * @param callback      Called when the request completes, may be null. See {@link ResponseCallback} for the thread it is called on.
+     * @return Future that completes with the response.
+     */
+    public ResponseFuture request(Topic topic, Object payload, long timeoutMillis, ResponseCallback callback) {
+        ResponseFuture future = new ResponseFuture(topic, payload, timeoutMillis, callback, clock.nanoTime());
+        if (!enqueue(topic, future, 0, QueueItem.OBJECT, REQUESTER, false)) {
+            future.fail(new IllegalStateException("EventBroker is stopping, " + topic + " can not be requested"));
+        }
+        return future;
+    }
+
+
+    private static ThreadFactory daemonThreads(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread daemon = new Thread(runnable, name);
+                daemon.setDaemon(true);
+                return daemon;
+            }
+        };
+    }
+
+
+    /**
+     * Logs every listener that has been inside one call for longer than the handler budget, once per call. Runs on the watchdog thread.
+     */
+    private void reportStalledListeners() {
+        long budget = handlerBudget;
+        long now = System.nanoTime();
+        ListenerItem[][] table = listeners;
+        for (int id = 0; id < table.length; id++) {
+            for (ListenerItem item : table[id]) {
+                long since = item.busySince;
+                if (since == 0 || now - since <= budget || item.reportedStall == since) {
+                    continue;
+                }
+                item.reportedStall = since;
+                String report = String.format(Locale.US, "Listener %s has been handling %s for %.1fms, budget is %.1fms",
+                        item.listener, Topic.forId(id), (now - since) / 1e6, budget / 1e6);
+                Thread brokerThread = thread;
+                if (item.executor == null && brokerThread != null) {
+                    // shows where the listener is stuck
+                    Throwable stack = new Throwable("Stack of the broker thread");
+                    stack.setStackTrace(brokerThread.getStackTrace());
+                    Log.w(this.getClass().getName() + ">watchdog", report + ", the broker thread is blocked", stack);
+                } else {
+                    Log.w(this.getClass().getName() + ">watchdog", report);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Reports a call that exceeded the handler budget and quarantines the listener when it ran on the broker thread.
+     * Called by the thread that called the listener.
+     */
+    private void overBudget(ListenerItem item, String eventType, long elapsed) {
+        Log.w(this.getClass().getName() + ">watchdog", String.format(Locale.US, "Listener %s took %.1fms to handle %s, budget is %.1fms",
+                item.listener, elapsed / 1e6, eventType, handlerBudget / 1e6));
+        if (!quarantineSlowListeners || item.executor != null) {
+            return;
+        }
+        // inline, so this is the broker thread and no other event of the listener is being delivered
+        synchronized (registrationLock) {
+            if (quarantineLane == null) {
+                quarantineLane = Executors.newSingleThreadExecutor(daemonThreads(name + " quarantine"));
+            }
+            quarantinedListeners.add(item.listener);
+            for (ListenerItem[] listenersForTopic : listeners) {
+                for (ListenerItem other : listenersForTopic) {
+                    // every registration of the listener moves, so it never runs on two threads at once
+                    if (other.listener.equals(item.listener) && other.executor == null) {
+                        other.quarantine(quarantineLane);
+                    }
+                }
+            }
+        }
+        Log.w(this.getClass().getName() + ">watchdog", "Listener " + item.listener + " is quarantined, its events are delivered off the broker thread from now on");
+    }
+
+
+    /**
+     * @return The current listener array of a topic. Never null.
+     */
+    private ListenerItem[] listenersFor(Topic topic) {
+        ListenerItem[][] table = listeners;
+        return topic.getId() < table.length ? table[topic.getId()] : NO_LISTENERS;
+    }
+
+
+    /**
+     * Publishes a new listener array for a topic by swapping the whole table.
+     * Must be called while holding registrationLock.
+     */
+    private void swapListeners(Topic topic, ListenerItem[] updated) {
+        ListenerItem[][] table = listeners;
+        int length = Math.max(table.length, topic.getId() + 1);
+        ListenerItem[][] newTable = Arrays.copyOf(table, length);
+        for (int i = table.length; i < length; i++) {
+            newTable[i] = NO_LISTENERS;
+        }
+        newTable[topic.getId()] = updated;
+        listeners = newTable;
+    }
+
+
+    /**
+     * Removes one listener from the array of a topic.
+     * Must be called while holding registrationLock.
+     */
+    private void removeFromTopic(Topic topic, EventListener listener) {
+        ListenerItem[] current = listenersFor(topic);
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].listener.equals(listener)) {
+                current[i].removed = true;
+                ListenerItem[] updated = new ListenerItem[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, current.length - i - 1);
+                swapListeners(topic, updated);
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Publishes an event to the event broker.
+     *
+     * @param eventType This event type can be any String.
+     * @param message   Message to send to all listeners.
+     * @param source    The EventPublisher that generated the event.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean addEvent(String eventType, Object message, EventPublisher source) {
+        return addEvent(topic(eventType), message, source);
+    }
+
+
+    /**
+     * Publishes an event to the event broker.
+     * How the event is handled when the broker falls behind depends on the {@link DeliveryPolicy} of the topic:
+     * reliable events are kept behind the queue when it is full, of other events only the newest is kept.
+     * No event is accepted once the broker is stopping.
+     *
+     * @param topic   Topic of the event.
+     * @param message Message to send to all listeners.
+     * @param source  The EventPublisher that generated the event.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean addEvent(Topic topic, Object message, EventPublisher source) {
+        boolean accepted = enqueue(topic, message, 0, QueueItem.OBJECT, source, !topic.getDeliveryPolicy().isReliable());
+        if (accepted && logLevel <= Log.DEBUG) {
+            Log.d(this.getClass().getName() + ">addEvent()", "Added " + topic + " to queue");
+        }
+        return accepted;
+    }
+
+
+    /**
+     * Publishes a numeric event without boxing it.
+     * A {@link DoubleEventListener} receives the value in {@link DoubleEventListener#handleDouble(String, double)},
+     * other listeners receive the message made by the {@link PrimitiveBoxer} of the topic.
+     * Meant for high-frequency measurements such as the speed, the event is handled like {@link #addEvent(Topic, Object, EventPublisher)} otherwise.
+     *
+     * @param topic  Topic of the event.
+     * @param value  Value to send to all listeners.
+     * @param source The EventPublisher that generated the event.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean publishDouble(Topic topic, double value, EventPublisher source) {
+        return enqueue(topic, null, Double.doubleToRawLongBits(value), QueueItem.DOUBLE, source, !topic.getDeliveryPolicy().isReliable());
+    }
+
+
+    /**
+     * Publishes a numeric event without boxing it.
+     * A {@link LongEventListener} receives the value in {@link LongEventListener#handleLong(String, long)},
+     * other listeners receive the message made by the {@link PrimitiveBoxer} of the topic.
+     * Meant for high-frequency measurements such as the distance, the event is handled like {@link #addEvent(Topic, Object, EventPublisher)} otherwise.
+     *
+     * @param topic  Topic of the event.
+     * @param value  Value to send to all listeners.
+     * @param source The EventPublisher that generated the event.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean publishLong(Topic topic, long value, EventPublisher source) {
+        return enqueue(topic, null, value, QueueItem.LONG, source, !topic.getDeliveryPolicy().isReliable());
+    }
+
+
+    /**
+     * Puts an event in the lane of its topic and wakes up the broker thread. The publisher never waits.
+     * <p>
+     * An event that is not counted is spilled behind a full lane, see {@link EventRingBuffer#spill(QueueItem)},
+     * so it is neither lost nor overtaken by later events of its topic, also when a listener publishes it on the broker thread.
+     * </p>
+     *
+     * @param value   Value of a primitive event, see {@link QueueItem}.
+     * @param kind    {@link QueueItem#OBJECT}, {@link QueueItem#DOUBLE} or {@link QueueItem#LONG}.
+     * @param counted true to count the event as pending for its topic. When the lane is full, such an event does not wait:
+     *                it is kept as the latest value of its topic, replacing the one that was kept before.
+     * @return true if the event was queued, false if the broker is stopping
+     */
+    private boolean enqueue(Topic topic, Object message, long value, byte kind, EventPublisher source, boolean counted) {
+        if (stopSignalReceived.get()) {
+            // we don't accept new events when the stop signal is received
+            return false;
+        }
+        TopicStats stats = statsFor(topic);
+        if (counted) {
+            stats.pending.incrementAndGet();
+            if (stats.latest.get() != null && stats.latest.getAndSet(null) != null) {
+                // the value kept while the lane was full is older than this one
+                stats.superseded.incrementAndGet();
+            }
+        }
+        long enqueuedAt = clock.nanoTime();
+        EventRingBuffer lane = laneFor(topic.getPriority());
+        if (!lane.offer(topic, message, value, kind, source, counted, enqueuedAt)) {
+            if (counted) {
+                // drop oldest: keep this value next to the lane instead of holding up the publisher
+                if (stats.latest.getAndSet(new QueueItem(topic, message, value, kind, source, false, enqueuedAt)) != null) {
+                    stats.superseded.incrementAndGet();
+                }
+                stats.published.incrementAndGet();
+                if (stats.pending.decrementAndGet() == 0) {
+                    // no queued event of the topic is left to take it along, the broker thread takes it next
+                    latestValues.add(stats);
+                    wakeUp();
+                }
+                return true;
+            }
+            // waiting for a slot would deadlock a listener that publishes on the broker thread, or hang before start()
+            lane.spill(new QueueItem(topic, message, value, kind, source, false, enqueuedAt));
+        }
+        if (isEvent(source)) {
+            stats.published.incrementAndGet();
+        } else if (source == REQUESTER) {
+            stats.requests.incrementAndGet();
+        }
+        wakeUp();
+        return true;
+    }
+
+
+    /**
+     * @return false for the queue items the broker makes for itself: requests, replays and clears of sticky values
+     */
+    private static boolean isEvent(EventPublisher source) {
+        return source != REQUESTER && source != REPLAYER && source != STICKY_CLEARER;
+    }
+
+
+    private void wakeUp() {
+        // only wake up the processing thread when it is actually sleeping
+        if (parked.get() && parked.compareAndSet(true, false)) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+
+    /**
+     * @return The counters of a topic, growing the table when the topic is new to this broker.
+     */
+    private TopicStats statsFor(Topic topic) {
+        int id = topic.getId();
+        TopicStats[] table = topicStats;
+        if (id < table.length) {
+            return table[id];
+        }
+        synchronized (registrationLock) {
+            table = topicStats;
+            if (id >= table.length) {
+                TopicStats[] newTable = Arrays.copyOf(table, Math.max(id + 1, Topic.count()));
+                for (int i = table.length; i < newTable.length; i++) {
+                    newTable[i] = new TopicStats();
+                }
+                topicStats = newTable;
+                table = newTable;
+            }
+            return table[id];
+        }
+    }
+
+
+    /**
+     * Drops an event that will never be processed. A request is failed, so its requester does not wait for the timeout.
+     */
+    private void discard(QueueItem item) {
+        releasePending(item);
+        if (isEvent(item.source)) {
+            topicStats[item.topic.getId()].dropped.incrementAndGet();
+        }
+        if (item.source == REQUESTER) {
+            ((ResponseFuture) item.message).fail(new IllegalStateException("EventBroker stopped before " + item.topic + " was answered"));
+        }
+        item.message = null;
+        item.source = null;
+        item.boxed = null;
+    }
+
+
+    /**
+     * Takes an event out of the pending count of its topic.
+     * When it was the last queued event of its topic, the latest value kept while the lane was full is taken next.
+     *
+     * @return true if a newer event of the same topic is waiting that supersedes this one according to its delivery policy
+     */
+    private boolean releasePending(QueueItem item) {
+        if (!item.counted) {
+            return false;
+        }
+        TopicStats stats = topicStats[item.topic.getId()];
+        int stillPending = stats.pending.decrementAndGet();
+        if (stillPending == 0 && stats.latest.get() != null) {
+            latestValues.add(stats);
+            stillPending = 1;
+        }
+        int maxPending = item.topic.getDeliveryPolicy().getMaxPending();
+        // a policy that turned reliable while the event was queued delivers everything
+        return maxPending > 0 && stillPending >= maxPending;
+    }
+
+
+    /**
+     * Private method that calls the callbacks on listener for the event type.
+     *
+     * @param item QueueItem to process
+     */
+    private void processEvent(QueueItem item) {
+        TopicStats stats = topicStats[item.topic.getId()];
+        if (releasePending(item)) {
+            // drop oldest: newer events of this topic are queued behind this one
+            stats.superseded.incrementAndGet();
+            return;
+        }
+        long now = clock.nanoTime();
+        if (logLevel <= Log.DEBUG) {
+            Log.d(this.getClass().getName() + ">processEvent()", "Processing " + item.topic + "," + item.message);
+        }
+        if (item.source == REQUESTER) {
+            processRequest((ResponseFuture) item.message);
+            return;
+        }
+        if (item.source == REPLAYER) {
+            replay(item.topic, (ListenerItem) item.message);
+            return;
+        }
+        if (item.source == STICKY_CLEARER) {
+            clearStickyValue(item.topic.getId());
+            return;
+        }
+        stats.dispatched.incrementAndGet();
+        stats.dispatchLatency.record(now - item.enqueuedAt);
+        FlightRecorder flightRecorder = recorder;
+        if (flightRecorder != null) {
+            flightRecorder.record(item, now);
+        }
+        if (item.topic.getId() >= resolvedTopics) {
+            resolvePatterns();
+        }
+        if (item.topic.isSticky()) {
+            setStickyValue(item);
+        }
+
+        // the array is never modified after it is published, so no lock or copy is needed
+        ListenerItem[] listenersForType = listenersFor(item.topic);
+        if (listenersForType.length == 0) {
+            if (logLevel <= Log.DEBUG) {
+                Log.d(this.getClass().getName() + ">processEvent()", "No listeners for " + item.topic);
+            }
+            // nobody is listening for this event
+            return;
+        }
+
+        for (ListenerItem listenerItem : listenersForType) {
             // don't send event to the sender itself.
+            // a listener that receives a newer event does not need the replay anymore
+            listenerItem.replayPending = false;
             if (!listenerItem.listener.equals(item.source)) {
-                // only send when the requested interval has expired
-                long currentTime = System.currentTimeMillis();
-                if (currentTime >= listenerItem.lastServed + listenerItem.requestedInterval) {
-                    listenerItem.listener.handleEvent(item.eventType, item.message);
-                    listenerItem.lastServed = currentTime;
-                }
+                listenerItem.publish(item, now, timers);
+            }
+        }
+
+    }
+
+
+    /**
+     * Delivers the last value of a sticky topic to a listener that just registered, unless it received a newer event since.
+     */
+    private void replay(Topic topic, ListenerItem listenerItem) {
+        if (!listenerItem.replayPending || listenerItem.removed) {
+            return;
+        }
+        listenerItem.replayPending = false;
+        int id = topic.getId();
+        // an item without topic holds no value
+        if (id < stickyValues.length && stickyValues[id].topic != null) {
+            listenerItem.publish(stickyValues[id], clock.nanoTime(), timers);
+        }
+    }
+
+
+    /**
+     * Remembers an event of a sticky topic in the preallocated item of the topic, so primitive values are kept without boxing.
+     */
+    private void setStickyValue(QueueItem item) {
+        int id = item.topic.getId();
+        if (id >= stickyValues.length) {
+            int oldLength = stickyValues.length;
+            stickyValues = Arrays.copyOf(stickyValues, Math.max(id + 1, Topic.count()));
+            for (int i = oldLength; i < stickyValues.length; i++) {
+                stickyValues[i] = new QueueItem();
             }
         }
+        stickyValues[id].copyFrom(item);
+        // the source does not matter for a replay and should not be kept alive
+        stickyValues[id].source = null;
+    }
+
 
+    private void clearStickyValue(int id) {
+        if (id < stickyValues.length) {
+            stickyValues[id].topic = null;
+            stickyValues[id].message = null;
+            stickyValues[id].boxed = null;
+        }
+    }
+
+
+    /**
+     * Hands a request to the responder of its topic and starts its timeout.
+     */
+    private void processRequest(ResponseFuture request) {
+        if (request.isDone()) {
+            // cancelled while it was queued
+            return;
+        }
+        ResponderItem[] table = responders;
+        int id = request.getTopic().getId();
+        ResponderItem responderItem = id < table.length ? table[id] : null;
+        if (responderItem == null) {
+            request.fail(new IllegalStateException("No responder for " + request.getTopic()));
+            return;
+        }
+        if (request.hasTimeout()) {
+            timers.schedule(request, request.getTimeoutDeadline());
+            request.setBroker(this);
+            if (request.isDone()) {
+                // cancelled before it could tell the broker
+                timers.cancel(request);
+            }
+        }
+        request.setResponder(responderItem.responder);
+        if (responderItem.executor == null) {
+            request.run();
+            return;
+        }
+        try {
+            responderItem.executor.execute(request);
+        } catch (RejectedExecutionException e) {
+            request.fail(e);
+        }
+    }
+
+
+    /**
+     * Takes a request that completed off the timer wheel, so its timeout does not wake up the broker thread for nothing.
+     * On another thread than the broker thread, the request is taken off before the next event is processed.
+     */
+    void requestCompleted(ResponseFuture request) {
+        if (Thread.currentThread() == thread) {
+            timers.cancel(request);
+        } else {
+            completedRequests.add(request);
+        }
+    }
+
+
+    private EventRingBuffer laneFor(Priority priority) {
+        switch (priority) {
+            case REALTIME:
+                return realtimeQueue;
+            case BULK:
+                return bulkQueue;
+            default:
+                return queue;
+        }
+    }
+
+
+    /**
+     * Takes the next event from the lanes. Realtime events go first, then normal events, then bulk events.
+     * A waiting bulk event is taken anyway once {@link #MAX_BULK_STARVATION} other events went before it.
+     * Must only be called from the broker thread, or when it is not running.
+     *
+     * @param into Item the event is copied into
+     * @return true if an event was taken
+     */
+    private boolean pollNext(QueueItem into) {
+        boolean bulkWaiting = !bulkQueue.isEmpty();
+        if (bulkWaiting && bulkPassedOver >= MAX_BULK_STARVATION) {
+            bulkPassedOver = 0;
+            return bulkQueue.poll(into);
+        }
+        if (realtimeQueue.poll(into) || queue.poll(into)) {
+            if (bulkWaiting) {
+                bulkPassedOver++;
+            }
+            return true;
+        }
+        bulkPassedOver = 0;
+        return bulkQueue.poll(into);
+    }
+
+
+    private boolean lanesEmpty() {
+        return realtimeQueue.isEmpty() && queue.isEmpty() && bulkQueue.isEmpty();
+    }
+
+
+    /**
+     * Processes the next event of a broker with a manual pump, after releasing the held events that became due.
+     * Must be called from the thread that started the broker.
+     *
+     * @return true if an event was processed, false if the queues were empty
+     * @throws IllegalStateException if the broker was not built with a manual pump, or is called from another thread
+     */
+    public boolean pump() {
+        checkPumpThread();
+        return processNext();
+    }
+
+
+    /**
+     * Processes events of a broker with a manual pump until its queues are empty, including the events published while doing so.
+     * Must be called from the thread that started the broker.
+     *
+     * @return Amount of events processed
+     * @throws IllegalStateException if the broker was not built with a manual pump, or is called from another thread
+     */
+    public int pumpAll() {
+        checkPumpThread();
+        int processed = 0;
+        while (processNext()) {
+            processed++;
+        }
+        return processed;
+    }
+
+
+    private void checkPumpThread() {
+        if (!manualPump) {
+            throw new IllegalStateException(name + " has its own thread and can not be pumped");
+        }
+        if (Thread.currentThread() != thread) {
+            throw new IllegalStateException(name + " must be pumped by the thread that started it");
+        }
+    }
+
+
+    /**
+     * Takes one item from the queue and processes it, after releasing the held events that are due.
+     * Only called from the broker thread.
+     *
+     * @return true if an item was processed, false if the queue is empty
+     */
+    private boolean processNext() {
+        ResponseFuture completed;
+        while ((completed = completedRequests.poll()) != null) {
+            timers.cancel(completed);
+        }
+        if (!timers.isEmpty()) {
+            timers.advance(clock.nanoTime());
+        }
+        QueueItem item = takeNext();
+        if (item == null) {
+            return false;
+        }
+        processEvent(item);
+        // do not keep the message alive until the next event arrives
+        item.message = null;
+        item.source = null;
+        item.boxed = null;
+        return true;
+    }
+
+
+    /**
+     * @return The next latest value or item of the lanes, null if all are empty
+     */
+    private QueueItem takeNext() {
+        TopicStats stats;
+        while ((stats = latestValues.poll()) != null) {
+            // null when a newer event of the topic replaced it in the meantime
+            QueueItem latest = stats.latest.getAndSet(null);
+            if (latest != null) {
+                return latest;
+            }
+        }
+        if (pollNext(current)) {
+            return current;
+        }
+        return null;
+    }
+
+
+    /**
+     * Empties the queues after the stop signal. Events the drain mode keeps are processed until the deadline, everything else is dropped.
+     * Only called from the broker thread, which is the stopping thread for a broker with a manual pump.
+     */
+    private void drain() {
+        DrainMode mode = drainMode;
+        QueueItem item;
+        while (!drainExpired() && (item = takeNext()) != null) {
+            if (mode != DrainMode.NONE && !timers.isEmpty()) {
+                timers.advance(clock.nanoTime());
+            }
+            if (mode.delivers(item.topic)) {
+                processEvent(item);
+                item.message = null;
+                item.source = null;
+                item.boxed = null;
+                stopDelivered++;
+            } else {
+                discard(item);
+                stopDropped++;
+            }
+        }
+        while ((item = takeNext()) != null) {
+            discard(item);
+            stopPending++;
+        }
+        if (mode != DrainMode.NONE && !drainExpired()) {
+            // held events were published before the stop signal, so they are still delivered
+            timers.expireAll(clock.nanoTime());
+        }
+        timers.clear();
+    }
+
+
+    private boolean drainExpired() {
+        return drainTimed && System.nanoTime() - drainDeadline >= 0;
     }
 
 
     /**
      * Thread code. Takes an item from the queue to process in each iteration.
-     * Waits when the queue is empty. Stops when the queue is empty and stopSignalReceived is set
+     * Parks when the queue is empty. Drains the queue and stops when stopSignalReceived is set
      */
     @Override
     public void run() {
         while (true) {
-            QueueItem item;
-            synchronized (queue) {
-                item = queue.poll();
+            if (stopSignalReceived.get()) {
+                // deliver what the drain mode and the deadline of stop() allow, then stop the loop
+                drain();
+                break;
             }
-
             // when the queue is empty
-            if (item == null) {
-                if (stopSignalReceived.get()) {
-                    // stop the loop as the queue is empty and the stop flag is set
-                    break;
-                }
+            if (!processNext()) {
 
-                // sleep until awoken (probably when a new item enters the queue)
-                synchronized (lock) {
-                    try {
-                        lock.wait();
-                    } catch (InterruptedException e) {
-                        Log.d(this.getClass().getName() + ">run()", "Interrupt triggered during the waiting on new queue items.", e);
-                        Thread.currentThread().interrupt();
+                // announce we are going to sleep, then check again so an event published in between is not missed
+                parked.set(true);
+                if (lanesEmpty() && latestValues.isEmpty() && !stopSignalReceived.get()) {
+                    if (timers.isEmpty()) {
+                        // sleep until awoken (probably when a new item enters the queue)
+                        LockSupport.park(this);
+                    } else {
+                        // sleep until the next held event is due, unless a new item enters the queue first
+                        long delay = timers.nextDeadline() - clock.nanoTime();
+                        if (delay > 0) {
+                            LockSupport.parkNanos(this, delay);
+                        }
                     }
                 }
-            } else {
-                processEvent(item);
+                parked.set(false);
+                if (Thread.interrupted()) {
+                    Log.d(this.getClass().getName() + ">run()", "Interrupt triggered during the waiting on new queue items.");
+                    Thread.currentThread().interrupt();
+                    break;
+                }
             }
         }
 
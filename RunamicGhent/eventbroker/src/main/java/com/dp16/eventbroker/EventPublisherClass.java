@@ -24,12 +24,60 @@ package com.dp16.eventbroker;
  */
 
 public class EventPublisherClass implements EventPublisher {
+    private final EventBroker broker;
+
+    /**
+     * Creates a publisher for {@link EventBroker#getInstance()}.
+     */
+    public EventPublisherClass() {
+        this(EventBroker.getInstance());
+    }
+
+    /**
+     * Creates a publisher for an independent broker, see {@link EventBroker#builder()}.
+     * @param broker Event broker to publish to.
+     */
+    public EventPublisherClass(EventBroker broker) {
+        this.broker = broker;
+    }
+
     /**
      * Publishes an event to the event broker.
      * @param eventType This event type can be any String.
      * @param message Message to send to all listeners.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean publishEvent(String eventType, Object message){
+        return broker.addEvent(eventType, message, this);
+    }
+
+    /**
+     * Publishes an event to the event broker.
+     * @param topic Topic of the event, see {@link EventBroker#topic(String)}.
+     * @param message Message to send to all listeners.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean publishEvent(Topic topic, Object message){
+        return broker.addEvent(topic, message, this);
+    }
+
+    /**
+     * Publishes a numeric event without boxing it, see {@link EventBroker#publishDouble(Topic, double, EventPublisher)}.
+     * @param topic Topic of the event, see {@link EventBroker#topic(String)}.
+     * @param value Value to send to all listeners.
+     * @return true if the event was accepted, false if the broker is stopping
+     */
+    public boolean publishDouble(Topic topic, double value){
+        return broker.publishDouble(topic, value, this);
+    }
+
+    /**
+     * Publishes a numeric event without boxing it, see {@link EventBroker#publishLong(Topic, long, EventPublisher)}.
+     * @param topic Topic of the event, see {@link EventBroker#topic(String)}.
+     * @param value Value to send to all listeners.
+     * @return true if the event was accepted, false if the broker is stopping
      */
-    public void publishEvent(String eventType, Object message){
-        EventBroker.getInstance().addEvent(eventType, message, this);
+    public boolean publishLong(Topic topic, long value){
+        return broker.publishLong(topic, value, this);
     }
 }
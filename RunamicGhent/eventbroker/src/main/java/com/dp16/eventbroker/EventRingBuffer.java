@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free multi-producer/single-consumer queue used by the {@link EventBroker}.
+ * <p>
+ * Every slot of the ring holds a preallocated {@link EventBroker.QueueItem} and a sequence number.
+ * A producer claims a position with a CAS on the tail, fills in the slot and then publishes it by advancing the sequence of that slot.
+ * The single consumer copies the slot into its own item and hands the slot back to the producers by advancing the sequence by one lap.
+ * No monitor is taken on either side and no objects are allocated once the ring is created.
+ * </p>
+ * <p>
+ * Items that must not be lost when the ring is full are added to an unbounded spill queue with {@link #spill(EventBroker.QueueItem)}.
+ * The spill is taken after the ring, and the ring refuses new items until the spill is empty again, so the lane stays first in first out.
+ * </p>
+ * Only one thread may call {@link #poll(EventBroker.QueueItem)} at any given time.
+ */
+final class EventRingBuffer {
+    private final EventBroker.QueueItem[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+
+    // only touched by the consumer thread
+    private long head = 0;
+    // copy of head that other threads can read to estimate the size
+    private final AtomicLong consumed = new AtomicLong();
+    // items offered while the ring was full, and their amount, which is raised before an item is added
+    private final ConcurrentLinkedQueue<EventBroker.QueueItem> spill = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spilled = new AtomicInteger();
+
+    /**
+     * @param capacity Amount of slots in the ring. Must be a power of two.
+     */
+    EventRingBuffer(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        slots = new EventBroker.QueueItem[capacity];
+        sequences = new AtomicLongArray(capacity);
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new EventBroker.QueueItem();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an item to the tail of the ring. Safe to call from any thread.
+     *
+     * @return true if the item was added, false if the ring is full or items are waiting in the spill
+     */
+    boolean offer(Topic topic, Object message, long value, byte kind, EventPublisher source, boolean counted, long enqueuedAt) {
+        if (spilled.get() != 0) {
+            // the spilled items go first
+            return false;
+        }
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                // the slot is free for this lap, try to claim it
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                // the consumer has not released this slot yet: the ring is full
+                return false;
+            } else {
+                // another producer claimed this position first
+                position = tail.get();
+            }
+        }
+
+        EventBroker.QueueItem slot = slots[index];
+        slot.topic = topic;
+        slot.message = message;
+        slot.value = value;
+        slot.kind = kind;
+        slot.source = source;
+        slot.counted = counted;
+        slot.enqueuedAt = enqueuedAt;
+
+        // publish the slot to the consumer
+        sequences.set(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Adds an item behind the ring, for when {@link #offer} failed. Safe to call from any thread, never fails.
+     */
+    void spill(EventBroker.QueueItem item) {
+        spilled.incrementAndGet();
+        spill.add(item);
+    }
+
+    /**
+     * Takes the item at the head of the lane: the head of the ring, or the head of the spill once the ring is empty.
+     * Must only be called from the consumer thread.
+     *
+     * @param into Item the head is copied into
+     * @return true if an item was copied, false if the lane is empty
+     */
+    boolean poll(EventBroker.QueueItem into) {
+        if (pollRing(into)) {
+            return true;
+        }
+        // a claimed slot that is not published yet was offered before the spilled items
+        if (spilled.get() == 0 || tail.get() != head) {
+            return false;
+        }
+        EventBroker.QueueItem item = spill.poll();
+        if (item == null) {
+            // counted, but not added yet
+            return false;
+        }
+        spilled.decrementAndGet();
+        into.copyFrom(item);
+        return true;
+    }
+
+    private boolean pollRing(EventBroker.QueueItem into) {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) {
+            // empty, or the producer of this slot has not published it yet
+            return false;
+        }
+
+        EventBroker.QueueItem slot = slots[index];
+        into.topic = slot.topic;
+        into.message = slot.message;
+        into.value = slot.value;
+        into.kind = slot.kind;
+        into.source = slot.source;
+        into.counted = slot.counted;
+        into.enqueuedAt = slot.enqueuedAt;
+        into.boxed = null;
+
+        // drop the references so the ring does not keep messages alive
+        slot.topic = null;
+        slot.message = null;
+        slot.source = null;
+
+        // hand the slot back to the producers for the next lap
+        sequences.set(index, head + slots.length);
+        head++;
+        consumed.lazySet(head);
+        return true;
+    }
+
+    /**
+     * Must only be called from the consumer thread, or when no consumer is running.
+     *
+     * @return true if there is no published item at the head of the ring and nothing was spilled
+     */
+    boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1 && spilled.get() == 0;
+    }
+
+    /**
+     * Safe to call from any thread. The result may be off by the items that are being offered or polled at the same time.
+     *
+     * @return Amount of items in the ring
+     */
+    int size() {
+        long size = tail.get() - consumed.get();
+        return (int) Math.max(0, Math.min(size, slots.length));
+    }
+
+    /**
+     * Safe to call from any thread.
+     *
+     * @return Amount of items in the spill
+     */
+    int spilled() {
+        return spilled.get();
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
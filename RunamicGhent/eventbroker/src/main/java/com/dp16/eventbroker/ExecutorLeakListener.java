@@ -0,0 +1,27 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.eventbroker;
+
+/**
+ * Notified by a {@link ComponentScheduler} when a {@link SerialExecutor} was garbage collected without being shut down.
+ * The component that owned it did not run its stop method, so its listeners or timers may have kept running until then.
+ */
+public interface ExecutorLeakListener {
+    /**
+     * @param owner          Name the executor was created with.
+     * @param allocationSite Stack trace of the call that created the executor.
+     */
+    void onLeak(String owner, Throwable allocationSite);
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records every event an {@link EventBroker} dispatches into a compact append-only binary trace, see {@link EventBroker#setRecorder(FlightRecorder)}.
+ * A {@link TraceReplayer} publishes the events of a trace again, with the same timing or faster.
+ * <p>
+ * The overhead for the broker thread is bounded: it encodes an event into a preallocated chunk and a separate thread writes full chunks to the stream.
+ * When the writer falls behind and all chunks are full, events are dropped rather than holding up the broker, see {@link #getDropped()}.
+ * Messages are only stored for topics that have a {@link PayloadCodec}, primitive events and null messages are always stored.
+ * Other events are kept as a marker, so the trace still shows when they happened.
+ * </p>
+ * Format, all numbers big endian, varints as in protocol buffers:
+ * <pre>
+ * trace  = "EBTR" version:byte record*
+ * record = 0x01 topic:varint name:UTF                                 defines a topic before its first event
+ *        | 0x02 delta:varint topic:varint length:varint payload:byte[] message encoded by the codec of the topic
+ *        | 0x03 delta:varint topic:varint value:double                 {@link EventBroker#publishDouble(Topic, double, EventPublisher)}
+ *        | 0x04 delta:varint topic:varint value:zigzag varint          {@link EventBroker#publishLong(Topic, long, EventPublisher)}
+ *        | 0x05 delta:varint topic:varint                              null message
+ *        | 0x06 delta:varint topic:varint                              message without codec, not replayed
+ * delta  = microseconds on the clock of the broker since the previous event
+ * </pre>
+ */
+public final class FlightRecorder {
+    static final int MAGIC = 0x45425452;
+    static final int VERSION = 1;
+    static final int TOPIC = 0x01;
+    static final int OBJECT = 0x02;
+    static final int DOUBLE = 0x03;
+    static final int LONG = 0x04;
+    static final int NULL = 0x05;
+    static final int OPAQUE = 0x06;
+
+    /**
+     * Size in bytes of the chunks that are handed to the writer thread.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Amount of chunks, together the most memory a recorder uses for events that are not written yet.
+     */
+    public static final int DEFAULT_CHUNKS = 4;
+
+    // hands the writer thread the signal to stop
+    private static final Chunk END = new Chunk(0);
+
+    private final OutputStream out;
+    private final int chunkSize;
+    private final BlockingQueue<Chunk> free;
+    private final BlockingQueue<Chunk> filled;
+    private final Thread writer;
+    private final Map<Topic, PayloadCodec> codecs = new HashMap<>();
+
+    // guarded by this, only the broker thread records
+    private Chunk current;
+    private final Scratch record = new Scratch();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final Scratch payload = new Scratch();
+    private final DataOutputStream payloadOut = new DataOutputStream(payload);
+    private boolean[] defined = new boolean[0];
+    private long startNanos;
+    private long lastMicros = -1;
+    private boolean closed;
+
+    private volatile long recorded;
+    private volatile long dropped;
+    // first exception of the writer thread, reported by close()
+    private volatile IOException failure;
+
+    /**
+     * Creates a recorder with {@link #DEFAULT_CHUNKS} chunks of {@link #DEFAULT_CHUNK_SIZE} bytes.
+     *
+     * @param out Stream the trace is written to. It is closed by {@link #close()}.
+     */
+    public FlightRecorder(OutputStream out) {
+        this(out, DEFAULT_CHUNK_SIZE, DEFAULT_CHUNKS);
+    }
+
+    /**
+     * @param out       Stream the trace is written to. It is closed by {@link #close()}.
+     * @param chunkSize Size of a chunk in bytes, also the maximum size of one recorded event.
+     * @param chunks    Amount of chunks, at least two.
+     */
+    public FlightRecorder(OutputStream out, int chunkSize, int chunks) {
+        if (chunkSize < 64 || chunks < 2) {
+            throw new IllegalArgumentException("A recorder needs at least two chunks of 64 bytes, got " + chunks + " of " + chunkSize);
+        }
+        this.out = out;
+        this.chunkSize = chunkSize;
+        free = new ArrayBlockingQueue<>(chunks);
+        filled = new ArrayBlockingQueue<>(chunks + 1);
+        for (int i = 1; i < chunks; i++) {
+            free.add(new Chunk(chunkSize));
+        }
+        current = new Chunk(chunkSize);
+        writeHeader();
+        writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "EventBroker recorder");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Stores the messages of a topic with a codec. Should be done before the recorder is attached to a broker.
+     *
+     * @param topic Topic whose messages are stored.
+     * @param codec Codec for the messages.
+     * @return This recorder.
+     */
+    public synchronized FlightRecorder setCodec(Topic topic, PayloadCodec codec) {
+        codecs.put(topic, codec);
+        return this;
+    }
+
+    /**
+     * @return Amount of events in the trace so far.
+     */
+    public long getRecorded() {
+        return recorded;
+    }
+
+    /**
+     * @return Amount of events that were not recorded because the writer fell behind.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * Records one dispatched event. Called by the broker thread.
+     */
+    synchronized void record(EventBroker.QueueItem item, long now) {
+        if (closed) {
+            return;
+        }
+        if (lastMicros < 0) {
+            startNanos = now;
+            lastMicros = 0;
+        }
+        long micros = Math.max(lastMicros, (now - startNanos) / 1000);
+        int id = item.topic.getId();
+        boolean newTopic = id >= defined.length || !defined[id];
+        record.reset();
+        try {
+            if (newTopic) {
+                recordOut.writeByte(TOPIC);
+                Varints.write(recordOut, id);
+                recordOut.writeUTF(item.topic.getName());
+            }
+            encode(item, micros - lastMicros, id);
+        } catch (IOException e) {
+            // writing to memory does not fail, unless the codec throws
+            dropped++;
+            return;
+        }
+        if (!append()) {
+            dropped++;
+            return;
+        }
+        if (newTopic) {
+            if (id >= defined.length) {
+                boolean[] grown = new boolean[Math.max(id + 1, Topic.count())];
+                System.arraycopy(defined, 0, grown, 0, defined.length);
+                defined = grown;
+            }
+            defined[id] = true;
+        }
+        lastMicros = micros;
+        recorded++;
+    }
+
+    private void encode(EventBroker.QueueItem item, long delta, int id) throws IOException {
+        if (item.kind == EventBroker.QueueItem.DOUBLE) {
+            writeEventHeader(DOUBLE, delta, id);
+            recordOut.writeLong(item.value);
+        } else if (item.kind == EventBroker.QueueItem.LONG) {
+            writeEventHeader(LONG, delta, id);
+            Varints.writeSigned(recordOut, item.value);
+        } else if (item.message == null) {
+            writeEventHeader(NULL, delta, id);
+        } else {
+            PayloadCodec codec = codecs.get(item.topic);
+            payload.reset();
+            if (codec != null) {
+                try {
+                    codec.encode(item.message, payloadOut);
+                } catch (RuntimeException e) {
+                    codec = null;
+                }
+            }
+            if (codec == null) {
+                writeEventHeader(OPAQUE, delta, id);
+            } else {
+                writeEventHeader(OBJECT, delta, id);
+                Varints.write(recordOut, payload.size());
+                recordOut.write(payload.buffer(), 0, payload.size());
+            }
+        }
+    }
+
+    private void writeEventHeader(int tag, long delta, int id) throws IOException {
+        recordOut.writeByte(tag);
+        Varints.write(recordOut, delta);
+        Varints.write(recordOut, id);
+    }
+
+    /**
+     * Copies the scratch record into the current chunk, handing the chunk to the writer when it is full.
+     *
+     * @return false if there was no room for the record
+     */
+    private boolean append() {
+        int size = record.size();
+        if (size > chunkSize) {
+            return false;
+        }
+        if (current.length + size > chunkSize) {
+            Chunk next = free.poll();
+            if (next == null) {
+                return false;
+            }
+            filled.add(current);
+            current = next;
+        }
+        System.arraycopy(record.buffer(), 0, current.bytes, current.length, size);
+        current.length += size;
+        return true;
+    }
+
+    private void writeHeader() {
+        record.reset();
+        try {
+            recordOut.writeInt(MAGIC);
+            recordOut.writeByte(VERSION);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        append();
+    }
+
+    /**
+     * Hands the events recorded so far to the writer thread, for instance before the app goes to the background.
+     * Does nothing when the writer has no free chunk, the events are then written with the next chunk.
+     */
+    public synchronized void flush() {
+        if (closed || current.length == 0) {
+            return;
+        }
+        Chunk next = free.poll();
+        if (next != null) {
+            filled.add(current);
+            current = next;
+        }
+    }
+
+    /**
+     * Writes the remaining events and closes the stream. Detach the recorder from the broker first.
+     *
+     * @throws IOException if writing the trace failed at any point
+     */
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            filled.add(current);
+            filled.add(END);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Writer thread: writes filled chunks and hands them back.
+     */
+    private void write() {
+        while (true) {
+            Chunk chunk;
+            try {
+                chunk = filled.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (chunk == END) {
+                return;
+            }
+            if (failure == null) {
+                try {
+                    out.write(chunk.bytes, 0, chunk.length);
+                    out.flush();
+                } catch (IOException e) {
+                    // keep draining so the broker thread does not run out of chunks, the error is reported by close()
+                    failure = e;
+                }
+            }
+            chunk.length = 0;
+            free.offer(chunk);
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] bytes;
+        int length;
+
+        Chunk(int size) {
+            bytes = new byte[size];
+        }
+    }
+
+    /**
+     * ByteArrayOutputStream that exposes its buffer, so a record can be copied without allocating.
+     */
+    private static final class Scratch extends ByteArrayOutputStream {
+        Scratch() {
+            super(256);
+        }
+
+        byte[] buffer() {
+            return buf;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records durations in nanoseconds into power-of-two buckets, without allocating.
+ * Bucket i counts durations of at most 2^i - 1 ns, so the histogram is exact to within a factor two.
+ * <p>
+ * Only one thread may record at any given time, which lets recording use plain writes instead of CAS loops.
+ * Any thread may take a {@link #snapshot()}.
+ * </p>
+ */
+final class LatencyRecorder {
+    static final int BUCKETS = 64;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        int bucket = BUCKETS - Long.numberOfLeadingZeros(nanos);
+        if (bucket == BUCKETS) {
+            bucket = BUCKETS - 1;
+        }
+        buckets.lazySet(bucket, buckets.get(bucket) + 1);
+        total.lazySet(total.get() + nanos);
+        if (nanos > max.get()) {
+            max.lazySet(nanos);
+        }
+    }
+
+    LatencyHistogram snapshot() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new LatencyHistogram(counts, total.get(), max.get());
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Listener for events published with {@link EventBroker#publishLong(Topic, long, EventPublisher)}.
+ * The value is delivered without boxing it or allocating a message.
+ * <p>
+ * A LongEventListener is registered like any other listener with {@link EventBroker#addEventListener(Topic, EventListener)}.
+ * Events published as objects on the same topic still arrive in {@link #handleEvent(String, Object)}.
+ * </p>
+ *
+ * @see DoubleEventListener
+ */
+public interface LongEventListener extends EventListener {
+    void handleLong(String eventType, long value);
+}
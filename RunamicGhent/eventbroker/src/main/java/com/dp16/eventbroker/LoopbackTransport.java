@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.IOException;
+
+/**
+ * Transport that hands frames straight to another bridge in the same process.
+ * Stands in for the link between two devices in tests and on devices without a wearable.
+ */
+public final class LoopbackTransport implements BridgeTransport {
+    private volatile EventBridge peer;
+
+    /**
+     * @param peer Bridge that receives the frames sent through this transport, null to drop them.
+     */
+    public void connect(EventBridge peer) {
+        this.peer = peer;
+    }
+
+    @Override
+    public void send(byte[] frame) throws IOException {
+        EventBridge current = peer;
+        if (current != null) {
+            current.onFrame(frame);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Growable FIFO of events waiting for the executor of a listener.
+ * Events are stored in parallel arrays, so primitive values are not boxed and adding an event does not allocate
+ * once the mailbox has grown to the usual backlog of its listener.
+ * Not threadsafe, the owner synchronizes on the mailbox.
+ */
+final class Mailbox {
+    private String[] types;
+    private byte[] kinds;
+    private Object[] messages;
+    private long[] values;
+    private int head = 0;
+    private int size = 0;
+
+    Mailbox(int initialCapacity) {
+        types = new String[initialCapacity];
+        kinds = new byte[initialCapacity];
+        messages = new Object[initialCapacity];
+        values = new long[initialCapacity];
+    }
+
+    void add(String type, byte kind, Object message, long value) {
+        if (size == types.length) {
+            grow();
+        }
+        int index = (head + size) % types.length;
+        types[index] = type;
+        kinds[index] = kind;
+        messages[index] = message;
+        values[index] = value;
+        size++;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    // accessors for the event at the head, only valid when not empty
+
+    String headType() {
+        return types[head];
+    }
+
+    byte headKind() {
+        return kinds[head];
+    }
+
+    Object headMessage() {
+        return messages[head];
+    }
+
+    long headValue() {
+        return values[head];
+    }
+
+    /**
+     * Removes the event at the head.
+     */
+    void remove() {
+        types[head] = null;
+        messages[head] = null;
+        head = (head + 1) % types.length;
+        size--;
+    }
+
+    void clear() {
+        while (size > 0) {
+            remove();
+        }
+        head = 0;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        String[] newTypes = new String[capacity];
+        byte[] newKinds = new byte[capacity];
+        Object[] newMessages = new Object[capacity];
+        long[] newValues = new long[capacity];
+        for (int i = 0; i < size; i++) {
+            int index = (head + i) % types.length;
+            newTypes[i] = types[index];
+            newKinds[i] = kinds[index];
+            newMessages[i] = messages[index];
+            newValues[i] = values[index];
+        }
+        types = newTypes;
+        kinds = newKinds;
+        messages = newMessages;
+        values = newValues;
+        head = 0;
+    }
+}
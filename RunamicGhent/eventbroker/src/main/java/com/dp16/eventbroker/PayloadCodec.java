@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Turns the messages of a topic into bytes and back, so a {@link FlightRecorder} can store them and a {@link TraceReplayer} can publish them again.
+ * Primitive events and null messages do not need a codec.
+ */
+public interface PayloadCodec {
+    /**
+     * Called on the broker thread, so it should be quick and not allocate more than needed.
+     *
+     * @param message Message of an event, never null.
+     * @param out     Output to write the message to.
+     */
+    void encode(Object message, DataOutput out) throws IOException;
+
+    /**
+     * @param in Input holding exactly one encoded message.
+     * @return The decoded message.
+     */
+    Object decode(DataInput in) throws IOException;
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Codecs for messages that are common to every app.
+ */
+public final class PayloadCodecs {
+    /**
+     * Writes {@link Object#toString()} of a message and decodes it as a String.
+     */
+    public static final PayloadCodec STRING = new PayloadCodec() {
+        @Override
+        public void encode(Object message, DataOutput out) throws IOException {
+            out.writeUTF(message.toString());
+        }
+
+        @Override
+        public Object decode(DataInput in) throws IOException {
+            return in.readUTF();
+        }
+    };
+
+    /**
+     * Writes a {@link Number} as an int and decodes it as an Integer.
+     */
+    public static final PayloadCodec INTEGER = new PayloadCodec() {
+        @Override
+        public void encode(Object message, DataOutput out) throws IOException {
+            out.writeInt(((Number) message).intValue());
+        }
+
+        @Override
+        public Object decode(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private PayloadCodecs() {
+        // only static members
+    }
+}
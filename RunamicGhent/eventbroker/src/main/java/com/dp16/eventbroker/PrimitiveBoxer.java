@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Turns the value of a primitive event into the message that listeners without a primitive method receive.
+ * By default a Double or a Long. Override the methods to keep handing legacy listeners the object they expect.
+ * The broker boxes a primitive event at most once, and only when such a listener is registered.
+ *
+ * @see Topic#setBoxer(PrimitiveBoxer)
+ */
+public class PrimitiveBoxer {
+    /**
+     * Boxes into Double and Long.
+     */
+    public static final PrimitiveBoxer DEFAULT = new PrimitiveBoxer();
+
+    /**
+     * @param value Value published with {@link EventBroker#publishDouble(Topic, double, EventPublisher)}.
+     * @return The message passed to {@link EventListener#handleEvent(String, Object)}.
+     */
+    public Object box(double value) {
+        return value;
+    }
+
+    /**
+     * @param value Value published with {@link EventBroker#publishLong(Topic, long, EventPublisher)}.
+     * @return The message passed to {@link EventListener#handleEvent(String, Object)}.
+     */
+    public Object box(long value) {
+        return value;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Priority class of a {@link Topic}. Every class has its own lane in the {@link EventBroker}.
+ * <ul>
+ * <li>{@link #REALTIME}: always processed first. For events a user waits on, such as navigation instructions.</li>
+ * <li>{@link #NORMAL}: the default.</li>
+ * <li>{@link #BULK}: large or slow events such as storing or loading the run history.
+ * Processed when nothing else is waiting, but never starved for more than a bounded amount of events.</li>
+ * </ul>
+ *
+ * @see Topic#setPriority(Priority)
+ */
+public enum Priority {
+    REALTIME, NORMAL, BULK
+}
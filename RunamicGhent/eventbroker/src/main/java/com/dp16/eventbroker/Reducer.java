@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Combines the events a throttled listener did not receive while its interval was running.
+ * The result is delivered once the interval expires, see {@link EventBroker#addEventListener(Topic, EventListener, int, Reducer)}.
+ * Common reducers are available in {@link Reducers}.
+ * <p>
+ * Reducers are only called from the event broker thread and must not keep state themselves: all state is in the returned value.
+ * </p>
+ *
+ * @see Reducers
+ */
+public interface Reducer {
+    /**
+     * @param held  The value held so far. Only the first suppressed event is held as is.
+     * @param next  Message of the next suppressed event.
+     * @param count Amount of events reduced so far, including next. At least 2.
+     * @return The new value to hold.
+     */
+    Object reduce(Object held, Object next, int count);
+}
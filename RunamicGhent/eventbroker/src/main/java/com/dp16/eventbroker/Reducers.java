@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Reducers for sample-and-hold throttling.
+ *
+ * @see Reducer
+ */
+public final class Reducers {
+    /**
+     * Holds the newest suppressed event.
+     */
+    public static final Reducer LAST = new Reducer() {
+        @Override
+        public Object reduce(Object held, Object next, int count) {
+            return next;
+        }
+    };
+
+    /**
+     * Holds the running mean of suppressed {@link Number} events as a Double.
+     * Falls back to the newest event for messages that are not numbers.
+     */
+    public static final Reducer MEAN = new Reducer() {
+        @Override
+        public Object reduce(Object held, Object next, int count) {
+            if (!(held instanceof Number) || !(next instanceof Number)) {
+                return next;
+            }
+            double mean = ((Number) held).doubleValue();
+            return mean + (((Number) next).doubleValue() - mean) / count;
+        }
+    };
+
+    /**
+     * Holds the largest suppressed event according to its natural ordering.
+     * Falls back to the newest event for messages that are not {@link Comparable}.
+     */
+    public static final Reducer MAX = new Reducer() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public Object reduce(Object held, Object next, int count) {
+            if (held instanceof Comparable && next != null && held.getClass() == next.getClass()) {
+                return ((Comparable<Object>) held).compareTo(next) >= 0 ? held : next;
+            }
+            return next;
+        }
+    };
+
+    private Reducers() {
+        // only constants
+    }
+}
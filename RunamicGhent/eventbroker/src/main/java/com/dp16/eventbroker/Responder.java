@@ -0,0 +1,30 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Interface that must be implemented by a class that answers requests made with {@link EventBroker#request(Topic, Object)}.
+ * Every topic has at most one responder, registered with {@link EventBroker#setResponder(Topic, Responder, java.util.concurrent.Executor)}.
+ *
+ * @see EventBroker
+ */
+public interface Responder {
+    /**
+     * @param requestType Name of the topic the request was made on.
+     * @param payload     Payload of the request, may be null.
+     * @return The response that completes the request.
+     * @throws Exception Fails the request. The requester receives it as the cause of an ExecutionException.
+     */
+    Object respond(String requestType, Object payload) throws Exception;
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Callback for {@link EventBroker#request(Topic, Object, long, ResponseCallback)}.
+ * Exactly one of the methods is called, on the thread that completes the request: the executor of the responder,
+ * or the event broker thread for timeouts and inline responders. A cancelled request calls neither.
+ */
+public interface ResponseCallback {
+    /**
+     * @param response The value returned by the responder.
+     */
+    void onResponse(Object response);
+
+    /**
+     * @param cause A {@link java.util.concurrent.TimeoutException} when no response arrived in time,
+     *              an IllegalStateException when there is no responder or the broker stopped,
+     *              or the exception thrown by the responder.
+     */
+    void onFailure(Throwable cause);
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Pending response of a request made with {@link EventBroker#request(Topic, Object)}.
+ * The request is completed once: by the responder, by its timeout, by the broker stopping or by {@link #cancel(boolean)}.
+ * <p>
+ * The future travels through the queue of the broker in place of a message and is scheduled on the timer wheel of the broker for its timeout.
+ * It is taken off the wheel as soon as it completes, so an answered request does not wake up the broker at its deadline.
+ * It is also the task that runs the responder, so a request allocates nothing besides this object.
+ * </p>
+ *
+ * @see EventBroker#request(Topic, Object, long, ResponseCallback)
+ */
+public final class ResponseFuture extends TimerWheel.Timer implements Future<Object>, Runnable {
+    private static final int PENDING = 0;
+    private static final int RESPONDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final Topic topic;
+    private final Object payload;
+    // on the clock of the broker, in nanoseconds, only meaningful when hasTimeout is set
+    private final boolean hasTimeout;
+    private final long timeoutDeadline;
+    private final ResponseCallback callback;
+    // set by the broker thread before the future is handed to the responder
+    private Responder responder;
+    // set by the broker thread once the timeout is scheduled, told when the request completes so it can take the timeout off its wheel
+    private volatile EventBroker broker;
+
+    // guarded by this
+    private int state = PENDING;
+    private Object response;
+    private Throwable failure;
+
+    /**
+     * @param now Current time of the clock of the broker, see {@link Clock}.
+     */
+    ResponseFuture(Topic topic, Object payload, long timeoutMillis, ResponseCallback callback, long now) {
+        this.topic = topic;
+        this.payload = payload;
+        this.hasTimeout = timeoutMillis > 0;
+        this.timeoutDeadline = now + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        this.callback = callback;
+    }
+
+    Topic getTopic() {
+        return topic;
+    }
+
+    boolean hasTimeout() {
+        return hasTimeout;
+    }
+
+    long getTimeoutDeadline() {
+        return timeoutDeadline;
+    }
+
+    void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    void setBroker(EventBroker broker) {
+        this.broker = broker;
+    }
+
+    /**
+     * Runs the responder. Does nothing if the request was already completed, for instance because it was cancelled while queued.
+     */
+    @Override
+    public void run() {
+        if (isDone()) {
+            return;
+        }
+        Object result;
+        try {
+            result = responder.respond(topic.getName(), payload);
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        complete(RESPONDED, result, null);
+    }
+
+    /**
+     * Called by the timer wheel of the broker at the deadline, or earlier when the broker stops.
+     */
+    @Override
+    void expire(long now) {
+        if (hasTimeout && now - timeoutDeadline >= 0) {
+            fail(new TimeoutException("No response for " + topic + " within the timeout"));
+        } else {
+            discard();
+        }
+    }
+
+    /**
+     * Called when the broker stops without waiting for the timeout, so a responder that never answers does not leave the request pending.
+     */
+    @Override
+    void discard() {
+        fail(new IllegalStateException("EventBroker stopped before " + topic + " was answered"));
+    }
+
+    void fail(Throwable cause) {
+        complete(FAILED, null, cause);
+    }
+
+    private boolean complete(int newState, Object newResponse, Throwable newFailure) {
+        synchronized (this) {
+            if (state != PENDING) {
+                return false;
+            }
+            state = newState;
+            response = newResponse;
+            failure = newFailure;
+            notifyAll();
+        }
+        EventBroker owner = broker;
+        if (owner != null) {
+            owner.requestCompleted(this);
+        }
+        if (callback != null && newState == RESPONDED) {
+            callback.onResponse(newResponse);
+        } else if (callback != null && newState == FAILED) {
+            callback.onFailure(newFailure);
+        }
+        return true;
+    }
+
+    /**
+     * Cancels the request. A request that is still queued never reaches the responder. The callback is not called.
+     *
+     * @param mayInterruptIfRunning Ignored, a running responder is never interrupted.
+     * @return false if the request was already completed
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(CANCELLED, null, null);
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    @Override
+    public synchronized Object get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long remaining = unit.toNanos(timeout);
+        long deadline = System.nanoTime() + remaining;
+        while (state == PENDING) {
+            if (remaining <= 0) {
+                throw new TimeoutException("No response for " + topic + " yet");
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            remaining = deadline - System.nanoTime();
+        }
+        return result();
+    }
+
+    // must hold the lock
+    private Object result() throws ExecutionException {
+        if (state == CANCELLED) {
+            throw new CancellationException("Request for " + topic + " was cancelled");
+        }
+        if (state == FAILED) {
+            throw new ExecutionException(failure);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.eventbroker;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Executor of a single component, running on the shared threads of a {@link ComponentScheduler}.
+ * Tasks run one at a time and in the order they were submitted, as on Executors.newSingleThreadExecutor(),
+ * but the executor has no thread of its own: while it has work it borrows a worker thread, and gives it back when it is idle.
+ * <p>
+ * {@link #shutdown()} is the end of the component's lifetime. Tasks that were already submitted still run,
+ * periodic tasks are cancelled and the executor is no longer reported by the leak detector.
+ * </p>
+ * Obtained with {@link ComponentScheduler#newSerialExecutor(String)}.
+ */
+public final class SerialExecutor extends AbstractExecutorService {
+    // tasks run in one go before the worker thread is handed to the other components
+    private static final int BATCH_SIZE = 32;
+
+    private final ComponentScheduler scheduler;
+    private final String owner;
+    private final ComponentScheduler.Registration registration;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // true while a drain of this executor is queued on or running on a worker thread
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    // periodic and delayed tasks, cancelled on shutdown, guarded by itself
+    private final List<ScheduledFuture<?>> timedTasks = new ArrayList<>();
+    private volatile boolean shutdown;
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    SerialExecutor(ComponentScheduler scheduler, String owner) {
+        this.scheduler = scheduler;
+        this.owner = owner;
+        this.registration = scheduler.register(this, owner);
+    }
+
+    /**
+     * @return Name of the component this executor was created for
+     */
+    public String getOwner() {
+        return owner;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("Task can not be null");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("Executor of " + owner + " is shut down");
+        }
+        tasks.offer(task);
+        // shut down between the check and the offer: the final drain may already have run
+        if (shutdown && tasks.remove(task)) {
+            throw new RejectedExecutionException("Executor of " + owner + " is shut down");
+        }
+        schedule();
+    }
+
+    /**
+     * Runs a task on this executor after a delay. Replaces a java.util.Timer, without a thread of its own.
+     *
+     * @return Future to cancel the task with
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delay, TimeUnit unit) {
+        return track(scheduler.timer().schedule(handOff(task), delay, unit));
+    }
+
+    /**
+     * Runs a task on this executor periodically, until it is cancelled or the executor is shut down.
+     * Like Timer.scheduleAtFixedRate, runs that were delayed are caught up.
+     *
+     * @return Future to cancel the task with
+     */
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable task, long initialDelay, long period, TimeUnit unit) {
+        return track(scheduler.timer().scheduleAtFixedRate(handOff(task), initialDelay, period, unit));
+    }
+
+    /**
+     * The timer thread only hands the task over, so it runs in order with the other tasks of the component.
+     */
+    private Runnable handOff(final Runnable task) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    execute(task);
+                } catch (RejectedExecutionException e) {
+                    // shut down while the timer fired, shutdown cancels the future as well
+                }
+            }
+        };
+    }
+
+    private ScheduledFuture<?> track(ScheduledFuture<?> future) {
+        synchronized (timedTasks) {
+            Iterator<ScheduledFuture<?>> iterator = timedTasks.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().isDone()) {
+                    iterator.remove();
+                }
+            }
+            timedTasks.add(future);
+        }
+        if (shutdown) {
+            future.cancel(false);
+        }
+        return future;
+    }
+
+    private void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.workers().execute(drainer);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs a batch of tasks on a worker thread. Only one drain of an executor is scheduled at any given time,
+     * so tasks never run concurrently, and handing over the scheduled flag makes the next drain see the effects of this one.
+     */
+    private void drain() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            Runnable task = tasks.poll();
+            if (task == null) {
+                break;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                // a failing task does not take the other tasks of the component down
+                Log.e(SerialExecutor.class.getName() + ">drain()", "Task of " + owner + " threw", e);
+            }
+        }
+        scheduled.set(false);
+        if (!tasks.isEmpty()) {
+            schedule();
+        } else if (shutdown) {
+            terminated.countDown();
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+        scheduler.release(registration);
+        synchronized (timedTasks) {
+            for (ScheduledFuture<?> future : timedTasks) {
+                future.cancel(false);
+            }
+            timedTasks.clear();
+        }
+        // a final drain runs what is left and marks the executor terminated
+        try {
+            schedule();
+        } catch (RejectedExecutionException e) {
+            // the scheduler itself was shut down, nothing will run anymore
+            tasks.clear();
+            terminated.countDown();
+        }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            pending.add(task);
+        }
+        shutdown();
+        return pending;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated.getCount() == 0;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    @Override
+    public String toString() {
+        return "SerialExecutor{" + owner + (shutdown ? ", shut down" : "") + "}";
+    }
+}
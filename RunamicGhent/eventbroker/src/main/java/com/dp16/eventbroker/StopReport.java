@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.eventbroker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What happened to the queued events while an {@link EventBroker} was stopped.
+ *
+ * @see EventBroker#stop(long, TimeUnit, DrainMode)
+ */
+public final class StopReport {
+    private final long delivered;
+    private final long dropped;
+    private final long pending;
+    private final long durationNanos;
+    private final boolean finished;
+
+    StopReport(long delivered, long dropped, long pending, long durationNanos, boolean finished) {
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.pending = pending;
+        this.durationNanos = durationNanos;
+        this.finished = finished;
+    }
+
+    /**
+     * @return Amount of queued events that were processed after the stop signal
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return Amount of queued events that were dropped because the {@link DrainMode} excludes their topic
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return Amount of queued events that were dropped because the timeout expired before they were processed
+     */
+    public long getPending() {
+        return pending;
+    }
+
+    /**
+     * @return How long the stop took, in nanoseconds
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * A broker thread that is still running is blocked in a listener. It drops the remaining events and exits when that listener returns,
+     * the next call to {@link EventBroker#start()} waits for it.
+     *
+     * @return true if the broker thread has exited
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * @return true if the timeout expired before the queue was drained
+     */
+    public boolean isTimedOut() {
+        return pending > 0 || !finished;
+    }
+
+    @Override
+    public String toString() {
+        return "StopReport{delivered=" + delivered
+                + ", dropped=" + dropped
+                + ", pending=" + pending
+                + ", duration=" + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms"
+                + (finished ? "" : ", broker thread still running")
+                + "}";
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+/**
+ * Hashed timer wheel used by the {@link EventBroker} to deliver held events when the interval of a listener expires.
+ * <p>
+ * Time is cut in ticks and every tick maps to a bucket of the wheel. A timer is linked into the bucket of its deadline,
+ * so scheduling and cancelling are constant time and advancing the clock only visits the buckets of the ticks that passed.
+ * Timers further away than one revolution simply stay in their bucket until their deadline is reached.
+ * Timers are intrusive: they are the linked list nodes themselves, so nothing is allocated while scheduling.
+ * </p>
+ * All times are in nanoseconds of a monotonic clock, as returned by {@link Clock#nanoTime()}.
+ * The wheel is not threadsafe, it is only used from the event broker thread.
+ */
+final class TimerWheel {
+    /**
+     * Base class for everything that can be scheduled on a wheel.
+     */
+    abstract static class Timer {
+        private long deadline;
+        private Timer previous;
+        private Timer next;
+        private int bucket;
+        private boolean scheduled;
+
+        /**
+         * Called when the deadline has passed. The timer is no longer scheduled at that point and may schedule itself again.
+         *
+         * @param now Current time.
+         */
+        abstract void expire(long now);
+
+        /**
+         * Called when the wheel is cleared before the deadline. The timer is no longer scheduled at that point.
+         * Does nothing by default.
+         */
+        void discard() {
+        }
+
+        boolean isScheduled() {
+            return scheduled;
+        }
+
+        long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private final long tickNanos;
+    private final Timer[] buckets;
+    private final int mask;
+    // the tick of the last advance, its bucket may still hold timers that are not due
+    private long currentTick;
+    private int size = 0;
+
+    /**
+     * @param tickNanos  Duration of one tick.
+     * @param wheelSize  Amount of buckets. Must be a power of two.
+     * @param now        Current time.
+     */
+    TimerWheel(long tickNanos, int wheelSize, long now) {
+        if (tickNanos <= 0 || wheelSize < 1 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Invalid timer wheel: tick " + tickNanos + "ns, " + wheelSize + " buckets");
+        }
+        this.tickNanos = tickNanos;
+        this.buckets = new Timer[wheelSize];
+        this.mask = wheelSize - 1;
+        this.currentTick = now / tickNanos;
+    }
+
+    /**
+     * Schedules a timer. A timer that is already scheduled is moved to the new deadline.
+     * A deadline in the past expires on the next advance.
+     */
+    void schedule(Timer timer, long deadline) {
+        if (timer.scheduled) {
+            cancel(timer);
+        }
+        timer.deadline = deadline;
+        int index = (int) (Math.max(deadline / tickNanos, currentTick) & mask);
+        timer.bucket = index;
+        timer.previous = null;
+        timer.next = buckets[index];
+        if (timer.next != null) {
+            timer.next.previous = timer;
+        }
+        buckets[index] = timer;
+        timer.scheduled = true;
+        size++;
+    }
+
+    /**
+     * Removes a timer from the wheel. Does nothing if it is not scheduled.
+     */
+    void cancel(Timer timer) {
+        if (!timer.scheduled) {
+            return;
+        }
+        if (timer.previous != null) {
+            timer.previous.next = timer.next;
+        } else {
+            buckets[timer.bucket] = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+        timer.previous = null;
+        timer.next = null;
+        timer.scheduled = false;
+        size--;
+    }
+
+    /**
+     * Expires all timers with a deadline up to now.
+     */
+    void advance(long now) {
+        if (size == 0) {
+            currentTick = now / tickNanos;
+            return;
+        }
+        long nowTick = now / tickNanos;
+        // after a full revolution every bucket has been visited
+        long lastTick = Math.min(nowTick, currentTick + buckets.length - 1);
+        for (long tick = currentTick; tick <= lastTick && size > 0; tick++) {
+            expireBucket((int) (tick & mask), now);
+        }
+        currentTick = nowTick;
+    }
+
+    /**
+     * Expires every scheduled timer, regardless of its deadline. Expiring timers must not schedule themselves again.
+     */
+    void expireAll(long now) {
+        for (int i = 0; i < buckets.length && size > 0; i++) {
+            while (buckets[i] != null) {
+                Timer timer = buckets[i];
+                cancel(timer);
+                timer.expire(now);
+            }
+        }
+    }
+
+    /**
+     * @return The earliest deadline of all scheduled timers, or Long.MAX_VALUE if there are none.
+     */
+    long nextDeadline() {
+        long earliest = Long.MAX_VALUE;
+        for (int i = 0; i < buckets.length && size > 0; i++) {
+            for (Timer timer = buckets[i]; timer != null; timer = timer.next) {
+                earliest = Math.min(earliest, timer.deadline);
+            }
+        }
+        return earliest;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Drops all timers without expiring them, see {@link Timer#discard()}.
+     */
+    void clear() {
+        for (int i = 0; i < buckets.length && size > 0; i++) {
+            while (buckets[i] != null) {
+                Timer timer = buckets[i];
+                cancel(timer);
+                timer.discard();
+            }
+        }
+    }
+
+    private void expireBucket(int index, long now) {
+        Timer timer = buckets[index];
+        while (timer != null) {
+            Timer next = timer.next;
+            if (timer.deadline <= now) {
+                cancel(timer);
+                timer.expire(now);
+            }
+            timer = next;
+        }
+    }
+}
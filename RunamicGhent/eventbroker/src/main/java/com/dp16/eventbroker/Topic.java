@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interned handle for an event type.
+ * Every event type name maps to exactly one Topic, with a dense integer id that the {@link EventBroker} uses as an array index.
+ * Topics are obtained with {@link EventBroker#topic(String)} and are never removed, so they can safely be kept in static constants.
+ * <p>
+ * Two topics are equal if and only if they are the same object.
+ * </p>
+ *
+ * @see EventBroker
+ */
+public final class Topic {
+    private static final Map<String, Topic> registry = new ConcurrentHashMap<>();
+    private static final Object registryLock = new Object();
+    // all topics indexed by id, guarded by registryLock
+    private static final List<Topic> byId = new ArrayList<>();
+    private static int amountOfTopics = 0;
+
+    private final String name;
+    private final int id;
+    private volatile DeliveryPolicy deliveryPolicy = DeliveryPolicy.RELIABLE;
+    private volatile Priority priority = Priority.NORMAL;
+    private volatile boolean sticky = false;
+    private volatile PrimitiveBoxer boxer = PrimitiveBoxer.DEFAULT;
+
+    private Topic(String name, int id) {
+        this.name = name;
+        this.id = id;
+    }
+
+    /**
+     * Returns the topic for a name, registering it when it is used for the first time.
+     *
+     * @param name Event type name.
+     * @return The unique Topic for this name.
+     */
+    static Topic intern(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Topic name can not be null");
+        }
+        Topic topic = registry.get(name);
+        if (topic != null) {
+            return topic;
+        }
+        synchronized (registryLock) {
+            topic = registry.get(name);
+            if (topic == null) {
+                topic = new Topic(name, amountOfTopics++);
+                registry.put(name, topic);
+                byId.add(topic);
+            }
+            return topic;
+        }
+    }
+
+    /**
+     * @param id Id of a registered topic.
+     * @return The topic with this id.
+     */
+    static Topic forId(int id) {
+        synchronized (registryLock) {
+            return byId.get(id);
+        }
+    }
+
+    /**
+     * @return Amount of topics registered so far. All ids are smaller than this value.
+     */
+    static int count() {
+        synchronized (registryLock) {
+            return amountOfTopics;
+        }
+    }
+
+    /**
+     * @return The event type name of this topic. This is the String passed to {@link EventListener#handleEvent(String, Object)}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Dense id of this topic, starting at 0.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return How the broker handles events of this topic when it falls behind. {@link DeliveryPolicy#RELIABLE} by default.
+     */
+    public DeliveryPolicy getDeliveryPolicy() {
+        return deliveryPolicy;
+    }
+
+    /**
+     * Sets how the broker handles events of this topic when it falls behind.
+     * Should be done before events of this topic are published, typically where the topic constant is declared.
+     *
+     * @param deliveryPolicy The new policy.
+     * @return This topic, so the call can be chained onto {@link EventBroker#topic(String)}.
+     */
+    public Topic setDeliveryPolicy(DeliveryPolicy deliveryPolicy) {
+        if (deliveryPolicy == null) {
+            throw new IllegalArgumentException("Delivery policy can not be null");
+        }
+        this.deliveryPolicy = deliveryPolicy;
+        return this;
+    }
+
+    /**
+     * @return The lane events of this topic are queued in. {@link Priority#NORMAL} by default.
+     */
+    public Priority getPriority() {
+        return priority;
+    }
+
+    /**
+     * Sets the lane events of this topic are queued in.
+     * Should be done before events of this topic are published, typically where the topic constant is declared.
+     *
+     * @param priority The new priority.
+     * @return This topic, so the call can be chained onto {@link EventBroker#topic(String)}.
+     */
+    public Topic setPriority(Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("Priority can not be null");
+        }
+        this.priority = priority;
+        return this;
+    }
+
+    /**
+     * @return true if the broker replays the last value of this topic to new listeners.
+     */
+    public boolean isSticky() {
+        return sticky;
+    }
+
+    /**
+     * Makes the broker remember the last value of this topic and deliver it to every listener as soon as it registers,
+     * so it does not have to wait for the next event. Useful for state such as the current location.
+     *
+     * @param sticky true to replay the last value to new listeners.
+     * @return This topic, so the call can be chained onto {@link EventBroker#topic(String)}.
+     * @see EventBroker#clearStickyValue(Topic)
+     */
+    public Topic setSticky(boolean sticky) {
+        this.sticky = sticky;
+        return this;
+    }
+
+    /**
+     * @return How primitive events of this topic are boxed for listeners that only implement {@link EventListener}.
+     */
+    public PrimitiveBoxer getBoxer() {
+        return boxer;
+    }
+
+    /**
+     * Sets how primitive events of this topic are boxed for listeners that only implement {@link EventListener}.
+     * Lets a topic move to {@link EventBroker#publishDouble(Topic, double, EventPublisher)} or
+     * {@link EventBroker#publishLong(Topic, long, EventPublisher)} while existing listeners keep receiving the same messages.
+     *
+     * @param boxer The new boxer.
+     * @return This topic, so the call can be chained onto {@link EventBroker#topic(String)}.
+     */
+    public Topic setBoxer(PrimitiveBoxer boxer) {
+        if (boxer == null) {
+            throw new IllegalArgumentException("Boxer can not be null");
+        }
+        this.boxer = boxer;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
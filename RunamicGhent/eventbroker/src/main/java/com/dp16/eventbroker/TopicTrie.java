@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of topic patterns, used by the {@link EventBroker} to find the wildcard subscriptions that match a topic.
+ * <p>
+ * Topic names are split into levels by '/', such as "run/location/raw". In a pattern, a level "*" matches exactly one level
+ * and a last level "#" matches any number of levels, including none: "persist/store/*" matches "persist/store/runningstatistics"
+ * and "run/#" matches "run", "run/speed" and "run/location/raw".
+ * </p>
+ * Matching a name only visits the branches of the trie that can match it, so it does not get slower with unrelated patterns.
+ * Not thread safe, the broker guards it with its registration lock.
+ */
+final class TopicTrie<T> {
+    static final char SEPARATOR = '/';
+    static final String ANY_LEVEL = "*";
+    static final String ANY_LEVELS = "#";
+
+    private final Node<T> root = new Node<>();
+    private int size = 0;
+
+    /**
+     * Checks that a pattern has no empty levels, and that "#" is only used as the last level.
+     *
+     * @throws IllegalArgumentException if the pattern is not valid
+     */
+    static String[] parse(String pattern) {
+        if (pattern == null || pattern.isEmpty()) {
+            throw new IllegalArgumentException("Topic pattern can not be empty");
+        }
+        String[] levels = split(pattern);
+        for (int i = 0; i < levels.length; i++) {
+            if (levels[i].isEmpty()) {
+                throw new IllegalArgumentException("Topic pattern " + pattern + " has an empty level");
+            }
+            if (ANY_LEVELS.equals(levels[i]) && i != levels.length - 1) {
+                throw new IllegalArgumentException("# must be the last level of topic pattern " + pattern);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Matches a single pattern against a topic name, without building a trie.
+     */
+    static boolean matches(String pattern, String name) {
+        String[] patternLevels = parse(pattern);
+        String[] levels = split(name);
+        for (int i = 0; i < patternLevels.length; i++) {
+            if (ANY_LEVELS.equals(patternLevels[i])) {
+                return true;
+            }
+            if (i == levels.length || !(ANY_LEVEL.equals(patternLevels[i]) || patternLevels[i].equals(levels[i]))) {
+                return false;
+            }
+        }
+        return patternLevels.length == levels.length;
+    }
+
+    private static String[] split(String name) {
+        List<String> levels = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = name.indexOf(SEPARATOR, start)) >= 0) {
+            levels.add(name.substring(start, end));
+            start = end + 1;
+        }
+        levels.add(name.substring(start));
+        return levels.toArray(new String[levels.size()]);
+    }
+
+    void add(String pattern, T value) {
+        Node<T> node = root;
+        for (String level : parse(pattern)) {
+            node = node.child(level, true);
+        }
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * @return true if the value was subscribed with this pattern
+     */
+    boolean remove(String pattern, T value) {
+        Node<T> node = root;
+        for (String level : parse(pattern)) {
+            node = node.child(level, false);
+            if (node == null) {
+                return false;
+            }
+        }
+        // empty nodes are kept, the set of patterns an app uses is small and fixed
+        if (node.values.remove(value)) {
+            size--;
+            return true;
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds the values of every pattern that matches a topic name to a collection.
+     */
+    void match(String name, Collection<T> into) {
+        if (size > 0) {
+            match(root, split(name), 0, into);
+        }
+    }
+
+    private static <T> void match(Node<T> node, String[] levels, int depth, Collection<T> into) {
+        if (node.anyLevels != null) {
+            into.addAll(node.anyLevels.values);
+        }
+        if (depth == levels.length) {
+            into.addAll(node.values);
+            return;
+        }
+        if (node.children != null) {
+            Node<T> child = node.children.get(levels[depth]);
+            if (child != null) {
+                match(child, levels, depth + 1, into);
+            }
+        }
+        if (node.anyLevel != null) {
+            match(node.anyLevel, levels, depth + 1, into);
+        }
+    }
+
+    private static final class Node<T> {
+        // literal levels, created when first needed
+        Map<String, Node<T>> children;
+        Node<T> anyLevel;
+        Node<T> anyLevels;
+        final List<T> values = new ArrayList<>(1);
+
+        Node<T> child(String level, boolean create) {
+            if (ANY_LEVEL.equals(level)) {
+                if (anyLevel == null && create) {
+                    anyLevel = new Node<>();
+                }
+                return anyLevel;
+            }
+            if (ANY_LEVELS.equals(level)) {
+                if (anyLevels == null && create) {
+                    anyLevels = new Node<>();
+                }
+                return anyLevels;
+            }
+            if (children == null) {
+                if (!create) {
+                    return null;
+                }
+                children = new HashMap<>();
+            }
+            Node<T> child = children.get(level);
+            if (child == null && create) {
+                child = new Node<>();
+                children.put(level, child);
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishes the events of a trace written by a {@link FlightRecorder} again, so a recorded run can be replayed through the app in seconds.
+ * Events are published in the order they were recorded, with the replayer as source.
+ * <p>
+ * Messages of a topic are only replayed if the replayer has a {@link PayloadCodec} for it, primitive events and null messages always are.
+ * Events that were recorded without message are skipped.
+ * </p>
+ */
+public final class TraceReplayer implements EventPublisher {
+    /**
+     * Speed that publishes every event as soon as the previous one is published, without waiting.
+     */
+    public static final double AS_FAST_AS_POSSIBLE = Double.POSITIVE_INFINITY;
+
+    private final Map<String, PayloadCodec> codecs = new HashMap<>();
+
+    /**
+     * Decodes the messages of a topic with a codec. Should be the same kind of codec the topic was recorded with.
+     *
+     * @param topic Topic whose messages are replayed.
+     * @param codec Codec for the messages.
+     * @return This replayer.
+     */
+    public TraceReplayer setCodec(Topic topic, PayloadCodec codec) {
+        codecs.put(topic.getName(), codec);
+        return this;
+    }
+
+    /**
+     * Replays a trace on the calling thread, keeping the recorded time between the events divided by the speed.
+     *
+     * @param in     Trace to replay. It is read until the end, but not closed.
+     * @param broker Broker to publish the events on.
+     * @param speed  1 for real time, 10 for ten times as fast, or {@link #AS_FAST_AS_POSSIBLE}.
+     * @return Amount of events published.
+     * @throws IOException          if the trace can not be read or is not a trace
+     * @throws InterruptedException if the thread is interrupted while waiting for the next event
+     */
+    public int replay(InputStream in, EventBroker broker, double speed) throws IOException, InterruptedException {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("Speed must be positive, got " + speed);
+        }
+        return replay(in, broker, speed, null);
+    }
+
+    /**
+     * Replays a trace into a broker with a manual pump, advancing the clock of the broker by the recorded time between the events.
+     * Every event is pumped before the next one is published, so listeners see the same timing as during the recording without any waiting.
+     *
+     * @param in     Trace to replay. It is read until the end, but not closed.
+     * @param broker Started broker with a manual pump, owned by the calling thread.
+     * @param clock  Clock of the broker.
+     * @return Amount of events published.
+     * @throws IOException if the trace can not be read or is not a trace
+     */
+    public int replay(InputStream in, EventBroker broker, VirtualClock clock) throws IOException {
+        try {
+            return replay(in, broker, AS_FAST_AS_POSSIBLE, clock);
+        } catch (InterruptedException e) {
+            // only waiting for real time can be interrupted
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int replay(InputStream stream, EventBroker broker, double speed, VirtualClock clock) throws IOException, InterruptedException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != FlightRecorder.MAGIC) {
+            throw new IOException("Not an event trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != FlightRecorder.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+
+        Map<Long, Topic> topics = new HashMap<>();
+        long startNanos = System.nanoTime();
+        long traceMicros = 0;
+        int published = 0;
+        while (true) {
+            int tag = in.read();
+            if (tag < 0) {
+                return published;
+            }
+            if (tag == FlightRecorder.TOPIC) {
+                long index = Varints.read(in);
+                topics.put(index, EventBroker.topic(in.readUTF()));
+                continue;
+            }
+
+            long delta = Varints.read(in);
+            Topic topic = topics.get(Varints.read(in));
+            if (topic == null) {
+                throw new IOException("Trace uses a topic before it is defined");
+            }
+            traceMicros += delta;
+            if (clock != null) {
+                clock.advance(delta, TimeUnit.MICROSECONDS);
+            } else if (speed != AS_FAST_AS_POSSIBLE) {
+                long wait = (long) (traceMicros * 1000 / speed) - (System.nanoTime() - startNanos);
+                if (wait > 0) {
+                    TimeUnit.NANOSECONDS.sleep(wait);
+                }
+            }
+
+            switch (tag) {
+                case FlightRecorder.DOUBLE:
+                    broker.publishDouble(topic, in.readDouble(), this);
+                    break;
+                case FlightRecorder.LONG:
+                    broker.publishLong(topic, Varints.readSigned(in), this);
+                    break;
+                case FlightRecorder.NULL:
+                    broker.addEvent(topic, null, this);
+                    break;
+                case FlightRecorder.OBJECT:
+                    byte[] payload = new byte[(int) Varints.read(in)];
+                    in.readFully(payload);
+                    PayloadCodec codec = codecs.get(topic.getName());
+                    if (codec == null) {
+                        continue;
+                    }
+                    broker.addEvent(topic, codec.decode(new DataInputStream(new ByteArrayInputStream(payload))), this);
+                    break;
+                case FlightRecorder.OPAQUE:
+                    continue;
+                default:
+                    throw new IOException("Unknown record " + tag + " in trace");
+            }
+            published++;
+            if (clock != null) {
+                broker.pumpAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.eventbroker;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Clock that only moves when it is advanced, for simulations and reproducible benchmarks.
+ * Meant for brokers with a manual pump: advance the clock, then {@link EventBroker#pumpAll()} to release the events that became due.
+ * A broker with its own thread also accepts it, but then only notices the new time when it wakes up for the next event.
+ */
+public final class VirtualClock implements Clock {
+    private final AtomicLong now;
+
+    /**
+     * Creates a clock that starts at 0.
+     */
+    public VirtualClock() {
+        this(0);
+    }
+
+    /**
+     * @param startNanos Time the clock starts at.
+     */
+    public VirtualClock(long startNanos) {
+        now = new AtomicLong(startNanos);
+    }
+
+    @Override
+    public long nanoTime() {
+        return now.get();
+    }
+
+    /**
+     * Moves the clock forward. Safe to call from any thread.
+     *
+     * @param amount Amount of time, not negative.
+     * @param unit   Unit of the amount.
+     */
+    public void advance(long amount, TimeUnit unit) {
+        if (amount < 0) {
+            throw new IllegalArgumentException("A clock can not go back, got " + amount + " " + unit);
+        }
+        now.addAndGet(unit.toNanos(amount));
+    }
+}
@@ -15,10 +15,24 @@ package com.dp16.eventbroker;
 
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -424,4 +438,1263 @@ public class EventBrokerUnitTests {
         broker.removeEventListener(listener);
         assertEquals("Removing all types for a listener does not leave the broker empty", 0, broker.getAmountOfListeners());
     }
+
+    @Test
+    public void publishingMoreEventsThanQueueCapacity_deliversAllEvents() {
+        final String eventType = "queueCapacity";
+        final String echoType = "queueCapacityEcho";
+        final int amountEvents = EventBroker.QUEUE_CAPACITY * 3;
+        final AtomicInteger amountReceived = new AtomicInteger(0);
+        final AtomicInteger amountEchoesReceived = new AtomicInteger(0);
+        final EventPublisherClass echoPublisher = new EventPublisherClass();
+
+        // this listener publishes from inside handleEvent, so the broker thread itself fills the queue
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                amountReceived.incrementAndGet();
+                echoPublisher.publishEvent(echoType, message);
+            }
+        };
+        EventListener echoListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                amountEchoesReceived.incrementAndGet();
+            }
+        };
+        broker.addEventListener(eventType, listener);
+        broker.addEventListener(echoType, echoListener);
+        broker.start();
+
+        EventPublisherClass publisher = new EventPublisherClass();
+        for (int i = 0; i < amountEvents; i++) {
+            publisher.publishEvent(eventType, i);
+        }
+
+        // stop() rejects new events, so give the broker thread the time to publish its echoes first
+        long deadline = System.currentTimeMillis() + 5000;
+        while (amountEchoesReceived.get() < amountEvents && System.currentTimeMillis() < deadline) {
+            Thread.yield();
+        }
+        broker.stop();
+
+        assertEquals("Not all events were delivered when the queue was full", amountEvents, amountReceived.get());
+        assertEquals("Events published by the broker thread on a full queue were lost", amountEvents, amountEchoesReceived.get());
+    }
+
+    @Test(timeout = 5000)
+    public void publishingMoreEventsThanQueueCapacity_toBrokerThatIsNotRunning_keepsEveryEventInOrder() {
+        final Topic topic = EventBroker.topic("queueCapacityNotRunning");
+        final int capacity = 8;
+        final List<Object> received = new ArrayList<>();
+        EventBroker manual = EventBroker.builder().setManualPump(true).setQueueCapacity(capacity).setName("notRunning").build();
+        manual.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        });
+
+        // nothing drains the lane before start(), so a publisher that waits for a slot would hang here
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+        for (int i = 0; i < capacity * 3; i++) {
+            assertTrue(publisher.publishEvent(topic, i));
+        }
+        BrokerMetrics.TopicMetrics topicMetrics = null;
+        for (BrokerMetrics.TopicMetrics candidate : manual.getMetrics().getTopics()) {
+            if (candidate.getName().equals(topic.getName())) {
+                topicMetrics = candidate;
+            }
+        }
+        assertNotNull(topicMetrics);
+        assertEquals(capacity * 3, topicMetrics.getPublished());
+        assertEquals(0, topicMetrics.getDropped());
+        assertEquals(capacity * 3, manual.getMetrics().getQueueDepth());
+
+        manual.start();
+        assertEquals(capacity * 3, manual.pumpAll());
+        for (int i = 0; i < capacity * 3; i++) {
+            assertEquals(i, received.get(i));
+        }
+        manual.stop();
+
+        // neither after stop(), also not on the thread that pumped it: the events wait for the next start()
+        for (int i = 0; i < capacity * 3; i++) {
+            assertTrue(publisher.publishEvent(topic, i));
+        }
+        for (BrokerMetrics.TopicMetrics candidate : manual.getMetrics().getTopics()) {
+            if (candidate.getName().equals(topic.getName())) {
+                topicMetrics = candidate;
+            }
+        }
+        assertEquals(0, topicMetrics.getDropped());
+        assertEquals(capacity * 3, manual.getMetrics().getQueueDepth());
+    }
+
+    @Test
+    public void inlineListener_publishingOnAFullLane_keepsTheOrderOfEveryTopic() {
+        final Topic trigger = EventBroker.topic("republishTrigger");
+        final Topic reliable = EventBroker.topic("republishReliable");
+        final Topic conflated = EventBroker.topic("republishConflated").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        final List<Object> reliableReceived = new ArrayList<>();
+        final List<Object> conflatedReceived = new ArrayList<>();
+        final EventBroker manual = EventBroker.builder().setManualPump(true).setQueueCapacity(4).setName("republish").build();
+        final EventPublisherClass publisher = new EventPublisherClass(manual);
+        manual.addEventListener(trigger, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                // on the broker thread, the last two do not fit in the lane
+                for (int i = 0; i < 6; i++) {
+                    publisher.publishEvent(reliable, i);
+                }
+                publisher.publishEvent(conflated, "old");
+            }
+        });
+        manual.addEventListener(reliable, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                reliableReceived.add(message);
+                if (message.equals(0)) {
+                    // the lane has a free slot again, but older events of both topics are still waiting behind it
+                    publisher.publishEvent(reliable, 6);
+                    publisher.publishEvent(conflated, "new");
+                }
+            }
+        });
+        manual.addEventListener(conflated, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                conflatedReceived.add(message);
+            }
+        });
+
+        manual.start();
+        publisher.publishEvent(trigger, "go");
+        manual.pumpAll();
+        manual.stop();
+
+        assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4, 5, 6), reliableReceived);
+        // an older value is never delivered after a newer one
+        assertEquals(Arrays.<Object>asList("old", "new"), conflatedReceived);
+    }
+
+    @Test
+    public void topicAndStringOverloads_areInterchangeable() {
+        final String eventType = "topicInterchangeable";
+        final AtomicInteger messageReceived = new AtomicInteger(0);
+        Topic topic = EventBroker.topic(eventType);
+
+        assertSame("Interning the same name twice does not return the same topic", topic, EventBroker.topic(eventType));
+        assertNotSame("Different names share a topic", topic, EventBroker.topic(eventType + "Other"));
+        assertEquals("Topic name does not match event type", eventType, topic.getName());
+
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String type, Object message) {
+                assertEquals("Listener did not receive the topic name as event type", eventType, type);
+                messageReceived.incrementAndGet();
+            }
+        };
+
+        // subscribe with the topic, publish with both the topic and the name
+        broker.addEventListener(topic, listener);
+        broker.start();
+        broker.addEvent(topic, "message", new EventPublisherClass());
+        new EventPublisherClass().publishEvent(eventType, "message2");
+        broker.stop();
+        broker.removeEventListener(eventType, listener);
+
+        assertEquals("Events published with a topic or its name were not both received", 2, messageReceived.get());
+    }
+
+    @Test
+    public void listenerRemovingItselfDuringDispatch_otherListenersStillReceiveEvent() {
+        final String eventType1 = "removeDuringDispatch1";
+        final String eventType2 = "removeDuringDispatch2";
+        final AtomicInteger amountReceived = new AtomicInteger(0);
+
+        EventListener selfRemovingListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                assertEquals("Listener was not removed for all its types", 2, broker.removeEventListener(this));
+                amountReceived.incrementAndGet();
+            }
+        };
+        EventListener otherListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                amountReceived.incrementAndGet();
+            }
+        };
+        broker.addEventListener(eventType1, selfRemovingListener);
+        broker.addEventListener(eventType2, selfRemovingListener);
+        broker.addEventListener(eventType1, otherListener);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        publisher.publishEvent(eventType1, "message");
+        publisher.publishEvent(eventType1, "message2");
+        broker.stop();
+
+        // first event reaches both listeners, the second one only the listener that stayed registered
+        assertEquals("Removing a listener during dispatch disturbed the delivery", 3, amountReceived.get());
+    }
+
+    @Test
+    public void listenerWithExecutor_receivesEventsInOrderOnExecutor() throws Exception {
+        final Topic topic = EventBroker.topic("executorDelivery");
+        final int amountEvents = 1000;
+        final List<Integer> received = new ArrayList<>();
+        final AtomicBoolean wrongThread = new AtomicBoolean(false);
+        final CountDownLatch done = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return new Thread(runnable, "executorDeliveryThread");
+            }
+        });
+
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                if (!"executorDeliveryThread".equals(Thread.currentThread().getName())) {
+                    wrongThread.set(true);
+                }
+                // no synchronization needed when events for one listener never run concurrently
+                received.add((Integer) message);
+                if (received.size() == amountEvents) {
+                    done.countDown();
+                }
+            }
+        };
+        broker.addEventListener(topic, listener, executor);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        for (int i = 0; i < amountEvents; i++) {
+            publisher.publishEvent(topic, i);
+        }
+        broker.stop();
+
+        assertTrue("Not all events were delivered on the executor", done.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertFalse("handleEvent was not called on the executor of the listener", wrongThread.get());
+        for (int i = 0; i < amountEvents; i++) {
+            assertEquals("Events were not delivered in order on the executor", Integer.valueOf(i), received.get(i));
+        }
+    }
+
+    @Test
+    public void conflatedTopic_onlyDeliversNewestPendingEvent() throws Exception {
+        final Topic blocking = EventBroker.topic("conflationBlocking");
+        final Topic conflated = EventBroker.topic("conflationLatest").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Object> received = new ArrayList<>();
+
+        EventListener blocker = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        };
+        broker.addEventListener(blocking, blocker);
+        broker.addEventListener(conflated, listener);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+
+        // keep the broker thread busy so the conflated events pile up
+        publisher.publishEvent(blocking, null);
+        assertTrue("Blocking listener was not called", blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            publisher.publishEvent(conflated, i);
+        }
+        release.countDown();
+        broker.stop();
+
+        assertEquals(1, received.size());
+        assertEquals(99, received.get(0));
+    }
+
+    @Test(timeout = 5000)
+    public void conflatedAndBoundedTopics_onAFullLane_keepTheNewestEvent() {
+        final Topic conflated = EventBroker.topic("fullLaneConflated").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        final Topic bounded = EventBroker.topic("fullLaneBounded").setDeliveryPolicy(DeliveryPolicy.bounded(3));
+        final Topic reliable = EventBroker.topic("fullLaneReliable");
+        final int capacity = 8;
+        final List<Object> received = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        };
+
+        // the lane fills up before start(), the events that do not fit replace each other next to it
+        EventBroker manual = EventBroker.builder().setManualPump(true).setQueueCapacity(capacity).setName("fullLane").build();
+        manual.addEventListener(conflated, listener);
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+        for (int i = 0; i < 20; i++) {
+            publisher.publishEvent(conflated, i);
+        }
+        manual.start();
+        manual.pumpAll();
+        assertEquals(Arrays.<Object>asList(19), received);
+        BrokerMetrics.TopicMetrics topicMetrics = null;
+        for (BrokerMetrics.TopicMetrics candidate : manual.getMetrics().getTopics()) {
+            if (candidate.getName().equals(conflated.getName())) {
+                topicMetrics = candidate;
+            }
+        }
+        assertNotNull(topicMetrics);
+        assertEquals(20, topicMetrics.getPublished());
+        assertEquals(19, topicMetrics.getSuperseded());
+        assertEquals(0, topicMetrics.getDropped());
+        manual.stop();
+
+        // the oldest ones are skipped first
+        received.clear();
+        manual.addEventListener(bounded, listener);
+        for (int i = 0; i < 20; i++) {
+            publisher.publishEvent(bounded, i);
+        }
+        manual.start();
+        manual.pumpAll();
+        assertEquals(Arrays.<Object>asList(5, 6, 7, 19), received);
+        manual.stop();
+
+        // no event of the topic is queued to take the newest one along
+        received.clear();
+        manual.addEventListener(conflated, listener);
+        for (int i = 0; i < capacity; i++) {
+            publisher.publishEvent(reliable, i);
+        }
+        for (int i = 0; i < 10; i++) {
+            publisher.publishEvent(conflated, i);
+        }
+        manual.start();
+        manual.pumpAll();
+        assertEquals(Arrays.<Object>asList(9), received);
+        manual.stop();
+    }
+
+    @Test
+    public void throttledListenerWithReducer_receivesHeldValueWhenIntervalExpires() throws Exception {
+        final Topic topic = EventBroker.topic("sampleAndHold");
+        final List<Object> received = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(2);
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+                done.countDown();
+            }
+        };
+        broker.addEventListener(topic, listener, 200, Reducers.MEAN);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        publisher.publishEvent(topic, 1.0);
+        publisher.publishEvent(topic, 2.0);
+        publisher.publishEvent(topic, 4.0);
+
+        // the held mean arrives without another event being published
+        assertTrue("Held value was not delivered", done.await(1, TimeUnit.SECONDS));
+        broker.stop();
+        assertEquals(2, received.size());
+        assertEquals(1.0, received.get(0));
+        assertEquals(3.0, received.get(1));
+    }
+
+    @Test
+    public void realtimeTopic_overtakesNormalAndBulkEvents() throws Exception {
+        final Topic blocking = EventBroker.topic("priorityBlocking");
+        final Topic bulk = EventBroker.topic("priorityBulk").setPriority(Priority.BULK);
+        final Topic normal = EventBroker.topic("priorityNormal");
+        final Topic realtime = EventBroker.topic("priorityRealtime").setPriority(Priority.REALTIME);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> received = new ArrayList<>();
+
+        EventListener blocker = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(eventType);
+            }
+        };
+        broker.addEventListener(blocking, blocker);
+        broker.addEventListener(bulk, listener);
+        broker.addEventListener(normal, listener);
+        broker.addEventListener(realtime, listener);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+
+        // keep the broker thread busy so all lanes fill up
+        publisher.publishEvent(blocking, null);
+        assertTrue("Blocking listener was not called", blocked.await(5, TimeUnit.SECONDS));
+        publisher.publishEvent(bulk, null);
+        publisher.publishEvent(normal, null);
+        publisher.publishEvent(realtime, null);
+        release.countDown();
+        broker.stop();
+
+        assertEquals(Arrays.asList("priorityRealtime", "priorityNormal", "priorityBulk"), received);
+    }
+
+    @Test
+    public void request_isAnsweredByResponder_orFails() throws Exception {
+        final Topic answered = EventBroker.topic("requestAnswered");
+        final Topic unanswered = EventBroker.topic("requestUnanswered");
+        final Topic slow = EventBroker.topic("requestSlow");
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        broker.setResponder(answered, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) {
+                return (Integer) payload * 2;
+            }
+        }, executor);
+        broker.setResponder(slow, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return payload;
+            }
+        }, executor);
+        broker.start();
+
+        assertEquals(42, broker.request(answered, 21).get(1, TimeUnit.SECONDS));
+        assertRequestFails(broker.request(unanswered, null), IllegalStateException.class);
+        assertRequestFails(broker.request(slow, null, 50, null), TimeoutException.class);
+
+        release.countDown();
+        broker.stop();
+        executor.shutdown();
+    }
+
+    @Test
+    public void request_handedToAResponderThatNeverAnswers_failsWhenTheBrokerStops() throws Exception {
+        final Topic topic = EventBroker.topic("requestNeverAnswered");
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("neverAnswered").build();
+        manual.setResponder(topic, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return payload;
+            }
+        }, executor);
+        manual.start();
+        ResponseFuture future = manual.request(topic, null);
+        assertEquals(1, manual.pumpAll());
+
+        // the timeout timer is dropped without waiting for the deadline
+        manual.stop(1, TimeUnit.SECONDS, DrainMode.NONE);
+        assertTrue("Request is still pending after the broker stopped", future.isDone());
+        assertRequestFails(future, IllegalStateException.class);
+
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    public void completedRequest_isTakenOffTheTimerWheel() throws Exception {
+        final Topic inline = EventBroker.topic("requestTimerInline");
+        final Topic onExecutor = EventBroker.topic("requestTimerExecutor");
+        final CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("requestTimers").build();
+        manual.setResponder(inline, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) {
+                return payload;
+            }
+        }, null);
+        manual.setResponder(onExecutor, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return payload;
+            }
+        }, executor);
+        manual.start();
+
+        ResponseFuture answered = manual.request(inline, 1);
+        manual.pumpAll();
+        assertEquals(1, answered.get(1, TimeUnit.SECONDS));
+        assertFalse("Answered request still waits for its timeout", answered.isScheduled());
+
+        // answered on another thread, taken off when the broker thread runs next
+        ResponseFuture answeredLater = manual.request(onExecutor, 2);
+        manual.pumpAll();
+        assertTrue(answeredLater.isScheduled());
+        release.countDown();
+        assertEquals(2, answeredLater.get(1, TimeUnit.SECONDS));
+        manual.pumpAll();
+        assertFalse("Request answered on an executor still waits for its timeout", answeredLater.isScheduled());
+
+        ResponseFuture cancelled = manual.request(onExecutor, 3);
+        manual.pumpAll();
+        cancelled.cancel(false);
+        manual.pumpAll();
+        assertFalse("Cancelled request still waits for its timeout", cancelled.isScheduled());
+
+        manual.stop();
+        executor.shutdown();
+    }
+
+    private void assertRequestFails(ResponseFuture future, Class<? extends Throwable> expected) throws Exception {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Request did not fail");
+        } catch (ExecutionException e) {
+            assertTrue("Request failed with " + e.getCause(), expected.isInstance(e.getCause()));
+        }
+    }
+
+    @Test
+    public void stickyTopic_replaysLastValueToLateListener() throws Exception {
+        final Topic topic = EventBroker.topic("stickyTopic").setSticky(true);
+        final CountDownLatch early = new CountDownLatch(2);
+        final List<Object> received = new ArrayList<>();
+        final CountDownLatch replayed = new CountDownLatch(1);
+        broker.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                early.countDown();
+            }
+        });
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        publisher.publishEvent(topic, "old");
+        publisher.publishEvent(topic, "latest");
+        assertTrue("Events were not delivered", early.await(1, TimeUnit.SECONDS));
+
+        // registers after both events were processed, but still gets the latest one without a new event
+        broker.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+                replayed.countDown();
+            }
+        });
+        assertTrue("Last value was not replayed", replayed.await(1, TimeUnit.SECONDS));
+        broker.stop();
+        assertEquals(Arrays.<Object>asList("latest"), received);
+    }
+
+    @Test
+    public void primitiveEvents_reachPrimitiveListenersUnboxed_andLegacyListenersBoxed() throws Exception {
+        final Topic doubles = EventBroker.topic("primitiveDoubleTopic");
+        final Topic longs = EventBroker.topic("primitiveLongTopic").setBoxer(new PrimitiveBoxer() {
+            @Override
+            public Object box(long value) {
+                return "boxed " + value;
+            }
+        });
+        final CountDownLatch latch = new CountDownLatch(4);
+        final List<Object> primitive = new ArrayList<>();
+        final List<Object> legacy = new ArrayList<>();
+
+        class PrimitiveListener implements DoubleEventListener, LongEventListener {
+            @Override
+            public void handleDouble(String eventType, double value) {
+                primitive.add(value);
+                latch.countDown();
+            }
+
+            @Override
+            public void handleLong(String eventType, long value) {
+                primitive.add(value);
+                latch.countDown();
+            }
+
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                fail("Primitive event delivered boxed to a primitive listener");
+            }
+        }
+        PrimitiveListener primitiveListener = new PrimitiveListener();
+        EventListener legacyListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                legacy.add(message);
+                latch.countDown();
+            }
+        };
+        broker.addEventListener(doubles, primitiveListener);
+        broker.addEventListener(doubles, legacyListener);
+        broker.addEventListener(longs, primitiveListener);
+        broker.addEventListener(longs, legacyListener);
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        publisher.publishDouble(doubles, 2.5);
+        publisher.publishLong(longs, 42);
+        assertTrue("Primitive events were not delivered", latch.await(1, TimeUnit.SECONDS));
+        broker.stop();
+        assertEquals(Arrays.<Object>asList(2.5, 42L), primitive);
+        assertEquals(Arrays.<Object>asList(2.5, "boxed 42"), legacy);
+    }
+
+    @Test
+    public void metrics_showQueueDepthStalledListenerAndTopicCounters() throws Exception {
+        final Topic blocking = EventBroker.topic("metricsBlocking");
+        final Topic conflated = EventBroker.topic("metricsConflated").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        final CountDownLatch blocked = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        EventListener blocker = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                blocked.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        broker.addEventListener(blocking, blocker);
+        broker.addEventListener(conflated, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                delivered.countDown();
+            }
+        });
+        broker.start();
+        EventPublisherClass publisher = new EventPublisherClass();
+        publisher.publishEvent(blocking, null);
+        assertTrue("Blocking listener was not called", blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            publisher.publishEvent(conflated, i);
+        }
+
+        BrokerMetrics stalled = broker.getMetrics();
+        assertEquals(100, stalled.getQueueDepth(Priority.NORMAL));
+        assertEquals(2, stalled.getAmountOfListeners());
+        BrokerMetrics.ListenerMetrics slowest = stalled.getSlowestListener();
+        assertEquals(String.valueOf(blocker), slowest.getListener());
+        assertTrue("Stalled listener is not busy", slowest.getBusyNanos() > 0);
+        assertTrue(slowest.isInline());
+
+        release.countDown();
+        assertTrue("Conflated event was not delivered", delivered.await(5, TimeUnit.SECONDS));
+        BrokerMetrics.TopicMetrics topicMetrics = null;
+        for (BrokerMetrics.TopicMetrics candidate : broker.getMetrics().getTopics()) {
+            if (candidate.getName().equals(conflated.getName())) {
+                topicMetrics = candidate;
+            }
+        }
+        broker.stop();
+        assertNotNull(topicMetrics);
+        assertEquals(100, topicMetrics.getPublished());
+        assertEquals(99, topicMetrics.getSuperseded());
+        assertEquals(1, topicMetrics.getDispatched());
+        assertEquals(1, topicMetrics.getDispatchLatency().getCount());
+    }
+
+    @Test
+    public void topicMetrics_countOnlyEventsAsDispatched_notRequestsOrStickyReplays() throws Exception {
+        final Topic topic = EventBroker.topic("metricsOnlyEvents").setSticky(true);
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("metricsOnlyEvents").build();
+        final List<Object> received = new ArrayList<>();
+        manual.setResponder(topic, new Responder() {
+            @Override
+            public Object respond(String requestType, Object payload) {
+                return payload;
+            }
+        }, null);
+        manual.start();
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+
+        publisher.publishEvent(topic, "value");
+        manual.pumpAll();
+        // replays the sticky value to the new listener
+        manual.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        });
+        manual.pumpAll();
+        ResponseFuture future = manual.request(topic, 1);
+        manual.pumpAll();
+        assertEquals(1, future.get(1, TimeUnit.SECONDS));
+        manual.clearStickyValue(topic);
+        manual.pumpAll();
+
+        BrokerMetrics.TopicMetrics topicMetrics = null;
+        for (BrokerMetrics.TopicMetrics candidate : manual.getMetrics().getTopics()) {
+            if (candidate.getName().equals(topic.getName())) {
+                topicMetrics = candidate;
+            }
+        }
+        manual.stop();
+        assertEquals(Arrays.<Object>asList("value"), received);
+        assertNotNull(topicMetrics);
+        assertEquals(1, topicMetrics.getPublished());
+        assertEquals(1, topicMetrics.getDispatched());
+        assertEquals(1, topicMetrics.getDispatchLatency().getCount());
+        assertEquals(1, topicMetrics.getRequests());
+        assertEquals(0, topicMetrics.getDropped());
+    }
+
+    @Test
+    public void slowInlineListener_isQuarantinedOffTheBrokerThread() throws Exception {
+        final Topic slowTopic = EventBroker.topic("watchdogSlow");
+        final Topic fastTopic = EventBroker.topic("watchdogFast");
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch fastDelivered = new CountDownLatch(1);
+        final CountDownLatch slowDone = new CountDownLatch(2);
+        final AtomicInteger calls = new AtomicInteger();
+        EventListener slow = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                try {
+                    if (calls.getAndIncrement() == 0) {
+                        Thread.sleep(50);
+                    } else {
+                        // would block every other listener if it still ran on the broker thread
+                        release.await(5, TimeUnit.SECONDS);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                slowDone.countDown();
+            }
+        };
+        broker.addEventListener(slowTopic, slow);
+        broker.addEventListener(fastTopic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                fastDelivered.countDown();
+            }
+        });
+        broker.setHandlerBudget(20, true);
+        try {
+            broker.start();
+            EventPublisherClass publisher = new EventPublisherClass();
+            publisher.publishEvent(slowTopic, 1);
+            publisher.publishEvent(slowTopic, 2);
+            publisher.publishEvent(fastTopic, null);
+            assertTrue("Quarantined listener still blocks the broker thread", fastDelivered.await(2, TimeUnit.SECONDS));
+
+            BrokerMetrics.ListenerMetrics slowMetrics = null;
+            for (BrokerMetrics.ListenerMetrics candidate : broker.getMetrics().getListeners()) {
+                if (candidate.getListener().equals(String.valueOf(slow))) {
+                    slowMetrics = candidate;
+                }
+            }
+            assertNotNull(slowMetrics);
+            assertTrue(slowMetrics.isQuarantined());
+            assertFalse(slowMetrics.isInline());
+            assertEquals(1, slowMetrics.getOverruns());
+
+            release.countDown();
+            assertTrue("Quarantined listener did not get its event", slowDone.await(2, TimeUnit.SECONDS));
+            broker.stop();
+        } finally {
+            release.countDown();
+            broker.setHandlerBudget(0, false);
+        }
+    }
+
+    @Test
+    public void manualBrokerWithVirtualClock_isDrivenStepByStep() {
+        VirtualClock clock = new VirtualClock();
+        EventBroker manual = EventBroker.builder().setManualPump(true).setClock(clock).setName("manual").build();
+        final Topic topic = EventBroker.topic("manualPump");
+        final List<Object> received = new ArrayList<>();
+        final List<Object> receivedBySingleton = new ArrayList<>();
+        manual.addEventListener(topic, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        }, 100, Reducers.LAST);
+        EventListener singletonListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                receivedBySingleton.add(message);
+            }
+        };
+        broker.addEventListener(topic, singletonListener);
+        manual.start();
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+        publisher.publishEvent(topic, 1);
+        publisher.publishEvent(topic, 2);
+        publisher.publishEvent(topic, 3);
+        assertTrue("Nothing happens before the broker is pumped", received.isEmpty());
+
+        assertTrue(manual.pump());
+        assertEquals(Arrays.<Object>asList(1), received);
+        assertEquals(2, manual.pumpAll());
+        assertFalse(manual.pump());
+        // 2 and 3 are held until the interval has passed on the virtual clock
+        assertEquals(Arrays.<Object>asList(1), received);
+
+        clock.advance(99, TimeUnit.MILLISECONDS);
+        manual.pumpAll();
+        assertEquals(Arrays.<Object>asList(1), received);
+        clock.advance(1, TimeUnit.MILLISECONDS);
+        manual.pumpAll();
+        assertEquals(Arrays.<Object>asList(1, 3), received);
+
+        manual.stop();
+        broker.removeEventListener(topic, singletonListener);
+        assertTrue("Events leaked into the default broker", receivedBySingleton.isEmpty());
+    }
+
+    @Test
+    public void recordedTrace_isReplayedWithTheSameMessagesAndTiming() throws IOException {
+        final Topic text = EventBroker.topic("traceText");
+        final Topic speed = EventBroker.topic("traceSpeed");
+        final Topic steps = EventBroker.topic("traceSteps");
+        final Topic opaque = EventBroker.topic("traceOpaque");
+        PayloadCodec stringCodec = new PayloadCodec() {
+            @Override
+            public void encode(Object message, DataOutput out) throws IOException {
+                out.writeUTF((String) message);
+            }
+
+            @Override
+            public Object decode(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+
+        VirtualClock clock = new VirtualClock();
+        EventBroker recording = EventBroker.builder().setManualPump(true).setClock(clock).setName("recording").build();
+        ByteArrayOutputStream trace = new ByteArrayOutputStream();
+        FlightRecorder recorder = new FlightRecorder(trace).setCodec(text, stringCodec);
+        recording.setRecorder(recorder);
+        recording.start();
+        EventPublisherClass publisher = new EventPublisherClass(recording);
+        publisher.publishEvent(text, "start");
+        recording.pumpAll();
+        clock.advance(250, TimeUnit.MILLISECONDS);
+        publisher.publishDouble(speed, 3.5);
+        publisher.publishLong(steps, -42);
+        publisher.publishEvent(opaque, new Object());
+        recording.pumpAll();
+        clock.advance(2, TimeUnit.SECONDS);
+        publisher.publishEvent(text, null);
+        recording.pumpAll();
+        recording.stop();
+        recording.setRecorder(null);
+        recorder.close();
+        assertEquals(5, recorder.getRecorded());
+        assertEquals(0, recorder.getDropped());
+
+        final VirtualClock replayClock = new VirtualClock();
+        EventBroker replaying = EventBroker.builder().setManualPump(true).setClock(replayClock).setName("replaying").build();
+        final List<Object> received = new ArrayList<>();
+        final List<Long> receivedAt = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(eventType + "=" + message);
+                receivedAt.add(TimeUnit.NANOSECONDS.toMillis(replayClock.nanoTime()));
+            }
+        };
+        for (Topic topic : Arrays.asList(text, speed, steps, opaque)) {
+            replaying.addEventListener(topic, listener);
+        }
+        replaying.start();
+        int published = new TraceReplayer().setCodec(text, stringCodec)
+                .replay(new ByteArrayInputStream(trace.toByteArray()), replaying, replayClock);
+        replaying.stop();
+
+        assertEquals("The event without codec is skipped", 4, published);
+        assertEquals(Arrays.<Object>asList("traceText=start", "traceSpeed=3.5", "traceSteps=-42", "traceText=null"), received);
+        assertEquals(Arrays.asList(0L, 250L, 250L, 2250L), receivedAt);
+    }
+
+    @Test
+    public void patternListener_receivesMatchingTopics_includingTopicsCreatedLater() {
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("patterns").build();
+        final List<String> stored = new ArrayList<>();
+        final List<String> everything = new ArrayList<>();
+        EventListener storeListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                stored.add(eventType);
+            }
+        };
+        EventListener allListener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                everything.add(eventType);
+            }
+        };
+        EventBroker.topic("trie/store/existing");
+        assertEquals(1, manual.addPatternListener("trie/store/*", storeListener));
+        assertEquals(-1, manual.addPatternListener("trie/store/*", storeListener));
+        assertEquals(1, manual.addPatternListener("trie/#", allListener));
+        manual.start();
+
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+        publisher.publishEvent("trie/store/existing", "");
+        publisher.publishEvent("trie/store/createdLater", "");
+        publisher.publishEvent("trie/store/too/deep", "");
+        publisher.publishEvent("trie", "");
+        publisher.publishEvent("other/store/existing", "");
+        manual.pumpAll();
+        assertEquals(Arrays.asList("trie/store/existing", "trie/store/createdLater"), stored);
+        assertEquals(Arrays.asList("trie/store/existing", "trie/store/createdLater", "trie/store/too/deep", "trie"), everything);
+
+        assertEquals(1, manual.removePatternListener("trie/store/*", storeListener));
+        assertEquals(-1, manual.removePatternListener("trie/store/*", storeListener));
+        assertEquals(4, manual.removeEventListener(allListener));
+        publisher.publishEvent("trie/store/existing", "");
+        publisher.publishEvent("trie/store/afterRemoval", "");
+        manual.pumpAll();
+        assertEquals(2, stored.size());
+        assertEquals(4, everything.size());
+        assertEquals(0, manual.getAmountOfListeners());
+        manual.stop();
+    }
+
+    @Test
+    public void listenerRegisteredByPatternAndExplicitly_staysUntilBothAreRemoved() {
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("owners").build();
+        final List<String> received = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add((String) message);
+            }
+        };
+        Topic topic = EventBroker.topic("owners/store/run");
+        manual.start();
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+
+        // pattern first, then explicitly: removing the pattern keeps the explicit registration
+        assertEquals(1, manual.addPatternListener("owners/store/*", listener));
+        assertEquals(1, manual.addEventListener(topic, listener));
+        assertEquals(-1, manual.addEventListener(topic, listener));
+        assertEquals(1, manual.removePatternListener("owners/store/*", listener));
+        publisher.publishEvent(topic, "explicit");
+        manual.pumpAll();
+        assertEquals(1, manual.removeEventListener(topic, listener));
+        publisher.publishEvent(topic, "none");
+        manual.pumpAll();
+
+        // explicitly first, then by pattern: removing the explicit registration keeps the pattern
+        assertEquals(1, manual.addEventListener(topic, listener));
+        assertEquals(1, manual.addPatternListener("owners/store/*", listener));
+        assertEquals(1, manual.removeEventListener(topic, listener));
+        assertEquals(-1, manual.removeEventListener(topic, listener));
+        publisher.publishEvent(topic, "pattern");
+        manual.pumpAll();
+        assertEquals(1, manual.removePatternListener("owners/store/*", listener));
+        publisher.publishEvent(topic, "none");
+        manual.pumpAll();
+
+        assertEquals(Arrays.asList("explicit", "pattern"), received);
+        assertEquals(0, manual.getAmountOfListeners());
+        manual.stop();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void patternWithMultiLevelWildcardInTheMiddle_isRejected() {
+        broker.addPatternListener("trie/#/store", new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+            }
+        });
+    }
+
+    @Test
+    public void bridge_batchesAndCoalescesEvents_intoOneFrame_withoutEchoingThemBack() throws IOException {
+        Topic speed = EventBroker.topic("bridge/speed").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        Topic text = EventBroker.topic("bridge/text");
+        Topic steps = EventBroker.topic("bridge/steps");
+        Topic remoteText = EventBroker.topic("bridge/remote/text");
+        EventBroker phone = EventBroker.builder().setManualPump(true).setName("phone").build();
+        EventBroker watch = EventBroker.builder().setManualPump(true).setName("watch").build();
+        LoopbackTransport toWatch = new LoopbackTransport();
+        LoopbackTransport toPhone = new LoopbackTransport();
+        EventBridge phoneBridge = new EventBridge(phone, toWatch, 0)
+                .exportTopic(speed, null)
+                .exportTopic(text, PayloadCodecs.STRING)
+                .exportTopic(steps, null)
+                .importTopic("bridge/remote/text", text, PayloadCodecs.STRING);
+        EventBridge watchBridge = new EventBridge(watch, toPhone, 0)
+                .importTopic("bridge/speed", speed, null)
+                .importTopic("bridge/text", remoteText, PayloadCodecs.STRING)
+                .importTopic("bridge/steps", steps, null)
+                .exportTopic(remoteText, PayloadCodecs.STRING);
+        toWatch.connect(watchBridge);
+        toPhone.connect(phoneBridge);
+
+        final List<Object> received = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(eventType + "=" + message);
+            }
+        };
+        for (Topic topic : Arrays.asList(speed, remoteText, steps)) {
+            watch.addEventListener(topic, listener);
+        }
+        phone.start();
+        watch.start();
+        phoneBridge.start();
+        watchBridge.start();
+
+        EventPublisherClass publisher = new EventPublisherClass(phone);
+        // pumped one by one, so the broker does not conflate the speeds before the bridge sees them
+        publisher.publishDouble(speed, 1.5);
+        phone.pumpAll();
+        publisher.publishEvent(text, "left");
+        phone.pumpAll();
+        publisher.publishDouble(speed, 2.5);
+        phone.pumpAll();
+        publisher.publishEvent(text, "right");
+        phone.pumpAll();
+        publisher.publishLong(steps, 12);
+        phone.pumpAll();
+        publisher.publishDouble(speed, 3.5);
+        phone.pumpAll();
+        phoneBridge.flush();
+        watch.pumpAll();
+        watchBridge.flush();
+
+        assertEquals(Arrays.<Object>asList("bridge/speed=3.5", "bridge/remote/text=left", "bridge/remote/text=right", "bridge/steps=12"), received);
+        assertEquals(1, phoneBridge.getFramesSent());
+        assertEquals(4, phoneBridge.getEventsSent());
+        assertEquals(2, phoneBridge.getEventsCoalesced());
+        assertEquals(1, watchBridge.getFramesReceived());
+        // the watch exports the topic the texts arrived on, but the bridge published them itself so they are not sent back
+        assertEquals(0, watchBridge.getFramesSent());
+
+        phoneBridge.stop();
+        watchBridge.stop();
+        phone.stop();
+        watch.stop();
+    }
+
+    @Test
+    public void bridge_rejectsAFrameWhoseCountsDoNotFit_withoutAllocatingThem() throws IOException {
+        Topic text = EventBroker.topic("bridge/corrupt/text");
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("corrupt").build();
+        EventBridge bridge = new EventBridge(manual, new LoopbackTransport(), 0)
+                .importTopic("bridge/corrupt/text", text, PayloadCodecs.STRING);
+
+        List<byte[]> frames = new ArrayList<>();
+        // a billion topics, and a count that is negative as an int
+        frames.add(frame(1L << 30));
+        frames.add(frame(-1L));
+        // one topic, followed by a billion events
+        frames.add(frame(1, "bridge/corrupt/text", 1L << 30));
+        // one event with a payload of a gigabyte
+        frames.add(frame(1, "bridge/corrupt/text", 1, FlightRecorder.OBJECT, 0, 1L << 30));
+        for (byte[] frame : frames) {
+            try {
+                bridge.onFrame(frame);
+                fail("Corrupt frame of " + frame.length + " bytes was accepted");
+            } catch (IOException expected) {
+                // the frame does not hold what it claims
+            }
+        }
+        assertEquals(0, manual.getMetrics().getQueueDepth());
+    }
+
+    /**
+     * @param parts Longs are written as varints, Strings as UTF.
+     * @return An event frame with the given content after its header
+     */
+    private static byte[] frame(Object... parts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(EventBridge.MAGIC);
+        out.writeByte(EventBridge.VERSION);
+        for (Object part : parts) {
+            if (part instanceof String) {
+                out.writeUTF((String) part);
+            } else {
+                Varints.write(out, ((Number) part).longValue());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void timedStop_dropsWhatTheDrainModeExcludes_andReturnsWhileAListenerIsStuck() throws InterruptedException {
+        Topic reliable = EventBroker.topic("stop/reliable");
+        Topic location = EventBroker.topic("stop/location").setDeliveryPolicy(DeliveryPolicy.CONFLATE);
+        final List<Object> received = new ArrayList<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                received.add(message);
+            }
+        };
+
+        // stopping a broker that never started only unregisters its listeners
+        EventBroker manual = EventBroker.builder().setManualPump(true).setName("drained").build();
+        assertEquals(0, manual.stop(1, TimeUnit.SECONDS).getDelivered());
+
+        manual.addEventListener(reliable, listener);
+        manual.addEventListener(location, listener);
+        manual.start();
+        EventPublisherClass publisher = new EventPublisherClass(manual);
+        publisher.publishEvent(reliable, 1);
+        publisher.publishEvent(location, 2);
+        publisher.publishEvent(reliable, 3);
+        publisher.publishEvent(location, 4);
+        StopReport drained = manual.stop(1, TimeUnit.SECONDS, DrainMode.RELIABLE);
+        assertEquals(Arrays.<Object>asList(1, 3), received);
+        assertEquals(2, drained.getDelivered());
+        assertEquals(2, drained.getDropped());
+        assertEquals(0, drained.getPending());
+        assertFalse(drained.isTimedOut());
+
+        EventBroker threaded = EventBroker.builder().setName("stuck").build();
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger handled = new AtomicInteger();
+        threaded.addEventListener(reliable, new EventListener() {
+            @Override
+            public void handleEvent(String eventType, Object message) {
+                handled.incrementAndGet();
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        threaded.start();
+        publisher = new EventPublisherClass(threaded);
+        for (int i = 0; i < 3; i++) {
+            publisher.publishEvent(reliable, i);
+        }
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        StopReport stuck = threaded.stop(50, TimeUnit.MILLISECONDS);
+        assertFalse(stuck.isFinished());
+        assertTrue(stuck.isTimedOut());
+        assertTrue(stuck.getDurationNanos() < TimeUnit.SECONDS.toNanos(5));
+
+        // the broker thread drops the rest once the listener returns, the next start waits for it
+        release.countDown();
+        threaded.start();
+        assertEquals(1, handled.get());
+        assertEquals(0, threaded.getMetrics().getQueueDepth());
+        threaded.stop();
+    }
+
+    @Test
+    public void serialExecutors_runTheirTasksInOrder_onASmallSharedPool_andLeaksAreReported() throws InterruptedException {
+        ComponentScheduler scheduler = new ComponentScheduler(2);
+        final AtomicInteger overlaps = new AtomicInteger();
+        List<SerialExecutor> executors = new ArrayList<>();
+        final List<List<Integer>> executed = new ArrayList<>();
+        for (int component = 0; component < 20; component++) {
+            final SerialExecutor executor = scheduler.newSerialExecutor("component " + component);
+            final List<Integer> order = new ArrayList<>();
+            final AtomicBoolean busy = new AtomicBoolean();
+            for (int task = 0; task < 100; task++) {
+                final int number = task;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!busy.compareAndSet(false, true)) {
+                            overlaps.incrementAndGet();
+                        }
+                        order.add(number);
+                        busy.set(false);
+                    }
+                });
+            }
+            executors.add(executor);
+            executed.add(order);
+        }
+
+        // a periodic task is handed to the executor of its component and stops with it
+        final CountDownLatch ticks = new CountDownLatch(3);
+        executors.get(0).scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                ticks.countDown();
+            }
+        }, 1, 1, TimeUnit.MILLISECONDS);
+        assertTrue(ticks.await(5, TimeUnit.SECONDS));
+
+        for (SerialExecutor executor : executors) {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        for (List<Integer> order : executed) {
+            assertEquals(100, order.size());
+            for (int i = 0; i < order.size(); i++) {
+                assertEquals(i, (int) order.get(i));
+            }
+        }
+        assertEquals(0, overlaps.get());
+        assertTrue(scheduler.getLargestWorkerThreads() <= 2);
+        assertTrue(scheduler.getOpenExecutors().isEmpty());
+
+        final List<String> leaked = new ArrayList<>();
+        scheduler.setLeakListener(new ExecutorLeakListener() {
+            @Override
+            public void onLeak(String owner, Throwable allocationSite) {
+                leaked.add(owner);
+            }
+        });
+        scheduler.newSerialExecutor("forgotten");
+        assertEquals(Arrays.asList("forgotten"), scheduler.getOpenExecutors());
+        for (int attempt = 0; attempt < 50 && leaked.isEmpty(); attempt++) {
+            System.gc();
+            Thread.sleep(10);
+            scheduler.detectLeaks();
+        }
+        assertEquals(Arrays.asList("forgotten"), leaked);
+        scheduler.shutdown();
+    }
+
+    @Test
+    public void reopen_givesAStoppedComponentANewExecutor() throws InterruptedException {
+        ComponentScheduler scheduler = new ComponentScheduler(1);
+        SerialExecutor executor = scheduler.newSerialExecutor("component");
+        assertSame(executor, scheduler.reopen(executor));
+
+        executor.shutdown();
+        SerialExecutor reopened = scheduler.reopen(executor);
+        assertNotSame(executor, reopened);
+        assertEquals("component", reopened.getOwner());
+        final CountDownLatch ran = new CountDownLatch(1);
+        reopened.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran.countDown();
+            }
+        });
+        assertTrue(ran.await(5, TimeUnit.SECONDS));
+        reopened.shutdown();
+        assertTrue(scheduler.getOpenExecutors().isEmpty());
+        scheduler.shutdown();
+    }
 }
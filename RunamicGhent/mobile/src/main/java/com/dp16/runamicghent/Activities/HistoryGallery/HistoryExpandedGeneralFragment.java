@@ -77,7 +77,7 @@ public class HistoryExpandedGeneralFragment extends Fragment {
             public void onClick(View view) {
                 //Delete file
                 EventPublisherClass publisher = new EventPublisherClass();
-                EventBroker.getInstance().addEvent(Constants.EventTypes.DELETE_RUNNINGSTATISTICS, runningStatistics, publisher);
+                EventBroker.getInstance().addEvent(Constants.Topics.DELETE_RUNNINGSTATISTICS, runningStatistics, publisher);
 
                 //Return to previous fragment
                 getFragmentManager().popBackStackImmediate();
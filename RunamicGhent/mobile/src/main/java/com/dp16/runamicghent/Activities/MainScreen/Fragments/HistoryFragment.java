@@ -20,6 +20,7 @@ import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentTransaction;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -34,8 +35,8 @@ import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.R;
 import com.dp16.runamicghent.StatTracker.RunningStatistics;
 import com.dp16.eventbroker.EventBroker;
-import com.dp16.eventbroker.EventListener;
-import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.ResponseCallback;
+import com.dp16.eventbroker.ResponseFuture;
 import com.peekandpop.shalskar.peekandpop.PeekAndPop;
 
 import java.util.ArrayList;
@@ -47,13 +48,10 @@ import uk.co.deanwild.materialshowcaseview.ShowcaseConfig;
 /**
  * A simple {@link Fragment} subclass for the History tab.
  * <p>
- *     <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#LOAD_RUNNINGSTATISTICS}
- * </p>
- * <p>
- *     <b>Messages Consumed: </b> {@link com.dp16.runamicghent.Constants.EventTypes#LOADED_RUNNINGSTATISTICS}
+ *     <b>Requests: </b> {@link com.dp16.runamicghent.Constants.EventTypes#LOAD_RUNNINGSTATISTICS}
  * </p>
  */
-public class HistoryFragment extends Fragment implements EventListener, EventPublisher {
+public class HistoryFragment extends Fragment implements ResponseCallback {
 
     public static final String TAG = HistoryFragment.class.getSimpleName();
 
@@ -71,6 +69,9 @@ public class HistoryFragment extends Fragment implements EventListener, EventPub
 
     private ProgressBar progressBar;
 
+    // Pending request for the runningStatistics, cancelled when the view is destroyed before it is answered
+    private ResponseFuture historyRequest;
+
     View view;
 
     public HistoryFragment() {
@@ -106,13 +107,19 @@ public class HistoryFragment extends Fragment implements EventListener, EventPub
 
         progressBar = (ProgressBar) view.findViewById(R.id.progressBar);
 
-        // Send message to load runningStatistics from local memory and subscribe to receive the result
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOADED_RUNNINGSTATISTICS, this);
-        EventBroker.getInstance().addEvent(Constants.EventTypes.LOAD_RUNNINGSTATISTICS, null, this);
+        // Request the runningStatistics from local memory, the result is passed to onResponse
+        historyRequest = EventBroker.getInstance().request(Constants.Topics.LOAD_RUNNINGSTATISTICS, null, EventBroker.DEFAULT_REQUEST_TIMEOUT, this);
 
         return view;
     }
 
+    @Override
+    public void onDestroyView() {
+        // Nobody is left to show the runs to
+        historyRequest.cancel(false);
+        super.onDestroyView();
+    }
+
     @Override
     public void onStart() {
         super.onStart();
@@ -120,10 +127,7 @@ public class HistoryFragment extends Fragment implements EventListener, EventPub
     }
 
     @Override
-    public void handleEvent(String eventType, Object message) {
-        //We received the event and can now unsubscribe from the eventbroker again
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOADED_RUNNINGSTATISTICS, this);
-
+    public void onResponse(Object message) {
         //Cast the received message to an arraylist of runningStatistics
         ArrayList<RunningStatistics> runningStatisticsArrayList = (ArrayList<RunningStatistics>) message;
 
@@ -149,6 +153,19 @@ public class HistoryFragment extends Fragment implements EventListener, EventPub
         view.post(task);
     }
 
+    @Override
+    public void onFailure(Throwable cause) {
+        Log.e(TAG, "Could not load the run history", cause);
+
+        // Stop the progressbar, there is nothing to wait for anymore
+        view.post(new Runnable() {
+            @Override
+            public void run() {
+                progressBar.setVisibility(View.GONE);
+            }
+        });
+    }
+
     /**
      * This Runnable takes an ArrayList of Runningstatistics and updates the UI accordingly.
      * This means setting the adapter correctly and removing the progressbar.
@@ -148,7 +148,7 @@ public class StartFragment extends Fragment implements EventListener, OnMapReady
         mapView.onStart();
 
         // Add Event Listeners to the EventBroker
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.IN_CITY, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.IN_CITY, this);
 
         requestRunningMap = true;
 
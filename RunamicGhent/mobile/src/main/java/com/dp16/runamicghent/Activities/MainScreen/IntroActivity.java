@@ -105,7 +105,7 @@ public class IntroActivity extends AppCompatActivity implements EventListener{
 
         // Ask the persistence to perform a sync with the database
         EventPublisherClass eventPublisherClass = new EventPublisherClass();
-        EventBroker.getInstance().addEvent(Constants.EventTypes.SYNC_WITH_DATABASE, null, eventPublisherClass);
+        EventBroker.getInstance().addEvent(Constants.Topics.SYNC_WITH_DATABASE, null, eventPublisherClass);
 
         /*
           You can choose which fragment should be loaded upon starting the activity
@@ -366,8 +366,8 @@ public class IntroActivity extends AppCompatActivity implements EventListener{
         super.onStart();
 
         // Add Event Listeners to the EventBroker
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.RAW_LOCATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION_ACCURATE, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.RAW_LOCATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.LOCATION_ACCURATE, this);
     }
 
     @Override
@@ -108,7 +108,7 @@ public class MapRunningFragment extends Fragment implements OnMapReadyCallback,
 
         fab = (FloatingActionButton) view.findViewById(R.id.myLocationButton);
 
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.LOCATION, this);
 
         // Calculate (in px) the padding for the sides of the map
         sidePadding = Utils.dpToPx(getContext(), Constants.MapSettings.SIDE_MAP_PADDING);
@@ -526,8 +526,8 @@ public class MapRunningFragment extends Fragment implements OnMapReadyCallback,
         super.onDestroy();
         mapView.onDestroy();
 
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.TRACK, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.TRACK, this);
     }
 
     @Override
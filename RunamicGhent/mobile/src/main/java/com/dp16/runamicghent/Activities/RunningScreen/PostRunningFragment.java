@@ -145,7 +145,7 @@ public class PostRunningFragment extends Fragment implements EventPublisher {
                 RunRoute runRoute = ((RunningActivity) getActivity()).getRunRoute();
                 if (runRoute != null) {
                     RunRating runRating = new RunRating(runRoute.getTag(), ratingBar.getRating());
-                    EventBroker.getInstance().addEvent(Constants.EventTypes.RATING, runRating, PostRunningFragment.this);
+                    EventBroker.getInstance().addEvent(Constants.Topics.RATING, runRating, PostRunningFragment.this);
                 }
             }
         });
@@ -165,9 +165,9 @@ public class PreRunningFragment extends Fragment implements EventPublisher, Even
     @Override
     public void onViewCreated(View view, Bundle savedInstanceState) {
         // Add Event Listeners to the EventBroker
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.TRACK_LOADED, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.STATUS_CODE, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.LOCATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.TRACK_LOADED, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.STATUS_CODE, this);
     }
 
     @Override
@@ -177,7 +177,7 @@ public class PreRunningFragment extends Fragment implements EventPublisher, Even
         switch (eventType) {
             case Constants.EventTypes.LOCATION:
                 // Only listen for 1 location update and send a TRACK_REQUEST
-                EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
+                EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
                 location = (LatLng) message;
                 runnable = new Runnable() {
                     @Override
@@ -273,9 +273,9 @@ public class PreRunningFragment extends Fragment implements EventPublisher, Even
         super.onDestroy();
 
         // Unsubscribe from the eventBroker.
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.TRACK_LOADED, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.STATUS_CODE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.TRACK_LOADED, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.STATUS_CODE, this);
 
     }
 }
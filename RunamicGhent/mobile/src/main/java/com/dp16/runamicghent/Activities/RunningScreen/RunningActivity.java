@@ -17,19 +17,30 @@ package com.dp16.runamicghent.Activities.RunningScreen;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v4.app.FragmentActivity;
+import android.util.Log;
 import android.view.View;
 
 import com.dp16.runamicghent.AudioPlayer;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.DataProvider.LocationProvider;
 import com.dp16.runamicghent.DataProvider.MockUp.LocationProviderMock;
+import com.dp16.runamicghent.Debug.TraceCodecs;
 import com.dp16.runamicghent.GuiController.GuiController;
 import com.dp16.runamicghent.R;
 import com.dp16.runamicghent.RunData.RunRoute;
 import com.dp16.runamicghent.StatTracker.RouteEngine;
 import com.dp16.runamicghent.StatTracker.StatTracker;
+import com.dp16.eventbroker.ComponentScheduler;
+import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventPublisherClass;
-
+import com.dp16.eventbroker.FlightRecorder;
+import com.dp16.eventbroker.SerialExecutor;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Random;
@@ -69,6 +80,11 @@ public class RunningActivity extends FragmentActivity {
     private RouteEngine routeEngine;
     private AudioPlayer audioPlayer;
 
+    // records the events of the run when enabled in the debug settings, so it can be replayed later
+    private FlightRecorder flightRecorder;
+    // closes the recorder off the main thread, as that waits until the trace is written
+    private SerialExecutor recorderWorker;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -125,6 +141,7 @@ public class RunningActivity extends FragmentActivity {
         if (locationProviderMock != null) {
             locationProviderMock.stop();
         }
+        stopRecording();
     }
 
     /**
@@ -175,6 +192,10 @@ public class RunningActivity extends FragmentActivity {
      * 'add' instead of 'replace'.
      */
     public void switchToWhileRunningFragment(){
+        if (PreferenceManager.getDefaultSharedPreferences(getApplicationContext()).getBoolean(Constants.SettingTypes.PREF_KEY_DEBUG_FLIGHT_RECORDER, false)) {
+            startRecording();
+        }
+
         if(runningWithRoute){
             routeEngine.startRunning();
 
@@ -197,7 +218,7 @@ public class RunningActivity extends FragmentActivity {
         statTracker.startStatTracker();
 
         EventPublisherClass publisher = new EventPublisherClass();
-        publisher.publishEvent(Constants.EventTypes.START_WEAR, "");
+        publisher.publishEvent(Constants.Topics.START_WEAR, "");
 
         whileRunningFragment = new WhileRunningFragment();
 
@@ -233,6 +254,8 @@ public class RunningActivity extends FragmentActivity {
             routeEngine.stop();
         }
 
+        stopRecording();
+
         postRunningFragment = new PostRunningFragment();
 
         getSupportFragmentManager()
@@ -269,4 +292,62 @@ public class RunningActivity extends FragmentActivity {
         GuiController.getInstance().startActivity(this, Constants.ActivityTypes.MAINMENU, extras);
         GuiController.getInstance().exitActivity(this);
     }
-}
\ No newline at end of file
+
+    /**
+     * Records the events of the run to a trace in the private storage of the app, see {@link TraceCodecs}.
+     * Only the last {@link Constants.Storage#MAX_TRACES} traces are kept.
+     */
+    private void startRecording() {
+        File directory = new File(getFilesDir(), Constants.Storage.TRACESDIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Unable to create " + directory + ", run is not recorded");
+            return;
+        }
+        File trace = new File(directory, "run-" + System.currentTimeMillis() + ".ebtr");
+        try {
+            flightRecorder = TraceCodecs.newRecorder(new BufferedOutputStream(new FileOutputStream(trace)));
+            recorderWorker = ComponentScheduler.getInstance().newSerialExecutor("FlightRecorder");
+            EventBroker.getInstance().setRecorder(flightRecorder);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to record the run to " + trace, e);
+        }
+    }
+
+    private void stopRecording() {
+        if (flightRecorder == null) {
+            return;
+        }
+        EventBroker.getInstance().setRecorder(null);
+        final FlightRecorder recorder = flightRecorder;
+        final File directory = new File(getFilesDir(), Constants.Storage.TRACESDIRECTORY);
+        flightRecorder = null;
+        recorderWorker.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    recorder.close();
+                    Log.i(TAG, "Recorded " + recorder.getRecorded() + " events, dropped " + recorder.getDropped());
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to write the recorded run", e);
+                }
+                deleteOldTraces(directory);
+            }
+        });
+        recorderWorker.shutdown();
+        recorderWorker = null;
+    }
+
+    private static void deleteOldTraces(File directory) {
+        File[] traces = directory.listFiles();
+        if (traces == null || traces.length <= Constants.Storage.MAX_TRACES) {
+            return;
+        }
+        // named after the time they were started, so the oldest sort first
+        Arrays.sort(traces);
+        for (int i = 0; i < traces.length - Constants.Storage.MAX_TRACES; i++) {
+            if (!traces[i].delete()) {
+                Log.w(TAG, "Unable to delete " + traces[i]);
+            }
+        }
+    }
+}
@@ -168,7 +168,7 @@ public class WhileRunningFragment extends Fragment implements EventListener {
                             case DialogInterface.BUTTON_POSITIVE:
                                 // Notify wear
                                 EventPublisherClass publisher = new EventPublisherClass();
-                                publisher.publishEvent(Constants.EventTypes.STOP_WEAR, "");
+                                publisher.publishEvent(Constants.Topics.STOP_WEAR, "");
 
                                 // Proceed to PostRunningFragment.
                                 ((RunningActivity) getActivity()).switchToPostRunningFragment();
@@ -287,10 +287,10 @@ public class WhileRunningFragment extends Fragment implements EventListener {
          Moves from onCreate to here because events could start coming in before
          the TextViews are actually created and loaded.
           */
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.HEART_RESPONSE, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DISTANCE, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DURATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.SPEED, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.HEART_RESPONSE, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.DISTANCE, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.DURATION, this);
 
         this.dynamicButtons = (LinearLayout) view.findViewById(R.id.dynamic_buttons);
 
@@ -357,10 +357,10 @@ TimerTask
         }
 
         // Unsubscribe from the eventBroker
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.HEART_RESPONSE, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.DISTANCE, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.DURATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.SPEED, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.HEART_RESPONSE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.DISTANCE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.DURATION, this);
     }
 
     @Override
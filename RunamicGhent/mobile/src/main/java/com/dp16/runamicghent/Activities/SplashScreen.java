@@ -84,6 +84,12 @@ public class SplashScreen extends AppCompatActivity {
 
                 // Start the EventBroker! very important (Singleton)
                 EventBroker.getInstance().start();
+                // screens that do real work in handleEvent must not hold up navigation and audio events
+                EventBroker.getInstance().setHandlerBudget(50, true);
+                if (Constants.DEVELOP) {
+                    // log queue depths and slow listeners every minute
+                    EventBroker.getInstance().setMetricsDumpInterval(60000);
+                }
 
                 // Start the RouteProvider
                 RouteProvider routeProvider = new RouteProvider(getApplicationContext());
@@ -14,11 +14,11 @@
 package com.dp16.runamicghent.Activities;
 
 import android.content.Context;
-import android.location.Location;
 import android.util.DisplayMetrics;
 import android.util.Log;
 
 import com.dp16.runamicghent.Constants;
+import com.dp16.runamicghent.GeoMath;
 import com.google.android.gms.maps.model.LatLng;
 import com.mongodb.util.JSON;
 
@@ -159,7 +159,6 @@ public class Utils {
         private float DISCOUNT_FACTOR;
         private LatLng lastLocation;
         private Boolean first;
-        float[] distance = {0.0f};
 
 
         public BearingCalculator(){
@@ -174,8 +173,7 @@ public class Utils {
                 first = false;
             }
 
-            Location.distanceBetween(currentLocation.latitude, currentLocation.longitude, lastLocation.latitude, lastLocation.longitude, distance);
-            if (distance[0] > 8.0f){
+            if (GeoMath.distanceSquared(currentLocation, lastLocation) > 8.0 * 8.0){
                 float newBearing = (float) Utils.calculateBearing(lastLocation, currentLocation);
                 if (Math.abs(bearing - newBearing) > 180.0f) newBearing += 360.0f;
                 bearing = DISCOUNT_FACTOR * bearing + (1.0f - DISCOUNT_FACTOR) * newBearing;
@@ -84,14 +84,14 @@ public class AudioPlayer implements EventListener{
         TTSQueue = new AtomicInteger(0);
         mTts.setOnUtteranceProgressListener(new ttsUtteranceListener());
 
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.AUDIO, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.AUDIO, this);
     }
 
     /**
      * Stops the TextToSpeech component and unregisters from the EventBroker.
      */
     public void stop(){
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.AUDIO, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.AUDIO, this);
 
         if (mTts != null) {
             mTts.stop();
@@ -13,6 +13,15 @@
 
 package com.dp16.runamicghent;
 
+import com.dp16.eventbroker.DeliveryPolicy;
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.Priority;
+import com.dp16.eventbroker.PrimitiveBoxer;
+import com.dp16.eventbroker.Topic;
+import com.dp16.runamicghent.RunData.RunDistance;
+import com.dp16.runamicghent.RunData.RunDuration;
+import com.dp16.runamicghent.RunData.RunHeartRate;
+import com.dp16.runamicghent.RunData.RunSpeed;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.android.gms.maps.model.LatLngBounds;
 import com.mongodb.util.JSON;
@@ -65,6 +74,7 @@ public class Constants {
         public static final String PREF_KEY_DEBUG_LOCATION_MOCK = "pref_key_debug_location_mock";
         public static final String PREF_KEY_DEBUG_FAKE_LATLNG_LOCATIONPROVIDER = "pref_key_debug_fake_latlng_locationprovider";
         public static final String PREF_KEY_DEBUG_ROUTE_SMOOTHER = "pref_key_debug_route_smoother";
+        public static final String PREF_KEY_DEBUG_FLIGHT_RECORDER = "pref_key_debug_flight_recorder";
         public static final String PREF_KEY_ROUTING_PARK = "pref_key_dynamic_park";
         public static final String PREF_KEY_ROUTING_WATER = "pref_key_dynamic_water";
 
@@ -83,50 +93,50 @@ public class Constants {
 
     /**
      * Constants for all types of events that are processed by EventBroker.
+     * Names are hierarchical, with levels separated by '/', so related types can be subscribed to at once with {@link TopicPatterns}.
      */
     public class EventTypes {
-        public static final String LOCATION = "LOCATION";
-        public static final String LOCATION_ACCURATE = "LOCATION_ACCURATE";
-        public static final String RAW_LOCATION = "RAW_LOCATION";
-        public static final String SPEED = "SPEED";
-        public static final String TRACK = "TRACK";
-        public static final String TRACK_REQUEST = "TRACK_REQUEST";
-        public static final String TRACK_LOADED = "TRACK_LOADED";
-        public static final String RATING = "RATING";
-        public static final String DISTANCE = "DISTANCE";
-        public static final String DURATION = "DURATION";
-        public static final String IS_IN_CITY = "IS_IN_CITY";
-        public static final String NOT_IN_CITY = "NOT_IN_CITY";
-        public static final String STATUS_CODE = "STATUS_CODE";
-        public static final String IN_CITY = "IN_CITY";
+        public static final String LOCATION = "run/location";
+        public static final String LOCATION_ACCURATE = "run/location/accurate";
+        public static final String RAW_LOCATION = "run/location/raw";
+        public static final String SPEED = "run/stats/speed";
+        public static final String RUN_SAMPLE = "run/sample";
+        public static final String TRACK = "route/track";
+        public static final String TRACK_REQUEST = "route/request";
+        public static final String TRACK_LOADED = "route/loaded";
+        public static final String RATING = "route/rating";
+        public static final String DISTANCE = "run/stats/distance";
+        public static final String DURATION = "run/stats/duration";
+        public static final String IS_IN_CITY = "city/isincity";
+        public static final String NOT_IN_CITY = "city/notincity";
+        public static final String STATUS_CODE = "route/statuscode";
+        public static final String IN_CITY = "city/incity";
 
         // Dynamic routing
-        public static final String OFFROUTE = "OFFROUTE";
-        public static final String ABNORMAL_HEART_RATE = "ABNORMAL_HEART_RATE";
+        public static final String OFFROUTE = "route/offroute";
+        public static final String ABNORMAL_HEART_RATE = "run/heartrate/abnormal";
 
         //Storage
-        public static final String STORE_RUNNINGSTATISTICS = "STORE_RUNNINGSTATISTICS";
-        public static final String LOAD_RUNNINGSTATISTICS = "LOAD_RUNNINGSTATISTICS";
-        public static final String LOADED_RUNNINGSTATISTICS = "LOADED_RUNNINGSTATISTICS";
-        public static final String DELETE_RUNNINGSTATISTICS = "DELETE_RUNNINGSTATISTICS";
+        public static final String STORE_RUNNINGSTATISTICS = "persist/store/runningstatistics";
+        public static final String LOAD_RUNNINGSTATISTICS = "persist/load/runningstatistics";
+        public static final String DELETE_RUNNINGSTATISTICS = "persist/delete/runningstatistics";
 
-        public static final String STORE_AGGREGATESTATISTICS = "STORE_AGGREGATESTATISTICS";
-        public static final String LOAD_AGGREGATESTATISTICS = "LOAD_AGGREGATESTATISTICS";
-        public static final String LOADED_AGGREGATESTATISTICS = "LOADED_AGGREGATESTATISTICS";
-        public static final String DELETE_AGGREGATESTATISTICS = "DELETE_AGGREGATESTATISTICS";
+        public static final String STORE_AGGREGATESTATISTICS = "persist/store/aggregatestatistics";
+        public static final String LOAD_AGGREGATESTATISTICS = "persist/load/aggregatestatistics";
+        public static final String DELETE_AGGREGATESTATISTICS = "persist/delete/aggregatestatistics";
 
-        public static final String SYNC_WITH_DATABASE = "SYNC_WITH_DATABASE";
+        public static final String SYNC_WITH_DATABASE = "persist/sync";
 
         //Navigation
-        public static final String NAVIGATION_DIRECTION = "NAVIGATION_DIRECTION";
-        public static final String SPLIT_POINT = "SPLIT_POINT";
-        public static final String AUDIO = "AUDIO";
+        public static final String NAVIGATION_DIRECTION = "navigation/direction";
+        public static final String SPLIT_POINT = "navigation/splitpoint";
+        public static final String AUDIO = "navigation/audio";
 
         //android wear event types
-        public static final String HEART_RESPONSE = "HEART_RESPONSE";
-        public static final String START_WEAR = "START_WEAR";
-        public static final String STOP_WEAR = "STOP_WEAR";
-        public static final String PAUSE_WEAR = "PAUSE_WEAR";
+        public static final String HEART_RESPONSE = "run/heartrate";
+        public static final String START_WEAR = "wear/start";
+        public static final String STOP_WEAR = "wear/stop";
+        public static final String PAUSE_WEAR = "wear/pause";
 
         private EventTypes() {
             throw new IllegalAccessError(UTILITY_CLASS_ERROR);
@@ -134,6 +144,115 @@ public class Constants {
 
     }
 
+    /**
+     * Patterns for EventBroker.addPatternListener, each matching a group of {@link EventTypes}.
+     */
+    public class TopicPatterns {
+        // speed, distance and duration of the run
+        public static final String RUN_STATS = "run/stats/*";
+        // start, stop and pause of the wearable
+        public static final String WEAR = "wear/*";
+        public static final String PERSIST_STORE = "persist/store/*";
+        public static final String PERSIST_DELETE = "persist/delete/*";
+
+        private TopicPatterns() {
+            throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+        }
+    }
+
+    /**
+     * Pre-registered {@link Topic} handles for all {@link EventTypes}.
+     * Publishing or subscribing with these skips the event type lookup in the EventBroker.
+     * The String constants in {@link EventTypes} remain the names listeners receive in handleEvent.
+     * <p>
+     * Measurements where only the latest value matters are conflated, so a slow listener gets the newest value instead of a backlog.
+     * RAW_LOCATION stays reliable as the LocationPipeline sums the distance between consecutive fixes,
+     * and so does RUN_SAMPLE as the StatTracker records every sample in the track of the run.
+     * Persistence events are always delivered.
+     * </p>
+     * Navigation instructions are realtime so they are never queued behind storing, loading or synchronizing the run history,
+     * which is bulk work.
+     * <p>
+     * The location, whether it is accurate, whether the user is in the city and the duration of the run are sticky:
+     * a screen that subscribes gets the current value right away instead of waiting for the next update.
+     * </p>
+     * The speed, distance, duration and heart rate are published as primitives.
+     * Listeners that still implement only EventListener receive them boxed in the RunData class they always got.
+     */
+    public static class Topics {
+        // must be declared before the topics that use them
+        private static final PrimitiveBoxer SPEED_BOXER = new PrimitiveBoxer() {
+            @Override
+            public Object box(double value) {
+                return new RunSpeed(value);
+            }
+        };
+        private static final PrimitiveBoxer DISTANCE_BOXER = new PrimitiveBoxer() {
+            @Override
+            public Object box(long value) {
+                return new RunDistance((int) value);
+            }
+        };
+        private static final PrimitiveBoxer DURATION_BOXER = new PrimitiveBoxer() {
+            @Override
+            public Object box(long value) {
+                return new RunDuration((int) value);
+            }
+        };
+        private static final PrimitiveBoxer HEART_RATE_BOXER = new PrimitiveBoxer() {
+            @Override
+            public Object box(long value) {
+                return new RunHeartRate((int) value);
+            }
+        };
+
+        public static final Topic LOCATION = EventBroker.topic(EventTypes.LOCATION).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setSticky(true);
+        public static final Topic LOCATION_ACCURATE = EventBroker.topic(EventTypes.LOCATION_ACCURATE).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setSticky(true);
+        public static final Topic RAW_LOCATION = EventBroker.topic(EventTypes.RAW_LOCATION);
+        public static final Topic SPEED = EventBroker.topic(EventTypes.SPEED).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setBoxer(SPEED_BOXER);
+        public static final Topic RUN_SAMPLE = EventBroker.topic(EventTypes.RUN_SAMPLE).setDeliveryPolicy(DeliveryPolicy.RELIABLE);
+        public static final Topic TRACK = EventBroker.topic(EventTypes.TRACK);
+        public static final Topic TRACK_REQUEST = EventBroker.topic(EventTypes.TRACK_REQUEST);
+        public static final Topic TRACK_LOADED = EventBroker.topic(EventTypes.TRACK_LOADED);
+        public static final Topic RATING = EventBroker.topic(EventTypes.RATING);
+        public static final Topic DISTANCE = EventBroker.topic(EventTypes.DISTANCE).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setBoxer(DISTANCE_BOXER);
+        public static final Topic DURATION = EventBroker.topic(EventTypes.DURATION).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setSticky(true).setBoxer(DURATION_BOXER);
+        public static final Topic IS_IN_CITY = EventBroker.topic(EventTypes.IS_IN_CITY);
+        public static final Topic NOT_IN_CITY = EventBroker.topic(EventTypes.NOT_IN_CITY);
+        public static final Topic STATUS_CODE = EventBroker.topic(EventTypes.STATUS_CODE);
+        public static final Topic IN_CITY = EventBroker.topic(EventTypes.IN_CITY).setSticky(true);
+
+        // Dynamic routing
+        public static final Topic OFFROUTE = EventBroker.topic(EventTypes.OFFROUTE).setPriority(Priority.REALTIME);
+        public static final Topic ABNORMAL_HEART_RATE = EventBroker.topic(EventTypes.ABNORMAL_HEART_RATE);
+
+        //Storage
+        public static final Topic STORE_RUNNINGSTATISTICS = EventBroker.topic(EventTypes.STORE_RUNNINGSTATISTICS).setDeliveryPolicy(DeliveryPolicy.RELIABLE).setPriority(Priority.BULK);
+        public static final Topic LOAD_RUNNINGSTATISTICS = EventBroker.topic(EventTypes.LOAD_RUNNINGSTATISTICS).setPriority(Priority.BULK);
+        public static final Topic DELETE_RUNNINGSTATISTICS = EventBroker.topic(EventTypes.DELETE_RUNNINGSTATISTICS).setDeliveryPolicy(DeliveryPolicy.RELIABLE).setPriority(Priority.BULK);
+
+        public static final Topic STORE_AGGREGATESTATISTICS = EventBroker.topic(EventTypes.STORE_AGGREGATESTATISTICS).setDeliveryPolicy(DeliveryPolicy.RELIABLE).setPriority(Priority.BULK);
+        public static final Topic LOAD_AGGREGATESTATISTICS = EventBroker.topic(EventTypes.LOAD_AGGREGATESTATISTICS).setPriority(Priority.BULK);
+        public static final Topic DELETE_AGGREGATESTATISTICS = EventBroker.topic(EventTypes.DELETE_AGGREGATESTATISTICS).setDeliveryPolicy(DeliveryPolicy.RELIABLE).setPriority(Priority.BULK);
+
+        public static final Topic SYNC_WITH_DATABASE = EventBroker.topic(EventTypes.SYNC_WITH_DATABASE).setPriority(Priority.BULK);
+
+        //Navigation
+        public static final Topic NAVIGATION_DIRECTION = EventBroker.topic(EventTypes.NAVIGATION_DIRECTION).setPriority(Priority.REALTIME);
+        public static final Topic SPLIT_POINT = EventBroker.topic(EventTypes.SPLIT_POINT).setPriority(Priority.REALTIME);
+        public static final Topic AUDIO = EventBroker.topic(EventTypes.AUDIO).setPriority(Priority.REALTIME);
+
+        //android wear event types
+        public static final Topic HEART_RESPONSE = EventBroker.topic(EventTypes.HEART_RESPONSE).setDeliveryPolicy(DeliveryPolicy.CONFLATE).setBoxer(HEART_RATE_BOXER);
+        public static final Topic START_WEAR = EventBroker.topic(EventTypes.START_WEAR);
+        public static final Topic STOP_WEAR = EventBroker.topic(EventTypes.STOP_WEAR);
+        public static final Topic PAUSE_WEAR = EventBroker.topic(EventTypes.PAUSE_WEAR);
+
+        private Topics() {
+            throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+        }
+    }
+
     /**
      * Constants for communication with android wear device
      */
@@ -160,6 +279,11 @@ public class Constants {
         public static final String SPEED_UPDATE_MESSAGE_MOBILE = "/speedUpdate";
         public static final String DISTANCE_UPDATE_MESSAGE_MOBILE = "/distanceUpdate";
 
+        //both ways: a batch of events mirrored by the EventBridge
+        public static final String EVENT_FRAME = "/eventFrame";
+        //topics the wearable mirrors, under their name on the wearable
+        public static final String WEAR_HEART_RATE_TOPIC = "HEART_RESPONSE";
+
         private WearMessageTypes() {
             throw new IllegalAccessError(UTILITY_CLASS_ERROR);
         }
@@ -263,6 +387,9 @@ public class Constants {
         public static final String RUNNINGSTATISTICSDIRECTORY = "runningstatistics";
         public static final String RUNNINGSTATISTICSGHOSTDIRECTORY = "runningstatisticsghost";
         public static final String AGGREGATERUNNINGSTATISTICSDIRECTORY = "aggregaterunningstatistics";
+        public static final String TRACESDIRECTORY = "traces";
+        // the oldest traces are deleted when a run is recorded, so they do not fill the storage
+        public static final int MAX_TRACES = 5;
 
         public static final String RUNNINGSTATISTICSCOLLECTION = "runningStatistics";
         public static final String RUNNINGSTATISTICSGHOSTCOLLECTION = "runningStatisticsGhost";
@@ -25,11 +25,15 @@ import com.dp16.runamicghent.R;
 import com.dp16.runamicghent.RunData.RunAudio;
 import com.dp16.runamicghent.RunData.RunDistance;
 import com.dp16.runamicghent.RunData.RunDuration;
-import com.dp16.runamicghent.RunData.RunHeartRate;
 import com.dp16.runamicghent.RunData.RunSpeed;
+import com.dp16.eventbroker.BridgeTransport;
+import com.dp16.eventbroker.ComponentScheduler;
+import com.dp16.eventbroker.EventBridge;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.PayloadCodecs;
+import com.dp16.eventbroker.SerialExecutor;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -40,9 +44,8 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -70,8 +73,20 @@ public class AndroidWearProvider extends WearableListenerService implements Even
     private static volatile double currentSpeed = -1; //current speed for updating wearable
     private static volatile String currentDistanceRan = "0 m"; //current distance for updating wearable
 
+    /*
+     * Mirrors the speed, distance and duration to the wearable and publishes its heart rate, one frame per second.
+     * Static, as frames from the wearable arrive at the instance Android creates for the service.
+     */
+    private static final EventBridge bridge = new EventBridge(EventBroker.getInstance(), new BridgeTransport() {
+        @Override
+        public void send(byte[] frame) throws IOException {
+            AndroidWearProvider.send(Constants.WearMessageTypes.EVENT_FRAME, frame);
+        }
+    }, EventBridge.DEFAULT_FLUSH_INTERVAL)
+            .importTopic(Constants.WearMessageTypes.WEAR_HEART_RATE_TOPIC, Constants.Topics.HEART_RESPONSE, null);
+
     //worker thread for handling events for androidWearProvider
-    private ExecutorService worker;
+    private SerialExecutor worker;
 
     public AndroidWearProvider() {
         //default constructor is required for android manifest
@@ -81,14 +96,19 @@ public class AndroidWearProvider extends WearableListenerService implements Even
 
         this.activity = activity;
 
-        // Make worker thread
-        worker = Executors.newSingleThreadExecutor();
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("AndroidWearProvider");
 
         mGoogleApiClient = new GoogleApiClient.Builder(activity)
                 .addApi(Wearable.API)
                 .addConnectionCallbacks(this)
                 .addOnConnectionFailedListener(this)
                 .build();
+
+        // sent as the text the phone shows, the wearable displays it as is. The static bridge outlives the activity, so format with the application context
+        bridge.exportTopic(Constants.Topics.SPEED, WearCodecs.speedText(activity.getApplicationContext()));
+        bridge.exportTopic(Constants.Topics.DISTANCE, PayloadCodecs.STRING);
+        bridge.exportTopic(Constants.Topics.DURATION, WearCodecs.DURATION_MILLIS);
     }
 
     public static void setRunningState(boolean runningState) {
@@ -152,6 +172,16 @@ public class AndroidWearProvider extends WearableListenerService implements Even
      * @param key  value to be sent paired with the path
      */
     public void sendMessage(String path, String key) {
+        send(path, key.getBytes());
+    }
+
+    /**
+     * Sending raw data to the node.
+     *
+     * @param path message path
+     * @param data data to be sent paired with the path
+     */
+    private static void send(String path, byte[] data) {
 
         //if the node has not yet been found, wait for a second for the resolve node method
         //if after a second still no node has been found, no node will be found.
@@ -171,7 +201,7 @@ public class AndroidWearProvider extends WearableListenerService implements Even
         if (mNode != null && mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
             Log.d(TAG, "-- " + mGoogleApiClient.isConnected());
             Wearable.MessageApi.sendMessage(
-                    mGoogleApiClient, mNode.getId(), path, key.getBytes()).setResultCallback(
+                    mGoogleApiClient, mNode.getId(), path, data).setResultCallback(
 
                     new ResultCallback<MessageApi.SendMessageResult>() {
                         @Override
@@ -203,9 +233,17 @@ public class AndroidWearProvider extends WearableListenerService implements Even
         Log.d(TAG, "Received: " + event);
 
         switch (event) {
+            case Constants.WearMessageTypes.EVENT_FRAME:
+                try {
+                    bridge.onFrame(message);
+                } catch (IOException e) {
+                    Log.e(TAG, "Malformed event frame", e);
+                }
+                break;
             case Constants.WearMessageTypes.HEART_RATE_MESSAGE_WEAR:
-                Log.e(TAG, new String(message));
-                EventBroker.getInstance().addEvent(Constants.EventTypes.HEART_RESPONSE, new RunHeartRate(Integer.parseInt(new String(message))), this);
+                // wearables that do not mirror their heart rate through the bridge yet
+                Log.d(TAG, new String(message));
+                EventBroker.getInstance().publishLong(Constants.Topics.HEART_RESPONSE, Integer.parseInt(new String(message)), this);
                 break;
             case Constants.WearMessageTypes.REQUEST_STATE_MESSAGE_WEAR:
                 checkAndHandleState();
@@ -231,17 +269,90 @@ public class AndroidWearProvider extends WearableListenerService implements Even
     }
 
     /**
-     * submit a received event to a worker
+     * handle a received event. The EventBroker delivers the events on the worker thread.
      *
      * @param eventType String containing the type of the event
      * @param message   Object containing a value paired with the event if there is one, else an empty string
      */
     @Override
     public void handleEvent(String eventType, Object message) {
+        switch (eventType) {
+            case Constants.EventTypes.START_WEAR:
+                //tell the wearable the run has started
+                AndroidWearProvider.setRunningState(true);
+                sendMessage(Constants.WearMessageTypes.START_RUN_MOBILE, "");
+                break;
+            case Constants.EventTypes.STOP_WEAR:
+                //tell the wearable the run has stopped
+                sendMessage(Constants.WearMessageTypes.STOP_RUN_MOBILE, "");
+                AndroidWearProvider.setRunningState(false);
+                break;
+            case Constants.EventTypes.PAUSE_WEAR:
+                //tell the wearable the run has paused
+                sendMessage(Constants.WearMessageTypes.PAUSE_RUN_MOBILE, "");
+                AndroidWearProvider.setRunningState(false);
+                break;
+            /*case Constants.EventTypes.NAVIGATION_DIRECTION:
+                sendNavigationMessage((RunDirection) message);
+                break;*/
+            case Constants.EventTypes.AUDIO:
+                sendNavigationMessage((RunAudio) message);
+                break;
+            case Constants.EventTypes.DURATION:
+                //update the current time for when the wearable requests it
+                AndroidWearProvider.setDuration((RunDuration) message);
+                break;
+            case Constants.EventTypes.SPEED:
+                updateRunSpeed(message);
+                break;
+            case Constants.EventTypes.DISTANCE:
+                updateDistanceRan(message);
+                break;
+            default:
+                Log.e(TAG, "Event not recognized");
+                break;
+        }
+    }
 
-        Runnable task = new Worker(eventType, message);
-        worker.submit(task);
+    /**
+     * this class will notify the wearable of the direction the user has to take by extracting
+     * the direction from the message that was received in the event from the RouteEngine
+     *
+     * @param message RunDirection object containing a direction
+     */
+    private void sendNavigationMessage(RunAudio message) {
+        String start =  GuiController.getInstance().getContext().getString(R.string.audio_couple_meters).concat(GuiController.getInstance().getContext().getString(R.string.audio_turn));
+
+        if ((start.concat(GuiController.getInstance().getContext().getString(R.string.audio_left))).equals(message.getAudioString())) {
+            //tell the wearable to show navigation arrow left
+            sendMessage(Constants.WearMessageTypes.NAVIGATE_LEFT, "");
+        } else if ((start.concat(GuiController.getInstance().getContext().getString(R.string.audio_right))).equals(message.getAudioString())) {
+            //tell the wearable to show navigation arrow right
+            sendMessage(Constants.WearMessageTypes.NAVIGATE_RIGHT, "");
+        } else if ((GuiController.getInstance().getContext().getString(R.string.audio_please)).concat(GuiController.getInstance().getContext().getString(R.string.audio_uturn)).equals(message.getAudioString())) {
+            //tell the wearable to show navigation arrow right
+            sendMessage(Constants.WearMessageTypes.NAVIGATE_UTURN, "");
+        }
+    }
+
+    /**
+     * remember the current running speed. The bridge mirrors it to the wearable.
+     *
+     * @param message Object that can be cast to RunSpeed
+     */
+    private void updateRunSpeed(Object message) {
+        RunSpeed speed = (RunSpeed) message;
+        AndroidWearProvider.setCurrentSpeed(speed.getSpeed());
+    }
 
+    /**
+     * remember the current distance, for when the wearable requests the state. The bridge mirrors it to the wearable.
+     *
+     * @param message Object that can be cast to RunDistance
+     */
+    private void updateDistanceRan(Object message) {
+        RunDistance distance = (RunDistance) message;
+        AndroidWearProvider.setCurrentDistanceRan(distance.toString());
     }
 
     /**
@@ -271,13 +382,20 @@ public class AndroidWearProvider extends WearableListenerService implements Even
         //make sure the latch will wait for connection with the node
         AndroidWearProvider.resetLatch();
         connectApi();
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.START_WEAR, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.STOP_WEAR, this);
-       // EventBroker.getInstance().addEventListener(Constants.EventTypes.NAVIGATION_DIRECTION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.AUDIO, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DURATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DISTANCE, this);
+        addListeners();
+        bridge.start();
+    }
+
+    /**
+     * Listens to the start, stop and pause of the wearable, the audio instructions and the stats of the run.
+     */
+    private void addListeners() {
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        EventBroker.getInstance().addPatternListener(Constants.TopicPatterns.WEAR, this, worker);
+        //EventBroker.getInstance().addEventListener(Constants.EventTypes.NAVIGATION_DIRECTION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.AUDIO, this, worker);
+        EventBroker.getInstance().addPatternListener(Constants.TopicPatterns.RUN_STATS, this, worker);
     }
 
     /**
@@ -295,6 +413,7 @@ public class AndroidWearProvider extends WearableListenerService implements Even
         AndroidWearProvider.setRunningState(false);
         sendMessage(Constants.WearMessageTypes.PAUSE_RUN_MOBILE, "");
         EventBroker.getInstance().removeEventListener(this);
+        bridge.stop();
     }
 
     /**
@@ -309,6 +428,8 @@ public class AndroidWearProvider extends WearableListenerService implements Even
         sendMessage(Constants.WearMessageTypes.STOP_RUN_MOBILE, "");
         AndroidWearProvider.resetStaticValues();
         EventBroker.getInstance().removeEventListener(this);
+        bridge.stop();
+        worker.shutdown();
         disconnectApi();
     }
 
@@ -327,121 +448,12 @@ public class AndroidWearProvider extends WearableListenerService implements Even
      */
     @Override
     public void resume() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.START_WEAR, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.STOP_WEAR, this);
-        //EventBroker.getInstance().addEventListener(Constants.EventTypes.NAVIGATION_DIRECTION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.AUDIO, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DURATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DISTANCE, this);
+        addListeners();
+        bridge.start();
 
         AndroidWearProvider.setRunningState(true);
         sendMessage(Constants.WearMessageTypes.START_RUN_MOBILE, "");
         sendMessage(Constants.WearMessageTypes.TIME_UPDATE_MESSAGE_MOBILE, Integer.toString(duration.getSecondsPassed()));
         sendMessage(Constants.WearMessageTypes.DISTANCE_UPDATE_MESSAGE_MOBILE, currentDistanceRan);
     }
-
-    /**
-     * The worker class handling events for the wearable in a separate thread
-     */
-    private class Worker implements Runnable, EventPublisher {
-        String eventType;
-        Object message;
-
-        /**
-         * add an event to the worker
-         *
-         * @param eventType String with type of event
-         * @param message   Object containing data paired with the event
-         */
-        public Worker(String eventType, Object message) {
-            this.eventType = eventType;
-            this.message = message;
-        }
-
-        /**
-         * handle events submitted to the worker
-         */
-        @Override
-        public void run() {
-            switch (eventType) {
-                case Constants.EventTypes.START_WEAR:
-                    //tell the wearable the run has started
-                    AndroidWearProvider.setRunningState(true);
-                    sendMessage(Constants.WearMessageTypes.START_RUN_MOBILE, "");
-                    break;
-                case Constants.EventTypes.STOP_WEAR:
-                    //tell the wearable the run has stopped
-                    sendMessage(Constants.WearMessageTypes.STOP_RUN_MOBILE, "");
-                    AndroidWearProvider.setRunningState(false);
-                    break;
-                case Constants.EventTypes.PAUSE_WEAR:
-                    //tell the wearable the run has paused
-                    sendMessage(Constants.WearMessageTypes.PAUSE_RUN_MOBILE, "");
-                    AndroidWearProvider.setRunningState(false);
-                    break;
-                /*case Constants.EventTypes.NAVIGATION_DIRECTION:
-                    sendNavigationMessage((RunDirection) message);
-                    break;*/
-                case Constants.EventTypes.AUDIO:
-                    sendNavigationMessage((RunAudio) message);
-                    break;
-                case Constants.EventTypes.DURATION:
-                    //update the current time for when the wearable requests it
-                    AndroidWearProvider.setDuration((RunDuration) message);
-                    break;
-                case Constants.EventTypes.SPEED:
-                    updateRunSpeed(message);
-                    break;
-                case Constants.EventTypes.DISTANCE:
-                    updateDistanceRan(message);
-                    break;
-                default:
-                    Log.e(TAG, "Event not recognized");
-                    break;
-            }
-        }
-
-        /**
-         * this class will notify the wearable of the direction the user has to take by extracting
-         * the direction from the message that was received in the event from the RouteEngine
-         *
-         * @param message RunDirection object containing a direction
-         */
-        private void sendNavigationMessage(RunAudio message) {
-            String start =  GuiController.getInstance().getContext().getString(R.string.audio_couple_meters).concat(GuiController.getInstance().getContext().getString(R.string.audio_turn));
-
-            if ((start.concat(GuiController.getInstance().getContext().getString(R.string.audio_left))).equals(message.getAudioString())) {
-                //tell the wearable to show navigation arrow left
-                sendMessage(Constants.WearMessageTypes.NAVIGATE_LEFT, "");
-            } else if ((start.concat(GuiController.getInstance().getContext().getString(R.string.audio_right))).equals(message.getAudioString())) {
-                //tell the wearable to show navigation arrow right
-                sendMessage(Constants.WearMessageTypes.NAVIGATE_RIGHT, "");
-            } else if ((GuiController.getInstance().getContext().getString(R.string.audio_please)).concat(GuiController.getInstance().getContext().getString(R.string.audio_uturn)).equals(message.getAudioString())) {
-                //tell the wearable to show navigation arrow right
-                sendMessage(Constants.WearMessageTypes.NAVIGATE_UTURN, "");
-            }
-        }
-
-        /**
-         * this method will inform the wearable of the current running speed if this speed differs
-         * from the last update by at least 0.5
-         *
-         * @param message Object that can be cast to RunSpeed
-         */
-        private void updateRunSpeed(Object message) {
-            RunSpeed speed = (RunSpeed) message;
-            if (Math.abs(speed.getSpeed() - currentSpeed) > 0.5) {
-                AndroidWearProvider.setCurrentSpeed(speed.getSpeed());
-                sendMessage(Constants.WearMessageTypes.SPEED_UPDATE_MESSAGE_MOBILE, speed.toString(activity));
-            }
-        }
-
-        private void updateDistanceRan(Object message) {
-            RunDistance distance = (RunDistance) message;
-            AndroidWearProvider.setCurrentDistanceRan(distance.toString());
-            sendMessage(Constants.WearMessageTypes.DISTANCE_UPDATE_MESSAGE_MOBILE, distance.toString());
-        }
-
-    }
 }
@@ -78,12 +78,12 @@ public class InCityChecker implements DataProvider, EventPublisher, EventListene
 
     @Override
     public void start() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION, this, this.listenerInterval);
+        EventBroker.getInstance().addEventListener(Constants.Topics.LOCATION, this, this.listenerInterval);
     }
 
     @Override
     public void stop() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
     }
 
     @Override
@@ -127,7 +127,7 @@ public class InCityChecker implements DataProvider, EventPublisher, EventListene
         Log.d(this.tag, location.toString());
         Log.d(this.tag, this.box.toString());
 
-        EventBroker.getInstance().addEvent(Constants.EventTypes.IN_CITY, this.box.contains(location), this);
+        EventBroker.getInstance().addEvent(Constants.Topics.IN_CITY, this.box.contains(location), this);
     }
 
     /**
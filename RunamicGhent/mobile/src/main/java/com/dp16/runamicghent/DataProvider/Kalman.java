@@ -11,85 +11,68 @@
  * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
  */
 
+
 package com.dp16.runamicghent.DataProvider;
 
 import android.location.Location;
 
+import com.dp16.runamicghent.GeoMath;
 import com.google.android.gms.maps.model.LatLng;
 
-import org.apache.commons.math3.filter.DefaultMeasurementModel;
-import org.apache.commons.math3.filter.DefaultProcessModel;
-import org.apache.commons.math3.filter.KalmanFilter;
-import org.apache.commons.math3.filter.MeasurementModel;
-import org.apache.commons.math3.filter.ProcessModel;
-import org.apache.commons.math3.linear.Array2DRowRealMatrix;
-import org.apache.commons.math3.linear.ArrayRealVector;
-import org.apache.commons.math3.linear.RealMatrix;
-import org.apache.commons.math3.linear.RealVector;
-
 
 /**
  * This class is used to smooth the location updates that are received from the Google FusionLocationProvider.
- * It uses the Apache implementation of a Kalman Filter, see {@link org.apache.commons.math3.filter.KalmanFilter}.
+ * It is a constant velocity Kalman filter with the state (east, north, east velocity, north velocity).
+ * <p>
+ * The filter works in meters, in a {@link GeoMath.LocalFrame} around the first location, so the accuracy of a location can be used
+ * as measurement noise directly. The time between two locations is taken from their timestamps.
+ * Both axes have the same model and the same noise, so their covariance matrices are always equal and only one is kept.
+ * This makes an update a handful of multiplications on primitive fields, after the first location no objects are allocated.
+ * </p>
  * Created by Simon on 28/03/17.
  */
 public class Kalman {
+    // standard deviation of the acceleration of a runner, in m/s^2
+    private static final double ACCELERATION_NOISE = 0.5;
+    // variance of the velocity before the second location, in (m/s)^2
+    private static final double INITIAL_VELOCITY_VARIANCE = 25.0;
+    // used when a location does not have an accuracy, in meters
+    private static final double DEFAULT_ACCURACY = 10.0;
 
     private boolean isInitialised;
 
-    private RealMatrix a;
-    private RealVector x;
-    private RealMatrix r;
-    private KalmanFilter filter;
+    // projection around the first location
+    private GeoMath.LocalFrame frame;
+    private long previousTime;
+
+    // state, in meters and meters per second
+    private double east;
+    private double north;
+    private double velocityEast;
+    private double velocityNorth;
+
+    // covariance of (position, velocity) along one axis
+    private double positionVariance;
+    private double covariance;
+    private double velocityVariance;
 
 
     public Kalman() {
         this.isInitialised = false;
-        double dt = 1.0d;
-
-        // State transition matrix
-        a = new Array2DRowRealMatrix(new double[][]{
-                {1d, 0d, dt, 0d},
-                {0d, 1d, 0d, dt},
-                {0d, 0d, 1d, 0d},
-                {0d, 0d, 0d, 1d}
-        });
-
-        // control input matrix
-        RealMatrix b = new Array2DRowRealMatrix(new double[][]{
-                {Math.pow(dt, 2d) / 2},
-                {Math.pow(dt, 2d) / 2},
-                {dt},
-                {dt}
-        });
-
-        // Measurement matrix
-        RealMatrix h = new Array2DRowRealMatrix(new double[][]{
-                {1d, 0d, 0d, 0d},
-                {0d, 1d, 0d, 0d}
-        });
-
-        // Noise covariance matrix
-        RealMatrix q = new Array2DRowRealMatrix(new double[][]{
-                {Math.pow(dt, 4d) / 4d, 0d, Math.pow(dt, 3d) / 2d, 0d},
-                {0d, Math.pow(dt, 4d) / 4d, 0d, Math.pow(dt, 3d) / 2d},
-                {Math.pow(dt, 3d) / 2d, 0d, Math.pow(dt, 2d), 0d},
-                {0d, Math.pow(dt, 3d) / 2d, 0d, Math.pow(dt, 2d)}
-        });
-
-        double measurementNoise = 10d;
-        r = new Array2DRowRealMatrix(new double[][]{
-                {Math.pow(measurementNoise, 2d), 0d},
-                {0d, Math.pow(measurementNoise, 2d)}
-        });
-
-        //initialize to reading position and speeds?
-        x = new ArrayRealVector(new double[]{51.0127, 3.708612, 0.0, 0.0});
-
-        ProcessModel pm = new DefaultProcessModel(a, b, q, x, null);
-        MeasurementModel mm = new DefaultMeasurementModel(h, r);
-        filter = new KalmanFilter(pm, mm);
+    }
+
+    /**
+     * Forgets the previous locations, the next location becomes the new origin.
+     */
+    public void reset() {
+        this.isInitialised = false;
+    }
 
+    /**
+     * @return true if the filter has received a location since it was created or reset
+     */
+    public boolean isInitialised() {
+        return isInitialised;
     }
 
     /**
@@ -101,33 +84,120 @@ public class Kalman {
      * @return {@link LatLng} containing the estimation we made.
      */
     public LatLng estimatePosition(Location position) {
+        update(position);
+        return new LatLng(getLatitude(), getLongitude());
+    }
+
+    /**
+     * Same as {@link #estimatePosition(Location)}, without creating a LatLng.
+     * The estimate is read with {@link #getLatitude()} and {@link #getLongitude()}.
+     *
+     * @param position {@link android.location.Location} which contains location information.
+     */
+    public void update(Location position) {
+        double accuracy = position.hasAccuracy() && position.getAccuracy() > 0 ? position.getAccuracy() : DEFAULT_ACCURACY;
+        double measurementNoise = accuracy * accuracy;
+
         if (!this.isInitialised) {
-            x.setEntry(0, position.getLatitude());
-            x.setEntry(1, position.getLongitude());
+            frame = new GeoMath.LocalFrame(position.getLatitude(), position.getLongitude());
+            previousTime = position.getTime();
+            east = 0.0;
+            north = 0.0;
+            velocityEast = 0.0;
+            velocityNorth = 0.0;
+            positionVariance = measurementNoise;
+            covariance = 0.0;
+            velocityVariance = INITIAL_VELOCITY_VARIANCE;
             this.isInitialised = true;
+            return;
         }
 
-        filter.predict();
+        // a location without a newer timestamp is treated as a second measurement at the same time
+        double dt = Math.max(0L, position.getTime() - previousTime) / 1000.0;
+        previousTime = Math.max(previousTime, position.getTime());
+
+        // predict: x = F x, P = F P F' + Q
+        east += velocityEast * dt;
+        north += velocityNorth * dt;
+        double dt2 = dt * dt;
+        double q = ACCELERATION_NOISE * ACCELERATION_NOISE;
+        positionVariance += 2.0 * dt * covariance + dt2 * velocityVariance + q * dt2 * dt2 / 4.0;
+        covariance += dt * velocityVariance + q * dt2 * dt / 2.0;
+        velocityVariance += q * dt2;
+
+        // correct with the measured position
+        double innovationVariance = positionVariance + measurementNoise;
+        double positionGain = positionVariance / innovationVariance;
+        double velocityGain = covariance / innovationVariance;
+        double errorEast = frame.east(position.getLongitude()) - east;
+        double errorNorth = frame.north(position.getLatitude()) - north;
+        east += positionGain * errorEast;
+        north += positionGain * errorNorth;
+        velocityEast += velocityGain * errorEast;
+        velocityNorth += velocityGain * errorNorth;
+
+        velocityVariance -= velocityGain * covariance;
+        covariance *= 1.0 - positionGain;
+        positionVariance *= 1.0 - positionGain;
+    }
 
-        // set noise
-        r.setEntry(0, 0, Math.pow(position.getAccuracy(), 2d));
-        r.setEntry(1, 1, Math.pow(position.getAccuracy(), 2d));
+    /**
+     * Distance between a location and the last estimate, in the projection of the filter. Does not update the filter.
+     *
+     * @return Distance in meters
+     */
+    double distanceTo(Location position) {
+        double errorEast = frame.east(position.getLongitude()) - east;
+        double errorNorth = frame.north(position.getLatitude()) - north;
+        return Math.sqrt(errorEast * errorEast + errorNorth * errorNorth);
+    }
 
-        // x = a*x (state prediction)
-        x = new ArrayRealVector(new double[]{position.getLatitude(), position.getLatitude(), position.getSpeed(), position.getSpeed()});
-        x = a.operate(x);
+    /**
+     * @return Time of the last location, in milliseconds
+     */
+    public long getTime() {
+        return previousTime;
+    }
 
-        // The measurement we got as an argument. (position X and Y)
-        RealVector z = new ArrayRealVector(new double[]{position.getLatitude(), position.getLongitude()});
+    /**
+     * @return Meters east of the first location
+     */
+    public double getEast() {
+        return east;
+    }
+
+    /**
+     * @return Meters north of the first location
+     */
+    public double getNorth() {
+        return north;
+    }
 
-        //correct the state estimate
-        filter.correct(z);
+    /**
+     * @return Latitude of the last estimate
+     */
+    public double getLatitude() {
+        return frame.latitude(north);
+    }
 
-        // get the correct state - the position
-        double pX = filter.getStateEstimation()[0];
-        double pY = filter.getStateEstimation()[1];
+    /**
+     * @return Longitude of the last estimate
+     */
+    public double getLongitude() {
+        return frame.longitude(east);
+    }
 
-        return new LatLng(pX, pY);
+    /**
+     * @return Estimated speed in meters per second
+     */
+    public double getSpeed() {
+        return Math.sqrt(velocityEast * velocityEast + velocityNorth * velocityNorth);
     }
 
+    /**
+     * @return Standard deviation of the estimated position in meters, along each axis
+     */
+    public double getPositionError() {
+        return Math.sqrt(positionVariance);
+    }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.runamicghent.DataProvider;
+
+import android.location.Location;
+
+import com.dp16.eventbroker.ComponentScheduler;
+import com.dp16.eventbroker.EventBroker;
+import com.dp16.eventbroker.EventListener;
+import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.SerialExecutor;
+import com.dp16.runamicghent.Constants;
+import com.dp16.runamicghent.RunData.RunSample;
+import com.google.android.gms.maps.model.LatLng;
+
+
+/**
+ * Turns the raw location fixes of a run into {@link RunSample}s, in a single pass per fix:
+ * <ol>
+ * <li>outlier gating: fixes that are too inaccurate, out of order, or imply an impossible running speed are skipped,</li>
+ * <li>position filtering with a {@link Kalman} filter,</li>
+ * <li>the speed is the velocity estimated by that same filter,</li>
+ * <li>the distance is accumulated between filtered positions, only once the runner has moved further than the position error.</li>
+ * </ol>
+ * The speed and distance are also published on their own topics for the listeners that only need one of them.
+ * This should be started when a run is started.
+ * <p>
+ *     <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#RUN_SAMPLE}, {@link com.dp16.runamicghent.Constants.EventTypes#SPEED},
+ *     {@link com.dp16.runamicghent.Constants.EventTypes#DISTANCE}
+ * </p>
+ * <p>
+ *     <b>Messages Consumed: </b> {@link com.dp16.runamicghent.Constants.EventTypes#RAW_LOCATION}
+ * </p>
+ */
+public class LocationPipeline implements EventListener, EventPublisher, DataProvider {
+    private static final double MAXIMUM_ACCURACY = 50.0; // fixes that are less accurate are skipped, in meters
+    private static final double MAXIMUM_SPEED = 12.0; // faster than any runner, in m/s
+    private static final int MAXIMUM_REJECTED = 5; // after this many outliers in a row the filter starts over from the latest fix
+    private static final double MINIMUM_DISTANCE = 5.0; // minimum step added to the distance, in meters
+    private static final double RELATIVE_ACCURACY = 0.2; // a step is added when its position error is at most this part of it
+
+    private final Kalman kalman = new Kalman();
+    private SerialExecutor worker;
+
+    // only touched on the worker
+    private int rejectedInARow;
+    private double distance;
+    private boolean hasAnchor;
+    private double anchorEast;
+    private double anchorNorth;
+
+    public LocationPipeline() {
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("LocationPipeline");
+    }
+
+    @Override
+    public void start() {
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.RAW_LOCATION, this, worker);
+    }
+
+    @Override
+    public void stop() {
+        EventBroker.getInstance().removeEventListener(Constants.Topics.RAW_LOCATION, this);
+        worker.shutdown();
+    }
+
+    @Override
+    public void resume() {
+        start();
+    }
+
+    /**
+     * The runner may be somewhere else when the run is resumed, so the filter starts over. The distance is kept.
+     */
+    @Override
+    public void pause() {
+        EventBroker.getInstance().removeEventListener(Constants.Topics.RAW_LOCATION, this);
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                kalman.reset();
+                hasAnchor = false;
+                rejectedInARow = 0;
+            }
+        });
+    }
+
+    /**
+     * Called on the worker for every RAW_LOCATION.
+     */
+    @Override
+    public void handleEvent(String eventType, Object message) {
+        RunSample sample = process((Location) message);
+        if (sample != null) {
+            EventBroker broker = EventBroker.getInstance();
+            broker.addEvent(Constants.Topics.RUN_SAMPLE, sample, this);
+            broker.publishDouble(Constants.Topics.SPEED, sample.getSpeed(), this);
+            broker.publishLong(Constants.Topics.DISTANCE, (long) sample.getDistance(), this);
+        }
+    }
+
+    /**
+     * Runs one fix through the pipeline. Must always be called from the same thread.
+     *
+     * @param fix Raw location.
+     * @return The new sample, or null if the fix was skipped as an outlier
+     */
+    public RunSample process(Location fix) {
+        if (fix.hasAccuracy() && fix.getAccuracy() > MAXIMUM_ACCURACY) {
+            return null;
+        }
+        if (kalman.isInitialised() && fix.getTime() <= kalman.getTime()) {
+            // duplicate or out of order
+            return null;
+        }
+        if (kalman.isInitialised() && isOutlier(fix)) {
+            rejectedInARow++;
+            if (rejectedInARow < MAXIMUM_REJECTED) {
+                return null;
+            }
+            // the fixes agree with each other but not with the filter: the runner really is over there
+            kalman.reset();
+            hasAnchor = false;
+        }
+        rejectedInARow = 0;
+
+        kalman.update(fix);
+
+        double east = kalman.getEast();
+        double north = kalman.getNorth();
+        if (!hasAnchor) {
+            anchorEast = east;
+            anchorNorth = north;
+            hasAnchor = true;
+        } else {
+            double stepEast = east - anchorEast;
+            double stepNorth = north - anchorNorth;
+            double step = Math.sqrt(stepEast * stepEast + stepNorth * stepNorth);
+            if (step > MINIMUM_DISTANCE && step * RELATIVE_ACCURACY > kalman.getPositionError()) {
+                distance += step;
+                anchorEast = east;
+                anchorNorth = north;
+            }
+        }
+
+        return new RunSample(new LatLng(kalman.getLatitude(), kalman.getLongitude()), kalman.getSpeed(), distance,
+                kalman.getPositionError(), fix.getTime());
+    }
+
+    /**
+     * A fix is an outlier when reaching it would take more than the maximum speed, even when it is twice as far off as its accuracy.
+     * The accuracy is the radius of 68% confidence, so one in three fixes is further off than that.
+     */
+    private boolean isOutlier(Location fix) {
+        long dt = fix.getTime() - kalman.getTime();
+        double accuracy = fix.hasAccuracy() ? fix.getAccuracy() : 0;
+        double jump = kalman.distanceTo(fix) - 2 * accuracy - kalman.getPositionError();
+        return jump > MAXIMUM_SPEED * dt / 1000.0;
+    }
+
+    /**
+     * @return Distance covered so far, in meters
+     */
+    public double getDistance() {
+        return distance;
+    }
+}
@@ -301,11 +301,11 @@ public class LocationProvider implements DataProvider, EventPublisher, GoogleApi
         // Publish Raw Location as location
         // Publish Location as LatLng
 
-        EventBroker.getInstance().addEvent(Constants.EventTypes.RAW_LOCATION, location, this);
+        EventBroker.getInstance().addEvent(Constants.Topics.RAW_LOCATION, location, this);
 
         LatLng latLng = kalmanFilter.estimatePosition(location);
 
-        EventBroker.getInstance().addEvent(Constants.EventTypes.LOCATION, latLng, this);
+        EventBroker.getInstance().addEvent(Constants.Topics.LOCATION, latLng, this);
 
         // if accuracyNotificationCounter is -1, then no accurate message is needed
         if (accuracyNotificationCounter != -1) {
@@ -331,9 +331,9 @@ public class LocationProvider implements DataProvider, EventPublisher, GoogleApi
         }
 
         if (accuracyNotificationCounter == 0) {
-            EventBroker.getInstance().addEvent(Constants.EventTypes.LOCATION_ACCURATE, false, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.LOCATION_ACCURATE, false, this);
         } else if (accuracyNotificationCounter == Constants.Location.COUNTER_MAX) {
-            EventBroker.getInstance().addEvent(Constants.EventTypes.LOCATION_ACCURATE, true, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.LOCATION_ACCURATE, true, this);
         }
     }
 
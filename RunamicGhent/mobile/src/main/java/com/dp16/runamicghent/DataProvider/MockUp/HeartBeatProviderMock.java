@@ -15,15 +15,14 @@ package com.dp16.runamicghent.DataProvider.MockUp;
 
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.DataProvider.DataProvider;
-import com.dp16.runamicghent.RunData.RunHeartRate;
 import com.dp16.runamicghent.RunData.RunSpeed;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
 
 import java.util.Random;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This class publishes heart rates in function of the speed.
@@ -35,17 +34,18 @@ public class HeartBeatProviderMock implements DataProvider, EventListener {
     private static Random random = new Random();
 
     public HeartBeatProviderMock() {
-        worker = Executors.newSingleThreadExecutor();
+        worker = ComponentScheduler.getInstance().newSerialExecutor("HeartBeatProviderMock");
     }
 
     @Override
     public void start() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.SPEED, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.SPEED, this);
     }
 
     @Override
     public void stop() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.SPEED, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.SPEED, this);
+        worker.shutdown();
     }
 
     @Override
@@ -55,7 +55,7 @@ public class HeartBeatProviderMock implements DataProvider, EventListener {
 
     @Override
     public void pause() {
-        stop();
+        EventBroker.getInstance().removeEventListener(Constants.Topics.SPEED, this);
     }
 
 
@@ -75,7 +75,7 @@ public class HeartBeatProviderMock implements DataProvider, EventListener {
         @Override
         public void run() {
             EventBroker.getInstance()
-                    .addEvent(Constants.EventTypes.HEART_RESPONSE, generateHeartRate(runSpeed), this);
+                    .publishLong(Constants.Topics.HEART_RESPONSE, generateHeartRate(runSpeed), this);
         }
 
         /**
@@ -84,9 +84,9 @@ public class HeartBeatProviderMock implements DataProvider, EventListener {
          * The noise is 0 average with deviation sd.
          *
          * @param runSpeed runspeed object to base calculations on
-         * @return heartbeat calculated from speed with noise
+         * @return heartbeat in beats per minute calculated from speed with noise
          */
-        private RunHeartRate generateHeartRate(RunSpeed runSpeed) {
+        private long generateHeartRate(RunSpeed runSpeed) {
             double a = 20;
             double b = 60;
             double base = 1.1;
@@ -95,7 +95,7 @@ public class HeartBeatProviderMock implements DataProvider, EventListener {
             double heartRate = a * Math.pow(base, runSpeed.getSpeed() * 3.6) + b;
             heartRate = heartRate + (random.nextGaussian() * sd);
 
-            return new RunHeartRate((int) heartRate);
+            return (long) heartRate;
         }
     }
 }
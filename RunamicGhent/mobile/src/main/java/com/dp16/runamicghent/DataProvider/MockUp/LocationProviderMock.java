@@ -18,15 +18,19 @@ import android.location.Location;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.DataProvider.DataProvider;
 import com.dp16.runamicghent.DataProvider.Kalman;
+import com.dp16.runamicghent.GeoMath;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.SerialExecutor;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.maps.android.SphericalUtil;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class mocks a location provider. It accepts a list of latlng that represent a route.
@@ -45,7 +49,9 @@ public class LocationProviderMock implements DataProvider {
     private int routePosition; //Current position in the arraylist
     private long timeBetweenLocations; //Time between current and previous location publish
     private Location previousLocationNoise; //Previous published location with noise
-    private Timer timer; //Timer used to publish locations
+    private SerialExecutor worker; //Publishes the locations on the threads shared by all components
+    private volatile ScheduledFuture<?> nextPublish; //Next location to be published
+    private final AtomicInteger generation = new AtomicInteger(); //Raised on every start and pause, publishers of an older generation stop
     private Kalman kalman; // Filter to get a smoother path during run.
 
     /**
@@ -60,10 +66,10 @@ public class LocationProviderMock implements DataProvider {
      */
     public LocationProviderMock(List<LatLng> route, double accuracyMeters, double desiredSpeed) {
         this.accuracyMeters = accuracyMeters;
-        this.route = interpolatePolyline((ArrayList<LatLng>) route, maximumDistance);
+        this.route = interpolatePolyline(new ArrayList<>(route), maximumDistance);
         this.desiredSpeed = desiredSpeed;
 
-        timer = new Timer();
+        worker = ComponentScheduler.getInstance().newSerialExecutor("LocationProviderMock");
         routePosition = 0;
         accuracyDegrees = accuracyMeters / metersInDegree;
         kalman = new Kalman();
@@ -71,12 +77,13 @@ public class LocationProviderMock implements DataProvider {
 
     @Override
     public void start() {
-        timer.schedule(new LocationPublisher(kalman), 0);
+        nextPublish = worker.schedule(new LocationPublisher(kalman, generation.incrementAndGet()), 0, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void stop() {
-        timer.cancel();
+        pause();
+        worker.shutdown();
     }
 
     @Override
@@ -86,7 +93,10 @@ public class LocationProviderMock implements DataProvider {
 
     @Override
     public void pause() {
-        stop();
+        generation.incrementAndGet();
+        if (nextPublish != null) {
+            nextPublish.cancel(false);
+        }
     }
 
 
@@ -106,32 +116,37 @@ public class LocationProviderMock implements DataProvider {
             LatLng location2 = route.get(i + 1);
 
             //Calculate the distance between two consecutive points
-            float[] distance = new float[1];
-            Location.distanceBetween(location1.latitude, location1.longitude, location2.latitude, location2.longitude, distance);
+            double distance = GeoMath.distance(location1, location2);
 
             //If the distance is too big, add an extra point
-            if (distance[0] > maximumDistance) {
-                double fraction = 1 / Math.ceil(distance[0] / maximumDistance);
+            if (distance > maximumDistance) {
+                double fraction = 1 / Math.ceil(distance / maximumDistance);
                 route.add(i + 1, SphericalUtil.interpolate(location1, location2, fraction));
             }
         }
         return route;
     }
 
-    class LocationPublisher extends TimerTask implements EventPublisher {
+    class LocationPublisher implements Runnable, EventPublisher {
 
         private Kalman filter;
+        private final int publishGeneration;
 
-        private LocationPublisher(Kalman kalman) {
+        private LocationPublisher(Kalman kalman, int publishGeneration) {
             this.filter = kalman;
+            this.publishGeneration = publishGeneration;
         }
 
         /**
          * This method will be called everytime a location should be published.
-         * A timer is used to do this.
+         * Every publish schedules the next one on the worker.
+         * A publisher scheduled just before a pause carries the old generation, so it stops instead of publishing next to the one scheduled by resume.
          */
         @Override
         public void run() {
+            if (publishGeneration != generation.get()) {
+                return;
+            }
             LatLng currentLocation = route.get(routePosition);
 
             //Generate new location with noise. Also make LatLng version
@@ -146,17 +161,16 @@ public class LocationProviderMock implements DataProvider {
             LatLng locationNoise = kalman.estimatePosition(rawLocationNoise);
 
             //Publish the events
-            EventBroker.getInstance().addEvent(Constants.EventTypes.RAW_LOCATION, rawLocationNoise, this);
-            EventBroker.getInstance().addEvent(Constants.EventTypes.LOCATION, locationNoise, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.RAW_LOCATION, rawLocationNoise, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.LOCATION, locationNoise, this);
 
             if (routePosition != route.size() - 1) {
                 LatLng nextLocation = route.get(routePosition + 1);
-                float[] distance = new float[1];
-                Location.distanceBetween(currentLocation.latitude, currentLocation.longitude, nextLocation.latitude, nextLocation.longitude, distance);
+                double distance = GeoMath.distance(currentLocation, nextLocation);
 
                 //Schedule next publish event
-                timeBetweenLocations = Math.round((distance[0] / (desiredSpeed / 3.6)) * 1000);
-                timer.schedule(new LocationPublisher(kalman), timeBetweenLocations);
+                timeBetweenLocations = Math.round((distance / (desiredSpeed / 3.6)) * 1000);
+                nextPublish = worker.schedule(new LocationPublisher(kalman, publishGeneration), timeBetweenLocations, TimeUnit.MILLISECONDS);
 
                 routePosition++;
                 previousLocationNoise = rawLocationNoise;
@@ -203,10 +217,9 @@ public class LocationProviderMock implements DataProvider {
             float speed = 0f;
 
             if (routePosition > 0) {
-                float[] distance = new float[1];
-                Location.distanceBetween(previousLocationNoise.getLatitude(), previousLocationNoise.getLongitude(), currentLocation.getLatitude(), currentLocation.getLongitude(), distance);
+                double distance = GeoMath.distance(previousLocationNoise.getLatitude(), previousLocationNoise.getLongitude(), currentLocation.getLatitude(), currentLocation.getLongitude());
 
-                speed = (distance[0] / timeBetweenLocations) * 1000;
+                speed = (float) (distance / timeBetweenLocations) * 1000;
             }
 
             currentLocation.setSpeed(speed);
@@ -18,9 +18,11 @@ import android.util.Log;
 import com.dp16.runamicghent.Activities.Utils;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.RunData.RunRating;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.SerialExecutor;
 
 import org.json.JSONObject;
 
@@ -29,8 +31,6 @@ import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This DataProvider will send ratings of runs to the server. Not really a DataProvider.
@@ -46,13 +46,13 @@ import java.util.concurrent.Executors;
 
 public class RatingTransmitter implements EventPublisher, EventListener, DataProvider {
 
-    private ExecutorService worker;
+    private SerialExecutor worker;
 
     private Boolean statusReponse;
 
     public RatingTransmitter(Boolean statusResponse) {
         this.statusReponse = statusResponse;
-        worker = Executors.newSingleThreadExecutor();
+        worker = ComponentScheduler.getInstance().newSerialExecutor("RatingTransmitter");
         this.start();
     }
 
@@ -61,12 +61,15 @@ public class RatingTransmitter implements EventPublisher, EventListener, DataPro
      */
     @Override
     public void start() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.RATING, this);
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.RATING, this);
     }
 
     @Override
     public void stop() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.RATING, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.RATING, this);
+        worker.shutdown();
     }
 
     @Override
@@ -76,7 +79,7 @@ public class RatingTransmitter implements EventPublisher, EventListener, DataPro
 
     @Override
     public void pause() {
-        stop();
+        EventBroker.getInstance().removeEventListener(Constants.Topics.RATING, this);
     }
 
     /**
@@ -129,12 +132,12 @@ public class RatingTransmitter implements EventPublisher, EventListener, DataPro
                 Log.d("tag", runRating.getTag());
                 // If statusReponse is set to true, an event will be published with the status code.
                 if (statusReponse){
-                    EventBroker.getInstance().addEvent(Constants.EventTypes.STATUS_CODE, 200, this.ratingTransmitter);
+                    EventBroker.getInstance().addEvent(Constants.Topics.STATUS_CODE, 200, this.ratingTransmitter);
                 }
             }else{
                 // If rating was not able to be sent in 3 requests, too bad. This is not such a big problem.
                 if (statusReponse){
-                    EventBroker.getInstance().addEvent(Constants.EventTypes.STATUS_CODE, 500, this.ratingTransmitter);
+                    EventBroker.getInstance().addEvent(Constants.Topics.STATUS_CODE, 500, this.ratingTransmitter);
                 }
             }
             Log.d("Rating sent", Boolean.toString(goodRequest));
@@ -18,35 +18,35 @@ import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.util.Log;
 
-import com.dp16.runamicghent.Activities.Utils;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.GuiController.GuiController;
+import com.dp16.runamicghent.RunData.RouteDecoder;
+import com.dp16.runamicghent.RunData.RunRoute;
 import com.dp16.runamicghent.TrackRequest;
 import com.dp16.runamicghent.TrackResponse;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.SerialExecutor;
 
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
- * Class that allows fetching a JSONObject. In this case, the JSONObject should contain a generated route.
+ * Class that fetches a generated route from the server.
+ * The response is decoded by a {@link RouteDecoder} on the worker thread while it is read,
+ * so the route is ready to draw when the TRACK event arrives.
  * <p>
  * <p>
- * <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#STATUS_CODE}
+ * <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#TRACK}, {@link com.dp16.runamicghent.Constants.EventTypes#STATUS_CODE}
  * </p>
  * <p>
  * <b>Messages Consumed: </b> , {@link com.dp16.runamicghent.Constants.EventTypes#TRACK_REQUEST}
@@ -60,26 +60,29 @@ import java.util.concurrent.Executors;
  */
 public class RouteProvider implements EventListener, EventPublisher, DataProvider {
 
-    private ExecutorService worker;
+    private SerialExecutor worker;
     private Context context;
 
     /**
      * Get Singleton EventBroker. Start listening for TRACK_REQUESTS.
      */
     public RouteProvider(Context context) {
-        worker = Executors.newSingleThreadExecutor();
+        worker = ComponentScheduler.getInstance().newSerialExecutor("RouteProvider");
         this.context = context;
         this.start();
     }
 
     @Override
     public void start() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.TRACK_REQUEST, this);
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.TRACK_REQUEST, this);
     }
 
     @Override
     public void stop() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.TRACK_REQUEST, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.TRACK_REQUEST, this);
+        worker.shutdown();
     }
 
     @Override
@@ -89,7 +92,7 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
 
     @Override
     public void pause() {
-        stop();
+        EventBroker.getInstance().removeEventListener(Constants.Topics.TRACK_REQUEST, this);
     }
 
     /**
@@ -107,7 +110,7 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
     /**
      * Asynchronous fetching of a track from the server.
      * Once a result is fetched, a new TRACK event is published.
-     * This event contains the fetched JSON track object.
+     * This event contains the decoded route.
      */
     private class Worker implements Runnable {
         private TrackResponse trackResponse;
@@ -121,11 +124,11 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
         /**
          * Publishes a request for a specific track to the EventBroker.
          *
-         * @param track: JSON representation of the received track.
+         * @param route: the received route.
          */
-        private void publishEvent(JSONObject track) {
-            trackResponse = new TrackResponse(track, trackRequest.getDynamic(), trackRequest.getRequestNumber());
-            EventBroker.getInstance().addEvent(Constants.EventTypes.TRACK, trackResponse, this.routeProvider);
+        private void publishEvent(RunRoute route) {
+            trackResponse = new TrackResponse(route, trackRequest.getDynamic(), trackRequest.getRequestNumber());
+            EventBroker.getInstance().addEvent(Constants.Topics.TRACK, trackResponse, this.routeProvider);
         }
 
         /*
@@ -159,7 +162,7 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
                  e.printStackTrace();
             }
 
-            JSONObject response = Utils.PostRequest(body, urlString);
+            RunRoute response = fetchRoute(body, urlString);
 
 
 
@@ -171,7 +174,7 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
             {
             try {
                 //add bad request to event broker
-                EventBroker.getInstance().addEvent(Constants.EventTypes.STATUS_CODE, 500, this.routeProvider);
+                EventBroker.getInstance().addEvent(Constants.Topics.STATUS_CODE, 500, this.routeProvider);
             } catch (Exception e) {
                 Log.e("InputStream", e.getLocalizedMessage(), e);
             }
@@ -183,6 +186,62 @@ public class RouteProvider implements EventListener, EventPublisher, DataProvide
 
         }
 
+        /**
+         * Posts the body to the server and decodes the route from the response while it comes in.
+         * Asks for the binary format, the server answers in JSON if it does not know it.
+         * Tries three times, like Utils.PostRequest, if the request fails before the response arrives.
+         * A response that can not be decoded is not requested again, the server would send the same one.
+         *
+         * @return The route, or null if no route could be fetched
+         */
+        private RunRoute fetchRoute(String body, String urlString) {
+            URL url;
+            try {
+                url = new URL(urlString);
+            } catch (MalformedURLException e) {
+                Log.e("constructURL", e.getMessage(), e);
+                return null;
+            }
+
+            int amountOfTries = 3;
+            while (amountOfTries > 0) {
+                HttpURLConnection httpURLConnection = null;
+                try {
+                    httpURLConnection = (HttpURLConnection) url.openConnection();
+                    httpURLConnection.setRequestMethod("POST");
+                    httpURLConnection.setDoOutput(true);
+                    httpURLConnection.setRequestProperty("Accept", RouteDecoder.ACCEPT);
+
+                    OutputStreamWriter wr = new OutputStreamWriter(httpURLConnection.getOutputStream());
+                    wr.write(body);
+                    wr.flush();
+                    wr.close();
+
+                    // failing up to here is worth another try, failing to decode is not
+                    InputStream stream = new BufferedInputStream(httpURLConnection.getInputStream());
+                    try {
+                        return RouteDecoder.decode(stream, httpURLConnection.getContentType());
+                    } catch (IOException e) {
+                        Log.e("RouteDecoder", e.getLocalizedMessage(), e);
+                        return null;
+                    } finally {
+                        try {
+                            stream.close();
+                        } catch (IOException e) {
+                            // the response is read, a failing close must not send the request again
+                        }
+                    }
+                } catch (IOException e) {
+                    Log.e("InputStream", e.getLocalizedMessage(), e);
+                    amountOfTries--;
+                } finally {
+                    if (httpURLConnection != null) {
+                        httpURLConnection.disconnect();
+                    }
+                }
+            }
+            return null;
+        }
 
         /*
          * Construct the body for the POST-request of de static route
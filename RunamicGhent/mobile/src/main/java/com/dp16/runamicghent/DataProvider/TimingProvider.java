@@ -15,15 +15,17 @@ package com.dp16.runamicghent.DataProvider;
 
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.RunData.RunDuration;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.SerialExecutor;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This class provides a timer to time a run. Every second a DURATION event will be published.
- * This timing is contained in a runDuration object.
+ * The amount of seconds is published as a long, listeners that are not a LongEventListener receive a RunDuration.
  *
  * <p>
  *     <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#DURATION}
@@ -36,11 +38,17 @@ import java.util.TimerTask;
  */
 
 public class TimingProvider implements DataProvider {
-    private RunDuration runDuration;
-    private Timer timer;
+    // only written by the worker
+    private volatile long secondsPassed;
+    private SerialExecutor worker;
+    private ScheduledFuture<?> ticks;
 
     public TimingProvider() {
-        runDuration = new RunDuration();
+        secondsPassed = 0;
+        // the seconds are counted on the threads shared by all components, no Timer thread is needed
+        worker = ComponentScheduler.getInstance().newSerialExecutor("TimingProvider");
+        // a new run starts at zero, new listeners should not get the duration of the previous run
+        EventBroker.getInstance().clearStickyValue(Constants.Topics.DURATION);
     }
 
     /**
@@ -48,15 +56,15 @@ public class TimingProvider implements DataProvider {
      */
     @Override
     public void start() {
-        timer = new Timer();
-        timer.scheduleAtFixedRate(new IncreaseTime(), 1000, 1000);
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        ticks = worker.scheduleAtFixedRate(new IncreaseTime(), 1000, 1000, TimeUnit.MILLISECONDS);
     }
 
     @Override
     public void stop() {
-        if (timer != null) {
-            timer.cancel();
-        }
+        pause();
+        worker.shutdown();
     }
 
     @Override
@@ -66,22 +74,27 @@ public class TimingProvider implements DataProvider {
 
     @Override
     public void pause() {
-        stop();
+        if (ticks != null) {
+            ticks.cancel(false);
+        }
     }
 
+    /**
+     * @return A new RunDuration with the time passed so far.
+     */
     public RunDuration getRunDuration() {
-        return runDuration;
+        return new RunDuration((int) secondsPassed);
     }
 
     /**
      * This class/method is called every second. It increases the timer by one second.
-     * Then publishes the DURATION event with the runDuration object.
+     * Then publishes the DURATION event with the amount of seconds.
      */
-    private class IncreaseTime extends TimerTask implements EventPublisher {
+    private class IncreaseTime implements Runnable, EventPublisher {
         @Override
         public void run() {
-            runDuration.addSecond();
-            EventBroker.getInstance().addEvent(Constants.EventTypes.DURATION, runDuration, this);
+            secondsPassed++;
+            EventBroker.getInstance().publishLong(Constants.Topics.DURATION, secondsPassed, this);
         }
     }
 }
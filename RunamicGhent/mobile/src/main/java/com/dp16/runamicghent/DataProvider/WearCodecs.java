@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.runamicghent.DataProvider;
+
+import android.content.Context;
+
+import com.dp16.eventbroker.PayloadCodec;
+import com.dp16.runamicghent.RunData.RunDuration;
+import com.dp16.runamicghent.RunData.RunSpeed;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Codecs for the stats the {@link AndroidWearProvider} mirrors to the wearable, in the form the wearable shows them.
+ */
+final class WearCodecs {
+    /**
+     * Duration of the run as an int amount of milliseconds.
+     */
+    static final PayloadCodec DURATION_MILLIS = new PayloadCodec() {
+        @Override
+        public void encode(Object message, DataOutput out) throws IOException {
+            out.writeInt(((RunDuration) message).getSecondsPassed() * 1000);
+        }
+
+        @Override
+        public Object decode(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private WearCodecs() {
+        // only static members
+    }
+
+    /**
+     * @param context Context for the unit preference of the user.
+     * @return Codec that writes the speed as the text the phone shows.
+     */
+    static PayloadCodec speedText(final Context context) {
+        return new PayloadCodec() {
+            @Override
+            public void encode(Object message, DataOutput out) throws IOException {
+                out.writeUTF(((RunSpeed) message).toString(context));
+            }
+
+            @Override
+            public Object decode(DataInput in) throws IOException {
+                return in.readUTF();
+            }
+        };
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.runamicghent.Debug;
+
+import android.location.Location;
+
+import com.dp16.eventbroker.FlightRecorder;
+import com.dp16.eventbroker.PayloadCodec;
+import com.dp16.eventbroker.Topic;
+import com.dp16.eventbroker.TraceReplayer;
+import com.dp16.runamicghent.Constants;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Codecs for the messages of the app, so runs can be recorded with a {@link FlightRecorder} and replayed with a {@link TraceReplayer}.
+ * Only the location topics need one: the measurements derived from them are primitive events, which are recorded without codec.
+ * Replaying the locations of a run is enough to drive the RouteEngine, the StatTracker and the providers through the same run again.
+ */
+public final class TraceCodecs {
+    /**
+     * Codec for {@link Location} messages. Keeps every field the app uses, including which optional fields are set.
+     */
+    public static final PayloadCodec LOCATION = new PayloadCodec() {
+        private static final int HAS_ACCURACY = 1;
+        private static final int HAS_SPEED = 2;
+        private static final int HAS_BEARING = 4;
+        private static final int HAS_ALTITUDE = 8;
+
+        @Override
+        public void encode(Object message, DataOutput out) throws IOException {
+            Location location = (Location) message;
+            out.writeUTF(location.getProvider() == null ? "" : location.getProvider());
+            out.writeLong(location.getTime());
+            out.writeDouble(location.getLatitude());
+            out.writeDouble(location.getLongitude());
+            out.writeByte((location.hasAccuracy() ? HAS_ACCURACY : 0)
+                    | (location.hasSpeed() ? HAS_SPEED : 0)
+                    | (location.hasBearing() ? HAS_BEARING : 0)
+                    | (location.hasAltitude() ? HAS_ALTITUDE : 0));
+            out.writeFloat(location.getAccuracy());
+            out.writeFloat(location.getSpeed());
+            out.writeFloat(location.getBearing());
+            out.writeDouble(location.getAltitude());
+        }
+
+        @Override
+        public Object decode(DataInput in) throws IOException {
+            Location location = new Location(in.readUTF());
+            location.setTime(in.readLong());
+            location.setLatitude(in.readDouble());
+            location.setLongitude(in.readDouble());
+            int flags = in.readByte();
+            float accuracy = in.readFloat();
+            float speed = in.readFloat();
+            float bearing = in.readFloat();
+            double altitude = in.readDouble();
+            if ((flags & HAS_ACCURACY) != 0) {
+                location.setAccuracy(accuracy);
+            }
+            if ((flags & HAS_SPEED) != 0) {
+                location.setSpeed(speed);
+            }
+            if ((flags & HAS_BEARING) != 0) {
+                location.setBearing(bearing);
+            }
+            if ((flags & HAS_ALTITUDE) != 0) {
+                location.setAltitude(altitude);
+            }
+            return location;
+        }
+    };
+
+    private static final Topic[] LOCATION_TOPICS = {
+            Constants.Topics.LOCATION, Constants.Topics.LOCATION_ACCURATE, Constants.Topics.RAW_LOCATION
+    };
+
+    private TraceCodecs() {
+        // only static members
+    }
+
+    /**
+     * @param out Stream the trace is written to.
+     * @return A recorder that knows the codecs of the app.
+     */
+    public static FlightRecorder newRecorder(OutputStream out) {
+        FlightRecorder recorder = new FlightRecorder(out);
+        for (Topic topic : LOCATION_TOPICS) {
+            recorder.setCodec(topic, LOCATION);
+        }
+        return recorder;
+    }
+
+    /**
+     * @return A replayer that knows the codecs of the app.
+     */
+    public static TraceReplayer newReplayer() {
+        TraceReplayer replayer = new TraceReplayer();
+        for (Topic topic : LOCATION_TOPICS) {
+            replayer.setCodec(topic, LOCATION);
+        }
+        return replayer;
+    }
+}
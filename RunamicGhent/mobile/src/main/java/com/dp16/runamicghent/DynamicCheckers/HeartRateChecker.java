@@ -23,12 +23,12 @@ import com.dp16.runamicghent.GuiController.GuiController;
 import com.dp16.runamicghent.R;
 import com.dp16.runamicghent.RunData.RunAudio;
 import com.dp16.runamicghent.RunData.RunHeartRate;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
 
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Class that checks if the heart rate of the user is too high or too low.
@@ -55,8 +55,8 @@ public class HeartRateChecker implements EventListener, EventPublisher {
     int lowerLimit;
 
     public HeartRateChecker(Context context) {
-        // Make worker thread
-        worker = Executors.newSingleThreadExecutor();
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("HeartRateChecker");
 
         // retrieve upper and lower heart rate limit from the preferences. We need a context for this.
         SharedPreferences preference = PreferenceManager.getDefaultSharedPreferences(context);
@@ -69,7 +69,7 @@ public class HeartRateChecker implements EventListener, EventPublisher {
      */
     public void start(){
         // Subscribe to EventBroker as listener of Heart Response
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.HEART_RESPONSE, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.HEART_RESPONSE, this, worker);
     }
 
     /**
@@ -77,50 +77,35 @@ public class HeartRateChecker implements EventListener, EventPublisher {
      */
     public void stop(){
         // Remove EventListener of Heart Reponse events
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.HEART_RESPONSE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.HEART_RESPONSE, this);
+        worker.shutdown();
     }
 
     /**
-     * Handles a received event. Starts a new thread to process the user's heart rate.
-     * Should not be called too frequently because it will create a lot of threads.
+     * Handles a received event on the worker thread.
+     * It will add the new heart rate to the rolling average.
+     * If that rolling average is above the upper or below the lower limit for a certain
+     * amount of time, an ABNORMAL_HEART_RATE event with a lower or upper tag.
      *
      * @param eventType Should always be HEART_RESPONSE
      * @param message   A RunHeartRate containing the user's heart rate
      */
     @Override
     public void handleEvent(String eventType, Object message) {
-        Runnable task = new Worker((RunHeartRate) message);
-        worker.submit(task);
-    }
-
-    /*
-     * This is the worker thread.
-     * It will add the new heart rate to the rolling average.
-     * If that rolling average is above the upper or below the lower limit for a certain
-     * amount of time, an ABNORMAL_HEART_RATE event with a lower or upper tag.
-     */
-    private class Worker implements Runnable, EventPublisher {
-        RunHeartRate runHeartRate;
-
-        public Worker(RunHeartRate runHeartRate) {
-            this.runHeartRate = runHeartRate;
-        }
-
-        @Override
-        public void run() {
-            // Add new heart rate to the rolling average
-            rollingAvg.add(runHeartRate.getHeartRate());
-
-            // if size amount of heart rates have been added to the rolling average
-            if (rollingAvg.isPopulated()) {
-                if (rollingAvg.getAverage() > upperLimit) {
-                    timestampSetAndEnoughTimePassed(Constants.DynamicRouting.TAG_UPPER);
-                } else if (rollingAvg.getAverage() < lowerLimit) {
-                    timestampSetAndEnoughTimePassed(Constants.DynamicRouting.TAG_LOWER);
-                } else {
-                    // reset timestamp if rolling average goes between thresholds
-                    timestampBegin = -1L;
-                }
+        RunHeartRate runHeartRate = (RunHeartRate) message;
+
+        // Add new heart rate to the rolling average
+        rollingAvg.add(runHeartRate.getHeartRate());
+
+        // if size amount of heart rates have been added to the rolling average
+        if (rollingAvg.isPopulated()) {
+            if (rollingAvg.getAverage() > upperLimit) {
+                timestampSetAndEnoughTimePassed(Constants.DynamicRouting.TAG_UPPER);
+            } else if (rollingAvg.getAverage() < lowerLimit) {
+                timestampSetAndEnoughTimePassed(Constants.DynamicRouting.TAG_LOWER);
+            } else {
+                // reset timestamp if rolling average goes between thresholds
+                timestampBegin = -1L;
             }
         }
     }
@@ -133,12 +118,12 @@ public class HeartRateChecker implements EventListener, EventPublisher {
         if (timestampBegin == -1L) {
             timestampBegin = System.currentTimeMillis();
         } else if (System.currentTimeMillis() - timestampBegin > Constants.DynamicRouting.HEART_RATE_MIN_TIME) {
-            EventBroker.getInstance().addEvent(Constants.EventTypes.ABNORMAL_HEART_RATE, limitTag, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.ABNORMAL_HEART_RATE, limitTag, this);
 
             // Create string to send to AudioPlayer
             String textToSpeek = limitTag.equals(Constants.DynamicRouting.TAG_UPPER) ? GuiController.getInstance().getContext().getString(R.string.audio_heartrate_high) : GuiController.getInstance().getContext().getString(R.string.audio_heartrate_low);
             RunAudio runAudio = new RunAudio(textToSpeek);
-            EventBroker.getInstance().addEvent(Constants.EventTypes.AUDIO, runAudio, this);
+            EventBroker.getInstance().addEvent(Constants.Topics.AUDIO, runAudio, this);
 
             /*
              set timestamp such that minimally HEART_RATE_WAIT_TIME will need to elapse before the
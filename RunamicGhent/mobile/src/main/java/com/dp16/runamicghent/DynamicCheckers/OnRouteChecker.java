@@ -14,15 +14,16 @@
 package com.dp16.runamicghent.DynamicCheckers;
 
 import com.dp16.runamicghent.Constants;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.Reducers;
 import com.google.android.gms.maps.model.LatLng;
 import com.google.maps.android.PolyUtil;
 
 import java.util.List;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This class listens to the current location and checks this location with the path the user should run.
@@ -49,7 +50,7 @@ public class OnRouteChecker implements EventListener, EventPublisher {
 
     /**
      * Constructor. Registers at the eventbroker to recieve location updates.
-     * Also starts a new thread so the eventbroker does not have to wait for
+     * The updates are delivered on a worker thread so the eventbroker does not have to wait for
      * isLocationOnPath to return.
      *
      * @param path      Initial path that should be followed
@@ -61,11 +62,11 @@ public class OnRouteChecker implements EventListener, EventPublisher {
         this.precision = precision;
         currentlyOffroute = false;
 
-        EventBroker broker = EventBroker.getInstance();
-        broker.addEventListener(Constants.EventTypes.LOCATION, this, interval);
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("OnRouteChecker");
 
-        //Make worker thread
-        worker = Executors.newSingleThreadExecutor();
+        EventBroker broker = EventBroker.getInstance();
+        broker.addEventListener(Constants.Topics.LOCATION, this, interval, Reducers.LAST, worker);
     }
 
     /**
@@ -78,45 +79,34 @@ public class OnRouteChecker implements EventListener, EventPublisher {
     }
 
     /**
-     * Handles a received event. Starts a new thread to check the location with the path.
-     * Should not be called too frequently because it will create a lot of threads.
-     *
-     * @param eventType Should always be LOCATION
-     * @param message   A LatLng containing the current location of the user
+     * Stops checking the location. Locations that were already delivered are still checked.
      */
-    @Override
-    public void handleEvent(String eventType, Object message) {
-        //Submit a task to the worker thread
-        Runnable task = new Worker(message);
-        worker.submit(task);
+    public void stop() {
+        EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
+        worker.shutdown();
     }
 
     /**
-     * This is the worker thread.
+     * Handles a received event on the worker thread.
      * It will check if a location is on the path with the desired precision.
      * Will send an OFFROUTE event if location is not on path.
+     *
+     * @param eventType Should always be LOCATION
+     * @param message   A LatLng containing the current location of the user
      */
-    private class Worker implements Runnable, EventPublisher {
-        private final Object objectLocation;
-
-        public Worker(Object objectLocation) {
-            this.objectLocation = objectLocation;
-        }
-
-        @Override
-        public void run() {
-            //Parse the location to a LatLng
-            LatLng location = (LatLng) objectLocation;
-            //Check the location
-            Boolean offPath = !(PolyUtil.isLocationOnPath(location, path, geodesic, precision));
-            //Send an OFFROUTE event if necessary.
-            if (offPath && !currentlyOffroute) {
-                currentlyOffroute = true;
-                EventBroker.getInstance().addEvent(Constants.EventTypes.OFFROUTE, offPath, this);
-            } else if (!offPath && currentlyOffroute) {
-                currentlyOffroute = false;
-                EventBroker.getInstance().addEvent(Constants.EventTypes.OFFROUTE, offPath, this);
-            }
+    @Override
+    public void handleEvent(String eventType, Object message) {
+        //Parse the location to a LatLng
+        LatLng location = (LatLng) message;
+        //Check the location
+        Boolean offPath = !(PolyUtil.isLocationOnPath(location, path, geodesic, precision));
+        //Send an OFFROUTE event if necessary.
+        if (offPath && !currentlyOffroute) {
+            currentlyOffroute = true;
+            EventBroker.getInstance().addEvent(Constants.Topics.OFFROUTE, offPath, this);
+        } else if (!offPath && currentlyOffroute) {
+            currentlyOffroute = false;
+            EventBroker.getInstance().addEvent(Constants.Topics.OFFROUTE, offPath, this);
         }
     }
 }
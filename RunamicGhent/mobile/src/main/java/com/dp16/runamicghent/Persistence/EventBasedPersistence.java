@@ -20,12 +20,13 @@ import android.util.Log;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.StatTracker.AggregateRunningStatistics;
 import com.dp16.runamicghent.StatTracker.RunningStatistics;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisherClass;
+import com.dp16.eventbroker.Responder;
+import com.dp16.eventbroker.SerialExecutor;
 
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * Public interface for the persistence package. This package is responsible for saving files.
@@ -36,29 +37,27 @@ import java.util.concurrent.Executors;
  * <ul>
  * <li>Constants.EventTypes.STORE_RUNNINGSTATISTICS</li>
  * <li>Constants.EventTypes.STORE_AGGREGATESTATISTICS</li>
- * <li>Constants.EventTypes.LOAD_RUNNINGSTATISTICS</li>
- * <li>Constants.EventTypes.LOAD_AGGREGATESTATISTICS</li>
  * <li>Constants.EventTypes.DELETE_RUNNINGSTATISTICS</li>
  * <li>Constants.EventTypes.DELETE_AGGREGATESTATISTICS</li>
  * <li>Constants.EventTypes.SYNC_WITH_DATABASE</li>
  * </ul>
- * and publishes the following event types:
+ * and answers the following requests (see {@link EventBroker#request(com.dp16.eventbroker.Topic, Object)}):
  * <ul>
- * <li>Constants.EventTypes.LOADED_RUNNINGSTATISTICS</li>
- * <li>Constants.EventTypes.LOADED_AGGREGATESTATISTICS</li>
+ * <li>Constants.EventTypes.LOAD_RUNNINGSTATISTICS, with a List of RunningStatistics</li>
+ * <li>Constants.EventTypes.LOAD_AGGREGATESTATISTICS, with the AggregateRunningStatistics or null if none are stored</li>
  * </ul>
  * <p>
  * Created by Nick on 9-4-2017.
  */
 
-public class EventBasedPersistence extends EventPublisherClass implements EventListener {
-    private ExecutorService worker;
+public class EventBasedPersistence extends EventPublisherClass implements EventListener, Responder {
+    private SerialExecutor worker;
     private EventBroker broker;
     private PersistenceController controller;
     private String tag = "EventBasedPersistence";
 
     public EventBasedPersistence(Context context) {
-        worker = Executors.newSingleThreadExecutor();
+        worker = ComponentScheduler.getInstance().newSerialExecutor("EventBasedPersistence");
         broker = EventBroker.getInstance();
         controller = new PersistenceController(context);
     }
@@ -74,69 +73,68 @@ public class EventBasedPersistence extends EventPublisherClass implements EventL
     }
 
     /**
-     * Subscribes to EventBroker.
+     * Subscribes to EventBroker. Events and requests are delivered on the worker thread.
      */
     public void start() {
-        broker.addEventListener(Constants.EventTypes.STORE_RUNNINGSTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.STORE_AGGREGATESTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.LOAD_RUNNINGSTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.LOAD_AGGREGATESTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.DELETE_RUNNINGSTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.DELETE_AGGREGATESTATISTICS, this);
-        broker.addEventListener(Constants.EventTypes.SYNC_WITH_DATABASE, this);
+        // a new executor when the component was stopped before
+        worker = ComponentScheduler.getInstance().reopen(worker);
+        broker.addPatternListener(Constants.TopicPatterns.PERSIST_STORE, this, worker);
+        broker.setResponder(Constants.Topics.LOAD_RUNNINGSTATISTICS, this, worker);
+        broker.setResponder(Constants.Topics.LOAD_AGGREGATESTATISTICS, this, worker);
+        broker.addPatternListener(Constants.TopicPatterns.PERSIST_DELETE, this, worker);
+        broker.addEventListener(Constants.Topics.SYNC_WITH_DATABASE, this, worker);
     }
 
     /**
-     * Detaches from EventBroker.
+     * Detaches from EventBroker, including the patterns.
      */
     public void stop() {
         broker.removeEventListener(this);
+        broker.removeResponder(Constants.Topics.LOAD_RUNNINGSTATISTICS, this);
+        broker.removeResponder(Constants.Topics.LOAD_AGGREGATESTATISTICS, this);
+        worker.shutdown();
     }
 
+    /**
+     * Called on the worker thread, so the event broker does not wait for the disk or the server.
+     */
     @Override
     public void handleEvent(String eventType, Object message) {
-        Runnable task = new Worker(eventType, message);
-        worker.submit(task);
-    }
-
-    private class Worker implements Runnable {
-        private String eventType;
-        private Object message;
-
-        public Worker(String eventType, Object message) {
-            this.eventType = eventType;
-            this.message = message;
+        // check which eventType it is and pass to controller
+        switch (eventType) {
+            case Constants.EventTypes.STORE_RUNNINGSTATISTICS:
+                controller.saveRunningStatistics((RunningStatistics) message);
+                break;
+            case Constants.EventTypes.STORE_AGGREGATESTATISTICS:
+                controller.saveAggregateStatistics((AggregateRunningStatistics) message);
+                break;
+            case Constants.EventTypes.DELETE_RUNNINGSTATISTICS:
+                controller.deleteRunningStatistics((RunningStatistics) message);
+                break;
+            case Constants.EventTypes.DELETE_AGGREGATESTATISTICS:
+                controller.deleteAggregateStatistics();
+                break;
+            case Constants.EventTypes.SYNC_WITH_DATABASE:
+                controller.doBackwardsCompatibility();
+                controller.synchronizeWithServer();
+                break;
+            default:
+                Log.e(tag, "EventBasedPersistence received event for which not subscribed: " + eventType);
         }
+    }
 
-        @Override
-        public void run() {
-            // check which eventType it is and pass to controller
-            switch (eventType) {
-                case Constants.EventTypes.STORE_RUNNINGSTATISTICS:
-                    controller.saveRunningStatistics((RunningStatistics) message);
-                    break;
-                case Constants.EventTypes.STORE_AGGREGATESTATISTICS:
-                    controller.saveAggregateStatistics((AggregateRunningStatistics) message);
-                    break;
-                case Constants.EventTypes.LOAD_RUNNINGSTATISTICS:
-                    publishEvent(Constants.EventTypes.LOADED_RUNNINGSTATISTICS, controller.getRunningStatistics());
-                    break;
-                case Constants.EventTypes.LOAD_AGGREGATESTATISTICS:
-                    publishEvent(Constants.EventTypes.LOADED_AGGREGATESTATISTICS, controller.getAggregateRunningStatistics());
-                    break;
-                case Constants.EventTypes.DELETE_RUNNINGSTATISTICS:
-                    controller.deleteRunningStatistics((RunningStatistics) message);
-                    break;
-                case Constants.EventTypes.DELETE_AGGREGATESTATISTICS:
-                    controller.deleteAggregateStatistics();
-                    break;
-                case Constants.EventTypes.SYNC_WITH_DATABASE:
-                    controller.doBackwardsCompatibility();
-                    controller.synchronizeWithServer();
-                    break;
-                default:
-                    Log.e(tag, "EventBasedPersistence received event for which not subscribed: " + eventType);
-            }
+    /**
+     * Called on the worker thread, like handleEvent.
+     */
+    @Override
+    public Object respond(String requestType, Object payload) {
+        switch (requestType) {
+            case Constants.EventTypes.LOAD_RUNNINGSTATISTICS:
+                return controller.getRunningStatistics();
+            case Constants.EventTypes.LOAD_AGGREGATESTATISTICS:
+                return controller.getAggregateRunningStatistics();
+            default:
+                throw new IllegalArgumentException("EventBasedPersistence received request it does not answer: " + requestType);
         }
     }
 
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.runamicghent.RunData;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads a route from a response of the server as it comes in, straight into the arrays of a {@link RunRoute},
+ * without building a JSONObject or a RunRoutePoint for every point first.
+ * <p>
+ * Three formats are understood:
+ * <ul>
+ * <li>JSON with a "coordinates" array of objects with "lat", "lon" and direction "c", as the server has always sent.
+ * The coordinates can be numbers or strings.</li>
+ * <li>JSON with a "polyline" string, in the Google encoded polyline format with 5 decimals,
+ * and a "directions" array with the direction of every point. Points without a direction have none.</li>
+ * <li>Binary, with content type {@link #BINARY_CONTENT_TYPE}, as written by a DataOutputStream:
+ * the tag as UTF, the number of points as int, and for every point the latitude and longitude in 1e-7 degrees as int
+ * and the direction as byte (0 none, 1 forward, 2 left, 3 right, 4 u-turn).</li>
+ * </ul>
+ * Both JSON formats have a "tag", which is used for dynamic routing.
+ * As with {@link RunRoute#convertJSONToRoute(Object)}, the first point is added again at the end to close the route.
+ * </p>
+ */
+public final class RouteDecoder {
+    public static final String BINARY_CONTENT_TYPE = "application/octet-stream";
+    // sent by the client, a server that does not know the binary format answers in JSON
+    public static final String ACCEPT = BINARY_CONTENT_TYPE + ", application/json;q=0.9";
+
+    private static final RunDirection.Direction[] DIRECTIONS = RunDirection.Direction.values();
+    private static final double POLYLINE_PRECISION = 1e5;
+    private static final double BINARY_PRECISION = 1e7;
+    // far more than a route of the maximum length has, a larger count is not a route
+    static final int MAX_BINARY_POINTS = 1 << 20;
+    // the count is not trusted for the capacity, the points grow as they are read
+    private static final int MAX_INITIAL_CAPACITY = 4096;
+
+    private RouteDecoder() {
+        // private constructor. We want methods to be public static
+    }
+
+    /**
+     * Reads a route in the format of the content type, JSON unless it is {@link #BINARY_CONTENT_TYPE}.
+     * Does not close the stream.
+     *
+     * @param contentType Content type of the response, can be null
+     * @throws IOException if the stream can not be read or does not hold a route
+     */
+    public static RunRoute decode(InputStream stream, String contentType) throws IOException {
+        if (contentType != null && contentType.startsWith(BINARY_CONTENT_TYPE)) {
+            return decodeBinary(stream);
+        }
+        return decodeJson(new InputStreamReader(stream, "UTF-8"));
+    }
+
+    /**
+     * Reads a route in one of the JSON formats.
+     *
+     * @throws IOException if the JSON is malformed
+     */
+    public static RunRoute decodeJson(Reader in) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        // the server does not always quote the tag
+        reader.setLenient(true);
+        String tag = "";
+        Points points = new Points();
+        Points polylineDirections = null;
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("tag".equals(name) && reader.peek() != JsonToken.NULL) {
+                    tag = reader.nextString();
+                } else if ("coordinates".equals(name) && points.size == 0) {
+                    readCoordinates(reader, points);
+                } else if ("polyline".equals(name) && points.size == 0) {
+                    decodePolyline(reader.nextString(), points);
+                } else if ("directions".equals(name)) {
+                    polylineDirections = readDirections(reader);
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Route is not in a known JSON format", e);
+        }
+
+        if (polylineDirections != null) {
+            System.arraycopy(polylineDirections.directions, 0, points.directions, 0, Math.min(points.size, polylineDirections.size));
+        }
+        return points.toRoute(tag);
+    }
+
+    private static void readCoordinates(JsonReader reader, Points points) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            double latitude = Double.NaN;
+            double longitude = Double.NaN;
+            RunDirection.Direction direction = RunDirection.Direction.NONE;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if ("lat".equals(name)) {
+                    latitude = reader.nextDouble();
+                } else if ("lon".equals(name)) {
+                    longitude = reader.nextDouble();
+                } else if ("c".equals(name) && reader.peek() != JsonToken.NULL) {
+                    direction = RunDirection.convertStringToDirection(reader.nextString());
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+                throw new IOException("Route point without a location");
+            }
+            points.add(latitude, longitude, direction);
+        }
+        reader.endArray();
+    }
+
+    private static Points readDirections(JsonReader reader) throws IOException {
+        Points directions = new Points();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                directions.add(0, 0, RunDirection.Direction.NONE);
+            } else {
+                directions.add(0, 0, RunDirection.convertStringToDirection(reader.nextString()));
+            }
+        }
+        reader.endArray();
+        return directions;
+    }
+
+    /**
+     * Decodes a Google encoded polyline with 5 decimals, the points have no direction.
+     * See https://developers.google.com/maps/documentation/utilities/polylinealgorithm
+     *
+     * @throws IOException if the polyline ends in the middle of a number
+     */
+    static void decodePolyline(String encoded, Points points) throws IOException {
+        int position = 0;
+        int latitude = 0;
+        int longitude = 0;
+        while (position < encoded.length()) {
+            int[] next = {position};
+            latitude += decodeValue(encoded, next);
+            longitude += decodeValue(encoded, next);
+            position = next[0];
+            points.add(latitude / POLYLINE_PRECISION, longitude / POLYLINE_PRECISION, RunDirection.Direction.NONE);
+        }
+    }
+
+    // one signed value, position[0] is moved past it
+    private static int decodeValue(String encoded, int[] position) throws IOException {
+        int result = 0;
+        int shift = 0;
+        int chunk;
+        do {
+            if (position[0] >= encoded.length()) {
+                throw new IOException("Polyline ends in the middle of a number");
+            }
+            chunk = encoded.charAt(position[0]++) - 63;
+            result |= (chunk & 0x1f) << shift;
+            shift += 5;
+        } while (chunk >= 0x20);
+        return (result & 1) != 0 ? ~(result >> 1) : result >> 1;
+    }
+
+    /**
+     * Reads a route in the binary format.
+     *
+     * @throws IOException if the stream ends before the last point or the number of points is not sane
+     */
+    public static RunRoute decodeBinary(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        String tag = in.readUTF();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Route has a negative number of points");
+        }
+        if (count > MAX_BINARY_POINTS) {
+            throw new IOException("Route has " + count + " points, at most " + MAX_BINARY_POINTS + " are accepted");
+        }
+        // one more for closing the route
+        Points points = new Points(Math.min(count, MAX_INITIAL_CAPACITY) + 1);
+        for (int i = 0; i < count; i++) {
+            double latitude = in.readInt() / BINARY_PRECISION;
+            double longitude = in.readInt() / BINARY_PRECISION;
+            int direction = in.readByte();
+            points.add(latitude, longitude, direction >= 0 && direction < DIRECTIONS.length ? DIRECTIONS[direction] : RunDirection.Direction.NONE);
+        }
+        return points.toRoute(tag);
+    }
+
+    /**
+     * Growing arrays of points.
+     */
+    static final class Points {
+        private double[] latitudes;
+        private double[] longitudes;
+        private byte[] directions;
+        private int size;
+
+        Points() {
+            this(256);
+        }
+
+        Points(int capacity) {
+            latitudes = new double[Math.max(1, capacity)];
+            longitudes = new double[latitudes.length];
+            directions = new byte[latitudes.length];
+        }
+
+        void add(double latitude, double longitude, RunDirection.Direction direction) {
+            if (size == latitudes.length) {
+                int capacity = size * 2;
+                latitudes = Arrays.copyOf(latitudes, capacity);
+                longitudes = Arrays.copyOf(longitudes, capacity);
+                directions = Arrays.copyOf(directions, capacity);
+            }
+            latitudes[size] = latitude;
+            longitudes[size] = longitude;
+            directions[size] = (byte) direction.ordinal();
+            size++;
+        }
+
+        RunRoute toRoute(String tag) {
+            // the server does not return a closed route, the first point is added again at the end
+            if (size > 0) {
+                add(latitudes[0], longitudes[0], DIRECTIONS[directions[0]]);
+            }
+            return new RunRoute(latitudes, longitudes, directions, size, tag);
+        }
+    }
+}
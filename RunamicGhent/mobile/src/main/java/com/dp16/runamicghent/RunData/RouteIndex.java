@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.runamicghent.RunData;
+
+import com.dp16.runamicghent.GeoMath;
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Spatial index over the segments of a route, built once, to find the part of the route closest to a location
+ * without going over every point of the route for every location.
+ * <p>
+ * The points are projected in a {@link GeoMath.LocalFrame} around the middle of the route, and the segments are put in a uniform grid:
+ * every cell lists the segments that pass through it. The index keeps the arrays of the {@link RunRoute} it belongs to, not a copy,
+ * and projects the points of a segment when it looks at that segment. Only the grid is its own. A query looks at the cell of the location first and then at rings of cells around it,
+ * and stops as soon as no unvisited cell can hold a closer segment. Near the route that is a few cells, whatever the length of the route.
+ * </p>
+ * Answers the nearest segment, the distance to the route and the distance along the route, see {@link Position}.
+ * The index is immutable, so it can be shared between threads.
+ */
+public final class RouteIndex {
+    private static final double MINIMUM_CELL_SIZE = 25.0; // meters
+    private static final int MAXIMUM_CELLS = 1 << 16;
+    // number of segments searched from a progress hint before the whole route is searched
+    private static final int HINT_WINDOW = 20;
+
+    private final GeoMath.LocalFrame frame;
+    private final int segmentCount;
+    // the arrays of the RunRoute, alongRoute is the distance in meters from the start to every point
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] alongRoute;
+
+    // grid, the segments of cell (x, y) are cellSegments[cellStart[c]] up to cellSegments[cellStart[c + 1]] with c = y * columns + x
+    private final double minimumEast;
+    private final double minimumNorth;
+    private final double cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellSegments;
+
+    /**
+     * The arrays are kept, not copied, so they must not change afterwards.
+     *
+     * @param latitudes  Latitudes of the points of the route, in order
+     * @param longitudes Longitudes of the points of the route, same length as the latitudes
+     * @param alongRoute Distance in meters from the start of the route to every point, same length as the latitudes
+     */
+    RouteIndex(double[] latitudes, double[] longitudes, double[] alongRoute) {
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.alongRoute = alongRoute;
+        int size = latitudes.length;
+        // a route of one point is one segment of length zero
+        segmentCount = size == 1 ? 1 : Math.max(0, size - 1);
+
+        double minimumLatitude = Double.MAX_VALUE;
+        double maximumLatitude = -Double.MAX_VALUE;
+        double minimumLongitude = Double.MAX_VALUE;
+        double maximumLongitude = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            minimumLatitude = Math.min(minimumLatitude, latitudes[i]);
+            maximumLatitude = Math.max(maximumLatitude, latitudes[i]);
+            minimumLongitude = Math.min(minimumLongitude, longitudes[i]);
+            maximumLongitude = Math.max(maximumLongitude, longitudes[i]);
+        }
+        frame = size == 0 ? new GeoMath.LocalFrame(0, 0)
+                : new GeoMath.LocalFrame((minimumLatitude + maximumLatitude) / 2, (minimumLongitude + maximumLongitude) / 2);
+
+        double minEast = 0;
+        double minNorth = 0;
+        double maxEast = 0;
+        double maxNorth = 0;
+        for (int i = 0; i < size; i++) {
+            double east = frame.east(longitudes[i]);
+            double north = frame.north(latitudes[i]);
+            if (i == 0) {
+                minEast = maxEast = east;
+                minNorth = maxNorth = north;
+            } else {
+                minEast = Math.min(minEast, east);
+                maxEast = Math.max(maxEast, east);
+                minNorth = Math.min(minNorth, north);
+                maxNorth = Math.max(maxNorth, north);
+            }
+        }
+        minimumEast = minEast;
+        minimumNorth = minNorth;
+
+        // about one segment per cell, but not so small that the grid gets big
+        double width = maxEast - minEast;
+        double height = maxNorth - minNorth;
+        double averageSegment = size > 1 ? alongRoute[size - 1] / segmentCount : 0;
+        double cell = Math.max(MINIMUM_CELL_SIZE, averageSegment);
+        while ((long) ((width / cell) + 1) * ((long) (height / cell) + 1) > MAXIMUM_CELLS) {
+            cell *= 2;
+        }
+        cellSize = cell;
+        columns = (int) (width / cell) + 1;
+        rows = (int) (height / cell) + 1;
+
+        // count, then fill, the segments of every cell
+        cellStart = new int[columns * rows + 1];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            addToCells(segment, null);
+        }
+        int total = 0;
+        for (int c = 0; c < cellStart.length; c++) {
+            int count = cellStart[c];
+            cellStart[c] = total;
+            total += count;
+        }
+        cellSegments = new int[total];
+        int[] filled = new int[columns * rows];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            addToCells(segment, filled);
+        }
+    }
+
+    /**
+     * Goes over the cells a segment passes through, row by row.
+     * Counts the segment in cellStart when filled is null, else stores it in cellSegments.
+     */
+    private void addToCells(int segment, int[] filled) {
+        int end = end(segment);
+        double x0 = (frame.east(longitudes[segment]) - minimumEast) / cellSize;
+        double y0 = (frame.north(latitudes[segment]) - minimumNorth) / cellSize;
+        double x1 = (frame.east(longitudes[end]) - minimumEast) / cellSize;
+        double y1 = (frame.north(latitudes[end]) - minimumNorth) / cellSize;
+        int firstRow = clamp((int) Math.min(y0, y1), rows);
+        int lastRow = clamp((int) Math.max(y0, y1), rows);
+        for (int row = firstRow; row <= lastRow; row++) {
+            // part of the segment within this row
+            double from = 0;
+            double to = 1;
+            if (y1 != y0) {
+                double atBottom = (row - y0) / (y1 - y0);
+                double atTop = (row + 1 - y0) / (y1 - y0);
+                from = Math.max(0, Math.min(atBottom, atTop));
+                to = Math.min(1, Math.max(atBottom, atTop));
+            }
+            double xFrom = x0 + from * (x1 - x0);
+            double xTo = x0 + to * (x1 - x0);
+            int firstColumn = clamp((int) Math.min(xFrom, xTo), columns);
+            int lastColumn = clamp((int) Math.max(xFrom, xTo), columns);
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int c = row * columns + column;
+                if (filled == null) {
+                    cellStart[c]++;
+                } else {
+                    cellSegments[cellStart[c] + filled[c]++] = segment;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Point at the end of a segment, the segment of a route of one point starts and ends at that point
+     */
+    private int end(int segment) {
+        return segment + 1 < latitudes.length ? segment + 1 : segment;
+    }
+
+    private static int clamp(int value, int count) {
+        return Math.max(0, Math.min(count - 1, value));
+    }
+
+    /**
+     * @return Number of segments, one less than the number of points
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * @return Length of the route in meters
+     */
+    public double getLength() {
+        return alongRoute.length == 0 ? 0 : alongRoute[alongRoute.length - 1];
+    }
+
+    /**
+     * Finds the closest point of the route.
+     *
+     * @return Where on the route the location is closest to, or null if the route is empty
+     */
+    public Position locate(LatLng location) {
+        return search(frame.east(location.longitude), frame.north(location.latitude), Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Finds the closest point of the route near the part where the runner was, using the last known segment as a hint.
+     * The segments from the hint on are searched first. If one of them is within the radius, the closest of those is returned,
+     * even when another pass of the route is closer, so a route that passes the same street twice stays on the pass the runner is on.
+     * Otherwise the whole route is searched.
+     *
+     * @param hint   Last known segment
+     * @param radius Distance in meters within which a segment near the hint is preferred
+     * @return Where on the route the location is closest to, or null if the route is empty
+     */
+    public Position locate(LatLng location, int hint, double radius) {
+        double pointEast = frame.east(location.longitude);
+        double pointNorth = frame.north(location.latitude);
+        int first = clamp(hint, segmentCount);
+        int last = Math.min(segmentCount, first + HINT_WINDOW);
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (int segment = first; segment < last; segment++) {
+            double distance = distanceSquared(segment, pointEast, pointNorth);
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = segment;
+            }
+        }
+        if (best >= 0 && bestDistance <= radius * radius) {
+            return position(best, pointEast, pointNorth, bestDistance);
+        }
+        return search(pointEast, pointNorth, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * @return Distance in meters from a location to the closest point of the route, infinity if the route is empty
+     */
+    public double distanceToRoute(LatLng location) {
+        Position position = locate(location);
+        return position == null ? Double.POSITIVE_INFINITY : position.getDistance();
+    }
+
+    /**
+     * Only looks at the cells within the tolerance, so it is as fast for locations far off the route.
+     *
+     * @return true if the location is within tolerance meters of the route
+     */
+    public boolean isOnRoute(LatLng location, double tolerance) {
+        Position position = search(frame.east(location.longitude), frame.north(location.latitude), tolerance);
+        return position != null && position.getDistance() <= tolerance;
+    }
+
+    /**
+     * Searches rings of cells around the cell of the point, until the closest segment found is closer than any unvisited cell,
+     * or the unvisited cells are all further than the maximum distance.
+     */
+    private Position search(double pointEast, double pointNorth, double maximumDistance) {
+        if (segmentCount == 0) {
+            return null;
+        }
+        double x = (pointEast - minimumEast) / cellSize;
+        double y = (pointNorth - minimumNorth) / cellSize;
+        // rings that do not reach the grid are empty
+        double outside = Math.max(Math.max(-x, x - columns), Math.max(-y, y - rows));
+        int ring = Math.max(0, (int) outside);
+        int centerColumn = (int) Math.floor(x);
+        int centerRow = (int) Math.floor(y);
+        int lastRing = Math.max(Math.max(centerColumn, columns - 1 - centerColumn), Math.max(centerRow, rows - 1 - centerRow));
+
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        for (; ring <= lastRing; ring++) {
+            // the point can be anywhere in its cell, so the cells of this ring and beyond are at least this far away
+            double reach = (ring - 1) * cellSize;
+            if (reach * reach >= bestDistance || reach > maximumDistance) {
+                break;
+            }
+            int firstRow = Math.max(0, centerRow - ring);
+            int lastRow = Math.min(rows - 1, centerRow + ring);
+            for (int row = firstRow; row <= lastRow; row++) {
+                boolean edgeRow = row == centerRow - ring || row == centerRow + ring;
+                // on the other rows only the first and last column belong to the ring
+                int step = edgeRow ? 1 : Math.max(1, 2 * ring);
+                for (int column = centerColumn - ring; column <= centerColumn + ring; column += step) {
+                    if (column < 0 || column >= columns) {
+                        continue;
+                    }
+                    int c = row * columns + column;
+                    for (int i = cellStart[c]; i < cellStart[c + 1]; i++) {
+                        int segment = cellSegments[i];
+                        double distance = distanceSquared(segment, pointEast, pointNorth);
+                        if (distance < bestDistance || (distance == bestDistance && segment < best)) {
+                            bestDistance = distance;
+                            best = segment;
+                        }
+                    }
+                }
+            }
+        }
+        return best < 0 ? null : position(best, pointEast, pointNorth, bestDistance);
+    }
+
+    private double distanceSquared(int segment, double pointEast, double pointNorth) {
+        int end = end(segment);
+        return frame.distanceToSegmentSquared(pointEast, pointNorth, frame.east(longitudes[segment]), frame.north(latitudes[segment]),
+                frame.east(longitudes[end]), frame.north(latitudes[end]));
+    }
+
+    private Position position(int segment, double pointEast, double pointNorth, double distanceSquared) {
+        int end = end(segment);
+        double startEast = frame.east(longitudes[segment]);
+        double startNorth = frame.north(latitudes[segment]);
+        double segmentEast = frame.east(longitudes[end]) - startEast;
+        double segmentNorth = frame.north(latitudes[end]) - startNorth;
+        double lengthSquared = segmentEast * segmentEast + segmentNorth * segmentNorth;
+        double fraction = 0;
+        if (lengthSquared > 0) {
+            fraction = ((pointEast - startEast) * segmentEast + (pointNorth - startNorth) * segmentNorth) / lengthSquared;
+            fraction = Math.max(0, Math.min(1, fraction));
+        }
+        double along = alongRoute[segment] + fraction * (alongRoute[end] - alongRoute[segment]);
+        return new Position(segment, fraction, Math.sqrt(distanceSquared), along);
+    }
+
+    /**
+     * The point of a route closest to a location.
+     */
+    public static final class Position {
+        private final int segment;
+        private final double fraction;
+        private final double distance;
+        private final double alongRoute;
+
+        private Position(int segment, double fraction, double distance, double alongRoute) {
+            this.segment = segment;
+            this.fraction = fraction;
+            this.distance = distance;
+            this.alongRoute = alongRoute;
+        }
+
+        /**
+         * @return Index of the segment, which goes from the point with this index to the next one
+         */
+        public int getSegment() {
+            return segment;
+        }
+
+        /**
+         * @return How far along the segment the closest point is, from 0 at its start to 1 at its end
+         */
+        public double getFraction() {
+            return fraction;
+        }
+
+        /**
+         * @return Distance from the location to the route, in meters
+         */
+        public double getDistance() {
+            return distance;
+        }
+
+        /**
+         * @return Distance along the route from its start to the closest point, in meters
+         */
+        public double getAlongRoute() {
+            return alongRoute;
+        }
+    }
+}
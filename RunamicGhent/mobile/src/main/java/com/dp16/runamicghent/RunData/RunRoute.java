@@ -22,39 +22,118 @@ import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
 
 /**
  * This class contains a complete route for the user to run.
  * It is constructed from a JSON object, obtained from the server.
- * The route is an ArrayList of RunRoutePoints that contain a location and direction.
+ * The route is a list of points that have a location and a direction.
+ * <p>
+ * The points are kept in arrays of primitives: latitudes, longitudes and directions,
+ * with the distance along the route to every point and the positions of the points that have an instruction.
+ * Lists of RunRoutePoints or LatLngs are views on these arrays, nothing is copied.
+ * Navigation reads a point with {@link #getLatitude(int)}, {@link #getLongitude(int)} and {@link #getDirection(int)},
+ * and distances along the route with {@link #distanceAlong(int, int)}, which does not allocate.
+ * </p>
+ * A {@link RouteIndex} over the points is built with the route, to find where on the route a location is.
  * Created by hendrikdepauw on 31/03/2017.
  */
 
 public class RunRoute {
-    private ArrayList<RunRoutePoint> route;
+    private static final RunDirection.Direction[] DIRECTIONS = RunDirection.Direction.values();
+
+    private double[] latitudes;
+    private double[] longitudes;
+    // ordinals of RunDirection.Direction
+    private byte[] directions;
+    // distance in meters from the start to every point
+    private double[] cumulativeDistance;
+    // positions of the points with a direction that is not NONE, in order
+    private int[] instructions;
     private RunDistance routeLength;
+    private RouteIndex index;
     private String tag;
 
     public RunRoute(Object JSONRoute) {
         RunRoute runRoute = convertJSONToRoute(JSONRoute);
-        route = runRoute.getRoute();
+        latitudes = runRoute.latitudes;
+        longitudes = runRoute.longitudes;
+        directions = runRoute.directions;
+        cumulativeDistance = runRoute.cumulativeDistance;
+        instructions = runRoute.instructions;
         tag = runRoute.getTag();
         routeLength = runRoute.getRouteLength();
+        index = runRoute.getIndex();
     }
 
-    public RunRoute(ArrayList<RunRoutePoint> route, String tag) {
-        this.route = route;
+    public RunRoute(List<RunRoutePoint> route, String tag) {
         this.tag = tag;
-        routeLength = calculateRouteLength(route);
+        setRoute(route);
     }
 
-    public ArrayList<RunRoutePoint> getRoute() {
-        return route;
+    /**
+     * Copies the first size elements of the arrays filled by a {@link RouteDecoder}.
+     *
+     * @param directions Ordinals of RunDirection.Direction
+     */
+    RunRoute(double[] latitudes, double[] longitudes, byte[] directions, int size, String tag) {
+        this.tag = tag;
+        this.latitudes = Arrays.copyOf(latitudes, size);
+        this.longitudes = Arrays.copyOf(longitudes, size);
+        this.directions = Arrays.copyOf(directions, size);
+        computeTables();
+    }
+
+    /**
+     * @return The points of the route, as a view that creates a RunRoutePoint for every point that is read
+     */
+    public List<RunRoutePoint> getRoute() {
+        return new PointList(null);
     }
 
-    public void setRoute(ArrayList<RunRoutePoint> route){
-        this.route = route;
+    /**
+     * Replaces the points of the route, the route length and index are computed again.
+     */
+    public void setRoute(List<RunRoutePoint> route){
+        int size = route.size();
+        latitudes = new double[size];
+        longitudes = new double[size];
+        directions = new byte[size];
+        for (int i = 0; i < size; i++) {
+            RunRoutePoint point = route.get(i);
+            latitudes[i] = point.getLocation().latitude;
+            longitudes[i] = point.getLocation().longitude;
+            directions[i] = (byte) point.getDirection().getDirection().ordinal();
+        }
+        computeTables();
+    }
+
+    /**
+     * Computes the distances along the route, the instruction positions, the route length and the index from the points.
+     */
+    private void computeTables() {
+        int size = latitudes.length;
+        cumulativeDistance = new double[size];
+        int[] found = new int[size];
+        int instructionCount = 0;
+        float[] distance = {0.0f};
+
+        for (int i = 0; i < size; i++) {
+            if (directions[i] != RunDirection.Direction.NONE.ordinal()) {
+                found[instructionCount++] = i;
+            }
+            if (i > 0) {
+                Location.distanceBetween(latitudes[i], longitudes[i], latitudes[i - 1], longitudes[i - 1], distance);
+                cumulativeDistance[i] = cumulativeDistance[i - 1] + distance[0];
+            }
+        }
+        instructions = Arrays.copyOf(found, instructionCount);
+        routeLength = new RunDistance(size == 0 ? 0 : (int) Math.round(cumulativeDistance[size - 1]));
+        index = new RouteIndex(latitudes, longitudes, cumulativeDistance);
     }
 
     public RunDistance getRouteLength(){
@@ -66,37 +145,85 @@ public class RunRoute {
     }
 
     /**
-     * This method generates an ArrayList only containing the RunRoutePoints containing a meaningful
-     * direction (not none).
-     *
-     * @return ArrayList with RunRoutePoints where direction is not none.
+     * @return Index over the segments of the route, segment i goes from point i to point i + 1
      */
-    public ArrayList<RunRoutePoint> getRunRouteInstructions() {
-        ArrayList<RunRoutePoint> routeInstructions = new ArrayList<>();
+    public RouteIndex getIndex(){
+        return index;
+    }
 
-        for (RunRoutePoint runRoutePoint : route) {
-            if (runRoutePoint.getDirection().getDirection() != RunDirection.Direction.NONE) {
-                routeInstructions.add(runRoutePoint);
-            }
-        }
+    /**
+     * @return Number of points in the route
+     */
+    public int size() {
+        return latitudes.length;
+    }
+
+    public double getLatitude(int point) {
+        return latitudes[point];
+    }
 
-        return routeInstructions;
+    public double getLongitude(int point) {
+        return longitudes[point];
     }
 
     /**
-     * This method constructs an ArrayList of coordinates from the ArrayList of
-     * RunRoutePoints. The main purpose of this list is to display them on a GoogleMap.
-     *
-     * @return an ArrayList<LatLng> of the route.
+     * @return A new LatLng with the location of a point
      */
-    public ArrayList<LatLng> getRouteCoordinates() {
-        ArrayList<LatLng> routeCoordinates = new ArrayList<>();
+    public LatLng getLocation(int point) {
+        return new LatLng(latitudes[point], longitudes[point]);
+    }
+
+    public RunDirection.Direction getDirection(int point) {
+        return DIRECTIONS[directions[point]];
+    }
 
-        for (RunRoutePoint runRoutePoint : route) {
-            routeCoordinates.add(runRoutePoint.getLocation());
+    /**
+     * @return Distance in meters along the route from one point to another, negative if the second point comes first
+     */
+    public double distanceAlong(int from, int to) {
+        return cumulativeDistance[to] - cumulativeDistance[from];
+    }
+
+    /**
+     * @param progress Position of the last point that was passed
+     * @return Distance in meters along the route from that point to the end
+     */
+    public double remainingDistance(int progress) {
+        if (latitudes.length == 0) {
+            return 0;
         }
+        int from = Math.max(0, Math.min(latitudes.length - 1, progress));
+        return cumulativeDistance[latitudes.length - 1] - cumulativeDistance[from];
+    }
 
-        return routeCoordinates;
+    /**
+     * @param point Position of a point
+     * @return Position of the first point from there on with a direction that is not NONE, or -1 if there is none
+     */
+    public int nextInstruction(int point) {
+        int found = Arrays.binarySearch(instructions, point);
+        int next = found >= 0 ? found : -found - 1;
+        return next < instructions.length ? instructions[next] : -1;
+    }
+
+    /**
+     * This method returns the RunRoutePoints containing a meaningful direction (not none).
+     *
+     * @return View on the RunRoutePoints where direction is not none.
+     */
+    public List<RunRoutePoint> getRunRouteInstructions() {
+        return new PointList(instructions);
+    }
+
+    /**
+     * This method returns the coordinates of the route.
+     * The main purpose of this list is to display them on a GoogleMap.
+     * It is a view on the route, a LatLng is made when a coordinate is read.
+     *
+     * @return a List<LatLng> of the route.
+     */
+    public List<LatLng> getRouteCoordinates() {
+        return new CoordinateList();
     }
 
     /**
@@ -148,7 +275,7 @@ public class RunRoute {
      * @param route The route of which the length should be calculated.
      * @return RunDistance object containing the length of the route.
      */
-    public static RunDistance calculateRouteLength(ArrayList<RunRoutePoint> route) {
+    public static RunDistance calculateRouteLength(List<RunRoutePoint> route) {
         float totalDistance = 0.0f;
         float[] distance = {0.0f};
 
@@ -160,4 +287,40 @@ public class RunRoute {
         return new RunDistance(Math.round(totalDistance));
     }
 
+    /**
+     * Read-only view on the points of the route, or on the points at some positions.
+     */
+    private final class PointList extends AbstractList<RunRoutePoint> implements RandomAccess {
+        private final int[] positions;
+
+        private PointList(int[] positions) {
+            this.positions = positions;
+        }
+
+        @Override
+        public RunRoutePoint get(int i) {
+            int point = positions == null ? i : positions[i];
+            return new RunRoutePoint(latitudes[point], longitudes[point], new RunDirection(getDirection(point)));
+        }
+
+        @Override
+        public int size() {
+            return positions == null ? latitudes.length : positions.length;
+        }
+    }
+
+    /**
+     * Read-only view on the coordinates of the route.
+     */
+    private final class CoordinateList extends AbstractList<LatLng> implements RandomAccess {
+        @Override
+        public LatLng get(int i) {
+            return getLocation(i);
+        }
+
+        @Override
+        public int size() {
+            return latitudes.length;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.runamicghent.RunData;
+
+import com.google.android.gms.maps.model.LatLng;
+
+/**
+ * Immutable result of processing one location fix during a run, see {@link com.dp16.runamicghent.DataProvider.LocationPipeline}.
+ * The position, speed and distance all come from the same fix, so listeners that use more than one of them see consistent values.
+ */
+public final class RunSample {
+    private final LatLng position;
+    private final double speed; // in m/s
+    private final double distance; // in meters since the start of the run
+    private final double accuracy; // in meters
+    private final long time; // in ms, timestamp of the fix
+
+    public RunSample(LatLng position, double speed, double distance, double accuracy, long time) {
+        this.position = position;
+        this.speed = speed;
+        this.distance = distance;
+        this.accuracy = accuracy;
+        this.time = time;
+    }
+
+    /**
+     * @return Filtered position
+     */
+    public LatLng getPosition() {
+        return position;
+    }
+
+    /**
+     * @return Estimated speed in m/s
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return Distance covered since the start of the run, in meters
+     */
+    public double getDistance() {
+        return distance;
+    }
+
+    /**
+     * @return Estimated error of the position, in meters
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return Timestamp of the fix, in milliseconds since the epoch
+     */
+    public long getTime() {
+        return time;
+    }
+
+    @Override
+    public String toString() {
+        return "RunSample{" + position + ", " + speed + " m/s, " + distance + " m, accuracy " + accuracy + " m, " + time + "}";
+    }
+}
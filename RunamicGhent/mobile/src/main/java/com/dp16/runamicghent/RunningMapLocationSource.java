@@ -50,7 +50,7 @@ public class RunningMapLocationSource implements LocationSource, EventListener {
     @Override
     public void activate(OnLocationChangedListener onLocationChangedListener) {
         this.listener = onLocationChangedListener;
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.RAW_LOCATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.RAW_LOCATION, this);
     }
 
     @Override
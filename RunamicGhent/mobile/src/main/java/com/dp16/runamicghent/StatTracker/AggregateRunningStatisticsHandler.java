@@ -17,9 +17,11 @@ import android.util.Log;
 
 import com.dp16.runamicghent.Constants;
 import com.dp16.eventbroker.EventBroker;
-import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
 import com.dp16.eventbroker.EventPublisherClass;
+import com.dp16.eventbroker.ResponseFuture;
+
+import java.util.concurrent.ExecutionException;
 
 /**
  * Class that handles the AggregateRunningStatistics.
@@ -31,31 +33,33 @@ import com.dp16.eventbroker.EventPublisherClass;
  * do not return immediately. Use an AsyncTask if using this from an Activity or Fragment.
  * <p>
  *     <b>Messages Produced: </b>
- *     {@link com.dp16.runamicghent.Constants.EventTypes#LOAD_AGGREGATESTATISTICS},
  *     {@link com.dp16.runamicghent.Constants.EventTypes#DELETE_AGGREGATESTATISTICS},
  *     {@link com.dp16.runamicghent.Constants.EventTypes#STORE_AGGREGATESTATISTICS}
  * </p>
  * <p>
- *     <b>Messages Consumed: </b> {@link com.dp16.runamicghent.Constants.EventTypes#LOADED_AGGREGATESTATISTICS}
+ *     <b>Requests: </b> {@link com.dp16.runamicghent.Constants.EventTypes#LOAD_AGGREGATESTATISTICS}
  * </p>
  *
  * Created by hendrikdepauw on 30/03/2017.
  */
 
-public class AggregateRunningStatisticsHandler implements EventListener, EventPublisher {
+public class AggregateRunningStatisticsHandler implements EventPublisher {
+    private static final String TAG = "AggregateHandler"; // Not full name because max 23 characters...
+
     private AggregateRunningStatistics aggregateRunningStatistics;
 
-    //Objects used for synchronization. Have to make sure statistics are loaded before modifying them
+    // Pending load request. Guarded by lock, the statistics are loaded once it is consumed.
     private final Object lock = new Object();
-    private volatile Boolean aggregateRunningStatisticsLoaded = false;
+    private ResponseFuture loading;
+    // If loading failed, the stored statistics are unknown and must not be overwritten
+    private boolean loadFailed = false;
 
     /**
-     * Constructor registers with the eventBroker for LOADED_AGGREGATEDSTATISTICS events and
-     * send a LOAD_AGGREGATEDSTATISTICS event so they can be loaded from memory.
+     * Constructor requests the aggregateRunningStatistics from the persistence module,
+     * so they can be loaded from memory while the caller does other work.
      */
     public AggregateRunningStatisticsHandler() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOADED_AGGREGATESTATISTICS, this);
-        EventBroker.getInstance().addEvent(Constants.EventTypes.LOAD_AGGREGATESTATISTICS, null, this);
+        loading = EventBroker.getInstance().request(Constants.Topics.LOAD_AGGREGATESTATISTICS, null);
     }
 
     /**
@@ -71,7 +75,11 @@ public class AggregateRunningStatisticsHandler implements EventListener, EventPu
 
         aggregateRunningStatistics.handleRunningStatistics(runningStatistics);
 
-        EventBroker.getInstance().addEvent(Constants.EventTypes.STORE_AGGREGATESTATISTICS, aggregateRunningStatistics, this);
+        if (loadFailed) {
+            Log.e(TAG, "Not storing aggregate statistics, the stored ones could not be loaded");
+            return;
+        }
+        EventBroker.getInstance().addEvent(Constants.Topics.STORE_AGGREGATESTATISTICS, aggregateRunningStatistics, this);
     }
 
     /**
@@ -87,16 +95,36 @@ public class AggregateRunningStatisticsHandler implements EventListener, EventPu
 
     /**
      * This method waits until the aggregateRunningStatistics are loaded.
-     * Uses a boolean that is set to true by the handleEvent method.
+     * The load request fails after {@link EventBroker#DEFAULT_REQUEST_TIMEOUT} if the persistence module does not answer.
      */
     private void waitOnAggregateRunningStatistics() {
         synchronized (lock) {
-            while (!aggregateRunningStatisticsLoaded) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException e) {
-                    Log.e("AggregateHandler", e.getMessage(), e); // Not full name because max 23 characters...
-                    Thread.currentThread().interrupt();
+            if (loading == null) {
+                return;
+            }
+            Object message = null;
+            try {
+                message = loading.get();
+            } catch (InterruptedException e) {
+                Log.e(TAG, e.getMessage(), e);
+                Thread.currentThread().interrupt();
+                loadFailed = true;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Could not load aggregate statistics", e.getCause());
+                loadFailed = true;
+            }
+            loading = null;
+
+            /*
+             * If null is returned by DataRetrievalLocal, this means no AggregateRunningStatistics are stored
+             * and a new one should be made.
+             */
+            if (message != null) {
+                aggregateRunningStatistics = (AggregateRunningStatistics) message;
+            } else {
+                aggregateRunningStatistics = new AggregateRunningStatistics();
+                if (!loadFailed) {
+                    EventBroker.getInstance().addEvent(Constants.Topics.STORE_AGGREGATESTATISTICS, aggregateRunningStatistics, this);
                 }
             }
         }
@@ -108,29 +136,6 @@ public class AggregateRunningStatisticsHandler implements EventListener, EventPu
      */
     public static void deleteAggregateRunningStatistics() {
         EventPublisherClass publisher = new EventPublisherClass();
-        publisher.publishEvent(Constants.EventTypes.DELETE_AGGREGATESTATISTICS, null);
-    }
-
-    @Override
-    public void handleEvent(String eventType, Object message) {
-        //Unsubscribe from the eventBroker
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOADED_AGGREGATESTATISTICS, this);
-
-        /*
-         * If null is returned by DataRetrievalLocal, this means no AggregateRunningStatistics are stored
-         * and a new one should be made.
-         */
-        if (message != null) {
-            aggregateRunningStatistics = (AggregateRunningStatistics) message;
-        } else {
-            aggregateRunningStatistics = new AggregateRunningStatistics();
-            EventBroker.getInstance().addEvent(Constants.EventTypes.STORE_AGGREGATESTATISTICS, aggregateRunningStatistics, this);
-        }
-
-        synchronized (lock) {
-            //Notify other methods that the statistics are loaded.
-            aggregateRunningStatisticsLoaded = true;
-            lock.notify();
-        }
+        publisher.publishEvent(Constants.Topics.DELETE_AGGREGATESTATISTICS, null);
     }
 }
@@ -14,28 +14,26 @@
 package com.dp16.runamicghent.StatTracker;
 
 import android.content.SharedPreferences;
-import android.location.Location;
 import android.util.Log;
 import android.preference.PreferenceManager;
 
 import com.dp16.runamicghent.Activities.RunningScreen.RunningActivity;
 import com.dp16.runamicghent.Constants;
+import com.dp16.runamicghent.GeoMath;
 import com.dp16.runamicghent.RunData.RunAudio;
 import com.dp16.runamicghent.RunData.RunDirection;
 import com.dp16.runamicghent.RunData.RunDistance;
+import com.dp16.runamicghent.RunData.RouteIndex;
 import com.dp16.runamicghent.RunData.RunRoute;
-import com.dp16.runamicghent.RunData.RunRoutePoint;
 import com.dp16.runamicghent.TrackRequest;
 import com.dp16.runamicghent.TrackResponse;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
 import com.google.android.gms.maps.model.LatLng;
-import com.google.maps.android.PolyUtil;
 
-import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * The purpose of this class is to provide navigation directions at the appropriate time.
@@ -80,33 +78,35 @@ public class RouteEngine implements EventListener, EventPublisher {
     public RouteEngine(RunningActivity activity) {
         this.activity = activity;
 
-        // Make worker thread
-        worker = Executors.newSingleThreadExecutor();
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("RouteEngine");
     }
 
     public void start() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.TRACK, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.TRACK, this);
     }
 
     public void startRunning() {
         progress = 0;
 
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.ABNORMAL_HEART_RATE, this);
+        // locations are handled on the worker thread, the other events inline
+        EventBroker.getInstance().addEventListener(Constants.Topics.LOCATION, this, worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.ABNORMAL_HEART_RATE, this);
     }
 
     public void stop() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.ABNORMAL_HEART_RATE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.LOCATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.ABNORMAL_HEART_RATE, this);
+        worker.shutdown();
     }
 
     @Override
     public void handleEvent(String eventType, Object message) {
         switch (eventType){
             case Constants.EventTypes.LOCATION:
-                if (progress < routeList[onRoute].getRoute().size()) {
+                if (progress < routeList[onRoute].size()) {
                     currentLocation = (LatLng) message;
-                    worker.submit(new Worker());
+                    navigate();
                 }
                 break;
             case Constants.EventTypes.TRACK:
@@ -119,10 +119,10 @@ public class RouteEngine implements EventListener, EventPublisher {
                          when the user decides to follow it. Otherwise it should be discarded.
                          When multiple route alternatives arrive, only the newest one is kept.
                          */
-                        RunRoute dynamicRoute = new RunRoute(((TrackResponse) message).getTrack());
+                        RunRoute dynamicRoute = ((TrackResponse) message).getRoute();
                         routeList[notOnRoute] = dynamicRoute;
                         removeEqualStart();
-                        activity.getMapRunningFragment().setSecondaryRoute(routeList[notOnRoute].getRouteCoordinates().subList(splitPoint, routeList[notOnRoute].getRouteCoordinates().size() - 1));
+                        activity.getMapRunningFragment().setSecondaryRoute(routeList[notOnRoute].getRouteCoordinates().subList(splitPoint, routeList[notOnRoute].size() - 1));
                         activity.getMapRunningFragment().displaySecondaryRoute();
                         newRoute = true;
                         onSplitPoint = false;
@@ -131,14 +131,14 @@ public class RouteEngine implements EventListener, EventPublisher {
                         onRoute = 0;
                         notOnRoute = 1;
                         offset = 0;
-                        RunRoute route = new RunRoute(((TrackResponse) message).getTrack());
+                        RunRoute route = ((TrackResponse) message).getRoute();
                         routeList[onRoute] = route;
 
                         activity.getMapRunningFragment().setRoute(routeList[onRoute].getRouteCoordinates());
                         activity.getMapRunningFragment().displayRoute();
                         activity.setRunRoute(routeList[onRoute]);
 
-                        EventBroker.getInstance().addEvent(Constants.EventTypes.TRACK_LOADED, null, this);
+                        EventBroker.getInstance().addEvent(Constants.Topics.TRACK_LOADED, null, this);
                     }
                 }
                 break;
@@ -158,19 +158,18 @@ public class RouteEngine implements EventListener, EventPublisher {
         //TODO chance this method
         boolean equal = true;
         int iterator = 0;
-        float[] distance = new float[1];
         splitPoint = 0;
 
         float threshold = 0.000001f;
+        RunRoute route = routeList[onRoute];
+        RunRoute dynamicRoute = routeList[notOnRoute];
+        int size = Math.min(route.size(), dynamicRoute.size());
 
-        while(equal){
+        while(equal && iterator < size){
             //if instructions are similar, then remove this instruction from the list
-            RunRoutePoint onRoutePoint = routeList[onRoute].getRoute().get(iterator);
-            RunRoutePoint dynamicRoutePoint = routeList[notOnRoute].getRoute().get(iterator);
-            Location.distanceBetween(onRoutePoint.getLocation().latitude, onRoutePoint.getLocation().longitude,
-                    dynamicRoutePoint.getLocation().latitude, dynamicRoutePoint.getLocation().longitude,
-                    distance);
-            if(distance[0] < threshold && onRoutePoint.getDirection().getDirection() == dynamicRoutePoint.getDirection().getDirection()){
+            double distance = GeoMath.distanceSquared(route.getLatitude(iterator), route.getLongitude(iterator),
+                    dynamicRoute.getLatitude(iterator), dynamicRoute.getLongitude(iterator));
+            if(distance < threshold * threshold && route.getDirection(iterator) == dynamicRoute.getDirection(iterator)){
                 splitPoint++;
                 iterator++;
             }else{
@@ -232,10 +231,7 @@ public class RouteEngine implements EventListener, EventPublisher {
                 break;
         }
 
-        LatLng loc;
-        RunRoutePoint point = route.getRoute().get(progress+1);
-        loc = point.getLocation();
-        requestTrack(loc, distance, true, route.getTag());
+        requestTrack(route.getLocation(progress + 1), distance, true, route.getTag());
     }
 
     public void requestTrackDynamicTime(double avgSpeed){
@@ -252,10 +248,7 @@ public class RouteEngine implements EventListener, EventPublisher {
         //Calc
             distance = new RunDistance((int) ((avgSpeed/60)*m));
 
-        LatLng loc;
-        RunRoutePoint point = route.getRoute().get(progress+1);
-        loc = point.getLocation();
-        requestTrack(loc, distance, true, route.getTag());
+        requestTrack(route.getLocation(progress + 1), distance, true, route.getTag());
     }
 
     private void requestTrack(LatLng location, RunDistance distance, boolean dynamic, String tag){
@@ -263,150 +256,121 @@ public class RouteEngine implements EventListener, EventPublisher {
         TrackRequest trackRequest = new TrackRequest(location, distance, dynamic, tag);
         requestNumber = trackRequest.getRequestNumber();
         // Set request number of MapRunningFragment
-        EventBroker.getInstance().addEvent(Constants.EventTypes.TRACK_REQUEST, trackRequest, this);
+        EventBroker.getInstance().addEvent(Constants.Topics.TRACK_REQUEST, trackRequest, this);
     }
 
-    private class Worker implements Runnable, EventPublisher {
-        /**
-         * Checks if the current location is within a certain radius of the next instruction.
-         * This method of checking is not ideal for several reasons:
-         * 1. If the GPS coordinates are very inaccurate, an instruction point might be skipped.
-         * This prevents any other instructions from being loaded because the algorithm is still
-         * looking for that location that is already passed.
-         * 2. Multiple instructions can be very near each other. If only one location
-         * is in the radius of both instructions, one will be missed and the algorithm is stuck.
-         * Probably more reasons can be found. But it is the best I could think of. It is slightly
-         * inspired on: https://github.com/mapzen/open/blob/master/src/main/java/com/mapzen/open/route/RouteEngine.java
-         * This is a class that does exactly what we want this thing to do. I just don't know how.
-         * Grtz Hendrik.
-         *
-         * New problem: above is fixed but a new problem arrised where the Uturn can cause a stop in the rundirections
-         * if it is skipped. This is because we need to wait to pass the UTURN otherwise we could have two directions at
-         * the same time if we need to take the same rout multiple times
-         * Grtz Maxim
-         */
-        @Override
-        public void run() {
-            // Get the distance between the next instruction point and the current location.
-            float[] distanceToNextInstruction = new float[1];
-            offset = 0;
-            boolean stop = false;
-            if(newRoute && onSplitPoint){
-                decidePath(); // this method will set the onRoute variable the closest route to the user
+    /**
+     * Checks if the current location is within a certain radius of the next instruction.
+     * This method of checking is not ideal for several reasons:
+     * 1. If the GPS coordinates are very inaccurate, an instruction point might be skipped.
+     * This prevents any other instructions from being loaded because the algorithm is still
+     * looking for that location that is already passed.
+     * 2. Multiple instructions can be very near each other. If only one location
+     * is in the radius of both instructions, one will be missed and the algorithm is stuck.
+     * Probably more reasons can be found. But it is the best I could think of. It is slightly
+     * inspired on: https://github.com/mapzen/open/blob/master/src/main/java/com/mapzen/open/route/RouteEngine.java
+     * This is a class that does exactly what we want this thing to do. I just don't know how.
+     * Grtz Hendrik.
+     *
+     * New problem: above is fixed but a new problem arrised where the Uturn can cause a stop in the rundirections
+     * if it is skipped. This is because we need to wait to pass the UTURN otherwise we could have two directions at
+     * the same time if we need to take the same rout multiple times
+     * Grtz Maxim
+     */
+    private void navigate() {
+        offset = 0;
+        boolean stop = false;
+        if(newRoute && onSplitPoint){
+            decidePath(); // this method will set the onRoute variable the closest route to the user
+        }
+        while(decideStoppingCriteria() && !stop){
+            if(newRoute && !onSplitPoint){
+                checkOnSplitPoint();
             }
-            while(decideStoppingCriteria() && !stop){
-                if(newRoute && !onSplitPoint){
-                    checkOnSplitPoint();
-                }
 
-                calculateDistances(distanceToNextInstruction);
-                // If they are close enough, publish a NAVIGATION_DIRECTION event.
-                if (!onSplitPoint && distanceToNextInstruction[0] < NAVIGATION_RADIUS) {
-                    RunDirection.Direction direction = routeList[onRoute].getRoute().get(progress + offset).getDirection().getDirection();
-                    if(direction!= RunDirection.Direction.NONE)//we do not want to overload the eventbroker with NONE requests that are doing nothing
-                        publishRunAudioEvent(new RunAudio(routeList[onRoute].getRoute().get(progress + offset).getDirection()));
-                    progress = progress + offset + 1;
-                    stop = true;
-                }else if(onSplitPoint){
-                    progress = progress + offset;
-                    stop = true;
-                }else if(routeList[onRoute].getRoute().get(progress + offset).getDirection().getDirection() == RunDirection.Direction.UTURN){
-                    stop = true;
-                }else {
-                    offset++;
-                }
+            // If the next instruction point is close enough, publish a NAVIGATION_DIRECTION event.
+            if (!onSplitPoint && isNearNextInstruction()) {
+                RunDirection.Direction direction = routeList[onRoute].getDirection(progress + offset);
+                if(direction!= RunDirection.Direction.NONE)//we do not want to overload the eventbroker with NONE requests that are doing nothing
+                    publishRunAudioEvent(new RunAudio(new RunDirection(direction)));
+                progress = progress + offset + 1;
+                stop = true;
+            }else if(onSplitPoint){
+                progress = progress + offset;
+                stop = true;
+            }else if(routeList[onRoute].getDirection(progress + offset) == RunDirection.Direction.UTURN){
+                stop = true;
+            }else {
+                offset++;
             }
-
         }
 
-        private void calculateDistances(float[] distanceToNextInstruction){
-            Location.distanceBetween(currentLocation.latitude, currentLocation.longitude,
-                    routeList[onRoute].getRoute().get(progress + offset).getLocation().latitude, routeList[onRoute].getRoute().get(progress + offset).getLocation().longitude,
-                    distanceToNextInstruction);
-        }
+    }
 
-        private boolean decideStoppingCriteria(){
-            return progress <= routeList[onRoute].getRoute().size() && offset < FUTURE_INSTRUCTIONS;
-        }
+    private boolean isNearNextInstruction(){
+        RunRoute route = routeList[onRoute];
+        double distance = GeoMath.distanceSquared(currentLocation.latitude, currentLocation.longitude,
+                route.getLatitude(progress + offset), route.getLongitude(progress + offset));
+        return distance < NAVIGATION_RADIUS * NAVIGATION_RADIUS;
+    }
 
-        /**
-         * This method decides on which route the runner is currently on
-         * Do not call this method if no dynamic route has been added
-         */
-        private void decidePath(){
-            LatLng p = new LatLng(currentLocation.latitude, currentLocation.longitude);
-            int index = progress;
-
-            //if the distance gets to big, then we need to look further because no distinct could be made if the two routes are to close to each other
-            //this can be done by looking to further route lines
-
-            double distanceCurrentRoute = Double.MAX_VALUE;
-            double distanceSecondRoute = Double.MAX_VALUE;
-            int offset1 = 0;
-            int offset2 = 0;
-            int i = 0;
-            while(i<5 && (index+i+1)<routeList[onRoute].getRoute().size()){
-                double hulp1 = distanceToLine(p,routeList[onRoute].getRoute().get(index + i).getLocation(),routeList[onRoute].getRoute().get(index + i +1).getLocation());
-                double hulp2 = distanceToLine(p,routeList[notOnRoute].getRoute().get(index + i).getLocation(), routeList[notOnRoute].getRoute().get(index + i + 1).getLocation());
-                if(hulp1<distanceCurrentRoute){
-                    distanceCurrentRoute = hulp1;
-                    offset1 = i;
-                }
-                if(hulp2<distanceSecondRoute){
-                    distanceSecondRoute = hulp2;
-                    offset2 = i;
-                }
-                i++;
-            }
+    private boolean decideStoppingCriteria(){
+        return progress <= routeList[onRoute].size() && offset < FUTURE_INSTRUCTIONS;
+    }
 
-            if(distanceCurrentRoute - distanceSecondRoute>NAVIGATION_RADIUS){//runner swtichs to dynamic route
-                int hulp = onRoute;
-                onSplitPoint = false;//now we know which route has been taken, runner is no longer on split point
-                onRoute = notOnRoute;
-                notOnRoute = hulp;
-                newRoute = false;
-                progress = index + offset2;
-                activity.getMapRunningFragment().setRoute(routeList[onRoute].getRouteCoordinates());
-                activity.getMapRunningFragment().displayRoute();
-                activity.getWhileRunningFragment().getRouteTotalText().setText("/ " + routeList[onRoute].getRouteLength().toString());
-            }else if(distanceSecondRoute - distanceCurrentRoute>NAVIGATION_RADIUS) {//runner stays on primary route, no swap needed of route
-                newRoute = false;
-                onSplitPoint = false;
-                progress = index + offset1;
-                activity.getMapRunningFragment().setRoute(routeList[onRoute].getRouteCoordinates());
-                activity.getMapRunningFragment().displayRoute();
-                activity.getWhileRunningFragment().getRouteTotalText().setText(routeList[onRoute].getRouteLength().toString());
-            }
+    /**
+     * This method decides on which route the runner is currently on
+     * Do not call this method if no dynamic route has been added
+     */
+    private void decidePath(){
+        //the routes are searched from the current progress on, if the runner is not near that part the whole route is searched.
+        //this way a route that passes the same street twice does not jump to the other pass
+        RouteIndex.Position currentRoute = routeList[onRoute].getIndex().locate(currentLocation, progress, NAVIGATION_RADIUS);
+        RouteIndex.Position secondRoute = routeList[notOnRoute].getIndex().locate(currentLocation, progress, NAVIGATION_RADIUS);
+        if(currentRoute == null || secondRoute == null){
+            return;
         }
-
-        /**
-         * this method checks if the runner is on a split point
-         */
-        private void checkOnSplitPoint(){
-            RunRoutePoint pointNew = routeList[notOnRoute].getRoute().get(splitPoint);
-            float[] distance = new float[1];
-            Location.distanceBetween(currentLocation.latitude, currentLocation.longitude,
-                    pointNew.getLocation().latitude, pointNew.getLocation().longitude,
-                    distance);
-            if(distance[0]<NAVIGATION_RADIUS) {//if this is true, then we are on a split point
-                ArrayList<RunDirection> directions = new ArrayList<>();
-                directions.add(pointNew.getDirection());
-                onSplitPoint = true;
-                progress = splitPoint;
-
-                publishRunAudioEvent(new RunAudio(routeList[onRoute].getRoute().get(splitPoint).getDirection(), pointNew.getDirection()));
-            }
+        double distanceCurrentRoute = currentRoute.getDistance();
+        double distanceSecondRoute = secondRoute.getDistance();
+
+        if(distanceCurrentRoute - distanceSecondRoute>NAVIGATION_RADIUS){//runner swtichs to dynamic route
+            int hulp = onRoute;
+            onSplitPoint = false;//now we know which route has been taken, runner is no longer on split point
+            onRoute = notOnRoute;
+            notOnRoute = hulp;
+            newRoute = false;
+            progress = secondRoute.getSegment();
+            activity.getMapRunningFragment().setRoute(routeList[onRoute].getRouteCoordinates());
+            activity.getMapRunningFragment().displayRoute();
+            activity.getWhileRunningFragment().getRouteTotalText().setText("/ " + routeList[onRoute].getRouteLength().toString());
+        }else if(distanceSecondRoute - distanceCurrentRoute>NAVIGATION_RADIUS) {//runner stays on primary route, no swap needed of route
+            newRoute = false;
+            onSplitPoint = false;
+            progress = currentRoute.getSegment();
+            activity.getMapRunningFragment().setRoute(routeList[onRoute].getRouteCoordinates());
+            activity.getMapRunningFragment().displayRoute();
+            activity.getWhileRunningFragment().getRouteTotalText().setText(routeList[onRoute].getRouteLength().toString());
         }
+    }
 
-        private double distanceToLine(LatLng p, LatLng start, LatLng end){
-            return PolyUtil.distanceToLine(p,start,end);
+    /**
+     * this method checks if the runner is on a split point
+     */
+    private void checkOnSplitPoint(){
+        RunRoute routeNew = routeList[notOnRoute];
+        double distance = GeoMath.distanceSquared(currentLocation.latitude, currentLocation.longitude,
+                routeNew.getLatitude(splitPoint), routeNew.getLongitude(splitPoint));
+        if(distance < NAVIGATION_RADIUS * NAVIGATION_RADIUS) {//if this is true, then we are on a split point
+            onSplitPoint = true;
+            progress = splitPoint;
+
+            publishRunAudioEvent(new RunAudio(new RunDirection(routeList[onRoute].getDirection(splitPoint)), new RunDirection(routeNew.getDirection(splitPoint))));
         }
+    }
 
-        private void publishRunAudioEvent(RunAudio runAudio){
-            if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_directions", true)){
-                EventBroker.getInstance().addEvent(Constants.EventTypes.AUDIO, runAudio, this);
-            }
+    private void publishRunAudioEvent(RunAudio runAudio){
+        if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_directions", true)){
+            EventBroker.getInstance().addEvent(Constants.Topics.AUDIO, runAudio, this);
         }
-
     }
 }
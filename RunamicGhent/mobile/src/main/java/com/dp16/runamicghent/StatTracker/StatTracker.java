@@ -19,9 +19,8 @@ import android.preference.PreferenceManager;
 import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.DataProvider.AndroidWearProvider;
 import com.dp16.runamicghent.DataProvider.DataProvider;
-import com.dp16.runamicghent.DataProvider.DistanceProvider;
+import com.dp16.runamicghent.DataProvider.LocationPipeline;
 import com.dp16.runamicghent.DataProvider.MockUp.HeartBeatProviderMock;
-import com.dp16.runamicghent.DataProvider.SpeedProvider;
 import com.dp16.runamicghent.DataProvider.TimingProvider;
 import com.dp16.runamicghent.GuiController.GuiController;
 import com.dp16.runamicghent.R;
@@ -29,15 +28,15 @@ import com.dp16.runamicghent.RunData.RunAudio;
 import com.dp16.runamicghent.RunData.RunDistance;
 import com.dp16.runamicghent.RunData.RunDuration;
 import com.dp16.runamicghent.RunData.RunHeartRate;
+import com.dp16.runamicghent.RunData.RunSample;
 import com.dp16.runamicghent.RunData.RunSpeed;
+import com.dp16.eventbroker.ComponentScheduler;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
-import com.google.android.gms.maps.model.LatLng;
 
 import java.util.ArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * This class collects statistics while running and stores them in a RunningStatistics object.
@@ -46,7 +45,7 @@ import java.util.concurrent.Executors;
  *     <b>Messages Produced: </b> {@link com.dp16.runamicghent.Constants.EventTypes#STORE_RUNNINGSTATISTICS}
  * </p>
  * <p>
- *     <b>Messages Consumed: </b> {@link com.dp16.runamicghent.Constants.EventTypes#SPEED}, {@link com.dp16.runamicghent.Constants.EventTypes#LOCATION}, {@link com.dp16.runamicghent.Constants.EventTypes#DISTANCE}
+ *     <b>Messages Consumed: </b> {@link com.dp16.runamicghent.Constants.EventTypes#RUN_SAMPLE}, {@link com.dp16.runamicghent.Constants.EventTypes#HEART_RESPONSE}, {@link com.dp16.runamicghent.Constants.EventTypes#DURATION}
  * </p>
  *
  * Created by hendrikdepauw on 07/03/2017.
@@ -82,8 +81,7 @@ public class StatTracker implements EventListener, EventPublisher {
         this.activity = activity;
 
         //Add all the dataproviders to a list.
-        dataProviders.add(new DistanceProvider());
-        dataProviders.add(new SpeedProvider());
+        dataProviders.add(new LocationPipeline());
 
         // Decide whether to use real heartbeatprovider or the mock based on preferences. By default the real one is chosen.
         if (PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_debug_heartbeat_mock", false)) {
@@ -103,8 +101,8 @@ public class StatTracker implements EventListener, EventPublisher {
         durationFeedbackInterval = PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getInt("pref_key_audio_feedback_duration_interval", 1) * 60; // In seconds
         nextDurationFeedback = durationFeedbackInterval;
 
-        //Make worker thread
-        worker = Executors.newSingleThreadExecutor();
+        // Make worker, it runs on the threads shared by all components
+        worker = ComponentScheduler.getInstance().newSerialExecutor("StatTracker");
     }
 
     public void startStatTracker() {
@@ -140,6 +138,9 @@ public class StatTracker implements EventListener, EventPublisher {
         for (DataProvider i : dataProviders) {
             i.stop();
         }
+
+        //Events that were already delivered are still handled
+        worker.shutdown();
     }
 
     public void resumeStatTracker() {
@@ -170,25 +171,22 @@ public class StatTracker implements EventListener, EventPublisher {
     }
 
     /**
-     * This method subscribes to all events in the eventbroker
+     * This method subscribes to all events in the eventbroker.
+     * The events are delivered on the worker thread.
      */
     private void subscribeToEventBroker() {
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.HEART_RESPONSE, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DISTANCE, this);
-        EventBroker.getInstance().addEventListener(Constants.EventTypes.DURATION, this);
+        EventBroker.getInstance().addEventListener(Constants.Topics.RUN_SAMPLE, this, worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.HEART_RESPONSE, this, worker);
+        EventBroker.getInstance().addEventListener(Constants.Topics.DURATION, this, worker);
     }
 
     /**
      * This method unsubscribes from all events in the eventbroker
      */
     private void unsubscribeFromEventBroker() {
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.LOCATION, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.SPEED, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.HEART_RESPONSE, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.DISTANCE, this);
-        EventBroker.getInstance().removeEventListener(Constants.EventTypes.DURATION, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.RUN_SAMPLE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.HEART_RESPONSE, this);
+        EventBroker.getInstance().removeEventListener(Constants.Topics.DURATION, this);
     }
 
     /**
@@ -202,7 +200,7 @@ public class StatTracker implements EventListener, EventPublisher {
         canStillEdit = false;
 
         //Send runningStatistics to persistence component
-        EventBroker.getInstance().addEvent(Constants.EventTypes.STORE_RUNNINGSTATISTICS, runningStatistics, this);
+        EventBroker.getInstance().addEvent(Constants.Topics.STORE_RUNNINGSTATISTICS, runningStatistics, this);
 
         /*
          * Pass the runningStatistics to the AggregateRunningStatistics
@@ -231,97 +229,79 @@ public class StatTracker implements EventListener, EventPublisher {
     }
 
     /**
-     * Called when an event enters the StatTracker.
-     * Passes work to the worker thread.
+     * Called on the worker thread when an event enters the StatTracker.
      *
      * @param eventType
      * @param message
      */
     @Override
     public void handleEvent(String eventType, Object message) {
-        Runnable task = new StatTracker.Worker(eventType, message);
-        worker.submit(task);
+        /*
+         * Determine the type of message received and store it in runningStatistics
+         */
+        switch (eventType) {
+            case Constants.EventTypes.RUN_SAMPLE:
+                // location, speed and distance of the same fix
+                RunSample sample = (RunSample) message;
+                RunDistance runDistance = new RunDistance((int) sample.getDistance());
+                runningStatistics.addLocation(sample.getPosition());
+                runningStatistics.addSpeed(new RunSpeed(sample.getSpeed()));
+                runningStatistics.addDistance(runDistance);
+                if(distanceFeedback){
+                    checkForFeedbackDistance(runDistance);
+                }
+                break;
+            case Constants.EventTypes.HEART_RESPONSE:
+                runningStatistics.addHeartrate((RunHeartRate) message);
+                break;
+            case Constants.EventTypes.DURATION:
+                lastRunDuration = (RunDuration) message;
+                if(durationFeedback){
+                    checkForFeedbackDuration((RunDuration) message);
+                }
+                break;
+            default:
+                break;
+        }
     }
 
-    private class Worker implements Runnable, EventPublisher {
-        private final String eventType;
-        private final Object message;
-
-        public Worker(String eventType, Object message) {
-            this.eventType = eventType;
-            this.message = message;
+    private void checkForFeedbackDistance(RunDistance runDistance){
+        if(runDistance.getDistance() > nextDistanceFeedback){
+            nextDistanceFeedback += distanceFeedbackInterval;
+            publishFeedback();
         }
+    }
 
-        @Override
-        public void run() {
-            /*
-             * Determine the type of message received and store it in runningStatistics
-             */
-            switch (eventType) {
-                case Constants.EventTypes.LOCATION:
-                    runningStatistics.addLocation((LatLng) message);
-                    break;
-                case Constants.EventTypes.SPEED:
-                    runningStatistics.addSpeed((RunSpeed) message);
-                    break;
-                case Constants.EventTypes.HEART_RESPONSE:
-                    runningStatistics.addHeartrate((RunHeartRate) message);
-                    break;
-                case Constants.EventTypes.DISTANCE:
-                    runningStatistics.addDistance((RunDistance) message);
-                    if(distanceFeedback){
-                        checkForFeedbackDistance((RunDistance) message);
-                    }
-                    break;
-                case Constants.EventTypes.DURATION:
-                    lastRunDuration = (RunDuration) message;
-                    if(durationFeedback){
-                        checkForFeedbackDuration((RunDuration) message);
-                    }
-                    break;
-                default:
-                    break;
-            }
+    private void checkForFeedbackDuration(RunDuration runDuration){
+        if(runDuration.getSecondsPassed() > nextDurationFeedback){
+            nextDurationFeedback += durationFeedbackInterval;
+            publishFeedback();
         }
+    }
 
-        private void checkForFeedbackDistance(RunDistance runDistance){
-            if(runDistance.getDistance() > nextDistanceFeedback){
-                nextDistanceFeedback += distanceFeedbackInterval;
-                publishFeedback();
-            }
-        }
+    /**
+     * This method publishes an AUDIO event giving feedback to the user about his statistics.
+     * The user can choose in the preferences what he wants to hear.
+     * All feedback is put in a RunAudio object that is then published.
+     */
+    private void publishFeedback(){
+        String string = "";
 
-        private void checkForFeedbackDuration(RunDuration runDuration){
-            if(runDuration.getSecondsPassed() > nextDurationFeedback){
-                nextDurationFeedback += durationFeedbackInterval;
-                publishFeedback();
-            }
+        if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_distance", true)){
+            string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_totaldistance) + runningStatistics.getTotalDistance().toAudioString() + ". ");
         }
-
-        /**
-         * This method publishes an AUDIO event giving feedback to the user about his statistics.
-         * The user can choose in the preferences what he wants to hear.
-         * All feedback is put in a RunAudio object that is then published.
-         */
-        private void publishFeedback(){
-            String string = "";
-
-            if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_distance", true)){
-                string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_totaldistance) + runningStatistics.getTotalDistance().toAudioString() + ". ");
-            }
-            if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_duration", true)){
-                string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_totalduration) + lastRunDuration.toAudioString() + ". ");
-            }
-            if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_avg_speed", true)){
-                string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_average_speed) + runningStatistics.getAverageSpeed().toString(activity.getApplicationContext()) + ". ");
-            }
-            if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_avg_heartrate", false)){
-                string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_average_heartrate) + runningStatistics.getAverageHeartRate().toString() + ". ");
-            }
-
-            RunAudio runAudio = new RunAudio(string);
-
-            EventBroker.getInstance().addEvent(Constants.EventTypes.AUDIO, runAudio, this);
+        if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_duration", true)){
+            string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_totalduration) + lastRunDuration.toAudioString() + ". ");
         }
+        if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_avg_speed", true)){
+            string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_average_speed) + runningStatistics.getAverageSpeed().toString(activity.getApplicationContext()) + ". ");
+        }
+        if(PreferenceManager.getDefaultSharedPreferences(activity.getApplicationContext()).getBoolean("pref_key_audio_feedback_contents_avg_heartrate", false)){
+            string = string.concat(GuiController.getInstance().getContext().getString(R.string.audio_average_heartrate) + runningStatistics.getAverageHeartRate().toString() + ". ");
+        }
+
+        RunAudio runAudio = new RunAudio(string);
+
+        EventBroker.getInstance().addEvent(Constants.Topics.AUDIO, runAudio, this);
     }
 }
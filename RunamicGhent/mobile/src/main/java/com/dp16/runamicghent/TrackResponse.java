@@ -13,14 +13,18 @@
 
 package com.dp16.runamicghent;
 
+import com.dp16.runamicghent.RunData.RunRoute;
+
 import org.json.JSONObject;
 
 /**
  * This class is used to associate a track response with a response number.
+ * The track is either a JSONObject or a route that was already decoded by the RouteProvider.
  * Created by lorenzvanherwaarden on 10/04/2017.
  */
 public class TrackResponse {
     private JSONObject track;
+    private RunRoute route;
     private boolean dynamic;
     private int responseNumber;
 
@@ -30,10 +34,26 @@ public class TrackResponse {
         this.responseNumber = responseNumber;
     }
 
+    public TrackResponse(RunRoute route, boolean dynamic, int responseNumber) {
+        this.route = route;
+        this.dynamic = dynamic;
+        this.responseNumber = responseNumber;
+    }
+
+    /**
+     * @return The JSON track, or null if the response holds a decoded route
+     */
     public JSONObject getTrack() {
         return track;
     }
 
+    /**
+     * @return The decoded route, or a new route converted from the JSON track
+     */
+    public RunRoute getRoute() {
+        return route != null ? route : new RunRoute(track);
+    }
+
     public int getResponseNumber() {
         return responseNumber;
     }
@@ -16,6 +16,8 @@ package com.dp16.runamicghent.DataProviderTests;
 import android.location.Location;
 
 import com.dp16.runamicghent.DataProvider.Kalman;
+import com.dp16.runamicghent.util.GpxReader;
+import com.dp16.runamicghent.util.MatrixKalman;
 import com.google.android.gms.maps.model.LatLng;
 
 import org.junit.Ignore;
@@ -24,6 +26,10 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.annotation.Config;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -103,6 +109,53 @@ public class KalmanTest {
 
     }
 
+    @Test
+    public void kalman_noisyGpxTrace_isCloserToTheTrackThanTheMatrixFilter() {
+        // the gpx file has a point every 20 seconds or so, a phone gives one every second
+        List<Location> track = new GpxReader("plateau_zwijnaarde.gpx").getLocations();
+        List<Location> truth = new ArrayList<>();
+        for (int i = 0; i + 1 < track.size(); i++) {
+            Location from = track.get(i);
+            Location to = track.get(i + 1);
+            for (long time = from.getTime(); time < to.getTime(); time += 1000) {
+                double fraction = (time - from.getTime()) / (double) (to.getTime() - from.getTime());
+                Location location = new Location("");
+                location.setLatitude(from.getLatitude() + fraction * (to.getLatitude() - from.getLatitude()));
+                location.setLongitude(from.getLongitude() + fraction * (to.getLongitude() - from.getLongitude()));
+                location.setTime(time);
+                truth.add(location);
+            }
+        }
+
+        Kalman kalman = new Kalman();
+        MatrixKalman reference = new MatrixKalman();
+        Random random = new Random(42);
+        double noise = 5.0; // meters
+        double rawError = 0;
+        double error = 0;
+        double referenceError = 0;
+        float[] distance = new float[1];
+        for (Location location : truth) {
+            Location measured = new Location(location);
+            measured.setLatitude(location.getLatitude() + random.nextGaussian() * noise / 111195.0);
+            measured.setLongitude(location.getLongitude() + random.nextGaussian() * noise / (111195.0 * Math.cos(Math.toRadians(location.getLatitude()))));
+            measured.setAccuracy((float) noise);
+
+            LatLng estimate = kalman.estimatePosition(measured);
+            LatLng referenceEstimate = reference.estimatePosition(measured);
+
+            Location.distanceBetween(location.getLatitude(), location.getLongitude(), measured.getLatitude(), measured.getLongitude(), distance);
+            rawError += distance[0];
+            Location.distanceBetween(location.getLatitude(), location.getLongitude(), estimate.latitude, estimate.longitude, distance);
+            error += distance[0];
+            Location.distanceBetween(location.getLatitude(), location.getLongitude(), referenceEstimate.latitude, referenceEstimate.longitude, distance);
+            referenceError += distance[0];
+        }
+
+        assertTrue("Filter does not reduce the noise: " + error + " vs " + rawError, error < 0.7 * rawError);
+        assertTrue("Filter is worse than the matrix filter: " + error + " vs " + referenceError, error < referenceError);
+    }
+
     @Ignore
     private boolean compare_loc_latlng(LatLng latlng, Location location){
         return (Math.abs(latlng.longitude - location.getLongitude()) < 0.00000001) && (Math.abs(latlng.latitude - location.getLatitude()) < 0.00000001);
@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+package com.dp16.runamicghent.DataProviderTests;
+
+import android.location.Location;
+
+import com.dp16.runamicghent.DataProvider.LocationPipeline;
+import com.dp16.runamicghent.RunData.RunSample;
+import com.dp16.runamicghent.util.GpxReader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the single pass processing of {@link LocationPipeline} on a gpx trace, without the EventBroker.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class LocationPipelineTests {
+    private static final double NOISE = 5.0; // meters
+
+    @Test
+    public void locationPipeline_noisyGpxTrace_distanceIsWithinFewPercentOfTrackLength() {
+        List<Location> track = new GpxReader("plateau_zwijnaarde.gpx").getLocations();
+        double trackLength = trackLength(track);
+
+        LocationPipeline pipeline = new LocationPipeline();
+        Random random = new Random(42);
+        RunSample last = null;
+        long previousTime = Long.MIN_VALUE;
+        for (Location location : everySecond(track)) {
+            RunSample sample = pipeline.process(withNoise(location, random));
+            if (sample != null) {
+                assertTrue("Samples are not in order", sample.getTime() > previousTime);
+                assertTrue("Distance decreased", last == null || sample.getDistance() >= last.getDistance());
+                assertTrue("Impossible speed " + sample.getSpeed(), sample.getSpeed() < 12.0);
+                previousTime = sample.getTime();
+                last = sample;
+            }
+        }
+
+        assertNotNull(last);
+        assertEquals(trackLength, last.getDistance(), trackLength * 0.05);
+        assertEquals(last.getDistance(), pipeline.getDistance(), 0.0);
+    }
+
+    @Test
+    public void locationPipeline_outliers_areSkipped() {
+        List<Location> fixes = everySecond(new GpxReader("plateau_zwijnaarde.gpx").getLocations()).subList(0, 120);
+        LocationPipeline pipeline = new LocationPipeline();
+        Random random = new Random(7);
+        for (Location location : fixes.subList(0, 60)) {
+            pipeline.process(withNoise(location, random));
+        }
+        double distanceBefore = pipeline.getDistance();
+
+        // half a kilometer away, half a second later
+        Location jump = new Location(fixes.get(60));
+        jump.setTime(fixes.get(59).getTime() + 500);
+        jump.setLatitude(jump.getLatitude() + 0.0045);
+        jump.setAccuracy((float) NOISE);
+        assertNull(pipeline.process(jump));
+
+        Location inaccurate = withNoise(fixes.get(60), random);
+        inaccurate.setAccuracy(100f);
+        assertNull(pipeline.process(inaccurate));
+
+        Location older = withNoise(fixes.get(30), random);
+        assertNull(pipeline.process(older));
+
+        assertEquals(distanceBefore, pipeline.getDistance(), 0.0);
+        for (Location location : fixes.subList(60, 120)) {
+            assertNotNull(pipeline.process(withNoise(location, random)));
+        }
+    }
+
+    @Test
+    public void locationPipeline_constantSpeedTrack_averageSpeedIsWithinTwentyPercent() {
+        List<Location> track = new GpxReader("plateau_zwijnaarde.gpx").getLocations();
+        Location first = track.get(0);
+        Location last = track.get(track.size() - 1);
+        double speed = trackLength(track) * 1000 / (last.getTime() - first.getTime()); // about 10 km/h
+        int warmup = 30; // the filter starts from a speed of 0.0
+
+        LocationPipeline pipeline = new LocationPipeline();
+        Random random = new Random(3);
+        int samples = 0;
+        double speedSum = 0;
+        for (Location location : everySecond(track)) {
+            RunSample sample = pipeline.process(withNoise(location, random));
+            if (sample != null && ++samples > warmup) {
+                speedSum += sample.getSpeed();
+            }
+        }
+
+        assertTrue(samples > warmup);
+        // 20% as described in the acceptance tests
+        assertEquals("Speed reported is not within 20% of the real value", speed, speedSum / (samples - warmup), speed * 0.2);
+    }
+
+    @Test
+    public void locationPipeline_sameLocationOverAndOver_addsNoDistance() {
+        Location spot = new GpxReader("plateau_zwijnaarde.gpx").getLocations().get(0);
+        LocationPipeline pipeline = new LocationPipeline();
+        for (int second = 0; second < 120; second++) {
+            Location location = new Location(spot);
+            location.setTime(spot.getTime() + second * 1000L);
+            location.setAccuracy((float) NOISE);
+            assertNotNull(pipeline.process(location));
+        }
+        assertEquals("Distance added for a runner that did not move", 0.0, pipeline.getDistance(), 0.0);
+    }
+
+    private static double trackLength(List<Location> track) {
+        double length = 0;
+        float[] distance = new float[1];
+        for (int i = 0; i + 1 < track.size(); i++) {
+            Location.distanceBetween(track.get(i).getLatitude(), track.get(i).getLongitude(),
+                    track.get(i + 1).getLatitude(), track.get(i + 1).getLongitude(), distance);
+            length += distance[0];
+        }
+        return length;
+    }
+
+    /**
+     * The gpx file has a point every 20 seconds or so, a phone gives one every second.
+     */
+    private static List<Location> everySecond(List<Location> track) {
+        List<Location> result = new ArrayList<>();
+        for (int i = 0; i + 1 < track.size(); i++) {
+            Location from = track.get(i);
+            Location to = track.get(i + 1);
+            for (long time = from.getTime(); time < to.getTime(); time += 1000) {
+                double fraction = (time - from.getTime()) / (double) (to.getTime() - from.getTime());
+                Location location = new Location("");
+                location.setLatitude(from.getLatitude() + fraction * (to.getLatitude() - from.getLatitude()));
+                location.setLongitude(from.getLongitude() + fraction * (to.getLongitude() - from.getLongitude()));
+                location.setTime(time);
+                result.add(location);
+            }
+        }
+        return result;
+    }
+
+    private static Location withNoise(Location location, Random random) {
+        Location measured = new Location(location);
+        measured.setLatitude(location.getLatitude() + random.nextGaussian() * NOISE / 111195.0);
+        measured.setLongitude(location.getLongitude() + random.nextGaussian() * NOISE / (111195.0 * Math.cos(Math.toRadians(location.getLatitude()))));
+        measured.setAccuracy((float) NOISE);
+        return measured;
+    }
+}
@@ -20,7 +20,6 @@ import com.dp16.runamicghent.Constants;
 import com.dp16.runamicghent.StatTracker.AggregateRunningStatistics;
 import com.dp16.runamicghent.StatTracker.RunningStatistics;
 import com.dp16.eventbroker.EventBroker;
-import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisherClass;
 
 import org.junit.After;
@@ -33,10 +32,12 @@ import org.robolectric.annotation.Config;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.dp16.runamicghent.util.ThreadingUtils.waitOneSecUntilAtomicVariableReachesValue;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 
 /**
  * Tests for Persistence.EventBasedPersistence
@@ -108,25 +109,13 @@ public class EventBasedPersistenceTests {
     }
 
     @Test
-    public void getRun(){
-        // make a listener for the LOADED_RUN event
-        final AtomicInteger received = new AtomicInteger(0);
-        EventListener listener = new EventListener() {
-            @Override
-            public void handleEvent(String eventType, Object message) {
-                received.incrementAndGet();
-            }
-        };
-        broker.addEventListener(Constants.EventTypes.LOADED_RUNNINGSTATISTICS, listener);
-
-        // publish a 'load run' event
-        publisher.publishEvent(Constants.EventTypes.LOAD_RUNNINGSTATISTICS, null);
+    public void getRun() throws Exception {
+        // request the runs and wait for the answer
+        Object response = broker.request(Constants.Topics.LOAD_RUNNINGSTATISTICS, null).get(1, TimeUnit.SECONDS);
 
-        // wait until it is passed to the mock controller
-        waitOneSecUntilAtomicVariableReachesValue("", mock.getRun, 1);
-
-        // wait until it is received in the listener
-        waitOneSecUntilAtomicVariableReachesValue("", received, 1);
+        // it is passed to the mock controller
+        assertEquals(1, mock.getRun.get());
+        assertNotNull(response);
 
         // check other methods not called
         assertZero(mock.saveRun);
@@ -165,18 +154,10 @@ public class EventBasedPersistenceTests {
     }
 
     @Test
-    public void getAgg(){
-        final AtomicInteger received = new AtomicInteger(0);
-        EventListener listener = new EventListener() {
-            @Override
-            public void handleEvent(String eventType, Object message) {
-                received.incrementAndGet();
-            }
-        };
-        broker.addEventListener(Constants.EventTypes.LOADED_AGGREGATESTATISTICS, listener);
-        publisher.publishEvent(Constants.EventTypes.LOAD_AGGREGATESTATISTICS, null);
-        waitOneSecUntilAtomicVariableReachesValue("", mock.getAgg, 1);
-        waitOneSecUntilAtomicVariableReachesValue("", received, 1);
+    public void getAgg() throws Exception {
+        Object response = broker.request(Constants.Topics.LOAD_AGGREGATESTATISTICS, null).get(1, TimeUnit.SECONDS);
+        assertEquals(1, mock.getAgg.get());
+        assertNotNull(response);
         assertZero(mock.saveRun);
         assertZero(mock.delRun);
         assertZero(mock.getRun);
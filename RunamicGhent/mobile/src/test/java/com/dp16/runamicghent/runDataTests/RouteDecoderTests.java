@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.runamicghent.runDataTests;
+
+import com.dp16.runamicghent.RunData.RouteDecoder;
+import com.dp16.runamicghent.RunData.RunDirection;
+import com.dp16.runamicghent.RunData.RunRoute;
+import com.dp16.runamicghent.RunData.RunRoutePoint;
+
+import junit.framework.Assert;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RouteDecoderTests {
+    private static final String JSON = "{\"tag\": vfibdjk, \"coordinates\": [ { \"lat\": 51.0386722, \"c\": \"none\", \"lon\": 3.730139 }, { \"lat\": \"51.0386317\", \"c\": \"left\", \"lon\": \"3.7301503\" }, { \"lat\": 51.038596, \"c\": \"right\", \"lon\": 3.7301377, \"extra\": [1, {\"a\": 2}] } ] }";
+    ArrayList<RunRoutePoint> testRoute;
+
+    @Before
+    public void init() {
+        testRoute = new ArrayList<>();
+        testRoute.add(new RunRoutePoint(51.0386722, 3.730139, "none"));
+        testRoute.add(new RunRoutePoint(51.0386317, 3.7301503, "left"));
+        testRoute.add(new RunRoutePoint(51.038596, 3.7301377, "right"));
+        testRoute.add(new RunRoutePoint(51.0386722, 3.730139, "none")); // Add first point again to close circle
+    }
+
+    @Test
+    public void routeDecoder_decodeJson_sameAsJSONObject() throws IOException {
+        RunRoute runRoute = RouteDecoder.decodeJson(new StringReader(JSON));
+
+        Assert.assertEquals("RouteDecoder decodes JSON incorrectly", testRoute, runRoute.getRoute());
+        Assert.assertEquals("RouteDecoder decodes tag incorrectly", "vfibdjk", runRoute.getTag());
+        Assert.assertEquals("RouteDecoder calculates length incorrectly", RunRoute.calculateRouteLength(testRoute).getDistance(), runRoute.getRouteLength().getDistance());
+    }
+
+    @Test
+    public void routeDecoder_decodePolyline_pointsAndDirections() throws IOException {
+        // example of https://developers.google.com/maps/documentation/utilities/polylinealgorithm
+        String json = "{\"tag\": \"abc\", \"directions\": [\"none\", \"left\", null], \"polyline\": \"_p~iF~ps|U_ulLnnqC_mqNvxq`@\"}";
+        RunRoute runRoute = RouteDecoder.decodeJson(new StringReader(json));
+
+        Assert.assertEquals("RouteDecoder did not close the route", 4, runRoute.size());
+        Assert.assertEquals(38.5, runRoute.getLatitude(0), 1e-9);
+        Assert.assertEquals(-120.2, runRoute.getLongitude(0), 1e-9);
+        Assert.assertEquals(40.7, runRoute.getLatitude(1), 1e-9);
+        Assert.assertEquals(-120.95, runRoute.getLongitude(1), 1e-9);
+        Assert.assertEquals(43.252, runRoute.getLatitude(2), 1e-9);
+        Assert.assertEquals(-126.453, runRoute.getLongitude(2), 1e-9);
+        Assert.assertEquals(RunDirection.Direction.LEFT, runRoute.getDirection(1));
+        Assert.assertEquals(RunDirection.Direction.NONE, runRoute.getDirection(2));
+    }
+
+    @Test(expected = IOException.class)
+    public void routeDecoder_decodePolyline_truncated() throws IOException {
+        RouteDecoder.decodeJson(new StringReader("{\"polyline\": \"_p~iF~ps|U_\"}"));
+    }
+
+    @Test
+    public void routeDecoder_decodeBinary_sameAsJSON() throws IOException {
+        byte[] bytes = encodeBinary(testRoute.subList(0, 3));
+        RunRoute runRoute = RouteDecoder.decode(new ByteArrayInputStream(bytes), RouteDecoder.BINARY_CONTENT_TYPE);
+
+        Assert.assertEquals("RouteDecoder decodes binary incorrectly", testRoute, runRoute.getRoute());
+        Assert.assertEquals("RouteDecoder decodes tag incorrectly", "vfibdjk", runRoute.getTag());
+    }
+
+    @Test(expected = IOException.class)
+    public void routeDecoder_decodeBinary_truncated() throws IOException {
+        byte[] bytes = encodeBinary(testRoute.subList(0, 3));
+        RouteDecoder.decodeBinary(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 5)));
+    }
+
+    @Test(expected = IOException.class)
+    public void routeDecoder_decodeBinary_tooManyPoints() throws IOException {
+        byte[] bytes = encodeBinary(testRoute.subList(0, 3));
+        // count right after the tag, two bytes of length and the 7 characters
+        bytes[9] = 0x7f;
+        RouteDecoder.decodeBinary(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void routeDecoder_decodeBinary_countLargerThanPoints() throws IOException {
+        byte[] bytes = encodeBinary(testRoute.subList(0, 3));
+        // sane count, but the stream ends long before, without allocating for all of them
+        bytes[10] = 0x0f;
+        RouteDecoder.decodeBinary(new ByteArrayInputStream(bytes));
+    }
+
+    @Test
+    public void routeDecoder_decode_fallsBackToJson() throws IOException {
+        RunRoute runRoute = RouteDecoder.decode(new ByteArrayInputStream(JSON.getBytes("UTF-8")), null);
+
+        Assert.assertEquals("RouteDecoder does not fall back to JSON", testRoute, runRoute.getRoute());
+    }
+
+    private byte[] encodeBinary(List<RunRoutePoint> points) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF("vfibdjk");
+        out.writeInt(points.size());
+        for (RunRoutePoint point : points) {
+            out.writeInt((int) Math.round(point.getLocation().latitude * 1e7));
+            out.writeInt((int) Math.round(point.getLocation().longitude * 1e7));
+            out.writeByte(point.getDirection().getDirection().ordinal());
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+}
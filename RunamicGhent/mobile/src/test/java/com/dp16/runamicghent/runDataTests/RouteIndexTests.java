@@ -0,0 +1,158 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.runamicghent.runDataTests;
+
+import com.dp16.runamicghent.GeoMath;
+import com.dp16.runamicghent.RunData.RouteIndex;
+import com.dp16.runamicghent.RunData.RunDirection;
+import com.dp16.runamicghent.RunData.RunRoute;
+import com.dp16.runamicghent.RunData.RunRoutePoint;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for RouteIndex, against going over every segment of the route.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RouteIndexTests {
+    private static final LatLng GHENT = new LatLng(51.0543, 3.7174);
+
+    @Test
+    public void routeIndex_locate_findsTheSameDistanceAsEverySegment() {
+        Random random = new Random(3);
+        GeoMath.LocalFrame frame = new GeoMath.LocalFrame(GHENT);
+        // random walk of 2000 steps of up to 30 m
+        List<LatLng> route = new ArrayList<>();
+        double east = 0;
+        double north = 0;
+        for (int i = 0; i < 2000; i++) {
+            route.add(new LatLng(frame.latitude(north), frame.longitude(east)));
+            east += (random.nextDouble() - 0.5) * 60;
+            north += (random.nextDouble() - 0.5) * 60;
+        }
+        RouteIndex index = index(route);
+
+        for (int i = 0; i < 500; i++) {
+            LatLng location = new LatLng(frame.latitude((random.nextDouble() - 0.5) * 3000), frame.longitude((random.nextDouble() - 0.5) * 3000));
+            double expected = Double.POSITIVE_INFINITY;
+            for (int segment = 0; segment < route.size() - 1; segment++) {
+                expected = Math.min(expected, GeoMath.distanceToSegment(location, route.get(segment), route.get(segment + 1)));
+            }
+            RouteIndex.Position position = index.locate(location);
+            assertEquals(expected, position.getDistance(), 0.01 + expected * 0.001);
+            assertEquals(position.getDistance(), GeoMath.distanceToSegment(location, route.get(position.getSegment()),
+                    route.get(position.getSegment() + 1)), 0.01 + expected * 0.001);
+        }
+    }
+
+    @Test
+    public void routeIndex_locateWithHint_staysOnThePassTheRunnerIsOn() {
+        GeoMath.LocalFrame frame = new GeoMath.LocalFrame(GHENT);
+        // 500 m east with a point every 20 m, then back on the other side of the street, 10 m further north
+        List<LatLng> route = new ArrayList<>();
+        for (int i = 0; i <= 25; i++) {
+            route.add(new LatLng(frame.latitude(0), frame.longitude(i * 20)));
+        }
+        for (int i = 25; i >= 0; i--) {
+            route.add(new LatLng(frame.latitude(10), frame.longitude(i * 20)));
+        }
+        RouteIndex index = index(route);
+
+        // on the way out, but closer to the way back
+        LatLng location = new LatLng(frame.latitude(7), frame.longitude(210));
+
+        assertEquals(40, index.locate(location).getSegment());
+        RouteIndex.Position position = index.locate(location, 8, 30);
+        assertEquals(10, position.getSegment());
+        assertEquals(0.5, position.getFraction(), 0.01);
+        assertEquals(7.0, position.getDistance(), 0.01);
+        assertEquals(210.0, position.getAlongRoute(), 0.5);
+        // too far from the hint: the whole route is searched
+        assertEquals(40, index.locate(location, 8, 5).getSegment());
+    }
+
+    @Test
+    public void routeIndex_isOnRoute_usesTheTolerance() {
+        List<LatLng> route = new ArrayList<>();
+        route.add(new LatLng(51, 3));
+        route.add(new LatLng(51, 3.01));
+        RunRoute runRoute = runRoute(route);
+        RouteIndex index = runRoute.getIndex();
+
+        assertTrue(index.isOnRoute(new LatLng(51, 3.005), 1));
+        assertTrue(index.isOnRoute(new LatLng(51.0001, 3.005), 20));
+        assertFalse(index.isOnRoute(new LatLng(51.0001, 3.005), 5));
+        assertFalse(index.isOnRoute(new LatLng(57, 55), 20));
+        assertEquals(runRoute.distanceAlong(0, 1), index.getLength(), 0);
+    }
+
+    @Test
+    public void routeIndex_alongRoute_isTheDistanceAlongTheRunRoute() {
+        GeoMath.LocalFrame frame = new GeoMath.LocalFrame(GHENT);
+        // a staircase of 40 m steps
+        List<LatLng> route = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            route.add(new LatLng(frame.latitude((i / 2) * 40), frame.longitude(((i + 1) / 2) * 40)));
+        }
+        RunRoute runRoute = runRoute(route);
+        RouteIndex index = runRoute.getIndex();
+
+        for (int point = 0; point < route.size(); point++) {
+            assertEquals(runRoute.distanceAlong(0, point), index.locate(route.get(point)).getAlongRoute(), 1e-6);
+        }
+        // halfway a segment is halfway between the distances to its ends
+        RouteIndex.Position position = index.locate(new LatLng(frame.latitude(80), frame.longitude(100)));
+        assertEquals(4, position.getSegment());
+        assertEquals((runRoute.distanceAlong(0, 4) + runRoute.distanceAlong(0, 5)) / 2, position.getAlongRoute(), 0.01);
+    }
+
+    @Test
+    public void routeIndex_emptyRoute_hasNoPosition() {
+        RouteIndex index = index(new ArrayList<LatLng>());
+
+        assertNull(index.locate(GHENT));
+        assertFalse(index.isOnRoute(GHENT, 100));
+        assertEquals(0, index.getSegmentCount());
+    }
+
+    private static RunRoute runRoute(List<LatLng> points) {
+        List<RunRoutePoint> route = new ArrayList<>();
+        for (LatLng point : points) {
+            route.add(new RunRoutePoint(point, new RunDirection(RunDirection.Direction.NONE)));
+        }
+        return new RunRoute(route, "test");
+    }
+
+    /**
+     * @return The index a RunRoute builds over the points
+     */
+    private static RouteIndex index(List<LatLng> points) {
+        return runRoute(points).getIndex();
+    }
+}
@@ -15,6 +15,7 @@ package com.dp16.runamicghent.runDataTests;
 
 import android.util.Log;
 
+import com.dp16.runamicghent.RunData.RunDirection;
 import com.dp16.runamicghent.RunData.RunRoute;
 import com.dp16.runamicghent.RunData.RunRoutePoint;
 import com.google.android.gms.maps.model.LatLng;
@@ -111,4 +112,18 @@ public class RunRouteTests {
         Assert.assertEquals("RunRoute selects meaningful directions incorrectly", distanceCalculated, ((double) RunRoute.calculateRouteLength(testRoute).getDistance())/1000, 0.002f);
     }
 
+    @Test
+    public void runRoute_distanceAlong_matchesRouteLength(){
+        RunRoute runRoute = new RunRoute(testRoute, tag);
+        int last = runRoute.size() - 1;
+
+        Assert.assertEquals("RunRoute distance along the route is incorrect", runRoute.getRouteLength().getDistance(), runRoute.distanceAlong(0, last), 0.5);
+        Assert.assertEquals("RunRoute remaining distance is incorrect", runRoute.distanceAlong(1, last), runRoute.remainingDistance(1), 0.0);
+        Assert.assertEquals("RunRoute remaining distance at the end is incorrect", 0.0, runRoute.remainingDistance(last), 0.0);
+        Assert.assertEquals("RunRoute next instruction is incorrect", 1, runRoute.nextInstruction(0));
+        Assert.assertEquals("RunRoute next instruction is incorrect", 2, runRoute.nextInstruction(2));
+        Assert.assertEquals("RunRoute next instruction is incorrect", -1, runRoute.nextInstruction(3));
+        Assert.assertEquals("RunRoute direction is incorrect", RunDirection.Direction.LEFT, runRoute.getDirection(1));
+    }
+
 }
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2017 Hendrik Depauw
+ * Copyright (c) 2017 Lorenz van Herwaarden
+ * Copyright (c) 2017 Nick Aelterman
+ * Copyright (c) 2017 Olivier Cammaert
+ * Copyright (c) 2017 Maxim Deweirdt
+ * Copyright (c) 2017 Gerwin Dox
+ * Copyright (c) 2017 Simon Neuville
+ * Copyright (c) 2017 Stiaan Uyttersprot
+ *
+ * This software may be modified and distributed under the terms of the MIT license.  See the LICENSE file for details.
+ */
+
+
+package com.dp16.runamicghent.utilTests;
+
+import android.location.Location;
+
+import com.dp16.runamicghent.GeoMath;
+import com.google.android.gms.maps.model.LatLng;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for GeoMath. Location.distanceBetween is the reference.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class GeoMathTests {
+    private static final LatLng GHENT = new LatLng(51.0543, 3.7174);
+
+    @Test
+    public void geoMath_distancesWithinACity_matchLocationDistanceBetween() {
+        Random random = new Random(7);
+        float[] reference = new float[1];
+        for (int i = 0; i < 1000; i++) {
+            double latitude = GHENT.latitude + (random.nextDouble() - 0.5) * 0.2;
+            double longitude = GHENT.longitude + (random.nextDouble() - 0.5) * 0.3;
+            Location.distanceBetween(GHENT.latitude, GHENT.longitude, latitude, longitude, reference);
+            // the reference is a float, that alone is a few millimeters at 10 km
+            assertEquals(reference[0], GeoMath.distance(GHENT.latitude, GHENT.longitude, latitude, longitude), 0.02);
+        }
+    }
+
+    @Test
+    public void geoMath_distanceSquared_comparesWithSquaredThreshold() {
+        LatLng north = new LatLng(GHENT.latitude + 30 / GeoMath.metersPerDegreeLatitude(GHENT.latitude), GHENT.longitude);
+
+        assertEquals(30.0, GeoMath.distance(GHENT, north), 0.001);
+        assertEquals(900.0, GeoMath.distanceSquared(GHENT, north), 0.1);
+        assertTrue(GeoMath.isWithin(GHENT, north, 30.1));
+        assertFalse(GeoMath.isWithin(GHENT, north, 29.9));
+    }
+
+    @Test
+    public void geoMath_acrossTheAntimeridian_isTheShortWay() {
+        float[] reference = new float[1];
+        Location.distanceBetween(0, 179.999, 0, -179.999, reference);
+
+        assertEquals(reference[0], GeoMath.distance(0, 179.999, 0, -179.999), 0.01);
+    }
+
+    @Test
+    public void localFrame_projectsBackAndMeasuresSegments() {
+        GeoMath.LocalFrame frame = new GeoMath.LocalFrame(GHENT);
+        double latitude = GHENT.latitude + 0.01;
+        double longitude = GHENT.longitude - 0.02;
+
+        assertEquals(latitude, frame.latitude(frame.north(latitude)), 1e-12);
+        assertEquals(longitude, frame.longitude(frame.east(longitude)), 1e-12);
+        assertEquals(0.0, frame.east(GHENT.longitude), 1e-9);
+
+        // perpendicular to the middle, and past the end of a segment of 200 m along east
+        assertEquals(40.0, frame.distanceToSegment(100, 40, 0, 0, 200, 0), 1e-9);
+        assertEquals(50.0, frame.distanceToSegment(240, 30, 0, 0, 200, 0), 1e-9);
+
+        LatLng start = new LatLng(frame.latitude(0), frame.longitude(-100));
+        LatLng end = new LatLng(frame.latitude(0), frame.longitude(100));
+        LatLng point = new LatLng(frame.latitude(25), frame.longitude(10));
+        assertEquals(25.0, GeoMath.distanceToSegment(point, start, end), 0.01);
+    }
+}
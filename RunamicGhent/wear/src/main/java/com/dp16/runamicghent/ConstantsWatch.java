@@ -74,6 +74,13 @@ class ConstantsWatch {
         public static final String SPEED_UPDATE_MESSAGE_MOBILE = "/speedUpdate";
         public static final String DISTANCE_UPDATE_MESSAGE_MOBILE = "/distanceUpdate";
 
+        //both ways: a batch of events mirrored by the EventBridge
+        public static final String EVENT_FRAME = "/eventFrame";
+        //topics the mobile device mirrors, under their name on the mobile device
+        public static final String MOBILE_SPEED_TOPIC = "run/stats/speed";
+        public static final String MOBILE_DISTANCE_TOPIC = "run/stats/distance";
+        public static final String MOBILE_DURATION_TOPIC = "run/stats/duration";
+
 
         private WearMessageTypes() {
             throw new IllegalAccessError(UTILITY_CLASS_ERROR);
@@ -19,9 +19,12 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.Log;
 
+import com.dp16.eventbroker.BridgeTransport;
+import com.dp16.eventbroker.EventBridge;
 import com.dp16.eventbroker.EventBroker;
 import com.dp16.eventbroker.EventListener;
 import com.dp16.eventbroker.EventPublisher;
+import com.dp16.eventbroker.PayloadCodecs;
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.ResultCallback;
@@ -32,6 +35,7 @@ import com.google.android.gms.wearable.NodeApi;
 import com.google.android.gms.wearable.Wearable;
 import com.google.android.gms.wearable.WearableListenerService;
 
+import java.io.IOException;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -55,14 +59,29 @@ public class WearComm extends WearableListenerService implements EventPublisher,
     //the countdownlatch is used to make sure a node has been found before messages are sent to it.
     private static CountDownLatch latch;
 
+    /*
+     * Mirrors the heart rate to the mobile device and publishes its speed, distance and duration, one frame per second.
+     * Static, as frames from the mobile device arrive at the instance Android creates for the service.
+     */
+    private static final EventBridge bridge = new EventBridge(EventBroker.getInstance(), new BridgeTransport() {
+        @Override
+        public void send(byte[] frame) throws IOException {
+            WearComm.send(ConstantsWatch.WearMessageTypes.EVENT_FRAME, frame);
+        }
+    }, EventBridge.DEFAULT_FLUSH_INTERVAL)
+            .exportTopic(EventBroker.topic(ConstantsWatch.EventTypes.HEART_RESPONSE), null)
+            .importTopic(ConstantsWatch.WearMessageTypes.MOBILE_SPEED_TOPIC, EventBroker.topic(ConstantsWatch.EventTypes.SPEED_MOBILE), PayloadCodecs.STRING)
+            .importTopic(ConstantsWatch.WearMessageTypes.MOBILE_DISTANCE_TOPIC, EventBroker.topic(ConstantsWatch.EventTypes.DISTANCE_MOBILE), PayloadCodecs.STRING)
+            .importTopic(ConstantsWatch.WearMessageTypes.MOBILE_DURATION_TOPIC, EventBroker.topic(ConstantsWatch.EventTypes.TIME_MOBILE), PayloadCodecs.INTEGER);
+
     /**
-     * adding event listeners to the class
+     * adding event listeners to the class and starting to mirror the heart rate
      */
     public void setEventListeners() {
 
-        EventBroker.getInstance().addEventListener(ConstantsWatch.EventTypes.HEART_RESPONSE, this);
         EventBroker.getInstance().addEventListener(ConstantsWatch.EventTypes.REQUEST_STATE_WEAR, this);
         EventBroker.getInstance().addEventListener(ConstantsWatch.EventTypes.ON_STOP, this);
+        bridge.start();
     }
 
     public static void setLatch(){
@@ -95,6 +114,13 @@ public class WearComm extends WearableListenerService implements EventPublisher,
      */
     private void handleReceivedMessage(String event, byte[] message) {
         switch (event) {
+            case ConstantsWatch.WearMessageTypes.EVENT_FRAME:
+                try {
+                    bridge.onFrame(message);
+                } catch (IOException e) {
+                    Log.e(TAG, "Malformed event frame", e);
+                }
+                break;
             case ConstantsWatch.WearMessageTypes.START_RUN_MOBILE:
             case ConstantsWatch.WearMessageTypes.RUN_START_STATE_MESSAGE_MOBILE:
                 startRun();
@@ -232,6 +258,15 @@ public class WearComm extends WearableListenerService implements EventPublisher,
      * @param key string containing a value for the message
      */
     public void sendMessage(String path, String key) {
+        send(path, key.getBytes());
+    }
+
+    /**
+     * send raw data to the mobile device
+     * @param path string indicating the type of message
+     * @param data bytes to be sent with the message
+     */
+    private static void send(String path, byte[] data) {
 
         try {
             //if the node has not yet been found, wait a while, the resolveNode method may still be running
@@ -248,7 +283,7 @@ public class WearComm extends WearableListenerService implements EventPublisher,
         if (mNode != null && mGoogleApiClient != null && mGoogleApiClient.isConnected()) {
             Log.d(TAG, "-- " + mGoogleApiClient.isConnected());
             Wearable.MessageApi.sendMessage(
-                    mGoogleApiClient, mNode.getId(), path, key.getBytes()).setResultCallback(
+                    mGoogleApiClient, mNode.getId(), path, data).setResultCallback(
 
                     new ResultCallback<MessageApi.SendMessageResult>() {
                         @Override
@@ -277,16 +312,13 @@ public class WearComm extends WearableListenerService implements EventPublisher,
     @Override
     public void handleEvent(String eventType, Object message) {
         switch (eventType) {
-            case ConstantsWatch.EventTypes.HEART_RESPONSE:
-                //update mobile with current heartrate
-                sendMessage(ConstantsWatch.WearMessageTypes.HEART_RATE_MESSAGE_WEAR, Integer.toString((int) message));
-                break;
             case ConstantsWatch.EventTypes.REQUEST_STATE_WEAR:
                 //send request for current state of mobile (time, runningState)
                 sendMessage(ConstantsWatch.WearMessageTypes.REQUEST_STATE_MESSAGE_WEAR, "");
                 break;
             case ConstantsWatch.EventTypes.ON_STOP:
-                //stop the wearComm
+                //stop the wearComm, sending the last heart rates first
+                bridge.stop();
                 disconnectApi();
                 EventBroker.getInstance().removeEventListener(this);
                 break;